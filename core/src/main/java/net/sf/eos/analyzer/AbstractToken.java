@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static net.sf.eos.util.Conditions.checkArgument;
 import static net.sf.eos.util.Conditions.checkArgumentNotNull;
 
 /**
@@ -29,9 +30,11 @@ import static net.sf.eos.util.Conditions.checkArgumentNotNull;
 public abstract class AbstractToken implements Token {
 
     private final CharSequence text;
-    private final Map<String, List<String>> metadata =
-        new HashMap<String, List<String>>();
+    /** Created on the first call of {@link #getMeta()}. */
+    private Map<String, List<String>> metadata = null;
     private final String type;
+    private final int startOffset;
+    private final int endOffset;
 
     /** Creates a new token for the given sequence. {@link #getType()} returns
      * the {@link Token#DEFAULT_TYPE}.
@@ -41,7 +44,8 @@ public abstract class AbstractToken implements Token {
      *                                  <code>null</code>
      */
     public AbstractToken(final CharSequence tokenSequence) {
-        this(tokenSequence, DEFAULT_TYPE, Collections.EMPTY_MAP);
+        this(tokenSequence, DEFAULT_TYPE,
+             Collections.<String, List<String>>emptyMap());
     }
 
     public AbstractToken(final CharSequence tokenSequence,
@@ -50,7 +54,25 @@ public abstract class AbstractToken implements Token {
     }
 
     public AbstractToken(final CharSequence tokenSequence, final String type) {
-        this(tokenSequence, type, Collections.EMPTY_MAP);
+        this(tokenSequence, type,
+             Collections.<String, List<String>>emptyMap());
+    }
+
+    /**
+     * Creates a new token for the given sequence at the offsets of the
+     * original text.
+     * @param tokenSequence the char sequence of the token
+     * @param type the type of the token
+     * @param startOffset the offset of the first char or {@code -1}
+     * @param endOffset the offset after the last char or {@code -1}
+     */
+    public AbstractToken(final CharSequence tokenSequence,
+                         final String type,
+                         final int startOffset,
+                         final int endOffset) {
+        this(tokenSequence, type,
+             Collections.<String, List<String>>emptyMap(), startOffset,
+             endOffset);
     }
 
     /**
@@ -58,7 +80,8 @@ public abstract class AbstractToken implements Token {
      * @param t the token to copy.
      */
     public AbstractToken(final Token t) {
-        this(t.getTokenText(), t.getType(), t.getMeta());
+        this(t.getTokenText(), t.getType(), t.getMeta(), t.getStartOffset(),
+             t.getEndOffset());
     }
 
     /** Creates a new token for the given sequence for a special <em>type</em>.
@@ -68,13 +91,40 @@ public abstract class AbstractToken implements Token {
      * @throws IllegalArgumentException if <em>tokenSequence</em> or
      *                                  <em>type</em> are <code>null</code>
      */
-    @SuppressWarnings("nls")
     public AbstractToken(final CharSequence tokenSequence,
                          final String type,
                          final Map<String, List<String>> metadata) {
+        this(tokenSequence, type, metadata, -1, -1);
+    }
+
+    /** Creates a new token for the given sequence for a special <em>type</em>
+     * at the offsets of the original text.
+     * @param tokenSequence the char sequence of the token. May not be
+     *                      <code>null</code>.
+     * @param type the type of the token. May not be <code>null</code>.
+     * @param metadata the metadata to copy
+     * @param startOffset the offset of the first char or {@code -1}
+     * @param endOffset the offset after the last char or {@code -1}
+     * @throws IllegalArgumentException if <em>tokenSequence</em> or
+     *                                  <em>type</em> are <code>null</code>
+     *                                  or the offsets are illegal
+     */
+    @SuppressWarnings("nls")
+    public AbstractToken(final CharSequence tokenSequence,
+                         final String type,
+                         final Map<String, List<String>> metadata,
+                         final int startOffset,
+                         final int endOffset) {
         this.text = checkArgumentNotNull(tokenSequence, "tokenSequence is null");
         this.type = checkArgumentNotNull(type, "type is null");
-        this.metadata.putAll(metadata);
+        checkArgument((startOffset == -1 && endOffset == -1)
+                      || (startOffset >= 0 && startOffset <= endOffset),
+                      "illegal offsets");
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        if (! metadata.isEmpty()) {
+            this.metadata = new HashMap<String, List<String>>(metadata);
+        }
     }
 
     /**
@@ -94,10 +144,27 @@ public abstract class AbstractToken implements Token {
     }
 
     /**
+     * @see Token#getStartOffset()
+     */
+    public int getStartOffset() {
+        return this.startOffset;
+    }
+
+    /**
+     * @see Token#getEndOffset()
+     */
+    public int getEndOffset() {
+        return this.endOffset;
+    }
+
+    /**
+     * The metadata map is created on the first call.
      * @see Token#getMeta()
      */
     public Map<String, List<String>> getMeta() {
-        assert this.metadata != null;
+        if (this.metadata == null) {
+            this.metadata = new HashMap<String, List<String>>();
+        }
         return this.metadata;
     }
 
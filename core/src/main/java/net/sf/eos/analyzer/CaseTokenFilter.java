@@ -24,14 +24,41 @@ import net.sf.eos.Nullable;
  * {@link Locale}. The default is to change in lower case format. If the
  * user doesn't set a locale, the implementation uses the
  * {@link Locale#getDefault() default} {@code Locale}.
+ * <p>{@link #next(MutableToken)} changes the case of ASCII tokens in the
+ * token buffer. Tokens with other chars and all tokens of the turkish,
+ * azeri and lithuanian locales are changed by the {@code String} methods.
+ * The text is the same as of {@link #next()}, the type and the metadata
+ * of the token are kept.</p>
+ * <p>In the {@link #setFolding(boolean) folding} mode the filter ignores
+ * the locale. The case of ASCII and Latin-1 chars is changed by a table in
+ * the token buffer. Only tokens with other chars are changed by the
+ * {@code String} methods.</p>
  * @author Sascha Kohlmann
  */
 public class CaseTokenFilter extends TokenFilter {
 
+    private static final int LATIN1_SIZE = 0x100;
+    /** Marks a char without a single char mapping in the Latin-1 range. */
+    private static final char NO_MAPPING = '\uffff';
+    private static final char[] LOWER_LATIN1 = new char[LATIN1_SIZE];
+    private static final char[] UPPER_LATIN1 = new char[LATIN1_SIZE];
+
+    static {
+        for (int i = 0; i < LATIN1_SIZE; i++) {
+            final String c = String.valueOf((char) i);
+            LOWER_LATIN1[i] = latin1(c.toLowerCase(Locale.ENGLISH));
+            UPPER_LATIN1[i] = latin1(c.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
     /** The locale for lowercase transformation. */
     private Locale locale;
     /** Indicates if to lower- or to upper-case. */
     private boolean upper;
+    /** Indicates the locale free case folding. */
+    private boolean folding = false;
+    /** For the case change in {@link #next()}. */
+    private final MutableToken casedToken = new MutableToken();
 
     /** Creates a new instance for lowercase with the default {@code Locale}.
      * @param source the source tokenizer.
@@ -73,6 +100,23 @@ public class CaseTokenFilter extends TokenFilter {
         this.upper = upper;
     }
 
+    /**
+     * Sets the locale free case folding. The folding ignores the locale of
+     * the filter. The default is {@code false}.
+     * @param folding {@code true} for the locale free case folding
+     */
+    public void setFolding(@SuppressWarnings("hiding") final boolean folding) {
+        this.folding = folding;
+    }
+
+    /**
+     * Returns {@code true} if the filter folds the case without a locale.
+     * @return {@code true} for the locale free case folding
+     */
+    public boolean isFolding() {
+        return this.folding;
+    }
+
     /*
      * @see net.sf.eos.analyzer.Tokenizer#next()
      */
@@ -83,34 +127,131 @@ public class CaseTokenFilter extends TokenFilter {
         if (t == null) {
             return null;
         }
-        final CharSequence tokenText = t.getTokenText();
+        final MutableToken token = this.casedToken;
+        token.setText(t.getTokenText());
+        changeCase(token);
+        return new CasedToken(token.toString(), t.getStartOffset(),
+                              t.getEndOffset());
+    }
+
+    /*
+     * @see net.sf.eos.analyzer.TokenFilter#next(net.sf.eos.analyzer.MutableToken)
+     */
+    @Override
+    public boolean next(final MutableToken token) throws TokenizerException {
+        if (! nextFromSource(token)) {
+            return false;
+        }
+        changeCase(token);
+        return true;
+    }
+
+    private void changeCase(final MutableToken token) {
+        if (this.folding) {
+            foldCase(token, this.upper);
+        } else {
+            final Locale l =
+                this.locale != null ? this.locale : Locale.getDefault();
+            changeCase(token, l, this.upper);
+        }
+    }
 
-        final Locale l = this.locale;
-        CharSequence cased = null;
-        if (l != null) {
-            if (this.upper) {
-                cased = ("" + tokenText).toUpperCase(l);
+    /**
+     * Folds the case of the token text in place without a locale. The chars
+     * of the ASCII and Latin-1 range are mapped by a table. If a token
+     * contains another char or a Latin-1 char without a single char
+     * Latin-1 mapping, the case of the token is changed by the
+     * {@code String} methods with the {@link Locale#ENGLISH english}
+     * {@code Locale}.
+     * @param token the token to change
+     * @param upper {@code true} to uppercase the token
+     */
+    static void foldCase(final MutableToken token,
+                         @SuppressWarnings("hiding") final boolean upper) {
+        final char[] table = upper ? UPPER_LATIN1 : LOWER_LATIN1;
+        final char[] buffer = token.buffer();
+        final int length = token.length();
+        for (int i = 0; i < length; i++) {
+            final char c = buffer[i];
+            final char folded;
+            if (c >= LATIN1_SIZE || (folded = table[c]) == NO_MAPPING) {
+                final String text = token.toString();
+                token.setText(upper ? text.toUpperCase(Locale.ENGLISH)
+                                    : text.toLowerCase(Locale.ENGLISH));
+                return;
+            }
+            buffer[i] = folded;
+        }
+    }
+
+    /**
+     * Changes the case of the token text in place. The text is the same as
+     * of the {@code String} methods.
+     * @param token the token to change
+     * @param l the locale of the case change
+     * @param upper {@code true} to uppercase the token
+     */
+    static void changeCase(final MutableToken token,
+                           final Locale l,
+                           @SuppressWarnings("hiding") final boolean upper) {
+        final char[] buffer = token.buffer();
+        final int length = token.length();
+        if (isAscii(buffer, length) && ! hasSpecialCasing(l)) {
+            if (upper) {
+                for (int i = 0; i < length; i++) {
+                    final char c = buffer[i];
+                    if (c >= 'a' && c <= 'z') {
+                        buffer[i] = (char) (c - ('a' - 'A'));
+                    }
+                }
             } else {
-                cased = ("" + tokenText).toLowerCase(l);
+                for (int i = 0; i < length; i++) {
+                    final char c = buffer[i];
+                    if (c >= 'A' && c <= 'Z') {
+                        buffer[i] = (char) (c + ('a' - 'A'));
+                    }
+                }
             }
         } else {
-            if (this.upper) {
-                cased = ("" + tokenText).toUpperCase(Locale.getDefault());
-            } else {
-                cased = ("" + tokenText).toLowerCase(Locale.getDefault());
+            final String text = token.toString();
+            token.setText(upper ? text.toUpperCase(l) : text.toLowerCase(l));
+        }
+    }
+
+    private static char latin1(final String mapped) {
+        if (mapped.length() != 1 || mapped.charAt(0) >= LATIN1_SIZE) {
+            return NO_MAPPING;
+        }
+        return mapped.charAt(0);
+    }
+
+    private static boolean isAscii(final char[] buffer, final int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] >= 0x80) {
+                return false;
             }
         }
+        return true;
+    }
 
-        assert cased != null;
-        return new CasedToken(cased);
+    /** @return {@code true} if the case of ASCII chars depends on the locale */
+    @SuppressWarnings("nls")
+    private static boolean hasSpecialCasing(final Locale l) {
+        final String language = l.getLanguage();
+        return "tr".equals(language) || "az".equals(language)
+               || "lt".equals(language);
     }
 
     /** Token represents a cased token. */
     private final static class CasedToken extends AbstractToken {
         /** Creates a new token.
-         * @param value the cased value */
-        public CasedToken(final CharSequence value) {
-            super(value);
+         * @param value the cased value
+         * @param start the start offset of the source token
+         * @param end the end offset of the source token */
+        public CasedToken(final CharSequence value,
+                          final int start,
+                          final int end) {
+            super(value, DEFAULT_TYPE, start, end);
         }
     }
 }
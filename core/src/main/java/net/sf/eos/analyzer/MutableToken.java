@@ -0,0 +1,340 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.analyzer;
+
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Token} for reuse with a {@link ReusableTokenizer}. The text is
+ * held in a growing char buffer. Filters change the text, the type and the
+ * metadata in place. The token itself is the {@link CharSequence} of the
+ * {@link #getTokenText() token text}.
+ * <p>The metadata map is created on the first call of {@link #getMeta()}
+ * and kept for reuse by {@link #clear()}.</p>
+ * <p>The state of the token changes with each call of
+ * {@link ReusableTokenizer#next(MutableToken)}. Use {@link #toToken()} to
+ * keep a token.</p>
+ * @author Sascha Kohlmann
+ */
+public final class MutableToken implements Token, CharSequence {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private char[] buffer;
+    private int length = 0;
+    private String type = DEFAULT_TYPE;
+    private int startOffset = -1;
+    private int endOffset = -1;
+    private Map<String, List<String>> metadata = null;
+
+    /** Creates a new empty token. */
+    public MutableToken() {
+        this.buffer = new char[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Creates a new token with a copy of the text, the type and the
+     * metadata of the given token.
+     * @param token the token to copy
+     */
+    public MutableToken(final Token token) {
+        this();
+        set(token);
+    }
+
+    /**
+     * Resets the token to an empty text of the {@link Token#DEFAULT_TYPE
+     * default type} without metadata and offsets.
+     */
+    public void clear() {
+        this.length = 0;
+        this.type = DEFAULT_TYPE;
+        this.startOffset = -1;
+        this.endOffset = -1;
+        if (this.metadata != null) {
+            this.metadata.clear();
+        }
+    }
+
+    /**
+     * Replaces the state of the token with a copy of the text, the type,
+     * the offsets and the metadata of the given token.
+     * @param token the token to copy
+     */
+    @SuppressWarnings("nls")
+    public void set(final Token token) {
+        checkArgumentNotNull(token, "token is null");
+        clear();
+        setText(token.getTokenText());
+        this.type = token.getType();
+        setOffsets(token.getStartOffset(), token.getEndOffset());
+        final Map<String, List<String>> meta = token.getMeta();
+        if (meta != null && ! meta.isEmpty()) {
+            getMeta().putAll(meta);
+        }
+    }
+
+    /**
+     * Returns the internal buffer of the text. Only the first
+     * {@link #length()} chars are valid. The buffer may be replaced by
+     * {@link #resizeBuffer(int)} and the setters of the text.
+     * @return the internal buffer
+     */
+    public char[] buffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Ensures that the internal buffer has at least the given capacity.
+     * The valid chars are kept.
+     * @param capacity the minimum capacity
+     * @return the internal buffer
+     */
+    public char[] resizeBuffer(final int capacity) {
+        if (this.buffer.length < capacity) {
+            int newCapacity = this.buffer.length << 1;
+            if (newCapacity < capacity) {
+                newCapacity = capacity;
+            }
+            final char[] newBuffer = new char[newCapacity];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.length);
+            this.buffer = newBuffer;
+        }
+        return this.buffer;
+    }
+
+    /**
+     * Sets the count of valid chars in the {@link #buffer() buffer}.
+     * @param length the count of valid chars
+     */
+    @SuppressWarnings({"nls", "hiding"})
+    public void setLength(final int length) {
+        checkArgument(length >= 0 && length <= this.buffer.length,
+                      "length out of buffer");
+        this.length = length;
+    }
+
+    /**
+     * Replaces the text with the given chars.
+     * @param chars the source of the chars
+     * @param offset the offset of the first char in <em>chars</em>
+     * @param length the count of chars
+     */
+    @SuppressWarnings("hiding")
+    public void setText(final char[] chars,
+                        final int offset,
+                        final int length) {
+        resizeBuffer(length);
+        System.arraycopy(chars, offset, this.buffer, 0, length);
+        this.length = length;
+    }
+
+    /**
+     * Replaces the text with the chars of the sequence.
+     * @param seq the new text
+     */
+    @SuppressWarnings("nls")
+    public void setText(final CharSequence seq) {
+        checkArgumentNotNull(seq, "seq is null");
+        this.length = 0;
+        append(seq);
+    }
+
+    /**
+     * Appends the chars of the sequence to the text.
+     * @param seq the chars to append
+     */
+    public void append(final CharSequence seq) {
+        final int seqLength = seq.length();
+        resizeBuffer(this.length + seqLength);
+        if (seq instanceof String) {
+            ((String) seq).getChars(0, seqLength, this.buffer, this.length);
+        } else {
+            for (int i = 0; i < seqLength; i++) {
+                this.buffer[this.length + i] = seq.charAt(i);
+            }
+        }
+        this.length += seqLength;
+    }
+
+    /**
+     * Appends the char to the text.
+     * @param c the char to append
+     */
+    public void append(final char c) {
+        resizeBuffer(this.length + 1);
+        this.buffer[this.length++] = c;
+    }
+
+    /**
+     * Shrinks the text to the chars from <em>start</em> inclusive to
+     * <em>end</em> exclusive. If the offsets cover exactly the text, they
+     * are moved by the count of removed chars.
+     * @param start the index of the first char to keep
+     * @param end the index after the last char to keep
+     */
+    @SuppressWarnings("nls")
+    public void trim(final int start, final int end) {
+        checkArgument(start >= 0 && start <= end && end <= this.length,
+                      "range out of text");
+        if (this.startOffset >= 0
+                && this.endOffset - this.startOffset == this.length) {
+            this.startOffset += start;
+            this.endOffset -= this.length - end;
+        }
+        if (start != 0) {
+            System.arraycopy(this.buffer, start, this.buffer, 0, end - start);
+        }
+        this.length = end - start;
+    }
+
+    /**
+     * @see Token#getStartOffset()
+     */
+    public int getStartOffset() {
+        return this.startOffset;
+    }
+
+    /**
+     * @see Token#getEndOffset()
+     */
+    public int getEndOffset() {
+        return this.endOffset;
+    }
+
+    /**
+     * Sets the offsets of the token in the original text.
+     * @param start the offset of the first char or {@code -1} if unknown
+     * @param end the offset after the last char or {@code -1} if unknown
+     */
+    @SuppressWarnings("nls")
+    public void setOffsets(final int start, final int end) {
+        checkArgument((start == -1 && end == -1)
+                      || (start >= 0 && start <= end), "illegal offsets");
+        this.startOffset = start;
+        this.endOffset = end;
+    }
+
+    /**
+     * @see Token#getType()
+     */
+    public String getType() {
+        return this.type;
+    }
+
+    /**
+     * Sets the type of the token.
+     * @param type the type. May not be {@code null}.
+     */
+    @SuppressWarnings({"nls", "hiding"})
+    public void setType(final String type) {
+        this.type = checkArgumentNotNull(type, "type is null");
+    }
+
+    /**
+     * Returns the token itself.
+     * @see Token#getTokenText()
+     */
+    public CharSequence getTokenText() {
+        return this;
+    }
+
+    /**
+     * The metadata map is created on the first call.
+     * @see Token#getMeta()
+     */
+    public Map<String, List<String>> getMeta() {
+        if (this.metadata == null) {
+            this.metadata = new HashMap<String, List<String>>();
+        }
+        return this.metadata;
+    }
+
+    /**
+     * Returns {@code true} if the token has metadata. Doesn't create the
+     * metadata map.
+     * @return {@code true} if the token has metadata
+     */
+    public boolean hasMeta() {
+        return this.metadata != null && ! this.metadata.isEmpty();
+    }
+
+    /**
+     * Returns an immutable copy of the text, the type, the offsets and the
+     * metadata of the token.
+     * @return a new token
+     */
+    public Token toToken() {
+        final Map<String, List<String>> meta =
+            hasMeta() ? this.metadata
+                      : Collections.<String, List<String>>emptyMap();
+        return new CopiedToken(toString(), this.type, meta, this.startOffset,
+                               this.endOffset);
+    }
+
+    /*
+     * @see java.lang.CharSequence#length()
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /*
+     * @see java.lang.CharSequence#charAt(int)
+     */
+    public char charAt(final int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return this.buffer[index];
+    }
+
+    /*
+     * @see java.lang.CharSequence#subSequence(int, int)
+     */
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || start > end || end > this.length) {
+            throw new IndexOutOfBoundsException(start + " - " + end);
+        }
+        return new String(this.buffer, start, end - start);
+    }
+
+    /**
+     * Returns the text of the token.
+     * @return the text
+     */
+    @Override
+    public String toString() {
+        return new String(this.buffer, 0, this.length);
+    }
+
+    /** A copy of a mutable token. */
+    private final static class CopiedToken extends AbstractToken {
+        CopiedToken(final CharSequence value,
+                    final String type,
+                    final Map<String, List<String>> metadata,
+                    final int startOffset,
+                    final int endOffset) {
+            super(value, type, metadata, startOffset, endOffset);
+        }
+    }
+}
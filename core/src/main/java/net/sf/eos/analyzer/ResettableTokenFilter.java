@@ -74,4 +74,12 @@ public final class ResettableTokenFilter extends TokenFilter
         assert t != null;
         return t.next();
     }
+
+    /*
+     * @see net.sf.eos.analyzer.TokenFilter#next(net.sf.eos.analyzer.MutableToken)
+     */
+    @Override
+    public boolean next(final MutableToken token) throws TokenizerException {
+        return nextFromSource(token);
+    }
 }
@@ -0,0 +1,40 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.analyzer;
+
+/**
+ * A {@link Tokenizer} which writes the next token into a caller supplied
+ * {@link MutableToken}. A chain of reusable tokenizers passes the same
+ * token instance from the source to the last filter and each filter
+ * changes the token in place. Implementations should not allocate objects
+ * for each token.
+ * <p>{@link TokenFilter} adapts {@link Tokenizer#next()} for all filters.
+ * Filters which want to avoid the allocation of tokens override
+ * {@link #next(MutableToken)}. Don't mix calls of both methods for the
+ * same text.</p>
+ * @author Sascha Kohlmann
+ * @see MutableToken
+ */
+public interface ReusableTokenizer extends Tokenizer {
+
+    /**
+     * Writes the next token into the given token.
+     * @param token the token to fill
+     * @return {@code false} if there is no more token
+     * @throws TokenizerException if an error occurs
+     */
+    boolean next(MutableToken token) throws TokenizerException;
+}
@@ -34,6 +34,9 @@ public class SentenceTokenizer /*extends Configured*/
 //    private Locale locale;
     private int start;
     private String text;
+    /** The offsets of the last sentence of {@link #nextSentence()}. */
+    private int sentenceStart = -1;
+    private int sentenceEnd = -1;
 
     public SentenceTokenizer() {
         this("");
@@ -71,9 +74,12 @@ public class SentenceTokenizer /*extends Configured*/
      * @see net.sf.eos.analyzer.Tokenizer#next()
      */
     public Token next() throws TokenizerException {
+        this.sentenceStart = -1;
+        this.sentenceEnd = -1;
         final CharSequence sentence = nextSentence();
         if (sentence != null) {
-            return new SentenceToken(sentence, SENTENCE_TYPE);
+            return new SentenceToken(sentence, SENTENCE_TYPE,
+                                     this.sentenceStart, this.sentenceEnd);
         }
         return null;
     }
@@ -90,6 +96,7 @@ public class SentenceTokenizer /*extends Configured*/
 
     /**
      * Override this method to implement a different sentence tokenizer.
+     * The tokens of overriding implementations have no offsets.
      * @return a sentence or {@code null} if no next sentence available.
      * @throws TokenizerException if an error occurs
      */
@@ -98,8 +105,18 @@ public class SentenceTokenizer /*extends Configured*/
         if (end == BreakIterator.DONE) {
             return null;
         }
-        final String sentence = this.text.substring(this.start, end).trim();
+        int from = this.start;
+        int to = end;
+        while (from < to && this.text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && this.text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        final String sentence = this.text.substring(from, to);
         this.start = end;
+        this.sentenceStart = from;
+        this.sentenceEnd = to;
 
         return sentence;
     }
@@ -107,9 +124,15 @@ public class SentenceTokenizer /*extends Configured*/
     /** Token represents sentence as token. */
     private final static class SentenceToken extends AbstractToken {
         /** Creates a new token representing a sentence.
-         * @param value a sentence */
-        public SentenceToken(final CharSequence value, final String type) {
-            super(value, type);
+         * @param value a sentence
+         * @param type the type
+         * @param start the start offset of the sentence
+         * @param end the end offset of the sentence */
+        public SentenceToken(final CharSequence value,
+                             final String type,
+                             final int start,
+                             final int end) {
+            super(value, type, start, end);
         }
     }
 }
@@ -0,0 +1,144 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.analyzer;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import net.sf.eos.Nullable;
+import net.sf.eos.util.CharArraySet;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tokenizes a text in a single pass with the same result as the chain of
+ * {@link WhitespaceTokenizer}, {@link StopTokenFilter},
+ * {@link CaseTokenFilter} for lowercase and
+ * {@link SurroundingTokenFilter}.
+ * <p>The tokenizer copies the text into a reused char array. Each token is
+ * split at whitespace, compared with the stop words, lowercased and freed
+ * from the surrounding characters in the buffer of a single
+ * {@link MutableToken}. Like the Lucene whitespace tokenizer, tokens
+ * longer than {@value #MAX_WORD_LENGTH} chars are split.</p>
+ * @author Sascha Kohlmann
+ */
+public class SinglePassTokenizer implements ResettableTokenizer,
+                                            ReusableTokenizer {
+
+    /** The maximum length of a token. Longer tokens are split. */
+    public static final int MAX_WORD_LENGTH = 255;
+
+    private final CharArraySet stopWords;
+    private final Locale locale;
+
+    private char[] text = new char[1024];
+    private int length = 0;
+    private int position = 0;
+
+    /** Holds the tokens for {@link #next()}. */
+    private final MutableToken token = new MutableToken();
+
+    /**
+     * Creates a new instance for lowercase with the default {@code Locale}.
+     * @param stopWords a collection of stop words
+     */
+    public SinglePassTokenizer(
+            @SuppressWarnings("hiding") final Set<CharSequence> stopWords) {
+        this(stopWords, null);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param stopWords a collection of stop words
+     * @param locale the {@code Locale} to use for lowercase handling. The
+     *               {@link Locale#getDefault() default} if {@code null}.
+     */
+    @SuppressWarnings("nls")
+    public SinglePassTokenizer(
+            @SuppressWarnings("hiding") final Set<CharSequence> stopWords,
+            @SuppressWarnings("hiding") @Nullable final Locale locale) {
+        checkArgumentNotNull(stopWords, "stopWords is null");
+        this.stopWords = new CharArraySet(stopWords);
+        this.locale = locale;
+    }
+
+    /*
+     * @see net.sf.eos.analyzer.ResettableTokenizer#reset(java.lang.CharSequence)
+     */
+    @SuppressWarnings("nls")
+    public void reset(final CharSequence input) throws TokenizerException {
+        checkArgumentNotNull(input, "input is null");
+        final int inputLength = input.length();
+        if (this.text.length < inputLength) {
+            this.text = new char[Math.max(inputLength, this.text.length << 1)];
+        }
+        if (input instanceof String) {
+            ((String) input).getChars(0, inputLength, this.text, 0);
+        } else {
+            for (int i = 0; i < inputLength; i++) {
+                this.text[i] = input.charAt(i);
+            }
+        }
+        this.length = inputLength;
+        this.position = 0;
+    }
+
+    /*
+     * @see net.sf.eos.analyzer.Tokenizer#next()
+     */
+    public Token next() throws TokenizerException {
+        if (! next(this.token)) {
+            return null;
+        }
+        return this.token.toToken();
+    }
+
+    /*
+     * @see net.sf.eos.analyzer.ReusableTokenizer#next(net.sf.eos.analyzer.MutableToken)
+     */
+    public boolean next(@SuppressWarnings("hiding") final MutableToken token)
+            throws TokenizerException {
+        final char[] chars = this.text;
+        final int end = this.length;
+        int pos = this.position;
+        while (true) {
+            while (pos < end && Character.isWhitespace(chars[pos])) {
+                pos++;
+            }
+            if (pos == end) {
+                this.position = pos;
+                return false;
+            }
+            final int start = pos;
+            final int max = Math.min(end, start + MAX_WORD_LENGTH);
+            while (pos < max && ! Character.isWhitespace(chars[pos])) {
+                pos++;
+            }
+            if (this.stopWords.contains(chars, start, pos - start)) {
+                continue;
+            }
+            this.position = pos;
+            token.clear();
+            token.setText(chars, start, pos - start);
+            token.setOffsets(start, pos);
+            final Locale l =
+                this.locale != null ? this.locale : Locale.getDefault();
+            CaseTokenFilter.changeCase(token, l, false);
+            SurroundingTokenFilter.removeSurroundingChars(token);
+            return true;
+        }
+    }
+}
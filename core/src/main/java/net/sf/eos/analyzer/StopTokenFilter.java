@@ -15,18 +15,22 @@
  */
 package net.sf.eos.analyzer;
 
-import java.util.HashSet;
 import java.util.Set;
 
 import net.sf.eos.Nullable;
+import net.sf.eos.util.CharArraySet;
 
 /**
  * Filter for stop words out of the {@linkplain Token token} stream.
+ * <p>The stop words are held in a {@link CharArraySet}. So the text of any
+ * {@code CharSequence} token is compared with the stop words and
+ * {@link #next(MutableToken)} probes the set with the token buffer without
+ * the creation of a string.</p>
  * @author Sascha Kohlmann
  */
 public class StopTokenFilter extends TokenFilter {
 
-    private final Set<CharSequence> stopWords = new HashSet<CharSequence>();
+    private final CharArraySet stopWords;
 
     /**
      * Creates a new instance.
@@ -37,7 +41,11 @@ public class StopTokenFilter extends TokenFilter {
                            @SuppressWarnings("hiding")
                            @Nullable final Set<CharSequence> stopWords) {
         super(source);
-        this.stopWords.addAll(stopWords);
+        if (stopWords == null) {
+            this.stopWords = new CharArraySet(0);
+        } else {
+            this.stopWords = new CharArraySet(stopWords);
+        }
     }
 
     @Override
@@ -58,4 +66,17 @@ public class StopTokenFilter extends TokenFilter {
 
         return retval;
     }
+
+    /*
+     * @see net.sf.eos.analyzer.TokenFilter#next(net.sf.eos.analyzer.MutableToken)
+     */
+    @Override
+    public boolean next(final MutableToken token) throws TokenizerException {
+        while (nextFromSource(token)) {
+            if (! this.stopWords.contains(token.buffer(), 0, token.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -29,6 +29,9 @@ package net.sf.eos.analyzer;
  *   <tr align='center'><td><tt>&#x201c;</tt></td><td><tt>&#x201d;</tt></td></tr>
  *   <tr align='center'><td><tt>&#x2018;</tt></td><td><tt>&#x2019;</tt></td></tr>
  * </table>
+ * <p>{@link #next(MutableToken)} removes the characters in the token
+ * buffer. The text is the same as of {@link #next()}. The offsets of a
+ * token are moved if they span the text of the token.</p>
  *
  * @author Sascha Kohlmann
  */
@@ -41,6 +44,9 @@ public class SurroundingTokenFilter extends TokenFilter {
 
     private static final String EMPTY = "";
 
+    /** For the removal in {@link #next()}. */
+    private final MutableToken token = new MutableToken();
+
     public SurroundingTokenFilter(final Tokenizer tokenizer) {
         super(tokenizer);
     }
@@ -55,9 +61,79 @@ public class SurroundingTokenFilter extends TokenFilter {
         if (t == null) {
             return null;
         }
-        final CharSequence tokenText = t.getTokenText();
-        final CharSequence seq = this.correctSurroundingChars(tokenText);
-        return new SurroundingToken(seq);
+        final MutableToken token = this.token;
+        token.clear();
+        token.setText(t.getTokenText());
+        token.setOffsets(t.getStartOffset(), t.getEndOffset());
+        removeSurroundingChars(token);
+        return new SurroundingToken(token.toString(),
+                                    token.getStartOffset(),
+                                    token.getEndOffset());
+    }
+
+    /*
+     * @see net.sf.eos.analyzer.TokenFilter#next(net.sf.eos.analyzer.MutableToken)
+     */
+    @Override
+    public boolean next(@SuppressWarnings("hiding") final MutableToken token)
+            throws TokenizerException {
+        if (! nextFromSource(token)) {
+            return false;
+        }
+        removeSurroundingChars(token);
+        return true;
+    }
+
+    /**
+     * Removes the surrounding characters in the token buffer. Same as
+     * {@link #correctSurroundingChars(CharSequence)} without the creation
+     * of strings.
+     * @param token the token to correct
+     */
+    static void removeSurroundingChars(
+            @SuppressWarnings("hiding") final MutableToken token) {
+        final char[] chars = token.buffer();
+        int start = 0;
+        int length = token.length();
+
+        next:
+        while (length > 0) {
+            final int last = start + length - 1;
+            for (int i = start; i < last; i++) {
+                for (int j = 0; j < OPEN_CHARS.length; j++) {
+                    if (chars[i] == OPEN_CHARS[j]) {
+                        if (chars[last] == CLOSE_CHARS[j]) {
+                            if (length <= 2) {
+                                length = 0;
+                                break next;
+                            }
+                            start++;
+                            length -= 2;
+                            continue next;
+                        }
+                        final int open =
+                            countCharInTerm(chars, start, length, OPEN_CHARS[j]);
+                        final int close = countCharInTerm(chars, start + 1,
+                                                          length - 1,
+                                                          CLOSE_CHARS[j]);
+                        if (open != close) {
+                            start++;
+                            length--;
+                            continue next;
+                        }
+                    }
+                }
+            }
+            for (int j = 0; j < CLOSE_CHARS.length; j++) {
+                if (chars[last] == CLOSE_CHARS[j]) {
+                    length--;
+                    continue next;
+                }
+            }
+            break;
+        }
+
+        token.trim(start, start + length);
     }
 
     /**
@@ -128,12 +204,29 @@ public class SurroundingTokenFilter extends TokenFilter {
         return count;
     }
 
+    private static int countCharInTerm(final char[] chars,
+                                       final int offset,
+                                       final int length,
+                                       final char c) {
+        int count = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (chars[i] == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /** Token represents a surrounding freed token. */
     private final static class SurroundingToken extends AbstractToken {
         /** Creates a new token.
-         * @param value the freed value */
-        public SurroundingToken(final CharSequence value) {
-            super(value);
+         * @param value the freed value
+         * @param start the start offset of the freed value
+         * @param end the end offset of the freed value */
+        public SurroundingToken(final CharSequence value,
+                                final int start,
+                                final int end) {
+            super(value, DEFAULT_TYPE, start, end);
         }
     }
 }
@@ -19,9 +19,17 @@ import net.sf.eos.Metadata;
 
 /**
  * A Token represents a part of a tokenized text.
- * <p style='color:red'><strong>Note:</strong> Needs support for the start position (include) and
- * the length of the original token. Useful for support of batched entity recognition
- * in distributed environments. {@link net.sf.eos.document.EosDocument see EosDocument}.</p>
+ * <p>A token may know its position in the original text. The
+ * {@link #getStartOffset() start} and {@link #getEndOffset() end} offsets
+ * span the chars of the original text the token was created from. The
+ * text of the token may differ from the spanned chars, e.g. after case
+ * changes. Downstream stages may slice the original text with the offsets
+ * instead of rebuilding it from the tokens.</p>
+ * <p><strong>Note:</strong> {@link #getStartOffset()} and
+ * {@link #getEndOffset()} were added to this interface after the first
+ * release. Implementations not extending {@link AbstractToken} must
+ * implement both methods and may return {@code -1} if the offsets are
+ * unknown.</p>
  * @see Tokenizer
  * @author Sascha Kohlmann
  */
@@ -43,4 +51,18 @@ public interface Token extends Metadata {
      * @return the type of a token.
      */
     String getType();
+
+    /**
+     * Returns the offset of the first char of the token in the original
+     * text.
+     * @return the start offset or {@code -1} if unknown
+     */
+    int getStartOffset();
+
+    /**
+     * Returns the offset after the last char of the token in the original
+     * text.
+     * @return the end offset or {@code -1} if unknown
+     */
+    int getEndOffset();
 }
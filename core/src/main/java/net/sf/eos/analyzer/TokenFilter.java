@@ -25,11 +25,15 @@ import static net.sf.eos.util.Conditions.checkArgumentNotNull;
  * {@link #next()} to process a {@link Token} from the <em>source</em>.
  * It is highly recommended that the implementation supports the metadata
  * handling.
+ * <p>The filter is a {@link ReusableTokenizer}. The default implementation
+ * of {@link #next(MutableToken)} copies the token of {@link #next()}.
+ * Filters which transform the token in place override the method and use
+ * {@link #nextFromSource(MutableToken)}.</p>
  * @author Sascha Kohlmann
  * @see ResettableTokenFilter
  */
 public abstract class TokenFilter /*extends Configured*/
-                                  implements Tokenizer {
+                                  implements ReusableTokenizer {
 
     private final Tokenizer source;
 
@@ -51,6 +55,45 @@ public abstract class TokenFilter /*extends Configured*/
      */
     public abstract Token next() throws TokenizerException;
 
+    /**
+     * Copies the token of {@link #next()} into the given token.
+     * Implementations which avoid the allocation of tokens override the
+     * method.
+     * @param token the token to fill
+     * @return {@code false} if there is no more token
+     * @throws TokenizerException if an error occurs
+     */
+    public boolean next(final MutableToken token) throws TokenizerException {
+        final Token t = next();
+        if (t == null) {
+            return false;
+        }
+        token.set(t);
+        return true;
+    }
+
+    /**
+     * Writes the next token of the source into the given token. Uses
+     * {@link ReusableTokenizer#next(MutableToken)} if the source supports
+     * it.
+     * @param token the token to fill
+     * @return {@code false} if there is no more token
+     * @throws TokenizerException if an error occurs
+     */
+    protected final boolean nextFromSource(final MutableToken token)
+            throws TokenizerException {
+        final Tokenizer tokenizer = getSource();
+        if (tokenizer instanceof ReusableTokenizer) {
+            return ((ReusableTokenizer) tokenizer).next(token);
+        }
+        final Token t = tokenizer.next();
+        if (t == null) {
+            return false;
+        }
+        token.set(t);
+        return true;
+    }
+
     /**
      * Returns the source {@code Tokenizer}.
      * @return the source {@code Tokenizer}
@@ -16,7 +16,6 @@
 package net.sf.eos.analyzer;
 
 
-import net.sf.eos.analyzer.lucene.LuceneTokenizerWrapper;
 import net.sf.eos.config.Configured;
 
 import org.apache.commons.io.input.CharSequenceReader;
@@ -27,6 +26,10 @@ import java.io.Reader;
 /**
  * Tokenized a sequence of chars at whitespace. Wrapper around Lucenes
  * {@code WhitespaceTokenizer}.
+ * <p>The tokenizer reuses a single Lucene token and sets the offsets of
+ * the tokens. The offsets of the tokens of a source token are shifted by
+ * the start offset of the source token. They are unknown if the source
+ * token has no offsets.</p>
  * @author Sascha Kohlmann
  */
 public final class WhitespaceTokenizer extends TokenFilter
@@ -34,8 +37,15 @@ public final class WhitespaceTokenizer extends TokenFilter
 
     private final static Tokenizer NULL = new NullTokenizer();
 
-    private LuceneTokenizerWrapper tokenizer;
     private org.apache.lucene.analysis.WhitespaceTokenizer wrapped;
+    private final org.apache.lucene.analysis.Token luceneToken =
+        new org.apache.lucene.analysis.Token();
+    /** Holds the tokens for {@link #next()}. */
+    private MutableToken token = null;
+    /** Holds the source tokens. */
+    private MutableToken sourceToken = null;
+    /** The start offset of the current source token or {@code -1}. */
+    private int sourceOffset = 0;
 
     /**
      * Creates a new instance.
@@ -46,7 +56,6 @@ public final class WhitespaceTokenizer extends TokenFilter
         final Reader reader = new CharSequenceReader("");
         this.wrapped = 
             new org.apache.lucene.analysis.WhitespaceTokenizer(reader);
-        this.tokenizer = new LuceneTokenizerWrapper(this.wrapped);
     }
 
     /** * Creates a new instance. */
@@ -63,7 +72,6 @@ public final class WhitespaceTokenizer extends TokenFilter
         final Reader reader = new CharSequenceReader(text);
         this.wrapped = 
             new org.apache.lucene.analysis.WhitespaceTokenizer(reader);
-        this.tokenizer = new LuceneTokenizerWrapper(this.wrapped);
     }
 
     /*
@@ -71,24 +79,72 @@ public final class WhitespaceTokenizer extends TokenFilter
      */
     @Override
     public Token next() throws TokenizerException {
-        Token retval = this.tokenizer.next();
-        if (retval == null) {
-            final Tokenizer source = getSource();
-            if (source.getClass() != NULL.getClass()) {
-                final Token sourceToken = source.next();
-                if (sourceToken != null) {
-                    final CharSequence seq = sourceToken.getTokenText();
-                    final Reader reader = new CharSequenceReader(seq);
-                    try {
-                        this.wrapped.reset(reader);
-                    } catch (final IOException e) {
-                        throw new TokenizerException(e);
-                    }
-                    retval = this.tokenizer.next();
+        if (this.token == null) {
+            this.token = new MutableToken();
+        }
+        if (! next(this.token)) {
+            return null;
+        }
+        return this.token.toToken();
+    }
+
+    /*
+     * @see net.sf.eos.analyzer.TokenFilter#next(net.sf.eos.analyzer.MutableToken)
+     */
+    @Override
+    public boolean next(@SuppressWarnings("hiding") final MutableToken token)
+            throws TokenizerException {
+        try {
+            org.apache.lucene.analysis.Token t =
+                this.wrapped.next(this.luceneToken);
+            while (t == null) {
+                if (! nextSourceText()) {
+                    return false;
                 }
+                t = this.wrapped.next(this.luceneToken);
+            }
+            token.clear();
+            token.setText(t.termBuffer(), 0, t.termLength());
+            token.setType(t.type());
+            if (this.sourceOffset >= 0) {
+                token.setOffsets(this.sourceOffset + t.startOffset(),
+                                 this.sourceOffset + t.endOffset());
+            }
+            return true;
+        } catch (final IOException e) {
+            throw new TokenizerException(e);
+        }
+    }
+
+    /**
+     * Resets the Lucene tokenizer with the text of the next source token.
+     * @return {@code false} if there is no more source token
+     */
+    private boolean nextSourceText() throws TokenizerException, IOException {
+        final Tokenizer source = getSource();
+        if (source.getClass() == NULL.getClass()) {
+            return false;
+        }
+        final CharSequence seq;
+        if (source instanceof ReusableTokenizer) {
+            if (this.sourceToken == null) {
+                this.sourceToken = new MutableToken();
+            }
+            if (! nextFromSource(this.sourceToken)) {
+                return false;
+            }
+            seq = this.sourceToken.toString();
+            this.sourceOffset = this.sourceToken.getStartOffset();
+        } else {
+            final Token t = source.next();
+            if (t == null) {
+                return false;
             }
+            seq = t.getTokenText();
+            this.sourceOffset = t.getStartOffset();
         }
-        return retval;
+        this.wrapped.reset(new CharSequenceReader(seq));
+        return true;
     }
 
     /*
@@ -96,6 +152,7 @@ public final class WhitespaceTokenizer extends TokenFilter
      */
     public void reset(final CharSequence input) throws TokenizerException {
         assert this.wrapped != null;
+        this.sourceOffset = 0;
         final Tokenizer source = getSource();
         if (source.getClass() != NULL.getClass() 
                 && source instanceof ResettableTokenizer) {
@@ -25,7 +25,8 @@ import java.io.IOException;
 
 /**
  * Wraps the functionality of the &#949;&#959;s {@link Tokenizer} for the
- * reuse of Lucene tokenizer.
+ * reuse of Lucene tokenizer. The tokens keep the offsets of the Lucene
+ * tokens.
  * @author Sascha Kohlmann
  */
 public final class LuceneTokenizerWrapper extends TokenFilter {
@@ -107,8 +108,13 @@ public final class LuceneTokenizerWrapper extends TokenFilter {
                 return;
             }
             final CharSequence seq = token.getTokenText();
-            this.luceneToken = new org.apache.lucene.analysis.Token("" + seq,
-                    0, seq.length());
+            if (token.getStartOffset() >= 0) {
+                this.luceneToken = new org.apache.lucene.analysis.Token(
+                        "" + seq, token.getStartOffset(), token.getEndOffset());
+            } else {
+                this.luceneToken = new org.apache.lucene.analysis.Token(
+                        "" + seq, 0, seq.length());
+            }
         }
     }
 
@@ -119,7 +125,8 @@ public final class LuceneTokenizerWrapper extends TokenFilter {
 
         public LuceneTokenWrapper(final org.apache.lucene.analysis.Token token)
         {
-            super("");
+            super("", Token.DEFAULT_TYPE, token.startOffset(),
+                  token.endOffset());
             this.token = token;
             this.type = token.type();
         }
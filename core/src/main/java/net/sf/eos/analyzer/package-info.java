@@ -12,6 +12,10 @@
  *  implement classes that returns a complete chain.</p>
  * <p>Classes that implements the {@link net.sf.eos.analyzer.ResettableTokenizer}
  *  should be reused by there clients.</p>
+ * <p>A {@link net.sf.eos.analyzer.ReusableTokenizer} writes the tokens into
+ *  a single {@link net.sf.eos.analyzer.MutableToken} and avoids the
+ *  allocation of tokens. The {@link net.sf.eos.analyzer.SinglePassTokenizer}
+ *  does the work of a common filter chain in a single loop.</p>
  *
  * @since 0.1.0
  * @author Sascha Kohlmann
@@ -23,15 +23,22 @@ import org.apache.commons.logging.LogFactory;
 
 import net.sf.eos.EosException;
 import net.sf.eos.analyzer.TextBuilder;
+import net.sf.eos.analyzer.Token;
 import net.sf.eos.analyzer.TokenFilter;
 import net.sf.eos.analyzer.Tokenizer;
 import net.sf.eos.analyzer.TokenizerException;
 import net.sf.eos.config.Configurable;
 import net.sf.eos.config.Configuration;
 import net.sf.eos.config.ConfigurationKey;
+import net.sf.eos.trie.EntityIdSet;
+import net.sf.eos.trie.ReloadableDictionary;
+import net.sf.eos.trie.TrieUtils;
+import net.sf.eos.trie.TypedDictionary;
  
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -41,6 +48,14 @@ import java.util.Set;
  * a collection of literal entity terms or phrases. The ID is represented by the
  * <em>value</em> of a {@link Map} entry. The entity literal is the value of
  * the key in the entry.
+ * <p>If neither the {@link #MAX_TOKEN_CONFIG_NAME configuration} nor
+ * {@link #setMaxToken(int)} defines the maximum token count, the
+ * recognizer derives it from the longest key of an immutable entity map,
+ * e.g. a frozen {@link net.sf.eos.trie.PatriciaTrie} or a
+ * {@link net.sf.eos.trie.CompactDictionary}, and of the current version
+ * of a {@link ReloadableDictionary}. The count is derived once per map and
+ * shared by all recognizers. For other maps the default of
+ * 5 tokens is used.</p>
  * @author Sascha Kohlmann
  */
 public abstract class AbstractDictionaryBasedEntityRecognizer
@@ -72,7 +87,9 @@ public abstract class AbstractDictionaryBasedEntityRecognizer
     @SuppressWarnings("nls")
     @ConfigurationKey(type=INTEGER,
                             defaultValue=DEFAULT_MAX_TOKEN,
-                            description="The maximum token count for indentifying.")
+                            description="The maximum token count for indentifying. "
+                                        + "Derived from an immutable entity map if "
+                                        + "not set.")
     public final static String
         MAX_TOKEN_CONFIG_NAME =
           "net.sf.eos.entity.AbstractDictionaryBasedEntityRecognizer.maxToken";
@@ -81,7 +98,28 @@ public abstract class AbstractDictionaryBasedEntityRecognizer
 
     private TextBuilder textBuilder;
     private int maxToken = Integer.parseInt(DEFAULT_MAX_TOKEN);
+    private boolean maxTokenSet = false;
+
+    /** The maximum token counts of the immutable entity maps. */
+    private static final MapCache<Integer> MAX_TOKEN_COUNTS =
+        new MapCache<Integer>();
+
+    private static final MapCache.Factory<Integer> MAX_TOKEN_COUNTER =
+        new MapCache.Factory<Integer>() {
+            public Integer create(
+                    final Map<CharSequence, Set<CharSequence>> entities) {
+                final int count = TrieUtils.maxTokenCount(entities, ' ');
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("derived maximum token count: " + count);
+                }
+                return Integer.valueOf(Math.max(1, count));
+            }
+        };
+
     private Map<CharSequence, Set<CharSequence>> entities = null;
+    /** The version of the entity map of the derived maximum token count. */
+    private Map<CharSequence, Set<CharSequence>> derivedFor = null;
+    private int derivedMaxToken = 0;
 
     public AbstractDictionaryBasedEntityRecognizer(
                 @SuppressWarnings("hiding") final Tokenizer source) {
@@ -94,6 +132,8 @@ public abstract class AbstractDictionaryBasedEntityRecognizer
     public void setEntityMap(final Map<CharSequence, Set<CharSequence>> entities) 
     {
         this.entities = entities;
+        this.derivedFor = null;
+        this.derivedMaxToken = 0;
     }
 
     /*
@@ -121,9 +161,52 @@ public abstract class AbstractDictionaryBasedEntityRecognizer
      * @see net.sf.eos.entity.DictionaryBasedEntityRecognizer#getMaxToken()
      */
     public int getMaxToken() {
+        if (! this.maxTokenSet && this.entities != null) {
+            final TextBuilder builder = getTextBuilder();
+            if (builder == null || builder instanceof TextBuilder.SpaceBuilder) {
+                final Map<CharSequence, Set<CharSequence>> version =
+                    currentVersion(this.entities);
+                if (version != this.derivedFor) {
+                    this.derivedMaxToken = deriveMaxToken(version);
+                    this.derivedFor = version;
+                }
+                if (this.derivedMaxToken > 0) {
+                    return this.derivedMaxToken;
+                }
+            }
+        }
         return this.maxToken;
     }
 
+    /**
+     * Returns the maximum token count of the keys in an immutable entity
+     * map. The count is derived once per map.
+     * @param entities the entity map
+     * @return the maximum token count or {@code 0} if the map is mutable
+     */
+    static int deriveMaxToken(
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        if (! MapCache.isImmutable(entities)) {
+            return 0;
+        }
+        return MAX_TOKEN_COUNTS.get(entities, null, MAX_TOKEN_COUNTER)
+                               .intValue();
+    }
+
+    /**
+     * Returns the current version of a {@link ReloadableDictionary} or the
+     * map itself.
+     * @param entities the entity map
+     * @return the map to use for the next lookups
+     */
+    static Map<CharSequence, Set<CharSequence>> currentVersion(
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        if (entities instanceof ReloadableDictionary) {
+            return ((ReloadableDictionary) entities).current();
+        }
+        return entities;
+    }
+
     /*
      * @see net.sf.eos.entity.DictionaryBasedEntityRecognizer#setMaxToken(int)
      */
@@ -132,6 +215,7 @@ public abstract class AbstractDictionaryBasedEntityRecognizer
             throw new IllegalArgumentException("maxToken < 1");
         }
         this.maxToken = maxToken;
+        this.maxTokenSet = true;
     }
 
     /*
@@ -140,9 +224,92 @@ public abstract class AbstractDictionaryBasedEntityRecognizer
     public void configure(
             @SuppressWarnings("hiding") final Configuration config) {
         this.config = new Configuration(config);
-        final String lMaxToken =
-            config.get(MAX_TOKEN_CONFIG_NAME, DEFAULT_MAX_TOKEN);
-        this.maxToken = Integer.parseInt(lMaxToken);
+        final String lMaxToken = config.get(MAX_TOKEN_CONFIG_NAME);
+        if (lMaxToken != null) {
+            this.maxToken = Integer.parseInt(lMaxToken);
+            this.maxTokenSet = true;
+        }
+    }
+
+    /**
+     * Creates the value of the {@link #ENTITY_ID_KEY} meta data for the
+     * IDs of a match. For an {@link EntityIdSet} the list is an
+     * unmodifiable {@link EntityIdList} backed by the handles of the set,
+     * otherwise a new {@code ArrayList}.
+     * @param ids the IDs of the match
+     * @return a list of the IDs
+     */
+    protected static List<String> toEntityIdList(
+            final Set<CharSequence> ids) {
+        if (ids instanceof EntityIdSet) {
+            return new EntityIdList((EntityIdSet) ids);
+        }
+        final List<String> retval = new ArrayList<String>(ids.size());
+        for (final CharSequence cs : ids) {
+            retval.add(cs.toString());
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the start offset of the span of a match from the
+     * <em>first</em> to the <em>last</em> token.
+     * @param first the first token of the match
+     * @param last the last token of the match
+     * @return the start offset or {@code -1} if the tokens have no offsets
+     */
+    protected static int spanStart(final Token first, final Token last) {
+        return hasSpan(first, last) ? first.getStartOffset() : -1;
+    }
+
+    /**
+     * Returns the end offset of the span of a match from the
+     * <em>first</em> to the <em>last</em> token.
+     * @param first the first token of the match
+     * @param last the last token of the match
+     * @return the end offset or {@code -1} if the tokens have no offsets
+     */
+    protected static int spanEnd(final Token first, final Token last) {
+        return hasSpan(first, last) ? last.getEndOffset() : -1;
+    }
+
+    private static boolean hasSpan(final Token first, final Token last) {
+        final int start = first.getStartOffset();
+        return start >= 0 && last.getEndOffset() >= start;
+    }
+
+    /**
+     * Puts the {@link #ENTITY_ID_KEY} meta data and for a
+     * {@link TypedDictionary} the {@link #ENTITY_TYPE_KEY} meta data for
+     * the IDs of a match.
+     * @param meta the meta data of the token of the match
+     * @param key the key of the match
+     * @param ids the IDs of the match
+     * @param entities the entity map of the match
+     */
+    protected static void putEntityMeta(
+            final Map<String, List<String>> meta,
+            final CharSequence key,
+            final Set<CharSequence> ids,
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        final List<String> idList = toEntityIdList(ids);
+        meta.put(ENTITY_ID_KEY, idList);
+        if (entities instanceof TypedDictionary) {
+            final TypedDictionary typed = (TypedDictionary) entities;
+            final List<String> types = new ArrayList<String>(idList.size());
+            final StringBuilder sb = new StringBuilder();
+            for (final String id : idList) {
+                sb.setLength(0);
+                for (final String type : typed.getEntityTypes(key, id)) {
+                    if (sb.length() != 0) {
+                        sb.append(TYPE_SEPARATOR);
+                    }
+                    sb.append(type);
+                }
+                types.add(sb.length() == 0 ? null : sb.toString());
+            }
+            meta.put(ENTITY_TYPE_KEY, types);
+        }
     }
 
     /**
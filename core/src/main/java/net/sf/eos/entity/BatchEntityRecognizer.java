@@ -0,0 +1,359 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import static net.sf.eos.config.ConfigurationKey.Type.INTEGER;
+import static net.sf.eos.entity.DictionaryBasedEntityRecognizer.ENTITY_ID_KEY;
+import static net.sf.eos.entity.EntityRecognizer.ENTITY_TYPE;
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+import static net.sf.eos.util.Conditions.checkState;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.eos.EosException;
+import net.sf.eos.analyzer.ResettableTokenizer;
+import net.sf.eos.analyzer.TextBuilder;
+import net.sf.eos.analyzer.Token;
+import net.sf.eos.analyzer.TokenizerSupplier;
+import net.sf.eos.config.Configuration;
+import net.sf.eos.config.ConfigurationKey;
+import net.sf.eos.config.Configured;
+import net.sf.eos.document.EosDocument;
+import net.sf.eos.trie.PatriciaTrie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recognizes the entities of a collection of documents on a thread pool.
+ * All threads share the read only entity map. Each thread has its own
+ * {@link ResettableTokenizer} from the configured
+ * {@link TokenizerSupplier} and creates a recognizer for each document with
+ * {@link AbstractDictionaryBasedEntityRecognizer#newInstance(net.sf.eos.analyzer.Tokenizer, Configuration)}.
+ * <p>{@link #recognize(Iterator)} returns the results in the order of the
+ * documents. At most {@link #WINDOW_CONFIG_NAME window} documents are
+ * taken from the source before the consumer takes their results. So a slow
+ * consumer slows down the recognition and the memory is bounded.</p>
+ * <p>Call {@link #configure(Configuration)} before use and
+ * {@link #close()} after use. Instances are thread safe, the entity map
+ * must not change while in use. A {@link PatriciaTrie} is
+ * {@linkplain PatriciaTrie#freeze() frozen} at construction, so the
+ * recognizers of all documents share the structures derived from the
+ * trie, e.g. the automaton of a
+ * {@link TokenAutomatonDictionaryBasedEntityRecognizer}.</p>
+ * @author Sascha Kohlmann
+ */
+public class BatchEntityRecognizer extends Configured {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(BatchEntityRecognizer.class.getName());
+
+    /** The configuration key for the count of threads. {@code 0} means
+     * the count of available processors. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=INTEGER,
+                      defaultValue="0",
+                      description="The count of recognition threads. 0 for "
+                                  + "the count of available processors.")
+    public final static String THREADS_CONFIG_NAME =
+        "net.sf.eos.entity.BatchEntityRecognizer.threads";
+
+    /** The configuration key for the maximum count of documents in
+     * recognition or waiting for the consumer. {@code 0} means four times
+     * the count of threads. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=INTEGER,
+                      defaultValue="0",
+                      description="The maximum count of documents in "
+                                  + "recognition or waiting for the consumer. "
+                                  + "0 for four times the count of threads.")
+    public final static String WINDOW_CONFIG_NAME =
+        "net.sf.eos.entity.BatchEntityRecognizer.window";
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final Map<CharSequence, Set<CharSequence>> entities;
+    private final ThreadLocal<ResettableTokenizer> tokenizers =
+        new ThreadLocal<ResettableTokenizer>();
+    private ExecutorService executor = null;
+    private int window = 0;
+
+    /**
+     * Creates a new batch recognizer.
+     * @param entities the shared read only entity map. A
+     *                 {@code PatriciaTrie} is frozen.
+     */
+    public BatchEntityRecognizer(
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        checkArgumentNotNull(entities, "entities is null");
+        if (entities instanceof PatriciaTrie) {
+            ((PatriciaTrie<?, ?>) entities).freeze();
+        }
+        this.entities = entities;
+    }
+
+    /**
+     * Configures the recognizer and starts the thread pool.
+     * @param config the configuration for the tokenizers, the recognizers
+     *               and the thread pool
+     */
+    @Override
+    public synchronized void configure(
+            @SuppressWarnings("hiding") final Configuration config) {
+        checkState(this.executor == null, "already configured");
+        super.configure(config);
+        int threads = config.getInt(THREADS_CONFIG_NAME, 0);
+        checkArgument(threads >= 0, "threads < 0");
+        if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        final int lWindow = config.getInt(WINDOW_CONFIG_NAME, 0);
+        checkArgument(lWindow >= 0, "window < 0");
+        this.window = lWindow == 0 ? 4 * threads : lWindow;
+        this.executor =
+            Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("threads: " + threads + " - window: " + this.window);
+        }
+    }
+
+    /**
+     * Recognizes the entities of the documents. The documents are taken
+     * from the source while the consumer takes the results.
+     * <p>The returned iterator throws an {@link IllegalStateException}
+     * with the {@link EosException} of a failed document as cause.
+     * The iterator is not thread safe.</p>
+     * @param documents the source of the documents
+     * @return the results in the order of the documents
+     */
+    public Iterator<Result> recognize(final Iterator<EosDocument> documents) {
+        checkArgumentNotNull(documents, "documents is null");
+        final ExecutorService lExecutor;
+        synchronized (this) {
+            checkState(this.executor != null, "not configured");
+            lExecutor = this.executor;
+        }
+        return new ResultIterator(documents, lExecutor, this.window);
+    }
+
+    /**
+     * Recognizes the entities of all documents.
+     * @param documents the documents
+     * @return the results in the order of the documents
+     * @throws EosException if the recognition of a document fails
+     */
+    public List<Result> recognizeAll(final Collection<EosDocument> documents)
+            throws EosException {
+        checkArgumentNotNull(documents, "documents is null");
+        final List<Result> results = new ArrayList<Result>(documents.size());
+        try {
+            for (final Iterator<Result> itr = recognize(documents.iterator());
+                    itr.hasNext(); ) {
+                results.add(itr.next());
+            }
+        } catch (final IllegalStateException e) {
+            if (e.getCause() instanceof EosException) {
+                throw (EosException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Recognizes the entities of a single document in the calling thread.
+     * @param document the document
+     * @return the result
+     * @throws EosException if the recognition fails
+     */
+    public Result recognize(final EosDocument document) throws EosException {
+        checkArgumentNotNull(document, "document is null");
+        final Configuration config = getConfiguration();
+        checkState(config != null, "not configured");
+        ResettableTokenizer tokenizer = this.tokenizers.get();
+        if (tokenizer == null) {
+            tokenizer = TokenizerSupplier.newInstance(config).get();
+            this.tokenizers.set(tokenizer);
+        }
+        tokenizer.reset(document.getText());
+        final DictionaryBasedEntityRecognizer recognizer =
+            AbstractDictionaryBasedEntityRecognizer.newInstance(tokenizer,
+                                                                config);
+        recognizer.setEntityMap(this.entities);
+        recognizer.setTextBuilder(TextBuilder.newInstance(config));
+
+        final List<Token> tokens = new ArrayList<Token>();
+        Token t = null;
+        while ((t = recognizer.next()) != null) {
+            tokens.add(t);
+        }
+        return new Result(document, tokens);
+    }
+
+    /**
+     * Stops the thread pool. Running recognitions are finished.
+     */
+    public synchronized void close() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    /**
+     * The recognized tokens of a document.
+     */
+    public static final class Result {
+
+        private final EosDocument document;
+        private final List<Token> tokens;
+
+        Result(final EosDocument document, final List<Token> tokens) {
+            this.document = document;
+            this.tokens = Collections.unmodifiableList(tokens);
+        }
+
+        /**
+         * Returns the document.
+         * @return the document
+         */
+        public EosDocument getDocument() {
+            return this.document;
+        }
+
+        /**
+         * Returns all tokens of the document. Recognized entities have the
+         * type {@link EntityRecognizer#ENTITY_TYPE}.
+         * @return the tokens
+         */
+        public List<Token> getTokens() {
+            return this.tokens;
+        }
+
+        /**
+         * Returns the IDs of the recognized entities in the order of their
+         * first occurrence.
+         * @return the IDs
+         */
+        public Set<String> getEntityIds() {
+            final Set<String> ids = new LinkedHashSet<String>();
+            for (final Token token : this.tokens) {
+                if (ENTITY_TYPE.equals(token.getType())) {
+                    final List<String> tokenIds =
+                        token.getMeta().get(ENTITY_ID_KEY);
+                    if (tokenIds != null) {
+                        ids.addAll(tokenIds);
+                    }
+                }
+            }
+            return ids;
+        }
+    }
+
+    private final class ResultIterator implements Iterator<Result> {
+
+        private final Iterator<EosDocument> documents;
+        private final ExecutorService lExecutor;
+        private final int lWindow;
+        private final LinkedList<Future<Result>> pending =
+            new LinkedList<Future<Result>>();
+
+        ResultIterator(final Iterator<EosDocument> documents,
+                       final ExecutorService executor,
+                       final int window) {
+            this.documents = documents;
+            this.lExecutor = executor;
+            this.lWindow = window;
+        }
+
+        public boolean hasNext() {
+            fill();
+            return ! this.pending.isEmpty();
+        }
+
+        public Result next() {
+            if (! hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Future<Result> future = this.pending.removeFirst();
+            try {
+                final Result result = future.get();
+                fill();
+                return result;
+            } catch (final InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (final ExecutionException e) {
+                cancel();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void fill() {
+            while (this.pending.size() < this.lWindow
+                    && this.documents.hasNext()) {
+                final EosDocument document = this.documents.next();
+                this.pending.add(this.lExecutor.submit(new Callable<Result>() {
+                    public Result call() throws EosException {
+                        return recognize(document);
+                    }
+                }));
+            }
+        }
+
+        private void cancel() {
+            for (final Future<Result> future : this.pending) {
+                future.cancel(false);
+            }
+            this.pending.clear();
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final int pool = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger number = new AtomicInteger();
+
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "eos-recognizer-" + this.pool + "-"
+                                           + this.number.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -20,7 +20,10 @@ import static net.sf.eos.config.ConfigurationKey.Type.CLASSNAME;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import net.sf.eos.EosException;
 import net.sf.eos.config.Configuration;
@@ -114,4 +117,30 @@ public abstract class CommonNameResolver extends Configured {
      */
     public abstract String resolveCommonName(final String id,
                                              final Locale locale) throws EosException;
+
+    /**
+     * Resolves the common entity names of all IDs for the given locale if
+     * available. Implementations may resolve the IDs in a single pass.
+     * This implementation calls {@link #resolveCommonName(String, Locale)}
+     * for each ID.
+     * @param ids the IDs of the entities
+     * @param locale to get the right language of the common names.
+     * @return the common names of the IDs in the iteration order of the
+     *         IDs. Doesn't contain IDs without a common name.
+     * @throws EosException if an error occurs
+     */
+    public Map<String, String> resolveCommonNames(final Collection<String> ids,
+                                                  final Locale locale)
+            throws EosException {
+        final Map<String, String> names = new LinkedHashMap<String, String>();
+        for (final String id : ids) {
+            if (! names.containsKey(id)) {
+                final String name = resolveCommonName(id, locale);
+                if (name != null) {
+                    names.put(id, name);
+                }
+            }
+        }
+        return names;
+    }
 }
@@ -25,16 +25,33 @@ import java.util.Set;
  * recognize entities in a text. An entity is identified thru the 
  * {@link net.sf.eos.analyzer.Token#getType()} {@link #ENTITY_TYPE}. The ID
  * coming in the map is stored in the meta data with the key
- * {@link #ENTITY_ID_KEY}.
+ * {@link #ENTITY_ID_KEY}. The types of the IDs of a
+ * {@link net.sf.eos.trie.TypedDictionary} are stored with the key
+ * {@link #ENTITY_TYPE_KEY}.
  * @author Sascha Kohlmann
  */
 public interface DictionaryBasedEntityRecognizer extends EntityRecognizer {
 
-    /** ID meta key. */
+    /** ID meta key. The list is unmodifiable if the entity map stores
+     * {@link net.sf.eos.trie.EntityIdSet EntityIdSets}, see
+     * {@link EntityIdList}. */
     @SuppressWarnings("nls")
     static String ENTITY_ID_KEY = 
         DictionaryBasedEntityRecognizer.class.getName() + "." + ENTITY_TYPE;
 
+    /** Entity type meta key. The list contains the type of each ID of the
+     * {@link #ENTITY_ID_KEY} list at the same index. If the entity map
+     * contains the ID with several types for the key of the match, the
+     * types are separated by {@link #TYPE_SEPARATOR}. Only available if the
+     * entity map is a {@link net.sf.eos.trie.TypedDictionary}. */
+    @SuppressWarnings("nls")
+    static String ENTITY_TYPE_KEY =
+        DictionaryBasedEntityRecognizer.class.getName() + ".type";
+
+    /** Separates the types of an ID in the {@link #ENTITY_TYPE_KEY} meta
+     * data. */
+    static char TYPE_SEPARATOR = ',';
+
 //    /** Configuration key for the maximum token. The value of the key must
 //     * follow the rules of an Java integer. */
 //    @SuppressWarnings("nls")
@@ -0,0 +1,97 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import net.sf.eos.trie.EntityIdSet;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable list of entity IDs backed by the handles of an
+ * {@link EntityIdSet}. The list is the value of the
+ * {@link DictionaryBasedEntityRecognizer#ENTITY_ID_KEY} meta data of a
+ * recognized entity if the entity map stores {@code EntityIdSets}. Users
+ * may work on the {@link #handle(int) handles} and get the ID
+ * {@code Strings} only for serialization. Handles of lists with different
+ * {@link #handleOwner() owners} are unrelated.
+ * <p>In difference to the {@code ArrayList} of a map with other value
+ * sets, the list is unmodifiable. Copy the list before changing the IDs of
+ * a token. The list is serialized as an {@code ArrayList} of the IDs.</p>
+ * @author Sascha Kohlmann
+ */
+public final class EntityIdList extends AbstractList<String>
+        implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 4328651740813625761L;
+
+    private final transient EntityIdSet ids;
+    private final int[] handles;
+
+    /**
+     * Creates a new list with the IDs of the set.
+     * @param ids the IDs
+     */
+    public EntityIdList(final EntityIdSet ids) {
+        this.ids = ids;
+        final int size = ids.size();
+        this.handles = new int[size];
+        for (int i = 0; i < size; i++) {
+            this.handles[i] = ids.handleAt(i);
+        }
+    }
+
+    /**
+     * Returns the handle of the ID at the index.
+     * @param index the index of the ID
+     * @return the handle
+     */
+    public int handle(final int index) {
+        return this.handles[index];
+    }
+
+    /**
+     * Returns the owner of the handles.
+     * @return the owner of the handles
+     * @see EntityIdSet#handleOwner()
+     */
+    public Object handleOwner() {
+        return this.ids.handleOwner();
+    }
+
+    /*
+     * @see java.util.AbstractList#get(int)
+     */
+    @Override
+    public String get(final int index) {
+        return this.ids.idOf(this.handles[index]);
+    }
+
+    /*
+     * @see java.util.AbstractCollection#size()
+     */
+    @Override
+    public int size() {
+        return this.handles.length;
+    }
+
+    /** Serializes the IDs as an {@code ArrayList}. */
+    private Object writeReplace() {
+        return new ArrayList<String>(this);
+    }
+}
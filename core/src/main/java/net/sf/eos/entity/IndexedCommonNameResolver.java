@@ -0,0 +1,258 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import static net.sf.eos.config.ConfigurationKey.Type.INTEGER;
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.eos.EosException;
+import net.sf.eos.config.Configuration;
+import net.sf.eos.config.ConfigurationKey;
+import net.sf.eos.trie.CommonNameIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Resolves the common names with a memory mapped {@link CommonNameIndex}
+ * build from the XML dictionary of the entities. A bounded cache with
+ * least recently used eviction holds the names of the recently resolved
+ * IDs.
+ * <p>{@link #resolveCommonNames(Collection, Locale)} looks up all IDs
+ * missing in the cache in sorted order. So a result page costs a single
+ * pass over the index.</p>
+ * <p>The dictionary has a single common name for each ID. The resolver
+ * ignores the locale.</p>
+ * <p>Instances are thread safe.</p>
+ * @author Sascha Kohlmann
+ */
+public class IndexedCommonNameResolver extends CommonNameResolver {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(IndexedCommonNameResolver.class.getName());
+
+    /** The configuration key for the path of the index image.
+     * @see CommonNameIndex#compile(java.io.InputStream, java.io.OutputStream) */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(description="The path of the binary image of the "
+                                  + "common name index.")
+    public final static String INDEX_CONFIG_NAME =
+        "net.sf.eos.entity.IndexedCommonNameResolver.index";
+
+    /** The default size of the cache. */
+    @SuppressWarnings("nls")
+    public final static String DEFAULT_CACHE_SIZE = "10000";
+
+    /** The configuration key for the maximum count of cached names. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=INTEGER,
+                      defaultValue=DEFAULT_CACHE_SIZE,
+                      description="The maximum count of cached common names.")
+    public final static String CACHE_SIZE_CONFIG_NAME =
+        "net.sf.eos.entity.IndexedCommonNameResolver.cacheSize";
+
+    /** Marks IDs without a common name in the cache. */
+    @SuppressWarnings("nls")
+    private static final String NO_NAME = new String("");
+
+    private CommonNameIndex index;
+    private Map<String, String> cache;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates a new resolver. The resolver opens the index configured with
+     * {@link #INDEX_CONFIG_NAME} on first use.
+     * @see CommonNameResolver#newInstance(Configuration)
+     */
+    public IndexedCommonNameResolver() {
+        this.cache = newCache(Integer.parseInt(DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * Creates a new resolver for the given index.
+     * @param index the index
+     * @param cacheSize the maximum count of cached names
+     */
+    public IndexedCommonNameResolver(final CommonNameIndex index,
+                                     final int cacheSize) {
+        checkArgumentNotNull(index, "index is null");
+        checkArgument(cacheSize >= 0, "cacheSize < 0");
+        this.index = index;
+        this.cache = newCache(cacheSize);
+    }
+
+    /*
+     * @see net.sf.eos.config.Configured#configure(net.sf.eos.config.Configuration)
+     */
+    @Override
+    public void configure(
+            @SuppressWarnings("hiding") final Configuration config) {
+        super.configure(config);
+        final int cacheSize =
+            config.getInt(CACHE_SIZE_CONFIG_NAME,
+                          Integer.parseInt(DEFAULT_CACHE_SIZE));
+        checkArgument(cacheSize >= 0, "cacheSize < 0");
+        synchronized (this) {
+            this.cache = newCache(cacheSize);
+        }
+    }
+
+    /**
+     * Resolves the common entity name. The locale is ignored.
+     * @param id the ID of the entity
+     * @param locale ignored
+     * @return a common name or {@code null} if the index doesn't contain
+     *         the ID
+     * @throws EosException if the index is not available
+     */
+    @Override
+    public String resolveCommonName(final String id, final Locale locale)
+            throws EosException {
+        if (id == null) {
+            return null;
+        }
+        synchronized (this) {
+            final String cached = this.cache.get(id);
+            if (cached != null) {
+                this.hits++;
+                return cached == NO_NAME ? null : cached;
+            }
+            this.misses++;
+        }
+        final String name = index().get(id);
+        synchronized (this) {
+            this.cache.put(id, name == null ? NO_NAME : name);
+        }
+        return name;
+    }
+
+    /**
+     * Resolves the common names of all IDs. The IDs missing in the cache
+     * are looked up in sorted order. The locale is ignored.
+     * @param ids the IDs of the entities
+     * @param locale ignored
+     * @return the common names of the IDs in the iteration order of the
+     *         IDs. Doesn't contain IDs without a common name.
+     * @throws EosException if the index is not available
+     */
+    @Override
+    public Map<String, String> resolveCommonNames(final Collection<String> ids,
+                                                  final Locale locale)
+            throws EosException {
+        checkArgumentNotNull(ids, "ids is null");
+        final Map<String, String> resolved = new TreeMap<String, String>();
+        final SortedMap<String, String> missing =
+            new TreeMap<String, String>();
+        synchronized (this) {
+            for (final String id : ids) {
+                if (id == null || resolved.containsKey(id)
+                        || missing.containsKey(id)) {
+                    continue;
+                }
+                final String cached = this.cache.get(id);
+                if (cached != null) {
+                    this.hits++;
+                    resolved.put(id, cached);
+                } else {
+                    this.misses++;
+                    missing.put(id, NO_NAME);
+                }
+            }
+        }
+        if (! missing.isEmpty()) {
+            final CommonNameIndex idx = index();
+            for (final Map.Entry<String, String> entry : missing.entrySet()) {
+                final String name = idx.get(entry.getKey());
+                if (name != null) {
+                    entry.setValue(name);
+                }
+            }
+            synchronized (this) {
+                this.cache.putAll(missing);
+            }
+            resolved.putAll(missing);
+        }
+
+        final Map<String, String> names = new LinkedHashMap<String, String>();
+        for (final String id : ids) {
+            final String name = resolved.get(id);
+            if (name != null && name != NO_NAME) {
+                names.put(id, name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the count of lookups answered by the cache.
+     * @return the count of cache hits
+     */
+    public synchronized long getCacheHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the count of lookups in the index.
+     * @return the count of cache misses
+     */
+    public synchronized long getCacheMisses() {
+        return this.misses;
+    }
+
+    /** @return the index, opened on first use */
+    final synchronized CommonNameIndex index() throws EosException {
+        if (this.index == null) {
+            final Configuration config = getConfiguration();
+            final String path =
+                config == null ? null : config.get(INDEX_CONFIG_NAME);
+            if (path == null) {
+                throw new EosException("no common name index configured");
+            }
+            try {
+                this.index = CommonNameIndex.open(new File(path));
+            } catch (final IOException e) {
+                throw new EosException(e);
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("common name index: " + path);
+            }
+        }
+        return this.index;
+    }
+
+    @SuppressWarnings("serial")
+    private static Map<String, String> newCache(final int size) {
+        return new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, String> eldest) {
+                return size() > size;
+            }
+        };
+    }
+}
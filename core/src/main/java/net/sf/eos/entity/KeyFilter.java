@@ -0,0 +1,197 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.eos.trie.BlockDictionary;
+import net.sf.eos.trie.MultiDictionary;
+import net.sf.eos.util.BloomFilter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link BloomFilter} over the keys of an entity map and over the token
+ * prefixes of the keys. A token prefix is the part of a key up to and
+ * including a space. The recognizer probes the filter before it builds the
+ * text of a token sequence and before it accesses the entity map.
+ * <p>The hash of a text is a rolling hash over its characters. The hash
+ * of a token sequence is extended token by token with
+ * {@link #update(long, CharSequence)} and {@link #update(long, char)}
+ * without building the text.</p>
+ * <p>Only for internal use!</p>
+ * @author Sascha Kohlmann
+ */
+final class KeyFilter {
+
+    /** For logging. */
+    private static final Log LOG = LogFactory.getLog(KeyFilter.class.getName());
+
+    /** The initial state of the rolling hash. */
+    static final long INITIAL = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+    private static final long PREFIX_SALT = 0x9e3779b97f4a7c15L;
+
+    /** The filters of the immutable maps. */
+    private static final MapCache<KeyFilter> CACHE = new MapCache<KeyFilter>();
+
+    private final BloomFilter filter;
+
+    private KeyFilter(final BloomFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Returns the filter for the entity map. Filters are only created for
+     * immutable maps, see {@link MapCache#isImmutable(Map)}. There is no
+     * filter for a {@link BlockDictionary} or a {@link MultiDictionary}
+     * with a block dictionary, the creation would read the whole dictionary
+     * from disk. The filter of
+     * a map is created once and shared by all callers. The method doesn't
+     * hold a global lock, but callers should ask once per entity map and
+     * keep the filter.
+     * @param entities the entity map
+     * @param fpp the false positive probability
+     * @param maxBytes the maximum size of the filter in bytes
+     * @return the filter or {@code null} if the map is mutable or a
+     *         block dictionary
+     */
+    static KeyFilter forMap(final Map<CharSequence, Set<CharSequence>> entities,
+                            final float fpp,
+                            final long maxBytes) {
+        if (! MapCache.isImmutable(entities) || isOnDisk(entities)) {
+            return null;
+        }
+        final long maxBits = maxBytes << 3;
+        final Object parameter =
+            Arrays.asList(Float.valueOf(fpp), Long.valueOf(maxBits));
+        return CACHE.get(entities, parameter, new MapCache.Factory<KeyFilter>() {
+            public KeyFilter create(
+                    final Map<CharSequence, Set<CharSequence>> map) {
+                return build(map.keySet(), fpp, maxBits);
+            }
+        });
+    }
+
+    /** @return {@code true} for a block dictionary or a combination of
+     *          dictionaries with a block dictionary */
+    private static boolean isOnDisk(
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        if (entities instanceof MultiDictionary) {
+            for (final Map<CharSequence, Set<CharSequence>> dictionary
+                    : ((MultiDictionary) entities).getDictionaries()) {
+                if (isOnDisk(dictionary)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return entities instanceof BlockDictionary;
+    }
+
+    /**
+     * Creates a filter for the keys.
+     * @param keys the keys of the entity map
+     * @param fpp the false positive probability
+     * @param maxBits the maximum count of bits of the filter
+     * @return a new filter
+     */
+    static KeyFilter build(final Collection<? extends CharSequence> keys,
+                           final float fpp,
+                           final long maxBits) {
+        final long start = System.currentTimeMillis();
+        long insertions = 0;
+        for (final CharSequence key : keys) {
+            insertions++;
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) == ' ') {
+                    insertions++;
+                }
+            }
+        }
+        final BloomFilter filter = new BloomFilter(insertions, fpp, maxBits);
+        for (final CharSequence key : keys) {
+            long state = INITIAL;
+            for (int i = 0; i < key.length(); i++) {
+                final char c = key.charAt(i);
+                state = update(state, c);
+                if (c == ' ') {
+                    filter.put(mix(state ^ PREFIX_SALT));
+                }
+            }
+            filter.put(mix(state));
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("key filter: " + insertions + " values, "
+                     + (filter.getBitCount() >>> 3) + " bytes, "
+                     + filter.getHashCount() + " hashes, expected fpp "
+                     + (float) filter.expectedFpp(insertions) + " in "
+                     + (System.currentTimeMillis() - start) + "ms");
+        }
+        return new KeyFilter(filter);
+    }
+
+    /** @return the state extended by the character */
+    static long update(final long state, final char c) {
+        return (state ^ c) * PRIME;
+    }
+
+    /** @return the state extended by the characters of the sequence */
+    static long update(final long state, final CharSequence seq) {
+        long h = state;
+        final int length = seq.length();
+        for (int i = 0; i < length; i++) {
+            h = (h ^ seq.charAt(i)) * PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Returns {@code false} if the map doesn't contain the text of the
+     * state.
+     * @param state the state of the text
+     * @return {@code true} if the map may contain the text as key
+     */
+    boolean mightContainKey(final long state) {
+        return this.filter.mightContain(mix(state));
+    }
+
+    /**
+     * Returns {@code false} if no key of the map starts with the text of
+     * the state. The text must end with a space.
+     * @param state the state of the text
+     * @return {@code true} if a key of the map may start with the text
+     */
+    boolean mightContainPrefix(final long state) {
+        return this.filter.mightContain(mix(state ^ PREFIX_SALT));
+    }
+
+    /** The finalizer of MurmurHash3. */
+    private static long mix(final long state) {
+        long h = state;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
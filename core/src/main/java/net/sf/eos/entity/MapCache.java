@@ -0,0 +1,181 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import net.sf.eos.trie.BlockDictionary;
+import net.sf.eos.trie.CompactDictionary;
+import net.sf.eos.trie.MappedDictionary;
+import net.sf.eos.trie.MultiDictionary;
+import net.sf.eos.trie.PatriciaTrie;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A cache of values derived from immutable entity maps, e.g. the
+ * {@link TokenAutomaton} of a dictionary. The maps are held weakly and
+ * compared by identity. A value is created only once for a map and a
+ * parameter. Concurrent callers for the same map wait for the first caller,
+ * callers for other maps are not blocked by the creation.
+ * <p>Recognizers should ask the cache once per entity map and keep the
+ * value, not once per token.</p>
+ * <p>Only for internal use!</p>
+ * @author Sascha Kohlmann
+ * @param <V> the type of the derived values
+ */
+final class MapCache<V> {
+
+    private final List<Slot<V>> slots = new ArrayList<Slot<V>>();
+
+    /**
+     * Returns {@code true} if the entity map never changes: frozen
+     * {@link PatriciaTrie PatriciaTries}, {@link CompactDictionary
+     * CompactDictionaries}, {@link MappedDictionary MappedDictionaries},
+     * {@link BlockDictionary BlockDictionaries} and
+     * {@link MultiDictionary MultiDictionaries}.
+     * @param entities the entity map
+     * @return {@code true} if the map is immutable
+     */
+    static boolean isImmutable(final Map<?, ?> entities) {
+        return (entities instanceof PatriciaTrie
+                    && ((PatriciaTrie<?, ?>) entities).isFrozen())
+               || entities instanceof CompactDictionary
+               || entities instanceof MappedDictionary
+               || entities instanceof BlockDictionary
+               || entities instanceof MultiDictionary;
+    }
+
+    /**
+     * Returns the value for the map and the parameter. Creates the value
+     * with the factory if there is no value.
+     * @param entities the immutable entity map
+     * @param parameter the parameter of the creation. May be {@code null}.
+     * @param factory the factory for a new value
+     * @return the value
+     */
+    V get(final Map<CharSequence, Set<CharSequence>> entities,
+          final Object parameter,
+          final Factory<V> factory) {
+        assert isImmutable(entities);
+        for (;;) {
+            Slot<V> slot = null;
+            boolean owner = false;
+            synchronized (this.slots) {
+                for (final Iterator<Slot<V>> itr = this.slots.iterator();
+                        itr.hasNext(); ) {
+                    final Slot<V> candidate = itr.next();
+                    final Map<?, ?> map = candidate.map.get();
+                    if (map == null) {
+                        itr.remove();
+                    } else if (map == entities
+                            && equal(candidate.parameter, parameter)) {
+                        slot = candidate;
+                        break;
+                    }
+                }
+                if (slot == null) {
+                    slot = new Slot<V>(entities, parameter);
+                    this.slots.add(slot);
+                    owner = true;
+                }
+            }
+            if (owner) {
+                return create(slot, entities, factory);
+            }
+            final V value = slot.await();
+            if (value != null) {
+                return value;
+            }
+            // the creation failed, the next loop creates a new slot
+        }
+    }
+
+    private V create(final Slot<V> slot,
+                     final Map<CharSequence, Set<CharSequence>> entities,
+                     final Factory<V> factory) {
+        V value = null;
+        try {
+            value = factory.create(entities);
+            return value;
+        } finally {
+            if (value == null) {
+                synchronized (this.slots) {
+                    this.slots.remove(slot);
+                }
+            }
+            slot.set(value);
+        }
+    }
+
+    private static boolean equal(final Object o1, final Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    /**
+     * Creates the value for an entity map.
+     * @param <V> the type of the value
+     */
+    interface Factory<V> {
+        /**
+         * Creates the value for the map.
+         * @param entities the entity map
+         * @return the value. Never {@code null}.
+         */
+        V create(Map<CharSequence, Set<CharSequence>> entities);
+    }
+
+    private static final class Slot<V> {
+
+        final WeakReference<Map<?, ?>> map;
+        final Object parameter;
+        private V value = null;
+        private boolean done = false;
+
+        Slot(final Map<?, ?> map, final Object parameter) {
+            this.map = new WeakReference<Map<?, ?>>(map);
+            this.parameter = parameter;
+        }
+
+        synchronized void set(@SuppressWarnings("hiding") final V value) {
+            this.value = value;
+            this.done = true;
+            notifyAll();
+        }
+
+        /** @return the value or {@code null} if the creation failed */
+        synchronized V await() {
+            boolean interrupted = false;
+            try {
+                while (! this.done) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                return this.value;
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
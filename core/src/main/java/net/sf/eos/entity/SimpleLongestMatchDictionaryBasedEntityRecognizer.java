@@ -15,6 +15,10 @@
  */
 package net.sf.eos.entity;
 
+import static net.sf.eos.config.ConfigurationKey.Type.BOOLEAN;
+import static net.sf.eos.config.ConfigurationKey.Type.FLOAT;
+import static net.sf.eos.config.ConfigurationKey.Type.INTEGER;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -23,11 +27,14 @@ import net.sf.eos.analyzer.TextBuilder;
 import net.sf.eos.analyzer.Token;
 import net.sf.eos.analyzer.Tokenizer;
 import net.sf.eos.analyzer.TokenizerException;
+import net.sf.eos.config.Configuration;
+import net.sf.eos.config.ConfigurationKey;
+import net.sf.eos.trie.PrefixSearchable;
+import net.sf.eos.trie.ReloadableDictionary;
 
 import static net.sf.eos.util.Conditions.checkArgument;
 import static net.sf.eos.util.Conditions.checkState;
 
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -40,7 +47,23 @@ import java.util.Set;
  * If a token combination matches a key in the
  * {@link AbstractDictionaryBasedEntityRecognizer#getEntityMap() entity map},
  * a new {@code Token} of type {@link EntityRecognizer#ENTITY_TYPE} 
- * is created and return by {@link #next()}.
+ * is created and return by {@link #next()}. The offsets of the token span
+ * the matching tokens in the original text.
+ * <p>If the entity map is {@link PrefixSearchable} and the
+ * {@link #getTextBuilder() text builder} is a
+ * {@link TextBuilder.SpaceBuilder}, the recognizer stops extending the
+ * token sequence as soon as no key starts with the sequence. See
+ * {@link #PREFIX_TERMINATION_CONFIG_NAME}.</p>
+ * <p>If the entity map is immutable, e.g. a frozen
+ * {@link net.sf.eos.trie.PatriciaTrie}, but not a
+ * {@link net.sf.eos.trie.BlockDictionary}, the recognizer creates a Bloom
+ * filter over the keys and the token prefixes of the keys. The recognizer
+ * probes the filter with a rolling hash over the tokens before it builds
+ * the text of a token sequence and accesses the entity map. See
+ * {@link #KEY_FILTER_CONFIG_NAME}. The filter is shared by all recognizers
+ * of the map and resolved once per entity map. For a
+ * {@link ReloadableDictionary} each call of {@link #next()} works on the
+ * current version.</p>
  * @author Sascha Kohlmann
  */
 public class SimpleLongestMatchDictionaryBasedEntityRecognizer
@@ -49,9 +72,67 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
     static final Log LOG =
         LogFactory.getLog(SimpleLongestMatchDictionaryBasedEntityRecognizer.class.getName());
 
+    /** Key for the prefix based termination of the token sequence. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=BOOLEAN,
+                      defaultValue="true",
+                      description="Stop extending the token sequence if no "
+                                  + "key of the entity map starts with the "
+                                  + "sequence.")
+    public final static String PREFIX_TERMINATION_CONFIG_NAME =
+        "net.sf.eos.entity.SimpleLongestMatchDictionaryBasedEntityRecognizer.prefixTermination";
+
+    /** Key for the Bloom filter over the keys of the entity map. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=BOOLEAN,
+                      defaultValue="true",
+                      description="Probe a Bloom filter over the keys of an "
+                                  + "immutable entity map before accessing "
+                                  + "the map.")
+    public final static String KEY_FILTER_CONFIG_NAME =
+        "net.sf.eos.entity.SimpleLongestMatchDictionaryBasedEntityRecognizer.keyFilter";
+
+    /** The default false positive probability of the key filter. */
+    @SuppressWarnings("nls")
+    public final static String DEFAULT_KEY_FILTER_FPP = "0.01";
+
+    /** Key for the false positive probability of the key filter. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=FLOAT,
+                      defaultValue=DEFAULT_KEY_FILTER_FPP,
+                      description="The false positive probability of the "
+                                  + "Bloom filter over the keys.")
+    public final static String KEY_FILTER_FPP_CONFIG_NAME =
+        "net.sf.eos.entity.SimpleLongestMatchDictionaryBasedEntityRecognizer.keyFilterFpp";
+
+    /** The default maximum size of the key filter in megabytes. */
+    @SuppressWarnings("nls")
+    public final static String DEFAULT_KEY_FILTER_MAX_SIZE = "64";
+
+    /** Key for the maximum size of the key filter in megabytes. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=INTEGER,
+                      defaultValue=DEFAULT_KEY_FILTER_MAX_SIZE,
+                      description="The maximum size of the Bloom filter over "
+                                  + "the keys in megabytes. A smaller filter "
+                                  + "has more false positives.")
+    public final static String KEY_FILTER_MAX_SIZE_CONFIG_NAME =
+        "net.sf.eos.entity.SimpleLongestMatchDictionaryBasedEntityRecognizer.keyFilterMaxSize";
+
 //    private Map<CharSequence, Set<CharSequence>> entities;
     private Queue<Token> retvalBuffer = new LinkedList<Token>();
     private FixedSizeQueue<Token> longestMatchQueue = null;
+    private boolean prefixTermination = true;
+    private final StringBuilder prefix = new StringBuilder();
+    private boolean useKeyFilter = true;
+    private float keyFilterFpp = Float.parseFloat(DEFAULT_KEY_FILTER_FPP);
+    private int keyFilterMaxSize = Integer.parseInt(DEFAULT_KEY_FILTER_MAX_SIZE);
+    private KeyFilter keyFilter = null;
+    /** The version of the entity map of the key filter and the maximum
+     * token count. */
+    private Map<CharSequence, Set<CharSequence>> resolvedFor = null;
+    private int resolvedMaxToken = 0;
+    private long[] states = new long[8];
 
     /**
      * Creates a new instance.
@@ -62,6 +143,111 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
         super(source);
     }
 
+    /**
+     * Reads also the {@link #PREFIX_TERMINATION_CONFIG_NAME prefix
+     * termination} flag.
+     */
+    @Override
+    public void configure(
+            @SuppressWarnings("hiding") final Configuration config) {
+        super.configure(config);
+        this.prefixTermination =
+            config.getBoolean(PREFIX_TERMINATION_CONFIG_NAME, true);
+        this.useKeyFilter = config.getBoolean(KEY_FILTER_CONFIG_NAME, true);
+        setKeyFilterFpp(config.getFloat(KEY_FILTER_FPP_CONFIG_NAME,
+                Float.parseFloat(DEFAULT_KEY_FILTER_FPP)));
+        setKeyFilterMaxSize(config.getInt(KEY_FILTER_MAX_SIZE_CONFIG_NAME,
+                Integer.parseInt(DEFAULT_KEY_FILTER_MAX_SIZE)));
+    }
+
+    /**
+     * Sets whether the recognizer stops extending the token sequence if no
+     * key starts with the sequence.
+     * @param prefixTermination {@code true} to stop early
+     */
+    public void setPrefixTermination(
+            @SuppressWarnings("hiding") final boolean prefixTermination) {
+        this.prefixTermination = prefixTermination;
+        this.resolvedFor = null;
+    }
+
+    /**
+     * Returns whether the recognizer stops extending the token sequence if
+     * no key starts with the sequence.
+     * @return {@code true} if the recognizer stops early
+     */
+    public boolean isPrefixTermination() {
+        return this.prefixTermination;
+    }
+
+    /**
+     * Sets whether the recognizer probes a Bloom filter over the keys of
+     * an immutable entity map.
+     * @param useKeyFilter {@code true} to use the filter
+     */
+    public void setKeyFilter(final boolean useKeyFilter) {
+        this.useKeyFilter = useKeyFilter;
+        this.resolvedFor = null;
+    }
+
+    /**
+     * Returns whether the recognizer probes a Bloom filter over the keys
+     * of an immutable entity map.
+     * @return {@code true} if the recognizer uses the filter
+     */
+    public boolean isKeyFilter() {
+        return this.useKeyFilter;
+    }
+
+    /**
+     * Sets the false positive probability of the key filter.
+     * @param fpp the probability. Greater than {@code 0} and less than
+     *            {@code 1}.
+     */
+    public void setKeyFilterFpp(final float fpp) {
+        checkArgument(fpp > 0f && fpp < 1f, "fpp not in (0, 1)");
+        this.keyFilterFpp = fpp;
+        this.resolvedFor = null;
+    }
+
+    /**
+     * Sets the maximum size of the key filter.
+     * @param megabytes the maximum size in megabytes
+     */
+    public void setKeyFilterMaxSize(final int megabytes) {
+        checkArgument(megabytes > 0, "megabytes <= 0");
+        this.keyFilterMaxSize = megabytes;
+        this.resolvedFor = null;
+    }
+
+    /**
+     * Resets also the key filter.
+     */
+    @Override
+    public void setEntityMap(
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        super.setEntityMap(entities);
+        this.resolvedFor = null;
+    }
+
+    /**
+     * Resets also the key filter.
+     */
+    @Override
+    public void setMaxToken(@SuppressWarnings("hiding") final int maxToken) {
+        super.setMaxToken(maxToken);
+        this.resolvedFor = null;
+    }
+
+    /**
+     * Resets also the key filter.
+     */
+    @Override
+    public void setTextBuilder(final TextBuilder builder) {
+        super.setTextBuilder(builder);
+        this.resolvedFor = null;
+    }
+
     /**
      * Returned <code>Token</code> may be of type
      * {@link EntityRecognizer#ENTITY_TYPE} or any different type.
@@ -75,25 +261,32 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
         if (! this.retvalBuffer.isEmpty()) {
             return this.retvalBuffer.poll();
         }
-        final int max = getMaxToken();
-        assert max >= 1;
-        if (this.longestMatchQueue == null) {
-            this.longestMatchQueue = new FixedSizeQueue<Token>(max);
-        }
-
         final Tokenizer source = getSource();
         assert source != null;
-        final Map<CharSequence, Set<CharSequence>> entityMap = getEntityMap();
-        checkState(entityMap != null, "entitymap is null");
-        {
+        final Map<CharSequence, Set<CharSequence>> current = getEntityMap();
+        checkState(current != null, "entitymap is null");
+        final Map<CharSequence, Set<CharSequence>> entityMap =
+            currentVersion(current);
+        if (entityMap != this.resolvedFor) {
+            resolve(entityMap);
+        }
+        final int max = this.resolvedMaxToken;
+        assert max >= 1;
+        final PrefixSearchable<CharSequence> prefixes =
+            prefixSearchable(entityMap);
+        int window;
+        if (prefixes == null) {
             Token t = null;
-            while (this.longestMatchQueue.size() != max
+            while (this.longestMatchQueue.size() < max
                     && (t = source.next()) != null) {
                 if (this.longestMatchQueue.offerFix(t) != null) {
                     throw new TokenizerException("internal error in size"
                                                  + " handling");
                 }
             }
+            window = Math.min(this.longestMatchQueue.size(), max);
+        } else {
+            window = fillWhilePrefix(source, prefixes, max);
         }
         if (this.longestMatchQueue.size() != 0) {
             if (LOG.isDebugEnabled()) {
@@ -101,17 +294,16 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
                           + this.longestMatchQueue.toString());
             }
             final Match match =
-                checkForLongestMatchInTrie(this.longestMatchQueue, entityMap);
+                checkForLongestMatchInTrie(this.longestMatchQueue,
+                                           window,
+                                           entityMap);
 
             if (match != null) {
                 final Token token =
-                    new SimpleLongestMatch(match.key, ENTITY_TYPE);
+                    new SimpleLongestMatch(match.key, ENTITY_TYPE,
+                                           match.start, match.end);
                 final Map<String, List<String>> meta = token.getMeta();
-                final List<String> ids = new ArrayList<String>();
-                for (final CharSequence cs : match.value) {
-                    ids.add("" + cs);
-                }
-                meta.put(ENTITY_ID_KEY, ids);
+                putEntityMeta(meta, match.key, match.value, entityMap);
 
                 return token;
             }
@@ -122,12 +314,155 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
         return null;
     }
 
+    /**
+     * Resolves the key filter and the maximum token count for a new
+     * version of the entity map. A new version of a
+     * {@link ReloadableDictionary} may contain longer keys, so the queue
+     * grows or shrinks with the maximum token count. Pending tokens are
+     * kept.
+     */
+    private void resolve(
+            final Map<CharSequence, Set<CharSequence>> entityMap) {
+        this.keyFilter = keyFilter(entityMap);
+        final int max = getMaxToken();
+        if (this.longestMatchQueue == null) {
+            this.longestMatchQueue = new FixedSizeQueue<Token>(max);
+        } else if (max != this.resolvedMaxToken) {
+            final FixedSizeQueue<Token> queue =
+                new FixedSizeQueue<Token>(
+                        Math.max(max, this.longestMatchQueue.size()));
+            queue.addAll(this.longestMatchQueue);
+            this.longestMatchQueue = queue;
+        }
+        this.resolvedMaxToken = max;
+        this.resolvedFor = entityMap;
+    }
+
+    /**
+     * Fills the queue while a key of the entity map starts with the
+     * tokens of the queue.
+     * @return the count of tokens to check for a match
+     */
+    final int fillWhilePrefix(final Tokenizer source,
+                              final PrefixSearchable<CharSequence> prefixes,
+                              final int max) throws TokenizerException {
+        final StringBuilder sb = this.prefix;
+        sb.setLength(0);
+        long state = KeyFilter.INITIAL;
+        int window = 0;
+        for (final Token token : this.longestMatchQueue) {
+            if (window == max) {
+                break;
+            }
+            if (window > 0 && ! containsPrefix(prefixes, sb, state)) {
+                return window;
+            }
+            final CharSequence text = token.getTokenText();
+            sb.append(text);
+            sb.append(' ');
+            state = KeyFilter.update(KeyFilter.update(state, text), ' ');
+            window++;
+        }
+        while (window < max) {
+            if (window > 0 && ! containsPrefix(prefixes, sb, state)) {
+                break;
+            }
+            final Token t = source.next();
+            if (t == null) {
+                break;
+            }
+            if (this.longestMatchQueue.offerFix(t) != null) {
+                throw new TokenizerException("internal error in size"
+                                             + " handling");
+            }
+            final CharSequence text = t.getTokenText();
+            sb.append(text);
+            sb.append(' ');
+            state = KeyFilter.update(KeyFilter.update(state, text), ' ');
+            window++;
+        }
+        return window;
+    }
+
+    /** Probes the key filter before the entity map. */
+    private boolean containsPrefix(final PrefixSearchable<CharSequence> prefixes,
+                                   final CharSequence prefix,
+                                   final long state) {
+        final KeyFilter filter = this.keyFilter;
+        if (filter != null && ! filter.mightContainPrefix(state)) {
+            return false;
+        }
+        return prefixes.containsPrefix(prefix);
+    }
+
+    /**
+     * Returns the key filter for the entity map if the filter is enabled
+     * and the text builder joins the tokens with a space.
+     */
+    final KeyFilter keyFilter(
+            final Map<CharSequence, Set<CharSequence>> entityMap) {
+        if (! this.useKeyFilter) {
+            return null;
+        }
+        final TextBuilder builder = getTextBuilder();
+        if (builder != null && ! (builder instanceof TextBuilder.SpaceBuilder)) {
+            return null;
+        }
+        return KeyFilter.forMap(entityMap, this.keyFilterFpp,
+                                (long) this.keyFilterMaxSize << 20);
+    }
+
+    /**
+     * Returns the entity map as {@code PrefixSearchable} if the prefix
+     * termination is possible.
+     */
+    @SuppressWarnings("unchecked")
+    final PrefixSearchable<CharSequence> prefixSearchable(
+            final Map<CharSequence, Set<CharSequence>> entityMap) {
+        if (! this.prefixTermination
+                || ! (entityMap instanceof PrefixSearchable)) {
+            return null;
+        }
+        final TextBuilder builder = getTextBuilder();
+        if (builder != null && ! (builder instanceof TextBuilder.SpaceBuilder)) {
+            return null;
+        }
+        return (PrefixSearchable<CharSequence>) entityMap;
+    }
+
     final Match checkForLongestMatchInTrie(
             final LinkedList<Token> tokens,
             final Map<CharSequence, Set<CharSequence>> trie) {
-        final int size = tokens.size();
-        final Token[] ts = tokens.toArray(new Token[size]);
+        return checkForLongestMatchInTrie(tokens, tokens.size(), trie);
+    }
+
+    final Match checkForLongestMatchInTrie(
+            final LinkedList<Token> tokens,
+            final int window,
+            final Map<CharSequence, Set<CharSequence>> trie) {
+        final int size = window;
+        final Token[] ts = new Token[size];
+        for (int i = 0; i < size; i++) {
+            ts[i] = tokens.get(i);
+        }
+        final KeyFilter filter = this.keyFilter;
+        if (filter != null) {
+            if (this.states.length <= size) {
+                this.states = new long[size + 1];
+            }
+            long state = KeyFilter.INITIAL;
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    state = KeyFilter.update(state, ' ');
+                }
+                state = KeyFilter.update(state, ts[i].getTokenText());
+                this.states[i + 1] = state;
+            }
+        }
         for (int i = size; i != 0; i--) {
+            if (filter != null && ! filter.mightContainKey(this.states[i])) {
+                continue;
+            }
             Token[] t;
             if (size != i) {
                 t = new Token[i];
@@ -147,7 +482,9 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
                 for (int j = 0; j < i; j++) {
                     tokens.poll();
                 }
-                final Match match = new Match(seq, value);
+                final Match match = new Match(seq, value,
+                                              spanStart(ts[0], ts[i - 1]),
+                                              spanEnd(ts[0], ts[i - 1]));
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("match: " + match);
                 }
@@ -174,10 +511,21 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
 
         final CharSequence key;
         final Set<CharSequence> value;
+        final int start;
+        final int end;
 
         public Match(final CharSequence match, final Set<CharSequence> value) {
+            this(match, value, -1, -1);
+        }
+
+        public Match(final CharSequence match,
+                     final Set<CharSequence> value,
+                     final int start,
+                     final int end) {
             this.key = match;
             this.value = value;
+            this.start = start;
+            this.end = end;
         }
 
         /*
@@ -244,9 +592,14 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizer
     private final static class SimpleLongestMatch extends AbstractToken {
         /** Creates a new token.
          * @param value the longest match value
-         * @param type the type */
-        public SimpleLongestMatch(final CharSequence value, final String type) {
-            super(value, type);
+         * @param type the type
+         * @param start the start offset of the match
+         * @param end the end offset of the match */
+        public SimpleLongestMatch(final CharSequence value,
+                                  final String type,
+                                  final int start,
+                                  final int end) {
+            super(value, type, start, end);
         }
     }
 }
@@ -0,0 +1,237 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A goto automaton over token texts. Every key of an entity dictionary is
+ * split at the {@link #DELIMITER} into its tokens and the tokens are
+ * inserted as transitions of the automaton. A state reached after the last
+ * token of a key is <em>accepting</em> and holds the original key and the
+ * ID set of the dictionary entry.
+ * <p>The split is the inverse operation of the
+ * {@link net.sf.eos.analyzer.TextBuilder#SPACE_BUILDER} so a walk thru the
+ * automaton accepts exactly the token sequences which the space builder
+ * concatenates to a key of the dictionary.</p>
+ * <p>Automatons of immutable dictionaries are cached per dictionary
+ * instance, see {@link MapCache#isImmutable(Map)}. An automaton of a
+ * mutable dictionary is compiled for each call of
+ * {@link #forMap(Map)}, i.e. for each recognizer. The first compilation of
+ * a mutable dictionary is logged as a warning. Freeze the dictionary
+ * before use. The dictionary must not change while the automaton is in
+ * use.</p>
+ * <p>Only for internal use!</p>
+ * @author Sascha Kohlmann
+ */
+final class TokenAutomaton {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(TokenAutomaton.class.getName());
+
+    /** The delimiter between the tokens of a key. */
+    static final char DELIMITER = ' ';
+
+    /** Cache of the compiled automatons of immutable dictionaries. */
+    private static final MapCache<TokenAutomaton> CACHE =
+        new MapCache<TokenAutomaton>();
+
+    private static final MapCache.Factory<TokenAutomaton> COMPILER =
+        new MapCache.Factory<TokenAutomaton>() {
+            public TokenAutomaton create(
+                    final Map<CharSequence, Set<CharSequence>> entities) {
+                return compile(entities);
+            }
+        };
+
+    /** Set after the warning about a mutable dictionary. */
+    private static final AtomicBoolean MUTABLE_WARNED = new AtomicBoolean();
+
+    private final State root = new State();
+    private int stateCount = 1;
+    private int depth = 0;
+
+    private TokenAutomaton() {
+    }
+
+    /**
+     * Returns the compiled automaton for the given dictionary. The
+     * automaton of an immutable dictionary is compiled at the first call
+     * for the dictionary and reused for all following calls with the same
+     * instance. The automaton of a mutable dictionary is compiled for each
+     * call.
+     * @param entities the dictionary to compile
+     * @return the automaton
+     */
+    @SuppressWarnings("nls")
+    static TokenAutomaton forMap(
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        assert entities != null;
+        if (! MapCache.isImmutable(entities)) {
+            if (MUTABLE_WARNED.compareAndSet(false, true)) {
+                LOG.warn("compiles the automaton of the mutable dictionary "
+                         + entities.getClass().getName()
+                         + " for each recognizer - freeze the dictionary");
+            }
+            return compile(entities);
+        }
+        return CACHE.get(entities, null, COMPILER);
+    }
+
+    /**
+     * Compiles a new automaton for the given dictionary.
+     * @param entities the dictionary to compile
+     * @return a new automaton
+     */
+    static TokenAutomaton compile(
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        final long start = System.currentTimeMillis();
+        final TokenAutomaton automaton = new TokenAutomaton();
+        for (final Entry<CharSequence, Set<CharSequence>> entry
+                : entities.entrySet()) {
+            automaton.add(entry.getKey(), entry.getValue());
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("compiled " + entities.size() + " keys to "
+                      + automaton.stateCount + " states in "
+                      + (System.currentTimeMillis() - start) + "ms");
+        }
+        return automaton;
+    }
+
+    /**
+     * Returns the start state.
+     * @return the start state
+     */
+    State root() {
+        return this.root;
+    }
+
+    /**
+     * Returns the maximum count of tokens of a key.
+     * @return the maximum count of tokens
+     */
+    int depth() {
+        return this.depth;
+    }
+
+    /**
+     * Returns the count of states.
+     * @return the count of states
+     */
+    int stateCount() {
+        return this.stateCount;
+    }
+
+    final void add(final CharSequence key, final Set<CharSequence> value) {
+        State state = this.root;
+        int tokens = 0;
+        final int length = key.length();
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || key.charAt(i) == DELIMITER) {
+                final String label = key.subSequence(start, i).toString();
+                State next = state.next(label);
+                if (next == null) {
+                    next = new State();
+                    state.put(label, next);
+                    this.stateCount++;
+                }
+                state = next;
+                tokens++;
+                start = i + 1;
+            }
+        }
+        state.key = key;
+        state.value = value;
+        if (tokens > this.depth) {
+            this.depth = tokens;
+        }
+    }
+
+    /**
+     * A state of the automaton. States with a single transition, which are
+     * the majority in natural language dictionaries, hold the transition
+     * inline.
+     */
+    static final class State {
+
+        private String label;
+        private State target;
+        private Map<String, State> transitions;
+
+        /** The dictionary key if the state is accepting. */
+        CharSequence key;
+        /** The dictionary value if the state is accepting. */
+        Set<CharSequence> value;
+
+        /**
+         * Returns the state after the transition for the given token text.
+         * @param text the token text
+         * @return the following state or {@code null} if there is no
+         *         transition for the text
+         */
+        State next(final CharSequence text) {
+            if (this.transitions != null) {
+                return this.transitions.get(text.toString());
+            }
+            if (this.label != null && this.label.contentEquals(text)) {
+                return this.target;
+            }
+            return null;
+        }
+
+        /**
+         * Returns {@code true} if the state represents a dictionary key.
+         * @return {@code true} if accepting
+         */
+        boolean isAccepting() {
+            return this.key != null;
+        }
+
+        /**
+         * Returns {@code true} if there are no transitions from this state.
+         * @return {@code true} if the state is a leaf
+         */
+        boolean isLeaf() {
+            return this.label == null && this.transitions == null;
+        }
+
+        void put(@SuppressWarnings("hiding") final String label,
+                 final State state) {
+            if (this.transitions != null) {
+                this.transitions.put(label, state);
+            } else if (this.label == null) {
+                this.label = label;
+                this.target = state;
+            } else {
+                this.transitions = new HashMap<String, State>(4);
+                this.transitions.put(this.label, this.target);
+                this.transitions.put(label, state);
+                this.label = null;
+                this.target = null;
+            }
+        }
+    }
+}
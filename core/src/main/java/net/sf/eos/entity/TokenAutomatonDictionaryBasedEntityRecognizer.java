@@ -0,0 +1,184 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.eos.analyzer.AbstractToken;
+import net.sf.eos.analyzer.TextBuilder;
+import net.sf.eos.analyzer.Token;
+import net.sf.eos.analyzer.Tokenizer;
+import net.sf.eos.analyzer.TokenizerException;
+import net.sf.eos.trie.ReloadableDictionary;
+
+import static net.sf.eos.util.Conditions.checkState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A longest match recognizer for named entities based on a goto automaton
+ * over the token texts of the dictionary keys. The automaton of an
+ * immutable {@link #getEntityMap() entity map} is compiled once and shared
+ * by all instances using the same map. For a mutable map each instance
+ * compiles its own automaton, the map must not change while the instance
+ * is in use. For a {@link ReloadableDictionary} the automaton of the
+ * current version is used.
+ * <p>In difference to the
+ * {@link SimpleLongestMatchDictionaryBasedEntityRecognizer} no text is
+ * concatenated and no dictionary lookup is done for every candidate
+ * token combination. Each token is examined by a single transition. The
+ * walk from a start token stops as soon as the automaton has no
+ * transition for the next token, so in the common case of a token not
+ * starting any key only one hash lookup is done for the token.</p>
+ * <p>The recognizer returns the same tokens as the
+ * {@code SimpleLongestMatchDictionaryBasedEntityRecognizer}. The
+ * automaton splits the keys of the dictionary at the space character.
+ * Therefore the {@link #getTextBuilder() text builder} must be
+ * {@code null} or the {@link TextBuilder#SPACE_BUILDER}.</p>
+ * <p>To use the recognizer set the
+ * {@link #ABSTRACT_DICTIONARY_BASED_ENTITY_RECOGNIZER_IMPL_CONFIG_NAME}
+ * to the name of this class.</p>
+ * @author Sascha Kohlmann
+ */
+public class TokenAutomatonDictionaryBasedEntityRecognizer
+        extends AbstractDictionaryBasedEntityRecognizer {
+
+    static final Log LOG =
+        LogFactory.getLog(TokenAutomatonDictionaryBasedEntityRecognizer.class.getName());
+
+    private final List<Token> lookahead = new ArrayList<Token>();
+    private Map<CharSequence, Set<CharSequence>> compiledFor = null;
+    private TokenAutomaton automaton = null;
+    private boolean exhausted = false;
+
+    /**
+     * Creates a new instance.
+     * @param source the source tokenizer
+     */
+    public TokenAutomatonDictionaryBasedEntityRecognizer(
+                @SuppressWarnings("hiding") final Tokenizer source) {
+        super(source);
+    }
+
+    /**
+     * Returned <code>Token</code> may be of type
+     * {@link EntityRecognizer#ENTITY_TYPE} or any different type.
+     * @throws IllegalStateException if {@link #getEntityMap()} returns
+     *                               <code>null</code> or the
+     *                               {@link #getTextBuilder() text builder}
+     *                               is not a space builder
+     * @see net.sf.eos.analyzer.Tokenizer#next()
+     */
+    @Override
+    public Token next() throws TokenizerException {
+        final TokenAutomaton.State root = automaton().root();
+        final int max = getMaxToken();
+        assert max >= 1;
+
+        if (! fill(1)) {
+            return null;
+        }
+
+        TokenAutomaton.State state = root;
+        TokenAutomaton.State accepted = null;
+        int acceptedLength = 0;
+        for (int i = 0; i < max && ! state.isLeaf() && fill(i + 1); i++) {
+            state = state.next(this.lookahead.get(i).getTokenText());
+            if (state == null) {
+                break;
+            }
+            if (state.isAccepting()) {
+                accepted = state;
+                acceptedLength = i + 1;
+            }
+        }
+
+        if (accepted != null) {
+            final Token first = this.lookahead.get(0);
+            final Token last = this.lookahead.get(acceptedLength - 1);
+            for (int i = 0; i < acceptedLength; i++) {
+                this.lookahead.remove(0);
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("match: " + accepted.key);
+            }
+            final Token token =
+                new AutomatonLongestMatch(accepted.key, ENTITY_TYPE,
+                                          spanStart(first, last),
+                                          spanEnd(first, last));
+            final Map<String, List<String>> meta = token.getMeta();
+            putEntityMeta(meta, accepted.key, accepted.value, getEntityMap());
+
+            return token;
+        }
+
+        return this.lookahead.remove(0);
+    }
+
+    /**
+     * Fills the lookahead buffer up to the given size.
+     * @param size the requested size
+     * @return {@code true} if the buffer contains at least <em>size</em>
+     *         tokens
+     * @throws TokenizerException if the source throws an exception
+     */
+    final boolean fill(final int size) throws TokenizerException {
+        while (this.lookahead.size() < size && ! this.exhausted) {
+            final Token t = getSource().next();
+            if (t == null) {
+                this.exhausted = true;
+            } else {
+                this.lookahead.add(t);
+            }
+        }
+        return this.lookahead.size() >= size;
+    }
+
+    final TokenAutomaton automaton() {
+        final Map<CharSequence, Set<CharSequence>> entityMap = getEntityMap();
+        checkState(entityMap != null, "entitymap is null");
+        final TextBuilder builder = getTextBuilder();
+        checkState(builder == null
+                       || builder instanceof TextBuilder.SpaceBuilder,
+                   "only the space builder is supported");
+        final Map<CharSequence, Set<CharSequence>> version =
+            currentVersion(entityMap);
+        if (this.automaton == null || this.compiledFor != version) {
+            this.automaton = TokenAutomaton.forMap(version);
+            this.compiledFor = version;
+        }
+        return this.automaton;
+    }
+
+    /** Token represents a longest match. */
+    private final static class AutomatonLongestMatch extends AbstractToken {
+        /** Creates a new token.
+         * @param value the longest match value
+         * @param type the type
+         * @param start the start offset of the match
+         * @param end the end offset of the match */
+        public AutomatonLongestMatch(final CharSequence value,
+                                     final String type,
+                                     final int start,
+                                     final int end) {
+            super(value, type, start, end);
+        }
+    }
+}
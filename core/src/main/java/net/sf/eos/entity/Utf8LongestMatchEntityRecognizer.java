@@ -0,0 +1,284 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+import static net.sf.eos.util.Conditions.checkState;
+
+import net.sf.eos.config.Configuration;
+import net.sf.eos.config.Configured;
+import net.sf.eos.trie.PatriciaTrie;
+import net.sf.eos.trie.TrieUtils;
+
+import java.util.Set;
+
+/**
+ * Longest match recognizer working directly on UTF-8 encoded text, e.g.
+ * the bytes of a Hadoop {@code Text} from {@code Text.getBytes()} and
+ * {@code Text.getLength()}. The recognizer looks up byte ranges of the
+ * text in a trie with UTF-8 encoded keys without decoding the text to
+ * {@code Strings}.
+ * <p>The text is tokenized at ASCII whitespace. The tokens of a sequence
+ * are joined with a single space, like the
+ * {@link SimpleLongestMatchDictionaryBasedEntityRecognizer} does with the
+ * default {@link net.sf.eos.analyzer.TextBuilder.SpaceBuilder}. The
+ * recognizer stops extending a token sequence as soon as no key of the
+ * trie starts with the sequence.</p>
+ * <p><strong>Limitation:</strong> the recognizer doesn't run a
+ * {@link net.sf.eos.analyzer.Tokenizer} chain. It neither lower cases the
+ * text, nor removes stop words, nor strips surrounding brackets like the
+ * {@link net.sf.eos.medline.MedlineTokenizerSupplier} does. So it finds
+ * only keys in the form of the raw whitespace separated tokens of the
+ * text, e.g. of a dictionary loaded without a tokenizer. The key
+ * {@code brca1} of a dictionary lower cased at load time never matches
+ * {@code BRCA1} in the text. The recognizer is not used by the mappers or
+ * key generators of the toolkit. Callers must normalize the keys of the
+ * trie and the text themselves.</p>
+ * <p>Instances are not thread safe. Use one instance per thread. The
+ * trie may be shared if it is
+ * {@linkplain PatriciaTrie#freeze() frozen}.</p>
+ * @author Sascha Kohlmann
+ * @see TrieUtils#toUtf8Trie(java.util.Map)
+ */
+public class Utf8LongestMatchEntityRecognizer extends Configured {
+
+    /** Receives the matches of the recognizer. */
+    public interface MatchHandler {
+        /**
+         * Called for each match.
+         * @param text the UTF-8 encoded text
+         * @param offset the offset of the first byte of the match in the
+         *               text
+         * @param length the count of bytes of the match in the text. The
+         *               range may contain more than one whitespace
+         *               between two tokens.
+         * @param ids the entity IDs of the match
+         */
+        void onMatch(byte[] text, int offset, int length,
+                     Set<CharSequence> ids);
+    }
+
+    private PatriciaTrie<byte[], Set<CharSequence>> entityMap = null;
+    private int maxToken = 0;
+    private boolean maxTokenSet = false;
+
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private byte[] key = new byte[256];
+
+    /**
+     * Creates a new instance without an entity map.
+     * @see #setEntityMap(PatriciaTrie)
+     */
+    public Utf8LongestMatchEntityRecognizer() {
+        super();
+    }
+
+    /**
+     * Creates a new instance.
+     * @param entityMap the trie with UTF-8 encoded keys
+     */
+    public Utf8LongestMatchEntityRecognizer(
+            @SuppressWarnings("hiding")
+            final PatriciaTrie<byte[], Set<CharSequence>> entityMap) {
+        setEntityMap(entityMap);
+    }
+
+    /**
+     * Reads the maximum token count from
+     * {@link AbstractDictionaryBasedEntityRecognizer#MAX_TOKEN_CONFIG_NAME}
+     * if set.
+     */
+    @Override
+    public void configure(
+            @SuppressWarnings("hiding") final Configuration config) {
+        super.configure(config);
+        final String lMaxToken =
+            config.get(AbstractDictionaryBasedEntityRecognizer.MAX_TOKEN_CONFIG_NAME);
+        if (lMaxToken != null) {
+            setMaxToken(Integer.parseInt(lMaxToken));
+        }
+    }
+
+    /**
+     * Sets the trie with UTF-8 encoded keys.
+     * @param entityMap the trie
+     */
+    public void setEntityMap(
+            @SuppressWarnings("hiding")
+            final PatriciaTrie<byte[], Set<CharSequence>> entityMap) {
+        checkArgumentNotNull(entityMap, "entityMap is null");
+        this.entityMap = entityMap;
+        if (! this.maxTokenSet) {
+            this.maxToken = 0;
+        }
+    }
+
+    /**
+     * Returns the trie with UTF-8 encoded keys.
+     * @return the trie or {@code null}
+     */
+    public PatriciaTrie<byte[], Set<CharSequence>> getEntityMap() {
+        return this.entityMap;
+    }
+
+    /**
+     * Sets the maximum count of tokens of a match.
+     * @param maxToken the maximum count of tokens
+     */
+    public void setMaxToken(@SuppressWarnings("hiding") final int maxToken) {
+        checkArgument(maxToken > 0, "maxToken <= 0");
+        this.maxToken = maxToken;
+        this.maxTokenSet = true;
+    }
+
+    /**
+     * Returns the maximum count of tokens of a match. If not set, the
+     * count is derived from the keys of the entity map.
+     * @return the maximum count of tokens
+     */
+    public int getMaxToken() {
+        if (this.maxToken == 0 && this.entityMap != null) {
+            this.maxToken = Math.max(1, maxTokenCount(this.entityMap));
+        }
+        return this.maxToken;
+    }
+
+    /**
+     * Recognizes the entities in the UTF-8 encoded text.
+     * @param text the UTF-8 encoded text
+     * @param offset the offset of the first byte of the text
+     * @param length the count of bytes of the text
+     * @param handler receives the matches
+     * @return the count of matches
+     */
+    public int recognize(final byte[] text,
+                         final int offset,
+                         final int length,
+                         final MatchHandler handler) {
+        checkArgumentNotNull(text, "text is null");
+        checkArgumentNotNull(handler, "handler is null");
+        checkArgument(offset >= 0 && length >= 0
+                      && offset + length <= text.length,
+                      "illegal range");
+        final PatriciaTrie<byte[], Set<CharSequence>> trie = this.entityMap;
+        checkState(trie != null, "entitymap is null");
+
+        final int tokenCount = tokenize(text, offset, offset + length);
+        final int max = getMaxToken();
+        int matches = 0;
+        int i = 0;
+        while (i < tokenCount) {
+            int keyLength = 0;
+            int matchTokens = 0;
+            Set<CharSequence> matchIds = null;
+            for (int n = 0; n < max && i + n < tokenCount; n++) {
+                if (n > 0) {
+                    this.key[keyLength++] = ' ';
+                    if (! trie.containsPrefix(this.key, 0, keyLength)) {
+                        break;
+                    }
+                }
+                final int start = this.starts[i + n];
+                final int tokenLength = this.ends[i + n] - start;
+                ensureKeyCapacity(keyLength + tokenLength + 1);
+                System.arraycopy(text, start, this.key, keyLength, tokenLength);
+                keyLength += tokenLength;
+                final Set<CharSequence> ids = trie.get(this.key, 0, keyLength);
+                if (ids != null) {
+                    matchTokens = n + 1;
+                    matchIds = ids;
+                }
+            }
+            if (matchIds != null) {
+                final int start = this.starts[i];
+                handler.onMatch(text, start,
+                                this.ends[i + matchTokens - 1] - start,
+                                matchIds);
+                matches++;
+                i += matchTokens;
+            } else {
+                i++;
+            }
+        }
+        return matches;
+    }
+
+    /** Splits the range at whitespace. @return the count of tokens */
+    final int tokenize(final byte[] text, final int from, final int to) {
+        int count = 0;
+        int i = from;
+        while (i < to) {
+            while (i < to && isWhitespace(text[i])) {
+                i++;
+            }
+            if (i == to) {
+                break;
+            }
+            final int start = i;
+            while (i < to && ! isWhitespace(text[i])) {
+                i++;
+            }
+            if (count == this.starts.length) {
+                this.starts = grow(this.starts);
+                this.ends = grow(this.ends);
+            }
+            this.starts[count] = start;
+            this.ends[count] = i;
+            count++;
+        }
+        return count;
+    }
+
+    /** The ASCII subset of {@link Character#isWhitespace(char)}. Bytes of
+     * multibyte UTF-8 sequences are never whitespace. */
+    static boolean isWhitespace(final byte b) {
+        return b == ' ' || (b >= 0x09 && b <= 0x0d) || (b >= 0x1c && b <= 0x1f);
+    }
+
+    /** @return the maximum count of space separated tokens of a key */
+    static int maxTokenCount(final PatriciaTrie<byte[], ?> trie) {
+        int max = 0;
+        for (final byte[] k : trie.keySet()) {
+            int count = 1;
+            for (final byte b : k) {
+                if (b == ' ') {
+                    count++;
+                }
+            }
+            if (count > max) {
+                max = count;
+            }
+        }
+        return max;
+    }
+
+    private void ensureKeyCapacity(final int capacity) {
+        if (capacity > this.key.length) {
+            final byte[] newKey =
+                new byte[Math.max(capacity, this.key.length * 2)];
+            System.arraycopy(this.key, 0, newKey, 0, this.key.length);
+            this.key = newKey;
+        }
+    }
+
+    private static int[] grow(final int[] array) {
+        final int[] newArray = new int[array.length * 2];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
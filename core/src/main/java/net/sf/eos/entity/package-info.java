@@ -22,7 +22,10 @@
  *  {@link net.sf.eos.entity.AbstractDictionaryBasedEntityRecognizer}. The default
  *  implementation is
  *  {@link net.sf.eos.entity.SimpleLongestMatchDictionaryBasedEntityRecognizer}
- *  which supports a longest match named entity recognition.</p>
+ *  which supports a longest match named entity recognition. The
+ *  {@link net.sf.eos.entity.TokenAutomatonDictionaryBasedEntityRecognizer}
+ *  returns the same entities but compiles the dictionary to an automaton
+ *  over the tokens of the keys.</p>
  *
  * @since 0.1.0
  * @author Sascha Kohlmann
@@ -15,6 +15,7 @@
  */
 package net.sf.eos.hadoop.mapred.cooccurrence;
 
+import static net.sf.eos.config.ConfigurationKey.Type.BOOLEAN;
 import static net.sf.eos.entity.DictionaryBasedEntityRecognizer.ENTITY_ID_KEY;
 import static net.sf.eos.entity.EntityRecognizer.ENTITY_TYPE;
 import net.sf.eos.EosException;
@@ -24,10 +25,12 @@ import net.sf.eos.analyzer.Token;
 import net.sf.eos.analyzer.TokenizerSupplier;
 import net.sf.eos.analyzer.TokenizerException;
 import net.sf.eos.config.Configuration;
+import net.sf.eos.config.ConfigurationKey;
 import net.sf.eos.config.Configured;
 import net.sf.eos.document.EosDocument;
 import net.sf.eos.entity.AbstractDictionaryBasedEntityRecognizer;
 import net.sf.eos.entity.DictionaryBasedEntityRecognizer;
+import net.sf.eos.entity.EntityIdList;
 import net.sf.eos.hadoop.mapred.AbstractKeyGenerator;
 import net.sf.eos.hadoop.mapred.KeyGenerator;
 import net.sf.eos.trie.Trie;
@@ -37,7 +40,9 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.io.Text;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,7 +55,19 @@ public class DictionaryBasedEntityIdKeyGenerator extends Configured
     private static final Log LOG =
         LogFactory.getLog(DictionaryBasedEntityIdKeyGenerator.class.getName());
 
-    private Trie<CharSequence, Set<CharSequence>> trie;
+    /** Key for slicing the text of the new documents from the original
+     * text. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=BOOLEAN,
+                      defaultValue="false",
+                      description="Slices the text of the new documents from "
+                                  + "the original text at the offsets of the "
+                                  + "entities instead of rebuilding it from "
+                                  + "the tokens.")
+    public final static String SLICE_TEXT_CONFIG_NAME =
+        "net.sf.eos.hadoop.mapred.cooccurrence.DictionaryBasedEntityIdKeyGenerator.sliceText";
+
+    private Map<CharSequence, Set<CharSequence>> entities;
 
     public Map<Text, EosDocument> createKeysForDocument(final EosDocument doc)
             throws EosException {
@@ -65,12 +82,34 @@ public class DictionaryBasedEntityIdKeyGenerator extends Configured
             new HashMap<String, List<Token>>();
 
         // Map for entity ID to all tokens with addition meta information.
+        // IDs backed by handles are deduplicated by handle. Handles are
+        // only unique per owner, e.g. per dictionary of a MultiDictionary.
+        final Map<Object, BitSet> seenByOwner =
+            new IdentityHashMap<Object, BitSet>();
         for (final Token token : tokens) {
             assert token != null;
             final String type = token.getType();
             if (ENTITY_TYPE.equals(type)) {
                 final Map<String, List<String>> meta = token.getMeta();
                 final List<String> ids = meta.get(ENTITY_ID_KEY);
+                if (ids instanceof EntityIdList) {
+                    final EntityIdList handles = (EntityIdList) ids;
+                    final Object owner = handles.handleOwner();
+                    BitSet seen = seenByOwner.get(owner);
+                    if (seen == null) {
+                        seen = new BitSet();
+                        seenByOwner.put(owner, seen);
+                    }
+                    final int size = handles.size();
+                    for (int i = 0; i < size; i++) {
+                        final int handle = handles.handle(i);
+                        if (! seen.get(handle)) {
+                            seen.set(handle);
+                            mapToTokenList.put(handles.get(i), tokens);
+                        }
+                    }
+                    continue;
+                }
                 for (final String id :ids) {
                     if (! mapToTokenList.containsKey(id)) {
                         mapToTokenList.put(id, tokens);
@@ -91,6 +130,8 @@ public class DictionaryBasedEntityIdKeyGenerator extends Configured
 
         final KeyGenerator<Text> generator =
             (KeyGenerator<Text>) AbstractKeyGenerator.newInstance(lconf);
+        final boolean slice = lconf.getBoolean(SLICE_TEXT_CONFIG_NAME, false)
+                              && hasEntitySpans(tokens, text.length());
 
         // Create new document for each entity ID. Remove entity ID from
         // document and replace character sequence of the entity common- or
@@ -100,41 +141,29 @@ public class DictionaryBasedEntityIdKeyGenerator extends Configured
             final Text keyAsText = new Text(key);
             if (! mapToDocument.containsKey(keyAsText)) {
                 final TextBuilder builder = TextBuilder.newInstance(lconf);
-
-                final List<CharSequence> l = new ArrayList<CharSequence>();
                 final List<Token> value = entry.getValue();
 
-                for (final Token token : value) {
-                    final String type = token.getType();
-
-                    if (ENTITY_TYPE.equals(type)) {
-
-                        final Map<String, List<String>> meta = token.getMeta();
-                        final List<String> ids = meta.get(ENTITY_ID_KEY);
-
-                        final List<CharSequence> idList = new ArrayList<CharSequence>();
-                        for (final String id :ids) {
-                            if (! key.equals(id)) {
-                                idList.add(id);
-                            }
+                final CharSequence newText;
+                if (slice) {
+                    newText = sliceText(text, value, key, builder);
+                } else {
+                    final List<CharSequence> l = new ArrayList<CharSequence>();
+                    for (final Token token : value) {
+                        final String type = token.getType();
+
+                        if (ENTITY_TYPE.equals(type)) {
+                            l.add(otherIdsText(token, key, builder));
+                        } else {
+                            final CharSequence in = token.getTokenText();
+                            l.add(in);
                         }
-                        final int size = idList.size();
-                        CharSequence[] css = new CharSequence[size];
-                        css = idList.toArray(css);
-
-                        final CharSequence in = builder.buildText(css);
-
-                        l.add(in);
-                    } else {
-                        final CharSequence in = token.getTokenText();
-                        l.add(in);
                     }
-                }
 
-                final int size = l.size();
-                CharSequence[] css = new CharSequence[size];
-                css = l.toArray(css);
-                final CharSequence newText = builder.buildText(css);
+                    final int size = l.size();
+                    CharSequence[] css = new CharSequence[size];
+                    css = l.toArray(css);
+                    newText = builder.buildText(css);
+                }
 
                 final EosDocument newDoc = new EosDocument();
                 newDoc.setText(newText);
@@ -163,6 +192,71 @@ public class DictionaryBasedEntityIdKeyGenerator extends Configured
         return mapToDocument;
     }
 
+    /**
+     * Replaces the spans of the entity tokens in the original text with the
+     * other IDs of the entities. The text between the entities is sliced
+     * from the original text.
+     * @param text the original text
+     * @param tokens the tokens of the text
+     * @param key the entity ID of the new document
+     * @param builder the builder for the IDs
+     * @return the new text
+     */
+    final CharSequence sliceText(final CharSequence text,
+                                 final List<Token> tokens,
+                                 final String key,
+                                 final TextBuilder builder) {
+        final StringBuilder sb = new StringBuilder(text.length());
+        int last = 0;
+        for (final Token token : tokens) {
+            if (ENTITY_TYPE.equals(token.getType())) {
+                sb.append(text, last, token.getStartOffset());
+                sb.append(otherIdsText(token, key, builder));
+                last = token.getEndOffset();
+            }
+        }
+        sb.append(text, last, text.length());
+        return sb.toString();
+    }
+
+    /**
+     * Returns {@code true} if all entity tokens have ascending offsets
+     * inside the text.
+     */
+    static boolean hasEntitySpans(final List<Token> tokens, final int length) {
+        int last = 0;
+        for (final Token token : tokens) {
+            if (ENTITY_TYPE.equals(token.getType())) {
+                final int start = token.getStartOffset();
+                if (start < last || token.getEndOffset() > length) {
+                    return false;
+                }
+                last = token.getEndOffset();
+            }
+        }
+        return true;
+    }
+
+    /** @return the text of the IDs of the entity token except the key */
+    private static CharSequence otherIdsText(final Token token,
+                                             final String key,
+                                             final TextBuilder builder) {
+        final Map<String, List<String>> meta = token.getMeta();
+        final List<String> ids = meta.get(ENTITY_ID_KEY);
+
+        final List<CharSequence> idList = new ArrayList<CharSequence>();
+        for (final String id :ids) {
+            if (! key.equals(id)) {
+                idList.add(id);
+            }
+        }
+        final int size = idList.size();
+        CharSequence[] css = new CharSequence[size];
+        css = idList.toArray(css);
+
+        return builder.buildText(css);
+    }
+
     final List<Token> identifiyToken(final DictionaryBasedEntityRecognizer dber)
             throws TokenizerException {
 
@@ -197,8 +291,9 @@ public class DictionaryBasedEntityIdKeyGenerator extends Configured
             final DictionaryBasedEntityRecognizer regconizer =
                 AbstractDictionaryBasedEntityRecognizer.newInstance(tokenizer,
                                                                     lconf);
-            final Trie<CharSequence, Set<CharSequence>> ltrie = getTrie();
-            regconizer.setEntityMap(ltrie);
+            final Map<CharSequence, Set<CharSequence>> lentities =
+                getEntityMap();
+            regconizer.setEntityMap(lentities);
             final TextBuilder textBuilder = TextBuilder.newInstance(lconf);
             regconizer.setTextBuilder(textBuilder);
 
@@ -230,11 +325,44 @@ public class DictionaryBasedEntityIdKeyGenerator extends Configured
         }
     }
 
+    /**
+     * Returns the dictionary if it is a {@code Trie}.
+     * @return the dictionary or {@code null} if the dictionary isn't a
+     *         {@code Trie}
+     * @see #getEntityMap()
+     */
     public Trie<CharSequence, Set<CharSequence>> getTrie() {
-        return this.trie;
+        if (this.entities instanceof Trie) {
+            return (Trie<CharSequence, Set<CharSequence>>) this.entities;
+        }
+        return null;
     }
 
+    /**
+     * Sets the dictionary.
+     * @param trie the dictionary
+     * @see #setEntityMap(Map)
+     */
     public void setTrie(final Trie<CharSequence, Set<CharSequence>> trie) {
-        this.trie = trie;
+        setEntityMap(trie);
+    }
+
+    /**
+     * Returns the dictionary for the recognizer.
+     * @return the dictionary
+     */
+    public Map<CharSequence, Set<CharSequence>> getEntityMap() {
+        return this.entities;
+    }
+
+    /**
+     * Sets the dictionary for the recognizer.
+     * @param entities the dictionary
+     * @see DictionaryBasedEntityRecognizer#setEntityMap(Map)
+     */
+    public void setEntityMap(
+            @SuppressWarnings("hiding")
+            final Map<CharSequence, Set<CharSequence>> entities) {
+        this.entities = entities;
     }
 }
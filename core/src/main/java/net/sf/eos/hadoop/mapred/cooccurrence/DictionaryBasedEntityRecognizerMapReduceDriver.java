@@ -38,7 +38,10 @@ import org.apache.hadoop.util.ToolRunner;
 
 /**
  * The driver supports the base arguments. To run the driver set the path
- * to the {@linkplain #TRIE_LONG_CMD_ARG trie}.
+ * to the {@linkplain #TRIE_LONG_CMD_ARG trie}. Several dictionaries with
+ * entity types are recognized in a single pass with a comma separated
+ * list of <tt>type=path</tt> values, e.g.
+ * <tt>--trie gene=/dict/genes.xml,disease=/dict/diseases.xml</tt>.
  * @author Sascha Kohlmann
  * @see DictionaryBasedEntityRecognizerReducer
  * @see DictionaryBasedEntityRecognizerMapper
@@ -97,7 +100,11 @@ public class DictionaryBasedEntityRecognizerMapReduceDriver
             return 1;
         }
         LOG.info("Trie path: " + triePath);
-        DistributedCache.addCacheFile(new Path(triePath).toUri(), conf);
+        final String types = addCacheFiles(triePath, conf);
+        if (types != null) {
+            conf.set(DictionaryBasedEntityRecognizerMapper.ENTITY_TYPES_CONFIG_NAME,
+                     types);
+        }
 
         if (conf.get(DistributedCacheStrategy.STRATEGY_IMPL_CONFIG_NAME) == null) {
             conf.set(DistributedCacheStrategy.STRATEGY_IMPL_CONFIG_NAME,
@@ -122,6 +129,38 @@ public class DictionaryBasedEntityRecognizerMapReduceDriver
         return doJob(conf);
     }
 
+    /**
+     * Adds the dictionaries to the distributed cache.
+     * @param triePath a path or comma separated <tt>type=path</tt> values
+     * @param conf the configuration of the job
+     * @return the comma separated types or {@code null} for a single
+     *         dictionary without type
+     */
+    static String addCacheFiles(final String triePath, final JobConf conf) {
+        final String[] dictionaries = triePath.split(",");
+        if (dictionaries.length == 1 && dictionaries[0].indexOf('=') < 0) {
+            DistributedCache.addCacheFile(new Path(triePath).toUri(), conf);
+            return null;
+        }
+        final StringBuilder types = new StringBuilder();
+        for (final String dictionary : dictionaries) {
+            final int idx = dictionary.indexOf('=');
+            if (idx <= 0) {
+                throw new IllegalArgumentException(
+                        "dictionary without type: " + dictionary);
+            }
+            final String type = dictionary.substring(0, idx).trim();
+            final String path = dictionary.substring(idx + 1).trim();
+            LOG.info("dictionary of type " + type + ": " + path);
+            DistributedCache.addCacheFile(new Path(path).toUri(), conf);
+            if (types.length() != 0) {
+                types.append(',');
+            }
+            types.append(type);
+        }
+        return types.toString();
+    }
+
     @Override
     protected Options createOptions() {
         final Options options = super.createOptions();
@@ -129,7 +168,8 @@ public class DictionaryBasedEntityRecognizerMapReduceDriver
             new Option(TRIE_SHORT_CMD_ARG,
                        TRIE_LONG_CMD_ARG,
                        true,
-                       "Path to trie data");
+                       "Path to trie data or comma separated type=path "
+                       + "values");
         option.setRequired(true);
 
         return options.addOption(option);
@@ -20,6 +20,7 @@ import net.sf.eos.analyzer.ResettableTokenizer;
 import net.sf.eos.analyzer.TokenizerSupplier;
 import net.sf.eos.analyzer.TokenizerException;
 import net.sf.eos.config.Configuration;
+import net.sf.eos.config.ConfigurationKey;
 import net.sf.eos.config.HadoopConfigurationAdapter;
 import net.sf.eos.document.EosDocument;
 import net.sf.eos.hadoop.DistributedCacheStrategy;
@@ -27,10 +28,19 @@ import net.sf.eos.hadoop.FullyDistributedCacheStrategy;
 import net.sf.eos.hadoop.mapred.EosDocumentSupportMapReduceBase;
 import net.sf.eos.hadoop.mapred.Index;
 import net.sf.eos.trie.AbstractTrieLoader;
+import net.sf.eos.trie.BlockDictionary;
 import net.sf.eos.trie.CharSequenceKeyAnalyzer;
+import net.sf.eos.trie.CompactDictionary;
+import net.sf.eos.trie.DictionaryRegistry;
+import net.sf.eos.trie.DictionaryStatistics;
+import net.sf.eos.trie.EntityIdPool;
+import net.sf.eos.trie.FileTrieLoader;
+import net.sf.eos.trie.MappedDictionary;
+import net.sf.eos.trie.MultiDictionary;
 import net.sf.eos.trie.PatriciaTrie;
 import net.sf.eos.trie.Trie;
 import net.sf.eos.trie.TrieLoader;
+import net.sf.eos.trie.XmlTrieLoader;
 import net.sf.eos.trie.PatriciaTrie.KeyAnalyzer;
 
 import org.apache.commons.logging.Log;
@@ -43,8 +53,16 @@ import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
 
+import static net.sf.eos.config.ConfigurationKey.Type.BOOLEAN;
+
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
@@ -57,9 +75,63 @@ public class DictionaryBasedEntityRecognizerMapper
     private static final Log LOG =
         LogFactory.getLog(DictionaryBasedEntityRecognizerMapper.class.getName());
 
+    /** If {@code true} the loaded dictionary is transformed into a
+     * {@link CompactDictionary}. Default is {@code false}. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=BOOLEAN,
+                      defaultValue="false",
+                      description="Transforms the loaded dictionary into a "
+                                  + "compact immutable dictionary.")
+    public final static String COMPACT_DICTIONARY_CONFIG_NAME =
+        "net.sf.eos.hadoop.mapred.cooccurrence.DictionaryBasedEntityRecognizerMapper.compactDictionary";
+
+    /** If {@code true} the dictionary is shared in the JVM by the
+     * {@link DictionaryRegistry}. Default is {@code true}. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=BOOLEAN,
+                      defaultValue="true",
+                      description="Shares the dictionary between all mappers "
+                                  + "of the JVM.")
+    public final static String SHARED_DICTIONARY_CONFIG_NAME =
+        "net.sf.eos.hadoop.mapred.cooccurrence.DictionaryBasedEntityRecognizerMapper.sharedDictionary";
+
+    /** If {@code true} the mapper reports the {@link DictionaryStatistics}
+     * of the dictionary, see {@link #reportStatistics(Reporter)}. Default
+     * is {@code true}. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=BOOLEAN,
+                      defaultValue="true",
+                      description="Reports the structure and the estimated "
+                                  + "memory footprint of the dictionary as "
+                                  + "counters.")
+    public final static String DICTIONARY_STATISTICS_CONFIG_NAME =
+        "net.sf.eos.hadoop.mapred.cooccurrence.DictionaryBasedEntityRecognizerMapper.dictionaryStatistics";
+
+    /** Comma separated entity types of the dictionaries. If set, the
+     * mapper loads one dictionary for each type from the cache pathes in
+     * the same order and combines them in a {@link MultiDictionary}. The
+     * recognized tokens carry the type of each ID in the
+     * {@link net.sf.eos.entity.DictionaryBasedEntityRecognizer#ENTITY_TYPE_KEY}
+     * meta data. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(description="Comma separated entity types of the "
+                                  + "dictionaries in the order of the cache "
+                                  + "pathes, e.g. gene,disease,drug.")
+    public final static String ENTITY_TYPES_CONFIG_NAME =
+        "net.sf.eos.hadoop.mapred.cooccurrence.DictionaryBasedEntityRecognizerMapper.entityTypes";
+
+    /** The partition of the map task set by the task tracker. */
+    @SuppressWarnings("nls")
+    static final String TASK_PARTITION_CONFIG_NAME = "mapred.task.partition";
+
     private JobConf conf;
 
-    private Trie<CharSequence, Set<CharSequence>> entities = null;
+    private Map<CharSequence, Set<CharSequence>> entities = null;
+    private boolean shared = false;
+    private DictionaryStatistics statistics = null;
+    private boolean statisticsReported = false;
+    private long reportedCacheHits = 0;
+    private long reportedCacheMisses = 0;
     private DistributedCacheStrategy strategy =
         new FullyDistributedCacheStrategy();
 
@@ -70,6 +142,7 @@ public class DictionaryBasedEntityRecognizerMapper
                     final Reporter reporter) throws IOException {
 
         try {
+            reportStatistics(reporter);
             final EosDocument doc = textToEosDocument(eosDoc);
             final DictionaryBasedEntityIdKeyGenerator generator =
                 new DictionaryBasedEntityIdKeyGenerator();
@@ -77,8 +150,9 @@ public class DictionaryBasedEntityRecognizerMapper
             HadoopConfigurationAdapter.addHadoopConfigToEosConfig(conf, lConf);
             generator.configure(lConf);
 
-            final Trie<CharSequence, Set<CharSequence>> lTrie = getTrie();
-            generator.setTrie(lTrie);
+            final Map<CharSequence, Set<CharSequence>> lEntities =
+                getEntityMap();
+            generator.setEntityMap(lEntities);
 
             final Map<Text, EosDocument> idMap =
                 generator.createKeysForDocument(doc); 
@@ -90,6 +164,7 @@ public class DictionaryBasedEntityRecognizerMapper
                 outputCollector.collect(key, newTextDoc);
                 reporter.incrCounter(Index.MAP, 1);
             }
+            reportCacheStatistics(reporter);
 
         } catch (final EosException e) {
             reporter.incrCounter(Index.EOS_EXCEPTION, 1);
@@ -110,7 +185,20 @@ public class DictionaryBasedEntityRecognizerMapper
     /**
      * Configures the trie. After finishing the method {@link #getTrie()}.
      * Uses the value of {@link DistributedCacheStrategy#STRATEGY_IMPL_CONFIG_NAME}
-     * if setted to get the distributed cache strategy.
+     * if setted to get the distributed cache strategy. If
+     * {@link #COMPACT_DICTIONARY_CONFIG_NAME} is {@code true} the trie is
+     * transformed into a {@link CompactDictionary} and
+     * {@link #getEntityMap()} returns the compact dictionary. If the
+     * configured {@code TrieLoader} is a {@link FileTrieLoader} the
+     * dictionary is opened directly from the local file. If
+     * {@link #SHARED_DICTIONARY_CONFIG_NAME} is {@code true} and the
+     * dictionary is a local file, the dictionary is acquired from the
+     * {@link DictionaryRegistry} and released in {@link #close()}. If
+     * {@link #DICTIONARY_STATISTICS_CONFIG_NAME} is {@code true} the
+     * statistics of the dictionary are collected and logged.
+     * If {@link #ENTITY_TYPES_CONFIG_NAME} is set, a dictionary for each
+     * type is loaded and the dictionaries are combined in a
+     * {@link MultiDictionary}.
      */
     protected void configureTrie() {
         synchronized(DictionaryBasedEntityRecognizerMapper.class) {
@@ -137,27 +225,353 @@ public class DictionaryBasedEntityRecognizerMapper
                 LOG.info("strategy: "
                          + this.strategy.getClass().getCanonicalName());
                 LOG.info("path: " + recognizerDataFile[0]);
-                final InputStream in =
-                    recognizerDataFile[0].toUri().toURL().openStream();
-
-                final Configuration lconf =
-                    new HadoopConfigurationAdapter(this.conf);
-                final TrieLoader newInstance =
-                    AbstractTrieLoader.newInstance(lconf);
-                final TrieLoader<CharSequence, Set<CharSequence>> loader = 
-                    newInstance;
-
-                final KeyAnalyzer<CharSequence> analyzer =
-                    new CharSequenceKeyAnalyzer();
-                this.entities = 
-                    new PatriciaTrie<CharSequence, Set<CharSequence>>(analyzer);
-                loader.loadTrie(in, this.entities);
+                final Path path = recognizerDataFile[0];
+                final String[] types = entityTypes(this.conf);
+                final File[] files = localFiles(recognizerDataFile, types);
+                if (this.conf.getBoolean(SHARED_DICTIONARY_CONFIG_NAME, true)
+                        && files != null) {
+                    String qualifier =
+                        this.conf.get(AbstractTrieLoader.TRIE_LOADER_IMPL_CONFIG_NAME,
+                                      XmlTrieLoader.class.getName())
+                        + ":" + this.conf.getBoolean(
+                                    COMPACT_DICTIONARY_CONFIG_NAME, false);
+                    if (types != null) {
+                        qualifier += ":" + Arrays.asList(types);
+                    }
+                    final DictionaryRegistry registry =
+                        DictionaryRegistry.getInstance();
+                    this.entities = registry.acquire(
+                            files,
+                            qualifier,
+                            new DictionaryRegistry.Loader() {
+                                public Map<CharSequence, Set<CharSequence>>
+                                        load() throws Exception {
+                                    if (types != null) {
+                                        return loadMultiDictionary(
+                                                recognizerDataFile, types);
+                                    }
+                                    return loadEntityMap(path);
+                                }
+                            });
+                    this.shared = true;
+                } else if (types != null) {
+                    this.entities =
+                        loadMultiDictionary(recognizerDataFile, types);
+                } else {
+                    this.entities = loadEntityMap(path);
+                }
+                if (this.entities instanceof BlockDictionary) {
+                    // a shared dictionary counts the accesses of former
+                    // mappers
+                    final BlockDictionary blocks =
+                        (BlockDictionary) this.entities;
+                    this.reportedCacheHits = blocks.getCacheHits();
+                    this.reportedCacheMisses = blocks.getCacheMisses();
+                }
+                if (this.shared && this.conf.getBoolean(
+                        DICTIONARY_STATISTICS_CONFIG_NAME, true)) {
+                    shareStatistics(DictionaryRegistry.getInstance());
+                }
             } catch (final Exception e) {
                 throw new IllegalStateException(e);
             }
         }
     }
 
+    /**
+     * Loads the dictionary with the {@code TrieLoader} of the configuration.
+     * If the loader is a {@link FileTrieLoader} and the path denotes a local
+     * file, the dictionary is opened directly from the file. A loaded
+     * {@code PatriciaTrie} is {@linkplain PatriciaTrie#freeze() frozen}.
+     * @param path the path of the dictionary data
+     * @return the dictionary
+     * @throws Exception if the loader is unable to load the dictionary
+     */
+    final Map<CharSequence, Set<CharSequence>> loadEntityMap(final Path path)
+            throws Exception {
+        final long start = System.currentTimeMillis();
+        final Map<CharSequence, Set<CharSequence>> dictionary =
+            openEntityMap(path, null);
+        collectStatistics(dictionary, start);
+        return dictionary;
+    }
+
+    /**
+     * Returns the local files of the dictionary pathes.
+     * @param pathes the pathes of the dictionaries
+     * @param types the entity types or {@code null} for a single dictionary
+     * @return the files or {@code null} if a path isn't local
+     */
+    static File[] localFiles(final Path[] pathes, final String[] types) {
+        final int count =
+            types == null ? 1 : Math.min(types.length, pathes.length);
+        final File[] files = new File[count];
+        for (int i = 0; i < count; i++) {
+            final URI uri = pathes[i].toUri();
+            if (! isLocal(uri)) {
+                return null;
+            }
+            files[i] = new File(uri.getPath());
+        }
+        return files;
+    }
+
+    /**
+     * Loads a dictionary for each entity type from the path at the same
+     * index and combines the dictionaries. The loaded dictionaries are
+     * immutable, so the combined dictionary doesn't copy them. It closes
+     * them on {@link MultiDictionary#close()}. An {@link XmlTrieLoader}
+     * interns the IDs of all dictionaries into a single
+     * {@link EntityIdPool}.
+     * @param pathes the pathes of the dictionary data
+     * @param types the entity types of the dictionaries
+     * @return the combined dictionary
+     * @throws Exception if the loader is unable to load a dictionary
+     */
+    final MultiDictionary loadMultiDictionary(final Path[] pathes,
+                                              final String[] types)
+            throws Exception {
+        if (pathes.length < types.length) {
+            throw new IllegalStateException(types.length + " entity types but "
+                                            + pathes.length + " dictionaries");
+        }
+        final long start = System.currentTimeMillis();
+        final MultiDictionary.Builder builder = new MultiDictionary.Builder();
+        final EntityIdPool pool = new EntityIdPool();
+        final List<Closeable> opened = new ArrayList<Closeable>();
+        try {
+            for (int i = 0; i < types.length; i++) {
+                LOG.info("dictionary of type " + types[i] + ": " + pathes[i]);
+                final Map<CharSequence, Set<CharSequence>> dictionary =
+                    openEntityMap(pathes[i], pool);
+                if (dictionary instanceof Closeable) {
+                    opened.add((Closeable) dictionary);
+                }
+                builder.add(types[i], dictionary);
+            }
+        } catch (final Exception e) {
+            for (final Closeable dictionary : opened) {
+                dictionary.close();
+            }
+            throw e;
+        }
+        final MultiDictionary combined = builder.build();
+        collectStatistics(combined, start);
+        return combined;
+    }
+
+    private void collectStatistics(
+            final Map<CharSequence, Set<CharSequence>> dictionary,
+            final long start) {
+        if (this.conf.getBoolean(DICTIONARY_STATISTICS_CONFIG_NAME, true)) {
+            final DictionaryStatistics stats = statisticsOf(dictionary);
+            if (stats != null) {
+                this.statistics = stats.withLoadTime(
+                        System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    /**
+     * Takes the statistics of a shared dictionary from the registry. The
+     * mapper which loaded the dictionary registers its statistics without
+     * the load time, so the other mappers neither walk the dictionary again
+     * nor report the load time again.
+     */
+    private void shareStatistics(final DictionaryRegistry registry) {
+        if (this.statistics != null) {
+            // loaded by this mapper
+            registry.setStatistics(this.entities,
+                                   this.statistics.withLoadTime(-1));
+            return;
+        }
+        DictionaryStatistics stats = registry.getStatistics(this.entities);
+        if (stats == null) {
+            stats = statisticsOf(this.entities);
+            if (stats != null) {
+                registry.setStatistics(this.entities, stats);
+            }
+        }
+        this.statistics = stats;
+    }
+
+    /**
+     * Returns the entity types of {@link #ENTITY_TYPES_CONFIG_NAME}.
+     * @param conf the configuration
+     * @return the types or {@code null} if not configured
+     */
+    static String[] entityTypes(final JobConf conf) {
+        final String value = conf.get(ENTITY_TYPES_CONFIG_NAME);
+        if (value == null || value.trim().length() == 0) {
+            return null;
+        }
+        final String[] types = value.split(",");
+        for (int i = 0; i < types.length; i++) {
+            types[i] = types[i].trim();
+        }
+        return types;
+    }
+
+    /**
+     * Opens or loads the dictionary without statistics. A loaded trie is
+     * frozen, so a {@code MultiDictionary} and the recognizers use it as is.
+     * @param pool the pool of an {@code XmlTrieLoader} or {@code null} for
+     *             the pool of the loader
+     */
+    private Map<CharSequence, Set<CharSequence>> openEntityMap(
+            final Path path, final EntityIdPool pool) throws Exception {
+        final Configuration lconf = new HadoopConfigurationAdapter(this.conf);
+        final TrieLoader newInstance = AbstractTrieLoader.newInstance(lconf);
+        final TrieLoader<CharSequence, Set<CharSequence>> loader = 
+            newInstance;
+
+        final URI uri = path.toUri();
+        if (loader instanceof FileTrieLoader && isLocal(uri)) {
+            final FileTrieLoader<CharSequence, Set<CharSequence>> fileLoader =
+                (FileTrieLoader<CharSequence, Set<CharSequence>>) loader;
+            return fileLoader.openTrie(new File(uri.getPath()));
+        }
+
+        final KeyAnalyzer<CharSequence> analyzer =
+            new CharSequenceKeyAnalyzer();
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie = 
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(analyzer);
+        if (pool != null && loader instanceof XmlTrieLoader) {
+            ((XmlTrieLoader) loader).setEntityIdPool(pool);
+        }
+        final InputStream in = uri.toURL().openStream();
+        try {
+            loader.loadTrie(in, trie);
+        } finally {
+            in.close();
+        }
+
+        if (this.conf.getBoolean(COMPACT_DICTIONARY_CONFIG_NAME, false)) {
+            return CompactDictionary.copyOf(trie);
+        }
+        return trie.freeze();
+    }
+
+    /**
+     * Returns the statistics of a {@link PatriciaTrie}, a
+     * {@link CompactDictionary}, a {@link MappedDictionary} or a
+     * {@link MultiDictionary}.
+     * @param dictionary the dictionary
+     * @return the statistics or {@code null} for other dictionaries
+     */
+    static DictionaryStatistics statisticsOf(
+            final Map<CharSequence, Set<CharSequence>> dictionary) {
+        if (dictionary instanceof PatriciaTrie) {
+            return ((PatriciaTrie<CharSequence, Set<CharSequence>>) dictionary)
+                    .statistics();
+        }
+        if (dictionary instanceof CompactDictionary) {
+            return ((CompactDictionary) dictionary).statistics();
+        }
+        if (dictionary instanceof MappedDictionary) {
+            return ((MappedDictionary) dictionary).statistics();
+        }
+        if (dictionary instanceof MultiDictionary) {
+            return ((MultiDictionary) dictionary).statistics();
+        }
+        return null;
+    }
+
+    /**
+     * Reports the statistics of the dictionary once per mapper. The
+     * structure and the size of the dictionary are the same for all map
+     * tasks, but Hadoop sums up the counters of all tasks. So only the first
+     * map task reports them as {@link DictionaryCounter counters}, all tasks
+     * log them and show them in the task status. The load time is reported
+     * by each task which loaded the dictionary.
+     * @param reporter the reporter of the task
+     */
+    final void reportStatistics(final Reporter reporter) {
+        if (this.statisticsReported || this.statistics == null) {
+            return;
+        }
+        final DictionaryStatistics stats = this.statistics;
+        if (isFirstTask()) {
+            reporter.incrCounter(DictionaryCounter.ENTRIES,
+                                 stats.getEntryCount());
+            reporter.incrCounter(DictionaryCounter.NODES,
+                                 stats.getNodeCount());
+            reporter.incrCounter(DictionaryCounter.INTERNAL_NODES,
+                                 stats.getInternalNodeCount());
+            reporter.incrCounter(DictionaryCounter.EXTERNAL_NODES,
+                                 stats.getExternalNodeCount());
+            reporter.incrCounter(DictionaryCounter.MAX_DEPTH,
+                                 stats.getMaxDepth());
+            reporter.incrCounter(DictionaryCounter.VALUE_SETS,
+                                 stats.getValueSetCount());
+            reporter.incrCounter(DictionaryCounter.KEY_BYTES,
+                                 stats.getKeyBytes());
+            reporter.incrCounter(DictionaryCounter.VALUE_BYTES,
+                                 stats.getValueBytes());
+            reporter.incrCounter(DictionaryCounter.NODE_BYTES,
+                                 stats.getNodeBytes());
+            reporter.incrCounter(DictionaryCounter.ESTIMATED_BYTES,
+                                 stats.getEstimatedBytes());
+        }
+        if (stats.getLoadTime() >= 0) {
+            reporter.incrCounter(DictionaryCounter.LOAD_TIME,
+                                 stats.getLoadTime());
+        }
+        reporter.setStatus("dictionary: " + stats.getEntryCount()
+                           + " entries, max depth " + stats.getMaxDepth()
+                           + ", " + stats.getEstimatedBytes()
+                           + " estimated bytes");
+        if (LOG.isInfoEnabled()) {
+            LOG.info(stats);
+        }
+        this.statisticsReported = true;
+    }
+
+    /**
+     * Returns {@code true} if the mapper runs in the map task with the
+     * partition {@code 0}, see {@link #TASK_PARTITION_CONFIG_NAME}.
+     * @return {@code true} for the first map task
+     */
+    final boolean isFirstTask() {
+        return this.conf != null
+               && this.conf.getInt(TASK_PARTITION_CONFIG_NAME, -1) == 0;
+    }
+
+    /**
+     * Reports the block cache hits and misses of a {@link BlockDictionary}
+     * since the last report as {@link DictionaryCounter counters}. The
+     * first report counts from the acquisition of the dictionary.
+     * @param reporter the reporter of the task
+     */
+    final void reportCacheStatistics(final Reporter reporter) {
+        if (! (this.entities instanceof BlockDictionary)) {
+            return;
+        }
+        final BlockDictionary blocks = (BlockDictionary) this.entities;
+        final long hits = blocks.getCacheHits();
+        final long misses = blocks.getCacheMisses();
+        reporter.incrCounter(DictionaryCounter.BLOCK_CACHE_HITS,
+                             hits - this.reportedCacheHits);
+        reporter.incrCounter(DictionaryCounter.BLOCK_CACHE_MISSES,
+                             misses - this.reportedCacheMisses);
+        this.reportedCacheHits = hits;
+        this.reportedCacheMisses = misses;
+    }
+
+    /**
+     * Returns the statistics of the dictionary. See contract in
+     * {@link #configureTrie()}
+     * @return the statistics or {@code null} if not collected
+     */
+    protected DictionaryStatistics getDictionaryStatistics() {
+        return this.statistics;
+    }
+
+    static boolean isLocal(final URI uri) {
+        final String scheme = uri.getScheme();
+        return scheme == null || "file".equals(scheme);
+    }
+
     /**
      * Returns a {@code Tokenizer} as <em>source</em> for the
      * recognizer.
@@ -183,9 +597,23 @@ public class DictionaryBasedEntityRecognizerMapper
     /**
      * Returns a {@code Trie} instance. See contract in
      * {@link #configureTrie()}
-     * @return a {@code Trie} instance
+     * @return a {@code Trie} instance or {@code null} if the dictionary
+     *         isn't a {@code Trie}
+     * @see #getEntityMap()
      */
     protected Trie<CharSequence, Set<CharSequence>> getTrie() {
+        assert this.entities != null;
+        if (this.entities instanceof Trie) {
+            return (Trie<CharSequence, Set<CharSequence>>) this.entities;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the dictionary. See contract in {@link #configureTrie()}
+     * @return the dictionary
+     */
+    protected Map<CharSequence, Set<CharSequence>> getEntityMap() {
         assert this.entities != null;
         return this.entities;
     }
@@ -204,5 +632,11 @@ public class DictionaryBasedEntityRecognizerMapper
     @Override
     public void close() throws IOException {
         super.close();
+        if (this.shared) {
+            DictionaryRegistry.getInstance().release(this.entities);
+            this.shared = false;
+        } else if (this.entities instanceof Closeable) {
+            ((Closeable) this.entities).close();
+        }
     }
 }
@@ -0,0 +1,58 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.hadoop.mapred.cooccurrence;
+
+import net.sf.eos.trie.DictionaryStatistics;
+
+/**
+ * Counters of the {@link DictionaryBasedEntityRecognizerMapper} with the
+ * {@link DictionaryStatistics} of the dictionary. Only the first map task
+ * reports the structure and the size of the dictionary, so the job totals
+ * are the values of the dictionary. The load time and the block cache
+ * counters are summed up over all map tasks.
+ * @author Sascha Kohlmann
+ */
+public enum DictionaryCounter {
+    /** The count of keys. */
+    ENTRIES,
+    /** The count of nodes. */
+    NODES,
+    /** The count of nodes with children. */
+    INTERNAL_NODES,
+    /** The count of nodes without children. */
+    EXTERNAL_NODES,
+    /** The maximum depth of a key. */
+    MAX_DEPTH,
+    /** The count of distinct value sets. */
+    VALUE_SETS,
+    /** The estimated bytes of the keys. */
+    KEY_BYTES,
+    /** The estimated bytes of the value sets. */
+    VALUE_BYTES,
+    /** The estimated bytes of the nodes. */
+    NODE_BYTES,
+    /** The sum of the estimated bytes. */
+    ESTIMATED_BYTES,
+    /** The load time in milliseconds. Not reported for dictionaries
+     * loaded by another mapper of the JVM. */
+    LOAD_TIME,
+    /** The count of blocks of a {@link net.sf.eos.trie.BlockDictionary}
+     * found in the block cache. */
+    BLOCK_CACHE_HITS,
+    /** The count of blocks of a {@link net.sf.eos.trie.BlockDictionary}
+     * read from disk. */
+    BLOCK_CACHE_MISSES;
+}
@@ -0,0 +1,43 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.medline;
+
+import static net.sf.eos.medline.MedlineAbstractStructureWords.STRUCTURE_WORDS_UPPER;
+
+import net.sf.eos.analyzer.ResettableTokenizer;
+import net.sf.eos.analyzer.SinglePassTokenizer;
+import net.sf.eos.analyzer.TokenizerSupplier;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Supplies a {@link SinglePassTokenizer} with the same tokens as the
+ * tokenizer chain of the {@link MedlineTokenizerSupplier}. Set the
+ * {@link TokenizerSupplier#TOKENIZER_PROVIDER_IMPL_CONFIG_NAME} to the name
+ * of this class to use it.
+ * @author Sascha Kohlmann
+ */
+public class SinglePassMedlineTokenizerSupplier extends TokenizerSupplier {
+
+    @Override
+    public ResettableTokenizer get() {
+        final Set<CharSequence> stopWords =
+            new HashSet<CharSequence>(Arrays.asList(STRUCTURE_WORDS_UPPER));
+        return new SinglePassTokenizer(stopWords);
+    }
+}
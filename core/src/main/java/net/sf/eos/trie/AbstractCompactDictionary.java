@@ -0,0 +1,510 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Base of the automaton based dictionaries. The implementation contains the
+ * lookup and iteration algorithms. Subclasses define the storage of the
+ * automaton.
+ * <p>The automaton consists of states and arcs. The arcs of a state are
+ * stored in a consecutive range, sorted by their labels. Each arc holds
+ * the count of keys which precede the keys reachable thru the arc. The sum
+ * of these counts along the path of a key is the ordinal of the key.</p>
+ * <p>Only for internal use!</p>
+ * @author Sascha Kohlmann
+ * @see CompactDictionary
+ * @see MappedDictionary
+ */
+abstract class AbstractCompactDictionary
+        extends AbstractMap<CharSequence, Set<CharSequence>>
+        implements PrefixSearchable<CharSequence> {
+
+    /** Magic number of the binary image format. */
+    static final int MAGIC = 0x454f5344;
+
+    /** Version of the binary image format. */
+    static final int VERSION = 1;
+
+    private Set<Entry<CharSequence, Set<CharSequence>>> entrySet = null;
+
+    /**
+     * Checks the header of a binary image.
+     * @param magic the magic number of the image
+     * @param version the version of the image
+     * @throws IOException if the values doesn't match
+     */
+    static void checkHeader(final int magic, final int version)
+            throws IOException {
+        if (magic != MAGIC) {
+            throw new IOException("not a dictionary image");
+        }
+        if (version != VERSION) {
+            throw new IOException("unsupported dictionary image version: "
+                                  + version);
+        }
+    }
+
+    /** @return the start state */
+    abstract int root();
+
+    /** @return the index of the first arc of the state. The arcs of a
+     *          state end before the first arc of the following state. */
+    abstract int arcStart(int state);
+
+    /** @return {@code true} if the state is the end of a key */
+    abstract boolean isAccepting(int state);
+
+    /** @return the label of the arc */
+    abstract char label(int arc);
+
+    /** @return the target state of the arc */
+    abstract int target(int arc);
+
+    /** @return the count of keys preceding the keys reachable thru the
+     *          arc */
+    abstract int skip(int arc);
+
+    /** @return the index of the first posting of the key with the
+     *          ordinal. The postings of a key end before the first posting
+     *          of the following key. */
+    abstract int postingStart(int ordinal);
+
+    /** @return the ID handle at the posting index */
+    abstract int posting(int index);
+
+    /** @return the ID for the handle */
+    abstract String id(int handle);
+
+    /** @return {@code true} if the ID for the handle is equal to
+     *          <em>id</em> */
+    abstract boolean idEquals(int handle, CharSequence id);
+
+    /** @return the maximum length of a key */
+    abstract int maxKeyLength();
+
+    /** @return the count of states of the automaton */
+    abstract int stateCount();
+
+    /** @return the count of arcs of the automaton */
+    abstract int arcCount();
+
+    /** @return the count of distinct IDs */
+    abstract int idCount();
+
+    /*
+     * @see java.util.AbstractMap#get(java.lang.Object)
+     */
+    @Override
+    public Set<CharSequence> get(final Object key) {
+        final int ordinal = ordinal(key);
+        if (ordinal < 0) {
+            return null;
+        }
+        return new Postings(ordinal);
+    }
+
+    /*
+     * @see java.util.AbstractMap#containsKey(java.lang.Object)
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        return ordinal(key) >= 0;
+    }
+
+    /*
+     * @see java.util.AbstractMap#entrySet()
+     */
+    @Override
+    public Set<Entry<CharSequence, Set<CharSequence>>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
+    }
+
+    /*
+     * @see net.sf.eos.trie.PrefixSearchable#containsPrefix(java.lang.Object)
+     */
+    public boolean containsPrefix(final CharSequence prefix) {
+        final int length = prefix.length();
+        int state = root();
+        for (int i = 0; i < length; i++) {
+            final int arc = arc(state, prefix.charAt(i));
+            if (arc < 0) {
+                return false;
+            }
+            state = target(arc);
+        }
+        return isAccepting(state) || arcStart(state) != arcStart(state + 1);
+    }
+
+    /**
+     * Returns the structure and the size of the dictionary. The nodes are
+     * the states of the automaton. The depth of a key is its length. The
+     * key bytes are the arc labels, the value bytes the postings and the
+     * IDs. The load time of the statistics is unknown.
+     * @return the statistics
+     */
+    public DictionaryStatistics statistics() {
+        final int states = stateCount();
+        final int arcs = arcCount();
+        int internal = 0;
+        for (int state = 0; state < states; state++) {
+            if (arcStart(state) != arcStart(state + 1)) {
+                internal++;
+            }
+        }
+        final int[] histogram = new int[size() == 0 ? 0 : maxKeyLength() + 1];
+        for (final CharSequence key : keySet()) {
+            histogram[key.length()]++;
+        }
+        final long nodeBytes =
+            DictionaryStatistics.arrayBytes(states + 1, 4)
+            + DictionaryStatistics.arrayBytes((states + 63) >>> 6, 8)
+            + 2 * DictionaryStatistics.arrayBytes(arcs, 4);
+        final long keyBytes = DictionaryStatistics.arrayBytes(arcs, 2);
+        final long valueBytes =
+            DictionaryStatistics.arrayBytes(size() + 1, 4)
+            + DictionaryStatistics.arrayBytes(postingStart(size()), 4)
+            + idBytes();
+        return new DictionaryStatistics(size(), states, internal,
+                                        states - internal, histogram, size(),
+                                        idCount(), keyBytes, valueBytes,
+                                        nodeBytes, -1);
+    }
+
+    /** @return the estimated bytes of the IDs. The default are the start
+     *          offsets and the characters of the binary image. */
+    long idBytes() {
+        final int ids = idCount();
+        long idChars = 0;
+        for (int handle = 0; handle < ids; handle++) {
+            idChars += id(handle).length();
+        }
+        return DictionaryStatistics.arrayBytes(ids + 1, 4)
+               + DictionaryStatistics.arrayBytes(idChars, 2);
+    }
+
+    /**
+     * Returns the maximum count of tokens of a key. The tokens of a key
+     * are separated by the delimiter.
+     * @param delimiter the delimiter of the tokens
+     * @return the maximum count of tokens or {@code 0} if the dictionary
+     *         is empty
+     */
+    final int maxTokenCount(final char delimiter) {
+        if (size() == 0) {
+            return 0;
+        }
+        final int[] delimiters = new int[stateCount()];
+        Arrays.fill(delimiters, -1);
+        return maxDelimiterCount(root(), delimiter, delimiters) + 1;
+    }
+
+    /** Longest path in the automaton counting the delimiter arcs. */
+    private int maxDelimiterCount(final int state,
+                                  final char delimiter,
+                                  final int[] delimiters) {
+        if (delimiters[state] >= 0) {
+            return delimiters[state];
+        }
+        int max = 0;
+        final int end = arcStart(state + 1);
+        for (int arc = arcStart(state); arc < end; arc++) {
+            final int count =
+                maxDelimiterCount(target(arc), delimiter, delimiters)
+                + (label(arc) == delimiter ? 1 : 0);
+            if (count > max) {
+                max = count;
+            }
+        }
+        delimiters[state] = max;
+        return max;
+    }
+
+    /**
+     * Returns the ordinal of the given key. The ordinal is the position of
+     * the key in the natural order of all keys.
+     * @param key the key to search for
+     * @return the ordinal or a negative value if the dictionary doesn't
+     *         contain the key
+     */
+    final int ordinal(final Object key) {
+        if (! (key instanceof CharSequence)) {
+            return -1;
+        }
+        final CharSequence seq = (CharSequence) key;
+        final int length = seq.length();
+        int state = root();
+        int ordinal = 0;
+        for (int i = 0; i < length; i++) {
+            final int arc = arc(state, seq.charAt(i));
+            if (arc < 0) {
+                return -1;
+            }
+            ordinal += skip(arc);
+            state = target(arc);
+        }
+        return isAccepting(state) ? ordinal : -1;
+    }
+
+    /** Binary search for the arc with the given label. */
+    final int arc(final int state, final char label) {
+        int low = arcStart(state);
+        int high = arcStart(state + 1) - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final char midLabel = label(mid);
+            if (midLabel < label) {
+                low = mid + 1;
+            } else if (midLabel > label) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Unmodifiable view on the postings of a key. The handles of the
+     * IDs are the indices of the IDs in the dictionary. */
+    final class Postings extends AbstractSet<CharSequence>
+            implements EntityIdSet {
+
+        private final int from;
+        private final int to;
+
+        Postings(final int ordinal) {
+            this.from = postingStart(ordinal);
+            this.to = postingStart(ordinal + 1);
+        }
+
+        /*
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return this.to - this.from;
+        }
+
+        public int handleAt(final int index) {
+            return posting(this.from + index);
+        }
+
+        public String idOf(final int handle) {
+            return id(handle);
+        }
+
+        public Object handleOwner() {
+            return AbstractCompactDictionary.this;
+        }
+
+        /*
+         * @see java.util.AbstractCollection#contains(java.lang.Object)
+         */
+        @Override
+        public boolean contains(final Object o) {
+            if (! (o instanceof CharSequence)) {
+                return false;
+            }
+            final CharSequence id = (CharSequence) o;
+            for (int i = this.from; i < this.to; i++) {
+                if (idEquals(posting(i), id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /*
+         * @see java.util.AbstractCollection#iterator()
+         */
+        @Override
+        public Iterator<CharSequence> iterator() {
+            return new Iterator<CharSequence>() {
+                private int next = Postings.this.from;
+
+                public boolean hasNext() {
+                    return this.next < Postings.this.to;
+                }
+
+                public CharSequence next() {
+                    if (! hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return id(posting(this.next++));
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    private final class EntrySet
+            extends AbstractSet<Entry<CharSequence, Set<CharSequence>>> {
+
+        /*
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return AbstractCompactDictionary.this.size();
+        }
+
+        /*
+         * @see java.util.AbstractCollection#iterator()
+         */
+        @Override
+        public Iterator<Entry<CharSequence, Set<CharSequence>>> iterator() {
+            return new EntryIterator();
+        }
+    }
+
+    /**
+     * Iterates thru the keys of the automaton in depth first order. The
+     * order of the keys is the natural order.
+     */
+    private final class EntryIterator
+            implements Iterator<Entry<CharSequence, Set<CharSequence>>> {
+
+        private static final int ENTER = -1;
+
+        private final int[] stateStack;
+        private final int[] arcStack;
+        private final char[] chars;
+        private int depth = 0;
+        private int ordinal = 0;
+        private Entry<CharSequence, Set<CharSequence>> next = null;
+
+        EntryIterator() {
+            final int length = maxKeyLength() + 1;
+            this.stateStack = new int[length];
+            this.arcStack = new int[length];
+            this.chars = new char[length];
+            this.stateStack[0] = root();
+            this.arcStack[0] = ENTER;
+            advance();
+        }
+
+        private void advance() {
+            this.next = null;
+            while (this.depth >= 0) {
+                final int state = this.stateStack[this.depth];
+                final int arc = this.arcStack[this.depth];
+                if (arc == ENTER) {
+                    this.arcStack[this.depth] = arcStart(state);
+                    if (isAccepting(state)) {
+                        final String key =
+                            new String(this.chars, 0, this.depth);
+                        final Set<CharSequence> value =
+                            new Postings(this.ordinal++);
+                        this.next = new SimpleEntry(key, value);
+                        return;
+                    }
+                } else if (arc < arcStart(state + 1)) {
+                    this.arcStack[this.depth] = arc + 1;
+                    this.chars[this.depth] = label(arc);
+                    this.depth++;
+                    this.stateStack[this.depth] = target(arc);
+                    this.arcStack[this.depth] = ENTER;
+                } else {
+                    this.depth--;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        public Entry<CharSequence, Set<CharSequence>> next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            final Entry<CharSequence, Set<CharSequence>> retval = this.next;
+            advance();
+            return retval;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** Immutable map entry. */
+    private static final class SimpleEntry
+            implements Entry<CharSequence, Set<CharSequence>> {
+
+        private final CharSequence key;
+        private final Set<CharSequence> value;
+
+        SimpleEntry(final CharSequence key, final Set<CharSequence> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public CharSequence getKey() {
+            return this.key;
+        }
+
+        public Set<CharSequence> getValue() {
+            return this.value;
+        }
+
+        public Set<CharSequence> setValue(final Set<CharSequence> v) {
+            throw new UnsupportedOperationException();
+        }
+
+        /*
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(final Object o) {
+            if (! (o instanceof Entry)) {
+                return false;
+            }
+            final Entry<?, ?> e = (Entry<?, ?>) o;
+            return this.key.equals(e.getKey())
+                    && this.value.equals(e.getValue());
+        }
+
+        /*
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ this.value.hashCode();
+        }
+
+        /*
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
+    }
+}
@@ -18,12 +18,15 @@ package net.sf.eos.trie;
 
 import static net.sf.eos.config.ConfigurationKey.Type.CLASSNAME;
 import net.sf.eos.analyzer.TokenizerException;
+import net.sf.eos.config.Configurable;
 import net.sf.eos.config.Configuration;
 import net.sf.eos.config.ConfigurationKey;
+import net.sf.eos.config.Configured;
 
 import java.io.InputStream;
 
-public abstract class AbstractTrieLoader<K, V> implements TrieLoader<K, V> {
+public abstract class AbstractTrieLoader<K, V> extends Configured
+        implements TrieLoader<K, V> {
 
     @SuppressWarnings("nls")
     @ConfigurationKey(type=CLASSNAME,
@@ -63,6 +66,9 @@ public abstract class AbstractTrieLoader<K, V> implements TrieLoader<K, V> {
             try {
 
                 final TrieLoader loader = clazz.newInstance();
+                if (loader instanceof Configurable) {
+                    ((Configurable) loader).configure(config);
+                }
                 return loader;
 
             } catch (final InstantiationException e) {
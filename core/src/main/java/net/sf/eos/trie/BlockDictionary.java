@@ -0,0 +1,730 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+import static net.sf.eos.util.Conditions.checkState;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read only dictionary for dictionaries larger than the Java heap. The
+ * entries are stored sorted by key in blocks of a file. Only the first key
+ * of each block is held in memory. A lookup searches the block of the key
+ * in this sparse index and reads the block from the file. A bounded cache
+ * with least recently used eviction holds the recently read blocks.
+ * <p>The keys of a block are front coded. Keys and IDs are encoded as
+ * sequences of variable length integers, one for each {@code char}.</p>
+ * <p>A {@link Writer} writes the file from entries in ascending key order.
+ * {@link #compile(InputStream, OutputStream, int)} writes the file for a
+ * dictionary in the XML format of the {@link XmlTrieLoader}. The
+ * {@link BlockTrieLoader} opens the file.</p>
+ * <p>Instances are thread safe. {@link #close() Close} the dictionary
+ * after usage.</p>
+ * <p>Usage: {@code java net.sf.eos.trie.BlockDictionary <xml> <file>}</p>
+ * @author Sascha Kohlmann
+ */
+public class BlockDictionary
+        extends AbstractMap<CharSequence, Set<CharSequence>>
+        implements PrefixSearchable<CharSequence>, Closeable {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(BlockDictionary.class.getName());
+
+    /** Magic number of the file. */
+    static final int MAGIC = 0x454f5342;
+
+    /** Version of the file format. */
+    static final int VERSION = 1;
+
+    /** Size of the trailer of the file in bytes. */
+    static final int TRAILER_SIZE = 8 + 5 * 4;
+
+    /** The default size of a block in bytes. */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /** The default count of cached blocks. */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int entryCount;
+    private final int maxTokenCount;
+    private final String[] firstKeys;
+    private final long[] offsets;
+    private final Map<Integer, Block> cache;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    private BlockDictionary(final RandomAccessFile file, final int cacheSize)
+            throws IOException {
+        this.file = file;
+        this.channel = file.getChannel();
+        final long size = this.channel.size();
+        if (size < TRAILER_SIZE) {
+            throw new IOException("not a block dictionary");
+        }
+        final ByteBuffer trailer =
+            read(this.channel, size - TRAILER_SIZE, TRAILER_SIZE);
+        final long indexOffset = trailer.getLong();
+        this.entryCount = trailer.getInt();
+        final int blockCount = trailer.getInt();
+        this.maxTokenCount = trailer.getInt();
+        final int version = trailer.getInt();
+        if (trailer.getInt() != MAGIC) {
+            throw new IOException("not a block dictionary");
+        }
+        if (version != VERSION) {
+            throw new IOException("unsupported block dictionary version: "
+                                  + version);
+        }
+        if (indexOffset < 0 || indexOffset > size - TRAILER_SIZE
+                || blockCount < 0 || this.entryCount < 0) {
+            throw new IOException("corrupt block dictionary");
+        }
+
+        final ByteBuffer index = read(this.channel, indexOffset,
+                (int) (size - TRAILER_SIZE - indexOffset));
+        this.firstKeys = new String[blockCount];
+        this.offsets = new long[blockCount + 1];
+        try {
+            long offset = 0;
+            for (int i = 0; i < blockCount; i++) {
+                this.offsets[i] = offset;
+                offset += readVarint(index);
+                this.firstKeys[i] = readString(index, null, 0);
+            }
+            if (offset != indexOffset) {
+                throw new IOException("corrupt block dictionary index");
+            }
+            this.offsets[blockCount] = offset;
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("corrupt block dictionary index");
+        }
+
+        this.cache = new LinkedHashMap<Integer, Block>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Integer, Block> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Opens the dictionary file with the default cache size.
+     * @param dictionary the dictionary file
+     * @return the dictionary
+     * @throws IOException if an I/O error occurs or the file is not a
+     *                     block dictionary
+     */
+    public static BlockDictionary open(final File dictionary)
+            throws IOException {
+        return open(dictionary, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Opens the dictionary file. Only the sparse index is read.
+     * @param dictionary the dictionary file
+     * @param cacheSize the maximum count of cached blocks
+     * @return the dictionary
+     * @throws IOException if an I/O error occurs or the file is not a
+     *                     block dictionary
+     */
+    public static BlockDictionary open(final File dictionary,
+                                       final int cacheSize)
+            throws IOException {
+        checkArgumentNotNull(dictionary, "dictionary is null");
+        checkArgument(cacheSize >= 0, "cacheSize < 0");
+        final RandomAccessFile file = new RandomAccessFile(dictionary, "r");
+        boolean opened = false;
+        try {
+            final BlockDictionary blocks = new BlockDictionary(file, cacheSize);
+            opened = true;
+            if (LOG.isInfoEnabled()) {
+                LOG.info("opened block dictionary " + dictionary + " with "
+                         + blocks.size() + " keys in "
+                         + blocks.getBlockCount() + " blocks");
+            }
+            return blocks;
+        } finally {
+            if (! opened) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the dictionary file for a dictionary in the XML format of the
+     * {@link XmlTrieLoader}. The XML dictionary is sorted on the heap. The
+     * streams are not closed.
+     * @param xml the XML dictionary
+     * @param out the stream for the dictionary file
+     * @param blockSize the minimum size of a block in bytes
+     * @return the count of keys
+     * @throws Exception if an error occurs
+     */
+    public static int compile(final InputStream xml,
+                              final OutputStream out,
+                              final int blockSize) throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        new XmlTrieLoader().loadTrie(xml, trie);
+        final Writer writer = new Writer(out, blockSize);
+        for (final Map.Entry<CharSequence, Set<CharSequence>> entry
+                : trie.entrySet()) {
+            writer.add(entry.getKey(), entry.getValue());
+        }
+        writer.finish();
+        return trie.size();
+    }
+
+    /*
+     * @see java.util.AbstractMap#get(java.lang.Object)
+     */
+    @Override
+    public Set<CharSequence> get(final Object key) {
+        if (! (key instanceof CharSequence)) {
+            return null;
+        }
+        final String k = key.toString();
+        final int blockIndex = blockIndexOf(k);
+        if (blockIndex < 0) {
+            return null;
+        }
+        final Block block = block(blockIndex);
+        final int i = Arrays.binarySearch(block.keys, k);
+        return i < 0 ? null : block.values[i];
+    }
+
+    /*
+     * @see java.util.AbstractMap#containsKey(java.lang.Object)
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns {@code true} if a key starts with the prefix. Reads at most
+     * one block.
+     */
+    public boolean containsPrefix(final CharSequence prefix) {
+        if (prefix == null) {
+            return false;
+        }
+        final String p = prefix.toString();
+        final int blockIndex = blockIndexOf(p);
+        if (blockIndex >= 0) {
+            final Block block = block(blockIndex);
+            int i = Arrays.binarySearch(block.keys, p);
+            if (i >= 0) {
+                return true;
+            }
+            i = -(i + 1);
+            if (i < block.keys.length) {
+                return block.keys[i].startsWith(p);
+            }
+        }
+        final int next = blockIndex + 1;
+        return next < this.firstKeys.length
+               && this.firstKeys[next].startsWith(p);
+    }
+
+    /*
+     * @see java.util.AbstractMap#size()
+     */
+    @Override
+    public int size() {
+        return this.entryCount;
+    }
+
+    /**
+     * Returns the entries in ascending key order. The iteration reads all
+     * blocks from the file without using the cache.
+     */
+    @Override
+    public Set<Map.Entry<CharSequence, Set<CharSequence>>> entrySet() {
+        return new AbstractSet<Map.Entry<CharSequence, Set<CharSequence>>>() {
+            @Override
+            public Iterator<Map.Entry<CharSequence, Set<CharSequence>>>
+                    iterator() {
+                return new EntryIterator();
+            }
+            @Override
+            public int size() {
+                return BlockDictionary.this.entryCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum count of tokens of a key.
+     * @param delimiter the delimiter of the tokens
+     * @return the maximum count of tokens
+     */
+    public int maxTokenCount(final char delimiter) {
+        if (delimiter == ' ') {
+            return this.maxTokenCount;
+        }
+        int max = 0;
+        for (final CharSequence key : keySet()) {
+            int count = 1;
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) == delimiter) {
+                    count++;
+                }
+            }
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the count of blocks of the file.
+     * @return the count of blocks
+     */
+    public int getBlockCount() {
+        return this.firstKeys.length;
+    }
+
+    /**
+     * Returns the count of block accesses answered by the cache.
+     * @return the count of cache hits
+     */
+    public synchronized long getCacheHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the count of blocks read from the file for lookups.
+     * @return the count of cache misses
+     */
+    public synchronized long getCacheMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the rate of block accesses answered by the cache.
+     * @return the hit rate between {@code 0} and {@code 1}
+     */
+    public synchronized double getCacheHitRate() {
+        final long accesses = this.hits + this.misses;
+        return accesses == 0 ? 0d : (double) this.hits / accesses;
+    }
+
+    /**
+     * Closes the file of the dictionary.
+     * @throws IOException if an I/O error occurs
+     */
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    /** @return the index of the last block with a first key not greater
+     *          than the key or {@code -1} */
+    final int blockIndexOf(final String key) {
+        int i = Arrays.binarySearch(this.firstKeys, key);
+        if (i < 0) {
+            i = -(i + 1) - 1;
+        }
+        return i;
+    }
+
+    private Block block(final int blockIndex) {
+        final Integer index = Integer.valueOf(blockIndex);
+        synchronized (this) {
+            final Block cached = this.cache.get(index);
+            if (cached != null) {
+                this.hits++;
+                return cached;
+            }
+            this.misses++;
+        }
+        final Block block = readBlock(blockIndex);
+        synchronized (this) {
+            this.cache.put(index, block);
+        }
+        return block;
+    }
+
+    private Block readBlock(final int blockIndex) {
+        final long offset = this.offsets[blockIndex];
+        final int length = (int) (this.offsets[blockIndex + 1] - offset);
+        try {
+            checkState(this.channel.isOpen(), "dictionary closed");
+            return new Block(read(this.channel, offset, length),
+                             this.firstKeys[blockIndex]);
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to read block "
+                                            + blockIndex, e);
+        } catch (final BufferUnderflowException e) {
+            throw new IllegalStateException("corrupt block " + blockIndex);
+        }
+    }
+
+    private static ByteBuffer read(final FileChannel channel,
+                                   final long offset,
+                                   final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static int readVarint(final ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /** Reads a string with a shared prefix of the given string. */
+    static String readString(final ByteBuffer in,
+                             final String prefix,
+                             final int shared) {
+        final int length = readVarint(in);
+        final char[] chars = new char[shared + length];
+        if (shared != 0) {
+            prefix.getChars(0, shared, chars, 0);
+        }
+        for (int i = shared; i < chars.length; i++) {
+            chars[i] = (char) readVarint(in);
+        }
+        return new String(chars);
+    }
+
+    /** A decoded block. */
+    static final class Block {
+
+        final String[] keys;
+        final Set<CharSequence>[] values;
+
+        @SuppressWarnings("unchecked")
+        Block(final ByteBuffer in, final String firstKey) throws IOException {
+            final int count = readVarint(in);
+            this.keys = new String[count];
+            this.values = (Set<CharSequence>[]) new Set<?>[count];
+            String last = "";
+            for (int i = 0; i < count; i++) {
+                final int shared = readVarint(in);
+                if (shared > last.length()) {
+                    throw new IOException("corrupt block");
+                }
+                last = readString(in, last, shared);
+                this.keys[i] = last;
+                final int valueCount = readVarint(in);
+                final Set<CharSequence> value =
+                    new HashSet<CharSequence>(valueCount * 2);
+                for (int j = 0; j < valueCount; j++) {
+                    value.add(readString(in, null, 0));
+                }
+                this.values[i] = Collections.unmodifiableSet(value);
+            }
+            if (count == 0 || ! this.keys[0].equals(firstKey)) {
+                throw new IOException("block doesn't match index");
+            }
+        }
+    }
+
+    private final class EntryIterator
+            implements Iterator<Map.Entry<CharSequence, Set<CharSequence>>> {
+
+        private int blockIndex = 0;
+        private Block block = null;
+        private int next = 0;
+
+        public boolean hasNext() {
+            while (this.block == null || this.next == this.block.keys.length) {
+                if (this.blockIndex == getBlockCount()) {
+                    return false;
+                }
+                this.block = readBlock(this.blockIndex++);
+                this.next = 0;
+            }
+            return true;
+        }
+
+        public Map.Entry<CharSequence, Set<CharSequence>> next() {
+            if (! hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final int i = this.next++;
+            return new BlockEntry(this.block.keys[i], this.block.values[i]);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class BlockEntry
+            implements Map.Entry<CharSequence, Set<CharSequence>> {
+
+        private final CharSequence key;
+        private final Set<CharSequence> value;
+
+        BlockEntry(final CharSequence key, final Set<CharSequence> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public CharSequence getKey() {
+            return this.key;
+        }
+
+        public Set<CharSequence> getValue() {
+            return this.value;
+        }
+
+        public Set<CharSequence> setValue(final Set<CharSequence> v) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (! (o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return this.key.equals(e.getKey())
+                   && this.value.equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ this.value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
+    }
+
+    /**
+     * Writes a dictionary file from entries in ascending key order. A block
+     * is closed as soon as its size reaches the block size. Call
+     * {@link #finish()} after the last entry.
+     */
+    public static final class Writer {
+
+        private final DataOutputStream out;
+        private final int blockSize;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        private long offset = 0;
+        private int blockCount = 0;
+        private int blockEntries = 0;
+        private int entryCount = 0;
+        private int maxTokenCount = 0;
+        private String last = null;
+        private String blockFirstKey = null;
+        private boolean finished = false;
+
+        /**
+         * Creates a new writer.
+         * @param out the stream for the dictionary file. Not closed by the
+         *            writer.
+         * @param blockSize the minimum size of a block in bytes
+         */
+        public Writer(final OutputStream out, final int blockSize) {
+            checkArgumentNotNull(out, "out is null");
+            checkArgument(blockSize > 0, "blockSize <= 0");
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Adds an entry. The key must be greater than the key of the last
+         * entry.
+         * @param key the key
+         * @param values the IDs of the key
+         * @throws IOException if an I/O error occurs
+         */
+        public void add(final CharSequence key,
+                        final Collection<? extends CharSequence> values)
+                throws IOException {
+            checkState(! this.finished, "writer finished");
+            checkArgumentNotNull(key, "key is null");
+            checkArgumentNotNull(values, "values is null");
+            final String k = key.toString();
+            checkArgument(this.last == null || this.last.compareTo(k) < 0,
+                          "keys not in ascending order: " + k);
+
+            int shared = 0;
+            if (this.blockEntries == 0) {
+                this.blockFirstKey = k;
+            } else {
+                final int max = Math.min(this.last.length(), k.length());
+                while (shared < max
+                        && this.last.charAt(shared) == k.charAt(shared)) {
+                    shared++;
+                }
+            }
+            writeVarint(this.block, shared);
+            writeString(this.block, k, shared);
+            writeVarint(this.block, values.size());
+            for (final CharSequence value : values) {
+                writeString(this.block, value, 0);
+            }
+
+            int tokens = 1;
+            for (int i = 0; i < k.length(); i++) {
+                if (k.charAt(i) == ' ') {
+                    tokens++;
+                }
+            }
+            this.maxTokenCount = Math.max(this.maxTokenCount, tokens);
+            this.last = k;
+            this.entryCount++;
+            this.blockEntries++;
+            if (this.block.size() >= this.blockSize) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * Writes the last block, the index and the trailer. The stream is
+         * flushed but not closed.
+         * @throws IOException if an I/O error occurs
+         */
+        public void finish() throws IOException {
+            checkState(! this.finished, "writer finished");
+            flushBlock();
+            this.out.write(this.index.toByteArray());
+            this.out.writeLong(this.offset);
+            this.out.writeInt(this.entryCount);
+            this.out.writeInt(this.blockCount);
+            this.out.writeInt(this.maxTokenCount);
+            this.out.writeInt(VERSION);
+            this.out.writeInt(MAGIC);
+            this.out.flush();
+            this.finished = true;
+        }
+
+        private void flushBlock() throws IOException {
+            if (this.blockEntries == 0) {
+                return;
+            }
+            final ByteArrayOutputStream header = new ByteArrayOutputStream();
+            writeVarint(header, this.blockEntries);
+            final int length = header.size() + this.block.size();
+            header.writeTo(this.out);
+            this.block.writeTo(this.out);
+            this.offset += length;
+            this.block.reset();
+            this.blockEntries = 0;
+            this.blockCount++;
+            writeVarint(this.index, length);
+            writeString(this.index, this.blockFirstKey, 0);
+        }
+
+        private static void writeString(final ByteArrayOutputStream out,
+                                        final CharSequence s,
+                                        final int shared) {
+            final int length = s.length();
+            writeVarint(out, length - shared);
+            for (int i = shared; i < length; i++) {
+                writeVarint(out, s.charAt(i));
+            }
+        }
+
+        private static void writeVarint(final ByteArrayOutputStream out,
+                                        final int value) {
+            int v = value;
+            while ((v & ~0x7f) != 0) {
+                out.write((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            out.write(v);
+        }
+    }
+
+    /**
+     * Compiles a XML dictionary file into a block dictionary file.
+     * @param args the XML file, the dictionary file and optional the
+     *             block size
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: java " + BlockDictionary.class.getName()
+                               + " <xml> <file> [<block size>]");
+            System.exit(1);
+        }
+        final int blockSize = args.length == 3
+            ? Integer.parseInt(args[2]) : DEFAULT_BLOCK_SIZE;
+        final InputStream in =
+            new BufferedInputStream(new FileInputStream(args[0]));
+        try {
+            final OutputStream out = new FileOutputStream(args[1]);
+            try {
+                final int count = compile(in, out, blockSize);
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("compiled " + count + " keys");
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
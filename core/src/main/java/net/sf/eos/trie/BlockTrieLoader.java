@@ -0,0 +1,114 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.config.ConfigurationKey.Type.INTEGER;
+
+import net.sf.eos.config.Configuration;
+import net.sf.eos.config.ConfigurationKey;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+
+/**
+ * Loads dictionary files created by the {@link BlockDictionary}.
+ * {@link #openTrie(File)} opens the file and returns a
+ * {@link BlockDictionary} which keeps the entries on disk.
+ * {@link #loadTrie(InputStream, Trie)} copies the entries into the given
+ * trie.
+ * @author Sascha Kohlmann
+ */
+public class BlockTrieLoader
+        extends AbstractTrieLoader<CharSequence, Set<CharSequence>>
+        implements FileTrieLoader<CharSequence, Set<CharSequence>> {
+
+    /** The configuration key for the count of cached blocks. */
+    @SuppressWarnings("nls")
+    @ConfigurationKey(type=INTEGER,
+                      defaultValue="1024",
+                      description="The maximum count of cached blocks of a "
+                                  + "block dictionary.")
+    public final static String CACHE_SIZE_CONFIG_NAME =
+        "net.sf.eos.trie.BlockTrieLoader.cacheSize";
+
+    private int cacheSize = BlockDictionary.DEFAULT_CACHE_SIZE;
+
+    /*
+     * @see net.sf.eos.config.Configured#configure(net.sf.eos.config.Configuration)
+     */
+    @Override
+    public void configure(
+            @SuppressWarnings("hiding") final Configuration config) {
+        super.configure(config);
+        this.cacheSize = config.getInt(CACHE_SIZE_CONFIG_NAME,
+                                       BlockDictionary.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Copies the entries of the dictionary file into the trie. The data is
+     * written to a temporary file first.
+     */
+    @Override
+    public void loadTrie(final InputStream trieData,
+                         final Trie<CharSequence, Set<CharSequence>> trie)
+            throws Exception {
+        final File tmp = File.createTempFile("dictionary", ".blk");
+        try {
+            final OutputStream out = new FileOutputStream(tmp);
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = trieData.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+            final BlockDictionary dictionary = BlockDictionary.open(tmp, 0);
+            try {
+                for (final Entry<CharSequence, Set<CharSequence>> entry
+                        : dictionary.entrySet()) {
+                    final CharSequence key = entry.getKey();
+                    Set<CharSequence> values = trie.get(key);
+                    if (values == null) {
+                        values = new HashSet<CharSequence>();
+                        trie.put(key, values);
+                    }
+                    values.addAll(entry.getValue());
+                }
+            } finally {
+                dictionary.close();
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Opens the dictionary file with the configured cache size.
+     * @return a {@link BlockDictionary}
+     */
+    public Map<CharSequence, Set<CharSequence>> openTrie(final File trieData)
+            throws Exception {
+        return BlockDictionary.open(trieData, this.cacheSize);
+    }
+}
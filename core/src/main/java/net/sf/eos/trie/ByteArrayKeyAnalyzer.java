@@ -73,17 +73,19 @@ public class ByteArrayKeyAnalyzer implements KeyAnalyzer<byte[]> {
         return (key != null ? key.length * LENGTH : 0);
     }
 
+    /**
+     * Compares the bytes as unsigned values. The order is the order of the
+     * bits in the trie, e.g. the order of the code points for UTF-8 encoded
+     * keys.
+     */
     public int compare(final byte[] o1, final byte[] o2) {
-        if (o1.length != o2.length) {
-            return o1.length - o2.length;
-        }
-        assert o1.length == o2.length;
-        for (int i = 0; i < o1.length; i++) {
-            if (o1[i] != o2[1]) {
-                return o1[i] - o2[i];
+        final int length = Math.min(o1.length, o2.length);
+        for (int i = 0; i < length; i++) {
+            if (o1[i] != o2[i]) {
+                return (o1[i] & 0xff) - (o2[i] & 0xff);
             }
         }
-        return 0;
+        return o1.length - o2.length;
     }
 
     public int bitIndex(final byte[] key,    final int keyOff,
@@ -114,8 +116,8 @@ public class ByteArrayKeyAnalyzer implements KeyAnalyzer<byte[]> {
 
         final int off1 = keyOff / LENGTH;
         final int off2 = foundOff / LENGTH;
-        final int len1 = keyLength / LENGTH + off1;
-        final int len2 = foundKeyLength / LENGTH + off2;
+        final int len1 = keyLength / LENGTH;
+        final int len2 = foundKeyLength / LENGTH;
         final int length = Math.max(len1, len2);
 
 //        System.out.println("off1: ......... " + off1);
@@ -134,23 +136,17 @@ public class ByteArrayKeyAnalyzer implements KeyAnalyzer<byte[]> {
 //            System.out.println(i + ". kOff: ......... " + kOff);
 //            System.out.println(i + ". fOff: ......... " + fOff);
 
-            if(kOff >= len1) {
+            if(i >= len1) {
                 k = 0;
             } else {
-                k = key[kOff];
-                if (k < 0) {
-                    k = Math.abs(k) * 2;
-                }
+                k = key[kOff] & 0xff;
             }
 //            System.out.println(i + ". k: ............ " + k);
 
-            if(found == null || fOff >= len2) {
+            if(found == null || i >= len2) {
                 f = 0;
             } else {
-                f = found[fOff];
-                if (f < 0) {
-                    f = Math.abs(f) * 2;
-                }
+                f = found[fOff] & 0xff;
             }
 //            System.out.println(i + ". f: ............ " + f);
 
@@ -158,7 +154,8 @@ public class ByteArrayKeyAnalyzer implements KeyAnalyzer<byte[]> {
                 final int x = k ^ f;
 //                System.out.println(i + ". x: ............ " + x);
                 final int retval = 
-                    i * LENGTH + (Integer.numberOfLeadingZeros(x) - LENGTH);
+                    i * LENGTH + (Integer.numberOfLeadingZeros(x)
+                                  - (Integer.SIZE - LENGTH));
 //                System.out.println(i + ". retval: ....... " + retval);
                 return retval;
             }
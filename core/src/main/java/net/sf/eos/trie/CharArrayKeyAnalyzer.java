@@ -0,0 +1,115 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import net.sf.eos.trie.PatriciaTrie.KeyAnalyzer;
+
+/**
+ * Analyzes {@code char[]} keys. The bit order of the keys is the order of
+ * the {@code Strings} of the arrays. The analyzer works directly on the
+ * arrays and never creates objects.
+ * @author Sascha Kohlmann
+ * @see CharSequenceKeyAnalyzer
+ */
+public class CharArrayKeyAnalyzer implements KeyAnalyzer<char[]> {
+
+    private static final long serialVersionUID = 2796431284627593183L;
+
+    private static final int LENGTH = 16;
+
+    public int length(final char[] key) {
+        return key != null ? key.length * LENGTH : 0;
+    }
+
+    public boolean isBitSet(final char[] key,
+                            final int keyLength,
+                            final int bitIndex) {
+        if (key == null || bitIndex >= keyLength) {
+            return false;
+        }
+        final int index = bitIndex / LENGTH;
+        final int bit = bitIndex - index * LENGTH;
+        return (key[index] & (1 << (LENGTH - 1 - bit))) != 0;
+    }
+
+    public int bitIndex(final char[] key,    final int keyOff,
+                        final int keyLength, final char[] found,
+                        final int foundOff,  final int foundKeyLength) {
+        if (keyOff % LENGTH != 0 || foundOff % LENGTH != 0
+                || keyLength % LENGTH != 0 || foundKeyLength % LENGTH != 0) {
+            throw new IllegalArgumentException("offsets & lengths must be at "
+                                               + "character boundaries");
+        }
+
+        final int off1 = keyOff / LENGTH;
+        final int off2 = foundOff / LENGTH;
+        final int len1 = keyLength / LENGTH;
+        final int len2 = found == null ? 0 : foundKeyLength / LENGTH;
+        final int length = Math.max(len1, len2);
+
+        boolean allNull = true;
+        for (int i = 0; i < length; i++) {
+            final char k = i < len1 ? key[i + off1] : 0;
+            final char f = i < len2 ? found[i + off2] : 0;
+            if (k != f) {
+                return i * LENGTH
+                       + (Integer.numberOfLeadingZeros(k ^ f)
+                          - (Integer.SIZE - LENGTH));
+            }
+            if (k != 0) {
+                allNull = false;
+            }
+        }
+
+        return allNull ? KeyAnalyzer.NULL_BIT_KEY : KeyAnalyzer.EQUAL_BIT_KEY;
+    }
+
+    public int bitsPerElement() {
+        return LENGTH;
+    }
+
+    public boolean isPrefix(final char[] prefix,
+                            final int offset,
+                            final int length,
+                            final char[] key) {
+        if (offset % LENGTH != 0 || length % LENGTH != 0) {
+            throw new IllegalArgumentException("Cannot determine prefix "
+                                               + "outside of character "
+                                               + "boundaries");
+        }
+        final int start = offset / LENGTH;
+        final int count = length / LENGTH;
+        if (key.length < count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (prefix[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int compare(final char[] o1, final char[] o2) {
+        final int length = Math.min(o1.length, o2.length);
+        for (int i = 0; i < length; i++) {
+            if (o1[i] != o2[i]) {
+                return o1[i] - o2[i];
+            }
+        }
+        return o1.length - o2.length;
+    }
+}
@@ -126,8 +126,25 @@ public class CharSequenceKeyAnalyzer implements KeyAnalyzer<CharSequence> {
         return (key.charAt(index) & BITS[bit]) != 0;
     }
 
+    /**
+     * Compares the keys char by char. The order is the order of 
+     * <code>String.compareTo(String)</code>. Doesn't create 
+     * <code>Strings</code> for other <code>CharSequence</code> types.
+     */
     public int compare(CharSequence o1, CharSequence o2) {
-        return o1.toString().compareTo(o2.toString());
+        if (o1 instanceof String && o2 instanceof String)
+            return ((String) o1).compareTo((String) o2);
+        
+        int length1 = o1.length();
+        int length2 = o2.length();
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            char c1 = o1.charAt(i);
+            char c2 = o2.charAt(i);
+            if (c1 != c2)
+                return c1 - c2;
+        }
+        return length1 - length2;
     }
 
     public int bitsPerElement() {
@@ -137,9 +154,15 @@ public class CharSequenceKeyAnalyzer implements KeyAnalyzer<CharSequence> {
     public boolean isPrefix(CharSequence prefix, int offset, int length, CharSequence key) {
         if(offset % 16 != 0 || length % 16 != 0)
             throw new IllegalArgumentException("Cannot determine prefix outside of character boundaries");
-        String s1 = prefix.subSequence(offset / 16, length / 16).toString();
-        String s2 = key.toString();
-        return s2.startsWith(s1);
+        int start = offset / 16;
+        int count = length / 16;
+        if (key.length() < count)
+            return false;
+        for (int i = 0; i < count; i++) {
+            if (prefix.charAt(start + i) != key.charAt(i))
+                return false;
+        }
+        return true;
     }
 }
 
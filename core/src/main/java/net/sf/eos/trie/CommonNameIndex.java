@@ -0,0 +1,319 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A read only index from the IDs of the entities to the common names of the
+ * entities working directly on a memory mapped binary image. The common
+ * name of an ID is the first key of the ID in a dictionary in the XML
+ * format of the {@link XmlTrieLoader}.
+ * <p>The image contains the IDs in sorted order. A lookup is a binary
+ * search in the mapped image. Looking up IDs in sorted order touches the
+ * image from the start to the end.</p>
+ * <p>Usage: {@code java net.sf.eos.trie.CommonNameIndex <xml> <image>}</p>
+ * <p>The size of an image is limited to 2GB.</p>
+ * <p>Instances are thread safe.</p>
+ * @author Sascha Kohlmann
+ */
+public class CommonNameIndex {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(CommonNameIndex.class.getName());
+
+    /** Magic number of the binary image. */
+    static final int MAGIC = 0x454f534e;
+
+    /** Version of the binary image format. */
+    static final int VERSION = 1;
+
+    /** Size of the image header in bytes. */
+    private static final int HEADER_SIZE = 5 * 4;
+
+    private final int idCount;
+    private final IntBuffer idStart;
+    private final IntBuffer nameStart;
+    private final CharBuffer idChars;
+    private final CharBuffer nameChars;
+
+    CommonNameIndex(final ByteBuffer image) throws IOException {
+        if (image.limit() < HEADER_SIZE || image.getInt(0) != MAGIC) {
+            throw new IOException("not a common name image");
+        }
+        if (image.getInt(4) != VERSION) {
+            throw new IOException("unsupported common name image version: "
+                                  + image.getInt(4));
+        }
+        this.idCount = image.getInt(8);
+        final int idCharCount = image.getInt(12);
+        final int nameCharCount = image.getInt(16);
+
+        int offset = HEADER_SIZE;
+        this.idStart = slice(image, offset).asIntBuffer();
+        offset += 4 * (this.idCount + 1);
+        this.nameStart = slice(image, offset).asIntBuffer();
+        offset += 4 * (this.idCount + 1);
+        this.idChars = slice(image, offset).asCharBuffer();
+        offset += 2 * idCharCount;
+        this.nameChars = slice(image, offset).asCharBuffer();
+        offset += 2 * nameCharCount;
+
+        if (offset != image.limit()) {
+            throw new IOException("corrupt common name image: expected "
+                                  + offset + " bytes, found "
+                                  + image.limit());
+        }
+    }
+
+    private static ByteBuffer slice(final ByteBuffer image, final int offset)
+            throws IOException {
+        if (offset > image.limit()) {
+            throw new IOException("corrupt common name image");
+        }
+        final ByteBuffer duplicate = image.duplicate();
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+    /**
+     * Maps the binary image file into memory.
+     * @param image the image file
+     * @return an index working on the mapped image
+     * @throws IOException if an I/O error occurs or the file doesn't
+     *                     contain a valid image
+     */
+    public static CommonNameIndex open(final File image) throws IOException {
+        checkArgumentNotNull(image, "image is null");
+        final RandomAccessFile file = new RandomAccessFile(image, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            final MappedByteBuffer buffer =
+                channel.map(MapMode.READ_ONLY, 0, channel.size());
+            final CommonNameIndex index = new CommonNameIndex(buffer);
+            if (LOG.isInfoEnabled()) {
+                LOG.info("mapped common names " + image + " with "
+                         + index.size() + " IDs and "
+                         + buffer.limit() + " bytes");
+            }
+            return index;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the binary image for the XML dictionary. The streams are not
+     * closed.
+     * @param xml the XML dictionary
+     * @param image the stream for the binary image
+     * @return the count of IDs
+     * @throws Exception if an error occurs
+     */
+    public static int compile(final InputStream xml, final OutputStream image)
+            throws Exception {
+        checkArgumentNotNull(xml, "xml is null");
+        checkArgumentNotNull(image, "image is null");
+        final Map<String, String> names = new HashMap<String, String>();
+        final StaxTrieSource source = new StaxTrieSource(xml);
+        try {
+            source.parse(new TrieSource.TrieEntryHandler() {
+                public void onEntry(final char[] key,
+                                    final int keyOffset,
+                                    final int keyLength,
+                                    final char[] value,
+                                    final int valueOffset,
+                                    final int valueLength) {
+                    final String id =
+                        new String(value, valueOffset, valueLength);
+                    if (! names.containsKey(id)) {
+                        names.put(id, new String(key, keyOffset, keyLength));
+                    }
+                }
+            });
+        } finally {
+            source.close();
+        }
+        write(names, image);
+        return names.size();
+    }
+
+    /**
+     * Writes the binary image for the given names. The stream is not closed.
+     * @param names the common names of the IDs
+     * @param image the stream for the binary image
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(final Map<String, String> names,
+                             final OutputStream image) throws IOException {
+        checkArgumentNotNull(names, "names is null");
+        checkArgumentNotNull(image, "image is null");
+        final SortedMap<String, String> sorted =
+            new TreeMap<String, String>(names);
+        int idCharCount = 0;
+        int nameCharCount = 0;
+        for (final Map.Entry<String, String> entry : sorted.entrySet()) {
+            checkArgumentNotNull(entry.getValue(), "name is null");
+            idCharCount += entry.getKey().length();
+            nameCharCount += entry.getValue().length();
+        }
+
+        final DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(image));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sorted.size());
+        out.writeInt(idCharCount);
+        out.writeInt(nameCharCount);
+        int start = 0;
+        out.writeInt(start);
+        for (final String id : sorted.keySet()) {
+            start += id.length();
+            out.writeInt(start);
+        }
+        start = 0;
+        out.writeInt(start);
+        for (final String name : sorted.values()) {
+            start += name.length();
+            out.writeInt(start);
+        }
+        for (final String id : sorted.keySet()) {
+            out.writeChars(id);
+        }
+        for (final String name : sorted.values()) {
+            out.writeChars(name);
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the count of IDs.
+     * @return the count of IDs
+     */
+    public int size() {
+        return this.idCount;
+    }
+
+    /**
+     * Returns the common name of the ID.
+     * @param id the ID of an entity
+     * @return the common name or {@code null} if the index doesn't
+     *         contain the ID
+     */
+    public String get(final CharSequence id) {
+        if (id == null) {
+            return null;
+        }
+        final int ordinal = find(id);
+        if (ordinal < 0) {
+            return null;
+        }
+        final int start = this.nameStart.get(ordinal);
+        final int end = this.nameStart.get(ordinal + 1);
+        final char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = this.nameChars.get(start + i);
+        }
+        return new String(chars);
+    }
+
+    /** @return the ordinal of the ID or {@code -1} */
+    private int find(final CharSequence id) {
+        int low = 0;
+        int high = this.idCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compare(mid, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compares the ID at the ordinal with the given ID like a String. */
+    private int compare(final int ordinal, final CharSequence id) {
+        final int start = this.idStart.get(ordinal);
+        final int length = this.idStart.get(ordinal + 1) - start;
+        final int min = Math.min(length, id.length());
+        for (int i = 0; i < min; i++) {
+            final char c1 = this.idChars.get(start + i);
+            final char c2 = id.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length - id.length();
+    }
+
+    /**
+     * Compiles a XML dictionary file into a common name image file.
+     * @param args the XML file and the image file
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: java " + CommonNameIndex.class.getName()
+                               + " <xml> <image>");
+            System.exit(1);
+        }
+        final InputStream in =
+            new BufferedInputStream(new FileInputStream(args[0]));
+        try {
+            final OutputStream out =
+                new BufferedOutputStream(new FileOutputStream(args[1]));
+            try {
+                final int count = compile(in, out);
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("compiled common names of " + count + " IDs");
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
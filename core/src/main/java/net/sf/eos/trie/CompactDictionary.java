@@ -0,0 +1,678 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, array based dictionary for entity recognition. The keys are
+ * stored in a minimal acyclic finite state automaton (DAWG). Common prefixes
+ * and common suffixes of the keys share the same states and arcs. Each key
+ * is mapped to its ordinal by perfect hashing. The ordinal is the index
+ * into the postings of the key. A posting is the index of an interned ID.
+ * <p>The dictionary implements the {@code Map} contract of
+ * {@link net.sf.eos.entity.DictionaryBasedEntityRecognizer#setEntityMap(Map)}.
+ * All modifying operations throw an
+ * {@link UnsupportedOperationException}. The returned ID sets are
+ * unmodifiable views on the postings. The iteration order of the keys is
+ * the natural order of {@link String Strings}.</p>
+ * <p>Instances are thread safe.</p>
+ * <p>Use the {@link Builder} or {@link #copyOf(Map)} to create an
+ * instance. A dictionary may be stored as binary image with
+ * {@link #writeTo(OutputStream)}. The image can be read by
+ * {@link #readFrom(InputStream)} or mapped into memory by
+ * {@link MappedDictionary#open(java.io.File)}.</p>
+ * <p>The binary image contains the following big endian values:</p>
+ * <pre>
+ * int   magic number 0x454f5344
+ * int   version
+ * int   root state
+ * int   count of states (S)
+ * int   count of arcs (A)
+ * int   count of keys (K)
+ * int   count of postings (P)
+ * int   count of IDs (I)
+ * int   count of ID characters (C)
+ * int   maximum key length
+ * int[S + 1]          first arc of each state
+ * long[(S + 63) / 64] accepting states
+ * char[A]             arc labels
+ * int[A]              arc targets
+ * int[A]              arc skips
+ * int[K + 1]          first posting of each key
+ * int[P]              postings
+ * int[I + 1]          first character of each ID
+ * char[C]             ID characters</pre>
+ * @author Sascha Kohlmann
+ */
+public class CompactDictionary extends AbstractCompactDictionary {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(CompactDictionary.class.getName());
+
+    private final int root;
+    private final int[] arcStart;
+    private final long[] accepting;
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] skips;
+    private final int[] postingStart;
+    private final int[] postings;
+    private final String[] ids;
+    private final int maxKeyLength;
+
+    CompactDictionary(final int root,
+                      final int[] arcStart,
+                      final long[] accepting,
+                      final char[] labels,
+                      final int[] targets,
+                      final int[] skips,
+                      final int[] postingStart,
+                      final int[] postings,
+                      final String[] ids,
+                      final int maxKeyLength) {
+        this.root = root;
+        this.arcStart = arcStart;
+        this.accepting = accepting;
+        this.labels = labels;
+        this.targets = targets;
+        this.skips = skips;
+        this.postingStart = postingStart;
+        this.postings = postings;
+        this.ids = ids;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * Creates a new dictionary with the content of the given map. If the map
+     * is an instance of {@code CompactDictionary} the map itself is returned.
+     * @param map the content of the dictionary
+     * @return a new dictionary
+     */
+    public static CompactDictionary copyOf(
+            final Map<? extends CharSequence, ? extends Set<? extends CharSequence>> map) {
+        checkArgumentNotNull(map, "map is null");
+        if (map instanceof CompactDictionary) {
+            return (CompactDictionary) map;
+        }
+        final Builder builder = new Builder();
+        for (final Entry<? extends CharSequence, ? extends Set<? extends CharSequence>> entry
+                : map.entrySet()) {
+            builder.add(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the binary image of the dictionary. The stream is flushed but
+     * not closed.
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final DataOutputStream data =
+            new DataOutputStream(new BufferedOutputStream(out));
+        int idCharCount = 0;
+        for (final String id : this.ids) {
+            idCharCount += id.length();
+        }
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(this.root);
+        data.writeInt(stateCount());
+        data.writeInt(arcCount());
+        data.writeInt(size());
+        data.writeInt(this.postings.length);
+        data.writeInt(this.ids.length);
+        data.writeInt(idCharCount);
+        data.writeInt(this.maxKeyLength);
+        writeInts(data, this.arcStart);
+        for (final long l : this.accepting) {
+            data.writeLong(l);
+        }
+        data.writeChars(new String(this.labels));
+        writeInts(data, this.targets);
+        writeInts(data, this.skips);
+        writeInts(data, this.postingStart);
+        writeInts(data, this.postings);
+        int idStart = 0;
+        for (final String id : this.ids) {
+            data.writeInt(idStart);
+            idStart += id.length();
+        }
+        data.writeInt(idStart);
+        for (final String id : this.ids) {
+            data.writeChars(id);
+        }
+        data.flush();
+    }
+
+    private static void writeInts(final DataOutputStream data,
+                                  final int[] ints) throws IOException {
+        for (final int i : ints) {
+            data.writeInt(i);
+        }
+    }
+
+    /**
+     * Reads a binary image written by {@link #writeTo(OutputStream)} into
+     * the heap. The stream is not closed.
+     * @param in the stream to read from
+     * @return a new dictionary
+     * @throws IOException if an I/O error occurs or the stream doesn't
+     *                     contain a valid image
+     */
+    public static CompactDictionary readFrom(final InputStream in)
+            throws IOException {
+        final DataInputStream data =
+            new DataInputStream(new BufferedInputStream(in));
+        checkHeader(data.readInt(), data.readInt());
+        final int root = data.readInt();
+        final int stateCount = data.readInt();
+        final int arcCount = data.readInt();
+        final int keyCount = data.readInt();
+        final int postingCount = data.readInt();
+        final int idCount = data.readInt();
+        final int idCharCount = data.readInt();
+        final int maxKeyLength = data.readInt();
+
+        final int[] arcStart = readInts(data, stateCount + 1);
+        final long[] accepting = new long[(stateCount + 63) >>> 6];
+        for (int i = 0; i < accepting.length; i++) {
+            accepting[i] = data.readLong();
+        }
+        final char[] labels = readChars(data, arcCount);
+        final int[] targets = readInts(data, arcCount);
+        final int[] skips = readInts(data, arcCount);
+        final int[] postingStart = readInts(data, keyCount + 1);
+        final int[] postings = readInts(data, postingCount);
+        final int[] idStart = readInts(data, idCount + 1);
+        final char[] idChars = readChars(data, idCharCount);
+        final String[] ids = new String[idCount];
+        for (int i = 0; i < idCount; i++) {
+            ids[i] = new String(idChars, idStart[i], idStart[i + 1] - idStart[i]);
+        }
+
+        return new CompactDictionary(root, arcStart, accepting, labels,
+                                     targets, skips, postingStart, postings,
+                                     ids, maxKeyLength);
+    }
+
+    private static int[] readInts(final DataInputStream data, final int count)
+            throws IOException {
+        final int[] ints = new int[count];
+        for (int i = 0; i < count; i++) {
+            ints[i] = data.readInt();
+        }
+        return ints;
+    }
+
+    private static char[] readChars(final DataInputStream data,
+                                    final int count) throws IOException {
+        final char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = data.readChar();
+        }
+        return chars;
+    }
+
+    /*
+     * @see java.util.AbstractMap#size()
+     */
+    @Override
+    public int size() {
+        return this.postingStart.length - 1;
+    }
+
+    @Override
+    final int root() {
+        return this.root;
+    }
+
+    @Override
+    final int arcStart(final int state) {
+        return this.arcStart[state];
+    }
+
+    @Override
+    final boolean isAccepting(final int state) {
+        return (this.accepting[state >>> 6] & (1L << state)) != 0;
+    }
+
+    @Override
+    final char label(final int arc) {
+        return this.labels[arc];
+    }
+
+    @Override
+    final int target(final int arc) {
+        return this.targets[arc];
+    }
+
+    @Override
+    final int skip(final int arc) {
+        return this.skips[arc];
+    }
+
+    @Override
+    final int postingStart(final int ordinal) {
+        return this.postingStart[ordinal];
+    }
+
+    @Override
+    final int posting(final int index) {
+        return this.postings[index];
+    }
+
+    @Override
+    final String id(final int handle) {
+        return this.ids[handle];
+    }
+
+    @Override
+    final boolean idEquals(final int handle, final CharSequence id) {
+        return this.ids[handle].contentEquals(id);
+    }
+
+    @Override
+    final int maxKeyLength() {
+        return this.maxKeyLength;
+    }
+
+    @Override
+    final int stateCount() {
+        return this.arcStart.length - 1;
+    }
+
+    @Override
+    final int arcCount() {
+        return this.labels.length;
+    }
+
+    @Override
+    final int idCount() {
+        return this.ids.length;
+    }
+
+    /** @return the estimated bytes of the {@code String} array */
+    @Override
+    final long idBytes() {
+        long bytes = DictionaryStatistics.arrayBytes(this.ids.length,
+                                                     DictionaryStatistics.REFERENCE);
+        for (final String id : this.ids) {
+            bytes += DictionaryStatistics.keyBytes(id);
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Collects the entries of a {@link CompactDictionary}. The keys may be
+     * added in any order. IDs added more than once for the same key are
+     * stored only once. After calling {@link #build()} the builder must not
+     * be used any more.
+     * @author Sascha Kohlmann
+     */
+    public static final class Builder {
+
+        private final Map<String, int[]> entries = new HashMap<String, int[]>();
+        private final Map<String, Integer> idIndex =
+            new HashMap<String, Integer>();
+        private final List<String> ids = new ArrayList<String>();
+        private boolean built = false;
+
+        /**
+         * Adds a key with its IDs.
+         * @param key the key
+         * @param value the IDs of the key
+         * @return this builder
+         */
+        public Builder add(final CharSequence key,
+                           final Set<? extends CharSequence> value) {
+            checkArgumentNotNull(key, "key is null");
+            checkArgumentNotNull(value, "value is null");
+            if (this.built) {
+                throw new IllegalStateException("already built");
+            }
+            final String k = key.toString();
+            if (value.isEmpty()) {
+                if (! this.entries.containsKey(k)) {
+                    this.entries.put(k, new int[] {0});
+                }
+            }
+            for (final CharSequence id : value) {
+                add(k, id);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a key with a single ID.
+         * @param key the key
+         * @param id the ID of the key
+         * @return this builder
+         */
+        public Builder add(final CharSequence key, final CharSequence id) {
+            checkArgumentNotNull(key, "key is null");
+            checkArgumentNotNull(id, "id is null");
+            if (this.built) {
+                throw new IllegalStateException("already built");
+            }
+            final String k = key.toString();
+            final int handle = intern(id);
+            int[] posting = this.entries.get(k);
+            if (posting == null) {
+                posting = new int[2];
+            } else {
+                for (int i = 1; i <= posting[0]; i++) {
+                    if (posting[i] == handle) {
+                        return this;
+                    }
+                }
+                if (posting[0] + 1 == posting.length) {
+                    final int[] newPosting = new int[posting.length * 2];
+                    System.arraycopy(posting, 0, newPosting, 0, posting.length);
+                    posting = newPosting;
+                }
+            }
+            posting[++posting[0]] = handle;
+            this.entries.put(k, posting);
+            return this;
+        }
+
+        private int intern(final CharSequence id) {
+            final String s = id.toString();
+            final Integer handle = this.idIndex.get(s);
+            if (handle != null) {
+                return handle.intValue();
+            }
+            final int newHandle = this.ids.size();
+            this.ids.add(s);
+            this.idIndex.put(s, Integer.valueOf(newHandle));
+            return newHandle;
+        }
+
+        /**
+         * Creates the dictionary.
+         * @return a new dictionary
+         */
+        public CompactDictionary build() {
+            if (this.built) {
+                throw new IllegalStateException("already built");
+            }
+            this.built = true;
+            final long start = System.currentTimeMillis();
+
+            final String[] keys =
+                this.entries.keySet().toArray(new String[this.entries.size()]);
+            Arrays.sort(keys);
+
+            final int[] postingStart = new int[keys.length + 1];
+            int postingCount = 0;
+            for (int i = 0; i < keys.length; i++) {
+                postingStart[i] = postingCount;
+                postingCount += this.entries.get(keys[i])[0];
+            }
+            postingStart[keys.length] = postingCount;
+            final int[] postings = new int[postingCount];
+            for (int i = 0; i < keys.length; i++) {
+                final int[] posting = this.entries.remove(keys[i]);
+                System.arraycopy(posting, 1, postings, postingStart[i],
+                                 posting[0]);
+            }
+
+            final DawgBuilder dawg = new DawgBuilder();
+            for (final String key : keys) {
+                dawg.add(key);
+            }
+            final CompactDictionary dictionary =
+                dawg.freeze(postingStart, postings,
+                            this.ids.toArray(new String[this.ids.size()]));
+            if (LOG.isInfoEnabled()) {
+                LOG.info("compact dictionary with " + keys.length + " keys, "
+                         + dictionary.stateCount() + " states, "
+                         + dictionary.arcCount() + " arcs and "
+                         + dictionary.idCount() + " IDs built in "
+                         + (System.currentTimeMillis() - start) + "ms");
+            }
+            return dictionary;
+        }
+    }
+
+    /**
+     * Incremental construction of a minimal acyclic automaton from sorted
+     * keys. See Daciuk et al., <em>Incremental Construction of Minimal
+     * Acyclic Finite-State Automata</em>.
+     */
+    static final class DawgBuilder {
+
+        private final Node root = new Node();
+        private final Map<Node, Node> register = new HashMap<Node, Node>();
+        private String previous = null;
+        private int maxKeyLength = 0;
+
+        /**
+         * Adds a key. The keys must be added in natural order.
+         * @param key the key to add
+         */
+        void add(final String key) {
+            if (this.previous != null && this.previous.compareTo(key) >= 0) {
+                throw new IllegalArgumentException("keys not sorted: '"
+                                                   + this.previous + "' '"
+                                                   + key + "'");
+            }
+            int prefix = 0;
+            Node last = this.root;
+            if (this.previous != null) {
+                final int max = Math.min(this.previous.length(), key.length());
+                while (prefix < max
+                        && this.previous.charAt(prefix) == key.charAt(prefix)) {
+                    last = last.lastTarget();
+                    prefix++;
+                }
+            }
+            if (last.count != 0) {
+                replaceOrRegister(last);
+            }
+            for (int i = prefix; i < key.length(); i++) {
+                final Node next = new Node();
+                last.append(key.charAt(i), next);
+                last = next;
+            }
+            last.accepting = true;
+            this.previous = key;
+            this.maxKeyLength = Math.max(this.maxKeyLength, key.length());
+        }
+
+        private void replaceOrRegister(final Node state) {
+            Node node = state;
+            final List<Node> path = new ArrayList<Node>();
+            while (node.count != 0) {
+                path.add(node);
+                node = node.lastTarget();
+            }
+            for (int i = path.size() - 1; i >= 0; i--) {
+                final Node parent = path.get(i);
+                final Node child = parent.lastTarget();
+                final Node registered = this.register.get(child);
+                if (registered != null) {
+                    parent.targets[parent.count - 1] = registered;
+                } else {
+                    this.register.put(child, child);
+                }
+            }
+        }
+
+        /**
+         * Creates the array representation of the automaton.
+         */
+        CompactDictionary freeze(final int[] postingStart,
+                                 final int[] postings,
+                                 final String[] ids) {
+            replaceOrRegister(this.root);
+            this.register.clear();
+
+            // post order numbering: targets are numbered before the source
+            final List<Node> nodes = new ArrayList<Node>();
+            final List<Node> stack = new ArrayList<Node>();
+            final List<Integer> arcStack = new ArrayList<Integer>();
+            stack.add(this.root);
+            arcStack.add(Integer.valueOf(0));
+            int arcCount = 0;
+            while (! stack.isEmpty()) {
+                final int top = stack.size() - 1;
+                final Node node = stack.get(top);
+                final int arc = arcStack.get(top).intValue();
+                if (arc < node.count) {
+                    arcStack.set(top, Integer.valueOf(arc + 1));
+                    final Node target = node.targets[arc];
+                    if (target.id < 0) {
+                        stack.add(target);
+                        arcStack.add(Integer.valueOf(0));
+                    }
+                } else {
+                    stack.remove(top);
+                    arcStack.remove(top);
+                    node.id = nodes.size();
+                    nodes.add(node);
+                    arcCount += node.count;
+                    int words = node.accepting ? 1 : 0;
+                    for (int i = 0; i < node.count; i++) {
+                        words += node.targets[i].words;
+                    }
+                    node.words = words;
+                }
+            }
+
+            final int stateCount = nodes.size();
+            final int[] arcStart = new int[stateCount + 1];
+            final long[] accepting = new long[(stateCount + 63) >>> 6];
+            final char[] labels = new char[arcCount];
+            final int[] targets = new int[arcCount];
+            final int[] skips = new int[arcCount];
+            int arc = 0;
+            for (int s = 0; s < stateCount; s++) {
+                final Node node = nodes.get(s);
+                arcStart[s] = arc;
+                int skip = 0;
+                if (node.accepting) {
+                    accepting[s >>> 6] |= 1L << s;
+                    skip = 1;
+                }
+                for (int i = 0; i < node.count; i++) {
+                    labels[arc] = node.labels[i];
+                    targets[arc] = node.targets[i].id;
+                    skips[arc] = skip;
+                    skip += node.targets[i].words;
+                    arc++;
+                }
+            }
+            arcStart[stateCount] = arc;
+
+            return new CompactDictionary(this.root.id, arcStart, accepting,
+                                         labels, targets, skips, postingStart,
+                                         postings, ids, this.maxKeyLength);
+        }
+    }
+
+    /** A state of the automaton while building. */
+    private static final class Node {
+
+        boolean accepting = false;
+        char[] labels = null;
+        Node[] targets = null;
+        int count = 0;
+        int id = -1;
+        int words = 0;
+
+        Node lastTarget() {
+            return this.targets[this.count - 1];
+        }
+
+        void append(final char label, final Node target) {
+            if (this.labels == null) {
+                this.labels = new char[2];
+                this.targets = new Node[2];
+            } else if (this.count == this.labels.length) {
+                final char[] newLabels = new char[this.count * 2];
+                final Node[] newTargets = new Node[this.count * 2];
+                System.arraycopy(this.labels, 0, newLabels, 0, this.count);
+                System.arraycopy(this.targets, 0, newTargets, 0, this.count);
+                this.labels = newLabels;
+                this.targets = newTargets;
+            }
+            this.labels[this.count] = label;
+            this.targets[this.count] = target;
+            this.count++;
+        }
+
+        /*
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (! (o instanceof Node)) {
+                return false;
+            }
+            final Node other = (Node) o;
+            if (this.accepting != other.accepting
+                    || this.count != other.count) {
+                return false;
+            }
+            for (int i = 0; i < this.count; i++) {
+                if (this.labels[i] != other.labels[i]
+                        || this.targets[i] != other.targets[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /*
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            int hash = this.accepting ? 1 : 0;
+            for (int i = 0; i < this.count; i++) {
+                hash = 31 * hash + this.labels[i];
+                hash = 31 * hash + System.identityHashCode(this.targets[i]);
+            }
+            return hash;
+        }
+    }
+}
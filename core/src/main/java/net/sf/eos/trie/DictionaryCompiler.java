@@ -0,0 +1,107 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * Compiles a dictionary in the XML format of the {@link XmlTrieLoader} into
+ * the binary image format of the {@link CompactDictionary}. The image is
+ * loadable by the {@link MappedTrieLoader}.
+ * <p>Usage: {@code java net.sf.eos.trie.DictionaryCompiler <xml> <image>}</p>
+ * @author Sascha Kohlmann
+ */
+public class DictionaryCompiler {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(DictionaryCompiler.class.getName());
+
+    private final XmlTrieLoader loader;
+
+    /** Creates a new compiler with a default {@link XmlTrieLoader}. */
+    public DictionaryCompiler() {
+        this(new XmlTrieLoader());
+    }
+
+    /**
+     * Creates a new compiler.
+     * @param loader the loader for the XML dictionary
+     */
+    public DictionaryCompiler(final XmlTrieLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Compiles the XML dictionary into a binary image. The streams are not
+     * closed.
+     * @param xml the XML dictionary
+     * @param image the stream for the binary image
+     * @return the compiled dictionary
+     * @throws Exception if an error occurs
+     */
+    public CompactDictionary compile(final InputStream xml,
+                                     final OutputStream image)
+            throws Exception {
+        final long start = System.currentTimeMillis();
+        final Trie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        this.loader.loadTrie(xml, trie);
+        final CompactDictionary dictionary = CompactDictionary.copyOf(trie);
+        dictionary.writeTo(image);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("compiled " + dictionary.size() + " entries in "
+                     + (System.currentTimeMillis() - start) + "ms");
+        }
+        return dictionary;
+    }
+
+    /**
+     * Compiles a XML dictionary file into a binary image file.
+     * @param args the XML file and the image file
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: java " + DictionaryCompiler.class.getName()
+                               + " <xml> <image>");
+            System.exit(1);
+        }
+        final InputStream in =
+            new BufferedInputStream(new FileInputStream(args[0]));
+        try {
+            final OutputStream out =
+                new BufferedOutputStream(new FileOutputStream(args[1]));
+            try {
+                new DictionaryCompiler().compile(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A process wide registry of dictionaries. The registry shares a single
+ * dictionary instance between all users in the JVM. This avoids reloading
+ * the same dictionary for each task if Hadoop reuses the task JVM.
+ * <p>A dictionary is registered by name and version. For a file based
+ * dictionary the name is the canonical path and the version is derived
+ * from the modification time and the length of the file. A user acquires a
+ * dictionary with {@link #acquire(String, String, Loader)} and releases it
+ * with {@link #release(Map)} after usage. A released dictionary stays in
+ * the registry for reuse. If a dictionary is acquired with a different
+ * version, the old version is evicted. An evicted version still in use is
+ * dropped after its last release. A dropped {@link Closeable} dictionary,
+ * e.g. a {@link BlockDictionary}, is closed.</p>
+ * <p>The registry hands out the same instance to all users. The instance
+ * must be treated as read only. A {@link PatriciaTrie} is
+ * {@linkplain PatriciaTrie#freeze() frozen} on registration, so concurrent
+ * readers don't need additional synchronization.</p>
+ * @author Sascha Kohlmann
+ */
+public final class DictionaryRegistry {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(DictionaryRegistry.class.getName());
+
+    private static final DictionaryRegistry INSTANCE = new DictionaryRegistry();
+
+    /** Loads a dictionary if it is not in the registry. */
+    public interface Loader {
+        /**
+         * Loads the dictionary.
+         * @return the dictionary
+         * @throws Exception if an error occurs
+         */
+        Map<CharSequence, Set<CharSequence>> load() throws Exception;
+    }
+
+    private final Map<String, Registration> current =
+        new HashMap<String, Registration>();
+    private final List<Registration> retired = new ArrayList<Registration>();
+
+    DictionaryRegistry() {
+    }
+
+    /**
+     * Returns the process wide registry.
+     * @return the registry
+     */
+    public static DictionaryRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires the dictionary for the given file. The name of the dictionary
+     * is the canonical path of the file plus the given qualifier. The version
+     * is the modification time and the length of the file.
+     * @param file the file of the dictionary
+     * @param qualifier an additional qualifier for the name, e.g. the
+     *                  name of the loader. May be {@code null}.
+     * @param loader loads the dictionary if it is not registered
+     * @return the dictionary
+     * @throws Exception if the loader throws an exception
+     */
+    public Map<CharSequence, Set<CharSequence>> acquire(final File file,
+                                                       final String qualifier,
+                                                       final Loader loader)
+            throws Exception {
+        checkArgumentNotNull(file, "file is null");
+        return acquire(new File[] {file}, qualifier, loader);
+    }
+
+    /**
+     * Acquires the dictionary combined from the given files, e.g. a
+     * {@link MultiDictionary}. The name of the dictionary is the canonical
+     * paths of the files plus the given qualifier. The version is the
+     * modification time and the length of every file, so a change of any
+     * file evicts the dictionary.
+     * @param files the files of the dictionary
+     * @param qualifier an additional qualifier for the name, e.g. the
+     *                  name of the loader. May be {@code null}.
+     * @param loader loads the dictionary if it is not registered
+     * @return the dictionary
+     * @throws Exception if the loader throws an exception
+     */
+    public Map<CharSequence, Set<CharSequence>> acquire(final File[] files,
+                                                       final String qualifier,
+                                                       final Loader loader)
+            throws Exception {
+        checkArgumentNotNull(files, "files is null");
+        checkArgument(files.length != 0, "no files");
+        final StringBuilder name = new StringBuilder();
+        final StringBuilder version = new StringBuilder();
+        for (final File file : files) {
+            checkArgumentNotNull(file, "file is null");
+            if (name.length() != 0) {
+                name.append(File.pathSeparatorChar);
+                version.append(',');
+            }
+            name.append(file.getCanonicalPath());
+            version.append(file.lastModified()).append(':')
+                   .append(file.length());
+        }
+        if (qualifier != null) {
+            name.append('#').append(qualifier);
+        }
+        return acquire(name.toString(), version.toString(), loader);
+    }
+
+    /**
+     * Acquires the dictionary with the given name and version. If the
+     * registry doesn't contain the dictionary, the loader loads it. If the
+     * registry contains the dictionary with a different version, the
+     * registered version is evicted.
+     * <p>The loader runs without holding the lock of the registry, so
+     * loading a large dictionary doesn't block other dictionaries.
+     * Concurrent acquires of the same name and version wait for the first
+     * loader.</p>
+     * @param name the name of the dictionary
+     * @param version the version of the dictionary
+     * @param loader loads the dictionary if it is not registered
+     * @return the dictionary
+     * @throws Exception if the loader throws an exception
+     */
+    public Map<CharSequence, Set<CharSequence>>
+            acquire(final String name,
+                    final String version,
+                    final Loader loader) throws Exception {
+        checkArgumentNotNull(name, "name is null");
+        checkArgumentNotNull(version, "version is null");
+        checkArgumentNotNull(loader, "loader is null");
+
+        for (;;) {
+            final Registration registration;
+            synchronized (this) {
+                Registration known = this.current.get(name);
+                if (known != null && ! known.version.equals(version)) {
+                    evict(name);
+                    known = null;
+                }
+                if (known != null) {
+                    known.references++;
+                    final Map<CharSequence, Set<CharSequence>> dictionary =
+                        awaitLoaded(known);
+                    if (dictionary != null) {
+                        if (LOG.isInfoEnabled()) {
+                            LOG.info("reuse dictionary " + name + " version "
+                                     + version);
+                        }
+                        return dictionary;
+                    }
+                    // the loader failed, try again
+                    continue;
+                }
+                registration = new Registration(name, version);
+                registration.references++;
+                this.current.put(name, registration);
+            }
+            return load(registration, loader);
+        }
+    }
+
+    /**
+     * Waits for the loader of the registration. Must be called with the
+     * lock of the registry.
+     * @return the dictionary or {@code null} if the loader failed
+     */
+    private Map<CharSequence, Set<CharSequence>> awaitLoaded(
+            final Registration registration) throws InterruptedException {
+        try {
+            while (registration.dictionary == null && ! registration.failed) {
+                wait();
+            }
+        } catch (final InterruptedException e) {
+            registration.references--;
+            throw e;
+        }
+        if (registration.failed) {
+            registration.references--;
+            return null;
+        }
+        return registration.dictionary;
+    }
+
+    /** Loads the dictionary of a new registration outside of the lock. */
+    private Map<CharSequence, Set<CharSequence>> load(
+            final Registration registration,
+            final Loader loader) throws Exception {
+        final long start = System.currentTimeMillis();
+        Map<CharSequence, Set<CharSequence>> dictionary = null;
+        try {
+            dictionary = loader.load();
+            checkArgumentNotNull(dictionary, "loader returns null");
+            if (dictionary instanceof PatriciaTrie) {
+                ((PatriciaTrie<?, ?>) dictionary).freeze();
+            }
+        } finally {
+            synchronized (this) {
+                if (dictionary == null) {
+                    registration.failed = true;
+                    registration.references--;
+                    if (this.current.get(registration.name) == registration) {
+                        this.current.remove(registration.name);
+                    }
+                    this.retired.remove(registration);
+                } else {
+                    registration.dictionary = dictionary;
+                }
+                notifyAll();
+            }
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("registered dictionary " + registration.name
+                     + " version " + registration.version + " loaded in "
+                     + (System.currentTimeMillis() - start) + "ms");
+        }
+        return dictionary;
+    }
+
+    /**
+     * Releases a dictionary acquired by one of the {@code acquire} methods.
+     * @param dictionary the dictionary to release
+     * @return {@code true} if the dictionary was acquired
+     */
+    public synchronized boolean release(
+            final Map<CharSequence, Set<CharSequence>> dictionary) {
+        if (dictionary == null) {
+            return false;
+        }
+        for (final Registration registration : this.current.values()) {
+            if (registration.dictionary == dictionary) {
+                if (registration.references > 0) {
+                    registration.references--;
+                }
+                return true;
+            }
+        }
+        for (final Iterator<Registration> itr = this.retired.iterator();
+                itr.hasNext(); ) {
+            final Registration registration = itr.next();
+            if (registration.dictionary == dictionary) {
+                if (--registration.references <= 0) {
+                    itr.remove();
+                    drop(registration);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evicts the current version of the dictionary with the given name.
+     * A version still in use is dropped after its last release, an unused
+     * version is dropped immediately.
+     * @param name the name of the dictionary
+     */
+    public synchronized void evict(final String name) {
+        final Registration registration = this.current.remove(name);
+        if (registration == null) {
+            return;
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("evicted dictionary " + name + " version "
+                     + registration.version);
+        }
+        if (registration.references > 0) {
+            this.retired.add(registration);
+        } else {
+            drop(registration);
+        }
+    }
+
+    /** Closes the dictionary of an unused registration if possible. */
+    private void drop(final Registration registration) {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("dropped dictionary " + registration.name
+                     + " version " + registration.version);
+        }
+        if (registration.dictionary instanceof Closeable) {
+            try {
+                ((Closeable) registration.dictionary).close();
+            } catch (final IOException e) {
+                LOG.warn("unable to close dictionary " + registration.name
+                         + " version " + registration.version, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics registered with the dictionary. Users of a
+     * shared dictionary should take the statistics from the registry
+     * instead of collecting them again.
+     * @param dictionary the dictionary
+     * @return the statistics or {@code null} if the registry doesn't
+     *         contain the dictionary or no statistics are registered
+     * @see #setStatistics(Map, DictionaryStatistics)
+     */
+    public synchronized DictionaryStatistics getStatistics(
+            final Map<CharSequence, Set<CharSequence>> dictionary) {
+        final Registration registration = registrationOf(dictionary);
+        return registration == null ? null : registration.statistics;
+    }
+
+    /**
+     * Registers the statistics of the dictionary, e.g. after the first user
+     * collected them.
+     * @param dictionary the dictionary
+     * @param statistics the statistics of the dictionary
+     * @return {@code true} if the registry contains the dictionary
+     */
+    public synchronized boolean setStatistics(
+            final Map<CharSequence, Set<CharSequence>> dictionary,
+            final DictionaryStatistics statistics) {
+        final Registration registration = registrationOf(dictionary);
+        if (registration == null) {
+            return false;
+        }
+        registration.statistics = statistics;
+        return true;
+    }
+
+    /** Must be called with the lock of the registry. */
+    private Registration registrationOf(
+            final Map<CharSequence, Set<CharSequence>> dictionary) {
+        if (dictionary == null) {
+            return null;
+        }
+        for (final Registration registration : this.current.values()) {
+            if (registration.dictionary == dictionary) {
+                return registration;
+            }
+        }
+        for (final Registration registration : this.retired) {
+            if (registration.dictionary == dictionary) {
+                return registration;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the count of references to the dictionary.
+     * @param dictionary the dictionary
+     * @return the count of references or {@code -1} if the registry
+     *         doesn't contain the dictionary
+     */
+    public synchronized int getReferenceCount(
+            final Map<CharSequence, Set<CharSequence>> dictionary) {
+        final Registration registration = registrationOf(dictionary);
+        return registration == null ? -1 : registration.references;
+    }
+
+    private static final class Registration {
+        final String name;
+        final String version;
+        /** {@code null} while the loader runs. */
+        Map<CharSequence, Set<CharSequence>> dictionary = null;
+        DictionaryStatistics statistics = null;
+        boolean failed = false;
+        int references = 0;
+
+        Registration(final String name, final String version) {
+            this.name = name;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structure and memory footprint of a dictionary. Created by
+ * {@link PatriciaTrie#statistics()},
+ * {@link CompactDictionary#statistics()} and
+ * {@link MultiDictionary#statistics()}.
+ * <p>The <em>depth</em> of a key is the count of nodes visited by a lookup
+ * of the key below the root. The byte counts are estimations of the
+ * retained heap for a 64 bit JVM with compressed references. Shared
+ * keys, value sets and IDs are counted once. The bytes of a
+ * {@link MappedDictionary} are in the mapped file, not in the heap.</p>
+ * <p>Instances are immutable.</p>
+ * @author Sascha Kohlmann
+ */
+public final class DictionaryStatistics {
+
+    /** Size of an object header. */
+    static final int OBJECT_HEADER = 12;
+    /** Size of an array header. */
+    static final int ARRAY_HEADER = 16;
+    /** Size of a reference. */
+    static final int REFERENCE = 4;
+
+    private final int entryCount;
+    private final int nodeCount;
+    private final int internalNodeCount;
+    private final int externalNodeCount;
+    private final int[] depthHistogram;
+    private final int valueSetCount;
+    private final int idCount;
+    private final long keyBytes;
+    private final long valueBytes;
+    private final long nodeBytes;
+    private final long loadTime;
+
+    DictionaryStatistics(final int entryCount,
+                         final int nodeCount,
+                         final int internalNodeCount,
+                         final int externalNodeCount,
+                         final int[] depthHistogram,
+                         final int valueSetCount,
+                         final int idCount,
+                         final long keyBytes,
+                         final long valueBytes,
+                         final long nodeBytes,
+                         final long loadTime) {
+        this.entryCount = entryCount;
+        this.nodeCount = nodeCount;
+        this.internalNodeCount = internalNodeCount;
+        this.externalNodeCount = externalNodeCount;
+        this.depthHistogram = depthHistogram;
+        this.valueSetCount = valueSetCount;
+        this.idCount = idCount;
+        this.keyBytes = keyBytes;
+        this.valueBytes = valueBytes;
+        this.nodeBytes = nodeBytes;
+        this.loadTime = loadTime;
+    }
+
+    /**
+     * Combines the statistics of several dictionaries, e.g. of the
+     * dictionaries of a {@link MultiDictionary}. The counts and the bytes
+     * are summed up, a key of several dictionaries is counted for each
+     * dictionary.
+     * @param statistics the statistics to combine
+     * @return the combined statistics without load time
+     */
+    static DictionaryStatistics combine(
+            final List<DictionaryStatistics> statistics) {
+        int entryCount = 0;
+        int nodeCount = 0;
+        int internalNodeCount = 0;
+        int externalNodeCount = 0;
+        int[] depthHistogram = new int[0];
+        int valueSetCount = 0;
+        int idCount = 0;
+        long keyBytes = 0;
+        long valueBytes = 0;
+        long nodeBytes = 0;
+        for (final DictionaryStatistics stats : statistics) {
+            entryCount += stats.entryCount;
+            nodeCount += stats.nodeCount;
+            internalNodeCount += stats.internalNodeCount;
+            externalNodeCount += stats.externalNodeCount;
+            if (stats.depthHistogram.length > depthHistogram.length) {
+                final int[] grown = new int[stats.depthHistogram.length];
+                System.arraycopy(depthHistogram, 0, grown, 0,
+                                 depthHistogram.length);
+                depthHistogram = grown;
+            }
+            for (int depth = 0; depth < stats.depthHistogram.length; depth++) {
+                depthHistogram[depth] += stats.depthHistogram[depth];
+            }
+            valueSetCount += stats.valueSetCount;
+            idCount += stats.idCount;
+            keyBytes += stats.keyBytes;
+            valueBytes += stats.valueBytes;
+            nodeBytes += stats.nodeBytes;
+        }
+        return new DictionaryStatistics(entryCount,
+                                        nodeCount,
+                                        internalNodeCount,
+                                        externalNodeCount,
+                                        depthHistogram,
+                                        valueSetCount,
+                                        idCount,
+                                        keyBytes,
+                                        valueBytes,
+                                        nodeBytes,
+                                        -1);
+    }
+
+    /**
+     * Returns a copy of the statistics with the load time. Dictionaries
+     * doesn't know how long it took to load them.
+     * @param millis the load time in milliseconds
+     * @return a copy with the load time
+     */
+    public DictionaryStatistics withLoadTime(final long millis) {
+        return new DictionaryStatistics(this.entryCount,
+                                        this.nodeCount,
+                                        this.internalNodeCount,
+                                        this.externalNodeCount,
+                                        this.depthHistogram,
+                                        this.valueSetCount,
+                                        this.idCount,
+                                        this.keyBytes,
+                                        this.valueBytes,
+                                        this.nodeBytes,
+                                        millis);
+    }
+
+    /** @return the count of keys */
+    public int getEntryCount() {
+        return this.entryCount;
+    }
+
+    /** @return the count of nodes. For a {@link PatriciaTrie} this is the
+     *          count of entries including the root. For a
+     *          {@link CompactDictionary} this is the count of states. */
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /** @return the count of nodes with at least one child */
+    public int getInternalNodeCount() {
+        return this.internalNodeCount;
+    }
+
+    /** @return the count of nodes without children */
+    public int getExternalNodeCount() {
+        return this.externalNodeCount;
+    }
+
+    /**
+     * Returns the count of keys for each depth.
+     * @return a copy of the histogram. The index is the depth.
+     */
+    public int[] getDepthHistogram() {
+        final int[] retval = new int[this.depthHistogram.length];
+        System.arraycopy(this.depthHistogram, 0, retval, 0, retval.length);
+        return retval;
+    }
+
+    /** @return the maximum depth of a key */
+    public int getMaxDepth() {
+        return Math.max(0, this.depthHistogram.length - 1);
+    }
+
+    /** @return the average depth of the keys */
+    public double getAverageDepth() {
+        long sum = 0;
+        for (int depth = 0; depth < this.depthHistogram.length; depth++) {
+            sum += (long) depth * this.depthHistogram[depth];
+        }
+        return this.entryCount == 0 ? 0d : (double) sum / this.entryCount;
+    }
+
+    /** @return the count of distinct value sets */
+    public int getValueSetCount() {
+        return this.valueSetCount;
+    }
+
+    /** @return the count of distinct IDs in the value sets */
+    public int getIdCount() {
+        return this.idCount;
+    }
+
+    /** @return the estimated bytes of the keys */
+    public long getKeyBytes() {
+        return this.keyBytes;
+    }
+
+    /** @return the estimated bytes of the value sets including the IDs */
+    public long getValueBytes() {
+        return this.valueBytes;
+    }
+
+    /** @return the estimated bytes of the nodes */
+    public long getNodeBytes() {
+        return this.nodeBytes;
+    }
+
+    /** @return the sum of the estimated bytes of keys, values and nodes */
+    public long getEstimatedBytes() {
+        return this.keyBytes + this.valueBytes + this.nodeBytes;
+    }
+
+    /** @return the load time in milliseconds or {@code -1} if unknown */
+    public long getLoadTime() {
+        return this.loadTime;
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("nls")
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("Dictionary statistics:\n");
+        sb.append("  entries: ").append(this.entryCount);
+        sb.append(" | value sets: ").append(this.valueSetCount);
+        sb.append(" | IDs: ").append(this.idCount).append('\n');
+        sb.append("  nodes: ").append(this.nodeCount);
+        sb.append(" | internal: ").append(this.internalNodeCount);
+        sb.append(" | external: ").append(this.externalNodeCount).append('\n');
+        sb.append("  depth: max ").append(getMaxDepth());
+        sb.append(" | average ").append((float) getAverageDepth());
+        sb.append(" | histogram ");
+        for (int depth = 0; depth < this.depthHistogram.length; depth++) {
+            if (this.depthHistogram[depth] != 0) {
+                sb.append(depth).append('=').append(this.depthHistogram[depth])
+                  .append(' ');
+            }
+        }
+        sb.append('\n');
+        sb.append("  estimated bytes: ").append(getEstimatedBytes());
+        sb.append(" | keys: ").append(this.keyBytes);
+        sb.append(" | values: ").append(this.valueBytes);
+        sb.append(" | nodes: ").append(this.nodeBytes).append('\n');
+        sb.append("  load time: ").append(this.loadTime).append("ms");
+        return sb.toString();
+    }
+
+    /** @return the size aligned to 8 bytes */
+    static long align(final long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /** @return the size of an array */
+    static long arrayBytes(final long length, final int elementSize) {
+        return align(ARRAY_HEADER + length * elementSize);
+    }
+
+    /** @return the estimated size of a key or an ID */
+    static long keyBytes(final Object key) {
+        if (key instanceof byte[]) {
+            return arrayBytes(((byte[]) key).length, 1);
+        }
+        if (key instanceof char[]) {
+            return arrayBytes(((char[]) key).length, 2);
+        }
+        if (key instanceof CharSequence) {
+            // String and StringBuilder: header, array reference, two ints
+            return align(OBJECT_HEADER + REFERENCE + 8)
+                   + arrayBytes(((CharSequence) key).length(), 2);
+        }
+        return key == null ? 0 : align(OBJECT_HEADER + REFERENCE);
+    }
+
+    /**
+     * Sums the estimated bytes of keys and values. Value sets and IDs are
+     * counted once per instance.
+     */
+    static final class Estimator {
+
+        private final Map<Object, Object> sets =
+            new IdentityHashMap<Object, Object>();
+        private final Map<Object, Object> ids =
+            new IdentityHashMap<Object, Object>();
+        private int keyCount = 0;
+        private long keyBytes = 0;
+        private long valueBytes = 0;
+
+        void addKey(final Object key) {
+            this.keyCount++;
+            this.keyBytes += keyBytes(key);
+        }
+
+        void addValue(final Object value) {
+            if (value == null || this.sets.put(value, value) != null) {
+                return;
+            }
+            if (! (value instanceof Set)) {
+                this.valueBytes += align(OBJECT_HEADER + REFERENCE);
+                return;
+            }
+            final Set<?> set = (Set<?>) value;
+            final int size = set.size();
+            if (set instanceof EntityIdSet) {
+                // pool and handle array
+                this.valueBytes += align(OBJECT_HEADER + 2 * REFERENCE)
+                                   + arrayBytes(size, 4);
+            } else {
+                // HashSet with a HashMap, its table and one node per ID
+                int capacity = 16;
+                while (capacity * 3 / 4 < size) {
+                    capacity <<= 1;
+                }
+                this.valueBytes += align(OBJECT_HEADER + REFERENCE)
+                                   + align(OBJECT_HEADER + 3 * REFERENCE + 16)
+                                   + arrayBytes(capacity, REFERENCE)
+                                   + (long) size
+                                     * align(OBJECT_HEADER + 3 * REFERENCE + 4);
+            }
+            for (final Object id : set) {
+                if (this.ids.put(id, id) == null) {
+                    this.valueBytes += keyBytes(id);
+                }
+            }
+        }
+
+        int getKeyCount() {
+            return this.keyCount;
+        }
+
+        long getKeyBytes() {
+            return this.keyBytes;
+        }
+
+        long getValueBytes() {
+            return this.valueBytes;
+        }
+
+        int getValueSetCount() {
+            return this.sets.size();
+        }
+
+        int getIdCount() {
+            return this.ids.size();
+        }
+    }
+}
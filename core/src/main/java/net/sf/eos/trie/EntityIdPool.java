@@ -0,0 +1,109 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns entity IDs to {@code int} handles. Each distinct ID is stored
+ * once. A handle is the index of the ID in the order of interning. Sets
+ * of a dictionary store handles instead of {@code Strings}, see
+ * {@link #newSet()}.
+ * <p>Interning is synchronized. Lookups of IDs by handle and of handles
+ * by ID are not synchronized, so recognizers don't lock the pool. The
+ * pool must be safely published after loading a dictionary.</p>
+ * @author Sascha Kohlmann
+ * @see EntityIdSet
+ */
+public final class EntityIdPool {
+
+    private final ConcurrentHashMap<String, Integer> handles =
+        new ConcurrentHashMap<String, Integer>();
+    private volatile String[] ids = new String[16];
+    private volatile int size = 0;
+
+    /**
+     * Interns the ID.
+     * @param id the ID to intern
+     * @return the handle of the ID
+     */
+    public synchronized int intern(final CharSequence id) {
+        checkArgumentNotNull(id, "id is null");
+        final String key = id.toString();
+        final Integer known = this.handles.get(key);
+        if (known != null) {
+            return known.intValue();
+        }
+        String[] lids = this.ids;
+        if (this.size == lids.length) {
+            final String[] newIds = new String[lids.length << 1];
+            System.arraycopy(lids, 0, newIds, 0, lids.length);
+            lids = newIds;
+        }
+        final int handle = this.size;
+        lids[handle] = key;
+        this.ids = lids;
+        this.size = handle + 1;
+        this.handles.put(key, Integer.valueOf(handle));
+        return handle;
+    }
+
+    /**
+     * Returns the handle of an interned ID.
+     * @param id the ID
+     * @return the handle or {@code -1} if the ID isn't interned
+     */
+    public int handleOf(final Object id) {
+        if (! (id instanceof CharSequence)) {
+            return -1;
+        }
+        final Integer handle = this.handles.get(id.toString());
+        return handle == null ? -1 : handle.intValue();
+    }
+
+    /**
+     * Returns the ID for the handle.
+     * @param handle the handle
+     * @return the ID
+     * @throws IndexOutOfBoundsException if the handle is unknown
+     */
+    public String get(final int handle) {
+        final String id = handle >= 0 ? this.ids[handle] : null;
+        if (id == null) {
+            throw new IndexOutOfBoundsException("unknown handle: " + handle);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the count of interned IDs.
+     * @return the count of IDs
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Creates a new empty set storing the handles of IDs interned by
+     * this pool.
+     * @return a new set
+     */
+    public EntityIdSet newSet() {
+        return new PooledEntityIdSet(this);
+    }
+}
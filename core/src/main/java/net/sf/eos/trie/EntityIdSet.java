@@ -0,0 +1,52 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.util.Set;
+
+/**
+ * A set of entity IDs backed by {@code int} handles. A handle identifies
+ * an ID within all sets of the same {@link #handleOwner() owner}, e.g. an
+ * {@link EntityIdPool} or a {@link CompactDictionary}. Handles of sets with
+ * different owners are unrelated. Users may work on the handles and
+ * resolve the ID of a handle only if required.
+ * @author Sascha Kohlmann
+ * @see EntityIdPool
+ */
+public interface EntityIdSet extends Set<CharSequence> {
+
+    /**
+     * Returns the handle at the given index. The index runs from
+     * {@code 0} to {@code size() - 1}.
+     * @param index the index of the handle
+     * @return the handle
+     */
+    int handleAt(int index);
+
+    /**
+     * Returns the ID for the handle.
+     * @param handle the handle of the ID
+     * @return the ID
+     */
+    String idOf(int handle);
+
+    /**
+     * Returns the owner of the handles. Two handles identify the same ID
+     * only if the sets of the handles have the same owner.
+     * @return the owner of the handles
+     */
+    Object handleOwner();
+}
@@ -0,0 +1,35 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Implementations opens tries directly from a file. The file may be
+ * accessed lazily.
+ * @author Sascha Kohlmann
+ */
+public interface FileTrieLoader<K, V> extends TrieLoader<K, V> {
+
+    /**
+     * Opens the data of a trie from the <code>File</code>.
+     * @param trieData file containing the trie structure data.
+     * @return a read only dictionary
+     * @throws Exception if the loader is unable to open the data.
+     */
+    Map<K, V> openTrie(final File trieData) throws Exception;
+}
@@ -0,0 +1,239 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A read only dictionary working directly on a memory mapped binary image
+ * of a {@link CompactDictionary}. The dictionary lives outside of the Java
+ * heap. Opening a dictionary maps the image file but doesn't read it.
+ * The operating system pages in the parts of the image touched by lookups
+ * and shares the pages between all processes mapping the same file.
+ * <p>IDs are decoded to {@code Strings} on each access of a value.</p>
+ * <p>The size of an image is limited to 2GB.</p>
+ * <p>Instances are thread safe.</p>
+ * @author Sascha Kohlmann
+ * @see CompactDictionary#writeTo(java.io.OutputStream)
+ */
+public class MappedDictionary extends AbstractCompactDictionary {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(MappedDictionary.class.getName());
+
+    /** Size of the image header in bytes. */
+    private static final int HEADER_SIZE = 10 * 4;
+
+    private final int root;
+    private final int stateCount;
+    private final int arcCount;
+    private final int keyCount;
+    private final int idCount;
+    private final int maxKeyLength;
+
+    private final IntBuffer arcStart;
+    private final LongBuffer accepting;
+    private final CharBuffer labels;
+    private final IntBuffer targets;
+    private final IntBuffer skips;
+    private final IntBuffer postingStart;
+    private final IntBuffer postings;
+    private final IntBuffer idStart;
+    private final CharBuffer idChars;
+
+    MappedDictionary(final ByteBuffer image) throws IOException {
+        checkHeader(image.getInt(0), image.getInt(4));
+        this.root = image.getInt(8);
+        this.stateCount = image.getInt(12);
+        this.arcCount = image.getInt(16);
+        this.keyCount = image.getInt(20);
+        final int postingCount = image.getInt(24);
+        this.idCount = image.getInt(28);
+        final int idCharCount = image.getInt(32);
+        this.maxKeyLength = image.getInt(36);
+
+        int offset = HEADER_SIZE;
+        this.arcStart = slice(image, offset).asIntBuffer();
+        offset += 4 * (this.stateCount + 1);
+        this.accepting = slice(image, offset).asLongBuffer();
+        offset += 8 * ((this.stateCount + 63) >>> 6);
+        this.labels = slice(image, offset).asCharBuffer();
+        offset += 2 * this.arcCount;
+        this.targets = slice(image, offset).asIntBuffer();
+        offset += 4 * this.arcCount;
+        this.skips = slice(image, offset).asIntBuffer();
+        offset += 4 * this.arcCount;
+        this.postingStart = slice(image, offset).asIntBuffer();
+        offset += 4 * (this.keyCount + 1);
+        this.postings = slice(image, offset).asIntBuffer();
+        offset += 4 * postingCount;
+        this.idStart = slice(image, offset).asIntBuffer();
+        offset += 4 * (this.idCount + 1);
+        this.idChars = slice(image, offset).asCharBuffer();
+        offset += 2 * idCharCount;
+
+        if (offset != image.limit()) {
+            throw new IOException("corrupt dictionary image: expected "
+                                  + offset + " bytes, found "
+                                  + image.limit());
+        }
+    }
+
+    private static ByteBuffer slice(final ByteBuffer image, final int offset)
+            throws IOException {
+        if (offset > image.limit()) {
+            throw new IOException("corrupt dictionary image");
+        }
+        final ByteBuffer duplicate = image.duplicate();
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+    /**
+     * Maps the binary image file into memory.
+     * @param image the image file
+     * @return a dictionary working on the mapped image
+     * @throws IOException if an I/O error occurs or the file doesn't
+     *                     contain a valid image
+     */
+    public static MappedDictionary open(final File image) throws IOException {
+        checkArgumentNotNull(image, "image is null");
+        final RandomAccessFile file = new RandomAccessFile(image, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            final MappedByteBuffer buffer =
+                channel.map(MapMode.READ_ONLY, 0, channel.size());
+            final MappedDictionary dictionary = new MappedDictionary(buffer);
+            if (LOG.isInfoEnabled()) {
+                LOG.info("mapped dictionary " + image + " with "
+                         + dictionary.size() + " keys and "
+                         + buffer.limit() + " bytes");
+            }
+            return dictionary;
+        } finally {
+            file.close();
+        }
+    }
+
+    /*
+     * @see java.util.AbstractMap#size()
+     */
+    @Override
+    public int size() {
+        return this.keyCount;
+    }
+
+    @Override
+    final int root() {
+        return this.root;
+    }
+
+    @Override
+    final int arcStart(final int state) {
+        return this.arcStart.get(state);
+    }
+
+    @Override
+    final boolean isAccepting(final int state) {
+        return (this.accepting.get(state >>> 6) & (1L << state)) != 0;
+    }
+
+    @Override
+    final char label(final int arc) {
+        return this.labels.get(arc);
+    }
+
+    @Override
+    final int target(final int arc) {
+        return this.targets.get(arc);
+    }
+
+    @Override
+    final int skip(final int arc) {
+        return this.skips.get(arc);
+    }
+
+    @Override
+    final int postingStart(final int ordinal) {
+        return this.postingStart.get(ordinal);
+    }
+
+    @Override
+    final int posting(final int index) {
+        return this.postings.get(index);
+    }
+
+    @Override
+    final String id(final int handle) {
+        final int start = this.idStart.get(handle);
+        final int end = this.idStart.get(handle + 1);
+        final char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = this.idChars.get(start + i);
+        }
+        return new String(chars);
+    }
+
+    @Override
+    final boolean idEquals(final int handle, final CharSequence id) {
+        final int start = this.idStart.get(handle);
+        final int end = this.idStart.get(handle + 1);
+        if (end - start != id.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (this.idChars.get(i) != id.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    final int maxKeyLength() {
+        return this.maxKeyLength;
+    }
+
+    @Override
+    final int stateCount() {
+        return this.stateCount;
+    }
+
+    @Override
+    final int arcCount() {
+        return this.arcCount;
+    }
+
+    @Override
+    final int idCount() {
+        return this.idCount;
+    }
+}
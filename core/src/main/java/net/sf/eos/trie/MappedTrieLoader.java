@@ -0,0 +1,65 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+
+/**
+ * Loads binary dictionary images created by the {@link DictionaryCompiler}.
+ * {@link #openTrie(File)} maps the image into memory and returns a
+ * {@link MappedDictionary}. {@link #loadTrie(InputStream, Trie)} reads
+ * the image and copies the entries into the given trie.
+ * @author Sascha Kohlmann
+ */
+public class MappedTrieLoader
+        extends AbstractTrieLoader<CharSequence, Set<CharSequence>>
+        implements FileTrieLoader<CharSequence, Set<CharSequence>> {
+
+    /**
+     * Copies the entries of the binary image into the trie.
+     */
+    @Override
+    public void loadTrie(final InputStream trieData,
+                         final Trie<CharSequence, Set<CharSequence>> trie)
+            throws Exception {
+        final CompactDictionary dictionary =
+            CompactDictionary.readFrom(trieData);
+        for (final Entry<CharSequence, Set<CharSequence>> entry
+                : dictionary.entrySet()) {
+            final CharSequence key = entry.getKey();
+            Set<CharSequence> values = trie.get(key);
+            if (values == null) {
+                values = new HashSet<CharSequence>();
+                trie.put(key, values);
+            }
+            values.addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * Maps the binary image into memory.
+     * @return a {@link MappedDictionary}
+     */
+    public Map<CharSequence, Set<CharSequence>> openTrie(final File trieData)
+            throws Exception {
+        return MappedDictionary.open(trieData);
+    }
+}
@@ -0,0 +1,504 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+import static net.sf.eos.util.Conditions.checkState;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Combines several dictionaries, each with the type of its entities, into
+ * a single read only view. A recognizer finds the entities of all
+ * dictionaries in a single pass over a text and gets the types of the IDs
+ * of a key from {@link #getEntityTypes(CharSequence, CharSequence)}.
+ * <p>A key of several dictionaries maps to the union of the IDs. The type
+ * belongs to the entry of a dictionary, not to the ID. If two dictionaries
+ * map a key to the same ID, the ID has both types for the key.</p>
+ * <p>The view doesn't copy immutable {@link PrefixSearchable}
+ * dictionaries, e.g. a {@link BlockDictionary}, a {@link MappedDictionary}
+ * or a {@linkplain PatriciaTrie#freeze() frozen} {@code PatriciaTrie}.
+ * Other dictionaries are copied into a frozen {@code PatriciaTrie}. A
+ * lookup asks every dictionary, so the lookup costs grow with the count of
+ * dictionaries. {@link #close()} closes the {@link Closeable}
+ * dictionaries.</p>
+ * <p>Instances are immutable. Create instances with the {@link Builder}.</p>
+ * @author Sascha Kohlmann
+ */
+public class MultiDictionary
+        extends AbstractMap<CharSequence, Set<CharSequence>>
+        implements PrefixSearchable<CharSequence>, TypedDictionary, Closeable {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(MultiDictionary.class.getName());
+
+    private final List<Map<CharSequence, Set<CharSequence>>> dictionaries;
+    private final List<String> typeNames;
+    private final EntrySet entrySet = new EntrySet();
+    private final KeySet keySet = new KeySet();
+    /** The count of distinct keys or {@code -1} if not counted yet. */
+    private volatile int size = -1;
+
+    private MultiDictionary(
+            final List<Map<CharSequence, Set<CharSequence>>> dictionaries,
+            final List<String> typeNames) {
+        this.dictionaries = Collections.unmodifiableList(dictionaries);
+        this.typeNames = Collections.unmodifiableList(typeNames);
+    }
+
+    /*
+     * @see net.sf.eos.trie.TypedDictionary#getEntityTypes(java.lang.CharSequence, java.lang.CharSequence)
+     */
+    public List<String> getEntityTypes(final CharSequence key,
+                                       final CharSequence id) {
+        if (key == null || id == null) {
+            return Collections.emptyList();
+        }
+        final String lookup = key.toString();
+        final String entityId = id.toString();
+        List<String> types = null;
+        for (int i = 0; i < this.dictionaries.size(); i++) {
+            final Set<CharSequence> ids = this.dictionaries.get(i).get(lookup);
+            if (ids != null && ids.contains(entityId)) {
+                if (types == null) {
+                    types = new ArrayList<String>(2);
+                }
+                types.add(this.typeNames.get(i));
+            }
+        }
+        if (types == null) {
+            return Collections.emptyList();
+        }
+        return types;
+    }
+
+    /**
+     * Returns the types of the dictionaries in the order of the
+     * dictionaries.
+     * @return the types
+     */
+    public List<String> getEntityTypes() {
+        return this.typeNames;
+    }
+
+    /**
+     * Returns the combined dictionaries in the order of the types.
+     * @return the dictionaries
+     */
+    public List<Map<CharSequence, Set<CharSequence>>> getDictionaries() {
+        return this.dictionaries;
+    }
+
+    /**
+     * Returns the combined statistics of the dictionaries, see
+     * {@link DictionaryStatistics}. Only a {@link PatriciaTrie}, a
+     * {@link CompactDictionary} and a {@link MappedDictionary} provide
+     * statistics.
+     * @return the statistics or {@code null} if no dictionary provides
+     *         statistics
+     */
+    @SuppressWarnings("unchecked")
+    public DictionaryStatistics statistics() {
+        final List<DictionaryStatistics> statistics =
+            new ArrayList<DictionaryStatistics>(this.dictionaries.size());
+        for (final Map<CharSequence, Set<CharSequence>> dictionary
+                : this.dictionaries) {
+            if (dictionary instanceof PatriciaTrie) {
+                statistics.add(((PatriciaTrie<CharSequence, Set<CharSequence>>)
+                                   dictionary).statistics());
+            } else if (dictionary instanceof AbstractCompactDictionary) {
+                statistics.add(
+                        ((AbstractCompactDictionary) dictionary).statistics());
+            }
+        }
+        if (statistics.isEmpty()) {
+            return null;
+        }
+        return DictionaryStatistics.combine(statistics);
+    }
+
+    /**
+     * Returns the IDs of the key. The union of several dictionaries is
+     * created for each call.
+     * @see java.util.AbstractMap#get(java.lang.Object)
+     */
+    @Override
+    public Set<CharSequence> get(final Object key) {
+        Set<CharSequence> retval = null;
+        boolean union = false;
+        for (final Map<CharSequence, Set<CharSequence>> dictionary
+                : this.dictionaries) {
+            final Set<CharSequence> ids = dictionary.get(key);
+            if (ids == null) {
+                continue;
+            }
+            if (retval == null) {
+                retval = ids;
+            } else {
+                if (! union) {
+                    retval = new HashSet<CharSequence>(retval);
+                    union = true;
+                }
+                retval.addAll(ids);
+            }
+        }
+        return retval;
+    }
+
+    /*
+     * @see java.util.AbstractMap#containsKey(java.lang.Object)
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        for (final Map<CharSequence, Set<CharSequence>> dictionary
+                : this.dictionaries) {
+            if (dictionary.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the count of distinct keys. The keys are counted on the first
+     * call.
+     * @see java.util.AbstractMap#size()
+     */
+    @Override
+    public int size() {
+        int retval = this.size;
+        if (retval < 0) {
+            retval = 0;
+            for (final Iterator<CharSequence> itr = new KeyIterator();
+                    itr.hasNext(); itr.next()) {
+                retval++;
+            }
+            this.size = retval;
+        }
+        return retval;
+    }
+
+    /*
+     * @see java.util.AbstractMap#isEmpty()
+     */
+    @Override
+    public boolean isEmpty() {
+        for (final Map<CharSequence, Set<CharSequence>> dictionary
+                : this.dictionaries) {
+            if (! dictionary.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The keys of the dictionaries in the order of the dictionaries. A key
+     * of several dictionaries is returned once.
+     * @see java.util.AbstractMap#keySet()
+     */
+    @Override
+    public Set<CharSequence> keySet() {
+        return this.keySet;
+    }
+
+    /*
+     * @see java.util.AbstractMap#entrySet()
+     */
+    @Override
+    public Set<Entry<CharSequence, Set<CharSequence>>> entrySet() {
+        return this.entrySet;
+    }
+
+    /*
+     * @see net.sf.eos.trie.PrefixSearchable#containsPrefix(java.lang.Object)
+     */
+    @SuppressWarnings("unchecked")
+    public boolean containsPrefix(final CharSequence prefix) {
+        for (final Map<CharSequence, Set<CharSequence>> dictionary
+                : this.dictionaries) {
+            if (((PrefixSearchable<CharSequence>) dictionary)
+                    .containsPrefix(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes the {@link Closeable} dictionaries, e.g. a
+     * {@link BlockDictionary}.
+     * @throws IOException if a dictionary throws an exception. The other
+     *                     dictionaries are closed nevertheless.
+     */
+    public void close() throws IOException {
+        IOException first = null;
+        for (final Map<CharSequence, Set<CharSequence>> dictionary
+                : this.dictionaries) {
+            if (dictionary instanceof Closeable) {
+                try {
+                    ((Closeable) dictionary).close();
+                } catch (final IOException e) {
+                    if (first == null) {
+                        first = e;
+                    }
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    /**
+     * Iterates the keys of the dictionaries. Skips a key if a former
+     * dictionary contains the key.
+     */
+    private final class KeyIterator implements Iterator<CharSequence> {
+
+        private int index = 0;
+        private Iterator<CharSequence> keys = null;
+        private CharSequence next = null;
+
+        KeyIterator() {
+            advance();
+        }
+
+        private void advance() {
+            this.next = null;
+            final List<Map<CharSequence, Set<CharSequence>>> dicts =
+                MultiDictionary.this.dictionaries;
+            while (this.next == null) {
+                if (this.keys == null || ! this.keys.hasNext()) {
+                    if (this.index == dicts.size()) {
+                        return;
+                    }
+                    this.keys = dicts.get(this.index++).keySet().iterator();
+                    continue;
+                }
+                final CharSequence key = this.keys.next();
+                if (! containedBefore(key, this.index - 1)) {
+                    this.next = key;
+                }
+            }
+        }
+
+        private boolean containedBefore(final CharSequence key,
+                                        final int current) {
+            final List<Map<CharSequence, Set<CharSequence>>> dicts =
+                MultiDictionary.this.dictionaries;
+            for (int i = 0; i < current; i++) {
+                if (dicts.get(i).containsKey(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        public CharSequence next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            final CharSequence retval = this.next;
+            advance();
+            return retval;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final class KeySet extends AbstractSet<CharSequence> {
+
+        @Override
+        public Iterator<CharSequence> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public int size() {
+            return MultiDictionary.this.size();
+        }
+    }
+
+    private final class EntrySet
+            extends AbstractSet<Entry<CharSequence, Set<CharSequence>>> {
+
+        @Override
+        public Iterator<Entry<CharSequence, Set<CharSequence>>> iterator() {
+            final Iterator<CharSequence> keys = new KeyIterator();
+            return new Iterator<Entry<CharSequence, Set<CharSequence>>>() {
+                public boolean hasNext() {
+                    return keys.hasNext();
+                }
+
+                public Entry<CharSequence, Set<CharSequence>> next() {
+                    final CharSequence key = keys.next();
+                    return new ImmutableEntry(key, get(key));
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return MultiDictionary.this.size();
+        }
+    }
+
+    private static final class ImmutableEntry
+            implements Entry<CharSequence, Set<CharSequence>> {
+
+        private final CharSequence key;
+        private final Set<CharSequence> value;
+
+        ImmutableEntry(final CharSequence key, final Set<CharSequence> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public CharSequence getKey() {
+            return this.key;
+        }
+
+        public Set<CharSequence> getValue() {
+            return this.value;
+        }
+
+        public Set<CharSequence> setValue(final Set<CharSequence> value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (! (o instanceof Entry)) {
+                return false;
+            }
+            final Entry<?, ?> other = (Entry<?, ?>) o;
+            return this.key.equals(other.getKey())
+                   && (this.value == null ? other.getValue() == null
+                                          : this.value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key.hashCode()
+                   ^ (this.value == null ? 0 : this.value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
+    }
+
+    /**
+     * Combines dictionaries into a {@link MultiDictionary}.
+     */
+    public static final class Builder {
+
+        private final List<Map<CharSequence, Set<CharSequence>>> dictionaries =
+            new ArrayList<Map<CharSequence, Set<CharSequence>>>();
+        private final List<String> typeNames = new ArrayList<String>();
+        private boolean built = false;
+
+        /**
+         * Adds a dictionary. An immutable {@link PrefixSearchable}
+         * dictionary is used as is, other dictionaries are copied into a
+         * frozen {@link PatriciaTrie}. {@linkplain PatriciaTrie#freeze()
+         * Freeze} a loaded trie before adding it to avoid the copy.
+         * @param type the type of the entities of the dictionary
+         * @param dictionary the dictionary
+         * @return this builder
+         */
+        public Builder add(final String type,
+                           final Map<CharSequence, Set<CharSequence>> dictionary) {
+            checkState(! this.built, "already built");
+            checkArgumentNotNull(type, "type is null");
+            checkArgumentNotNull(dictionary, "dictionary is null");
+            checkArgument(! this.typeNames.contains(type),
+                          "duplicate type: " + type);
+            this.typeNames.add(type);
+            if (isImmutablePrefixSearchable(dictionary)) {
+                this.dictionaries.add(dictionary);
+            } else {
+                final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+                    new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                            new CharSequenceKeyAnalyzer());
+                trie.putAll(dictionary);
+                trie.freeze();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("copied dictionary of type " + type + " with "
+                              + trie.size() + " keys");
+                }
+                this.dictionaries.add(trie);
+            }
+            return this;
+        }
+
+        private static boolean isImmutablePrefixSearchable(
+                final Map<CharSequence, Set<CharSequence>> dictionary) {
+            return (dictionary instanceof PatriciaTrie
+                        && ((PatriciaTrie<?, ?>) dictionary).isFrozen())
+                   || dictionary instanceof AbstractCompactDictionary
+                   || dictionary instanceof BlockDictionary
+                   || dictionary instanceof MultiDictionary;
+        }
+
+        /**
+         * Creates the dictionary. The builder is unusable afterwards.
+         * @return the combined dictionary
+         */
+        public MultiDictionary build() {
+            checkState(! this.built, "already built");
+            this.built = true;
+            if (LOG.isInfoEnabled()) {
+                LOG.info("combined " + this.typeNames.size()
+                         + " dictionaries " + this.typeNames);
+            }
+            return new MultiDictionary(this.dictionaries, this.typeNames);
+        }
+    }
+}
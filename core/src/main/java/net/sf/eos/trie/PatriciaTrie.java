@@ -87,6 +87,15 @@ import java.util.SortedMap;
         {Lake=Lake, Lax=Lax}
 
  * </pre>
+ * <p>
+ * A trie is not thread safe. {@link #freeze()} turns a trie into an 
+ * immutable trie. All read operations of a frozen trie, including 
+ * <code>get</code>, <code>select</code>, <code>getPrefixedBy</code> and 
+ * <code>traverse</code>, are safe for unsynchronized concurrent use. The 
+ * views returned by <code>getPrefixedBy</code> and the other submap methods 
+ * cache their bounds and must not be shared between threads. Each call 
+ * returns a new view. A frozen trie must be published safely, e.g. thru a 
+ * volatile field or a synchronized registry.
  * <p><strong>Note:</strong> Taken from 
  * <a href='http://www.limewire.org/'>Limewire</a> sourcecode and repackaged by
  * Sascha Kohlmann.</p>
@@ -94,7 +103,8 @@ import java.util.SortedMap;
  * @author Sam Berlin
  */
 public class PatriciaTrie<K, V> extends AbstractMap<K, V>
-                                implements Trie<K, V>, Serializable {
+                                implements Trie<K, V>, PrefixSearchable<K>,
+                                           Serializable {
     
     private static final long serialVersionUID = 110232526181493307L;
 
@@ -107,6 +117,12 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
     /** The number of times this has been modified (to fail-fast the iterators). */
     private transient int modCount = 0;
     
+    /** Whether or not the trie rejects modifications. */
+    private volatile boolean frozen = false;
+    
+    /** The entries of a frozen trie in the order of the trie. */
+    private TrieEntry<K, V>[] frozenEntries = null;
+    
     /** The keyAnalyzer used to analyze bit values of keys. */
     private final KeyAnalyzer<? super K> keyAnalyzer;
     
@@ -115,6 +131,107 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         this.keyAnalyzer = keyAnalyzer;
     }
     
+    /**
+     * Constructs a new PatriciaTrie from entries sorted by the bit order 
+     * of the keyAnalyzer, e.g. the natural order of <code>Strings</code> 
+     * for the <code>CharSequenceKeyAnalyzer</code>. The trie is built in
+     * a single pass. The insertion point of each key is found from the 
+     * search path of the previous key, without a lookup from the root.
+     * A later entry with the same key replaces an earlier one.
+     * 
+     * @throws IllegalArgumentException if the entries are not sorted
+     */
+    public PatriciaTrie(KeyAnalyzer<? super K> keyAnalyzer,
+                        Iterator<? extends Map.Entry<? extends K, ? extends V>> sorted) {
+        this.keyAnalyzer = keyAnalyzer;
+        bulkLoad(sorted);
+    }
+    
+    /**
+     * Adds entries sorted by the bit order of the keyAnalyzer to the empty
+     * trie in a single pass, like the bulk load constructor. Sorted entries
+     * are e.g. the entries of a <code>TreeMap</code> with the 
+     * {@link #comparator()} of this trie.
+     * 
+     * @throws IllegalStateException if the trie is not empty
+     * @throws IllegalArgumentException if the entries are not sorted
+     */
+    void putAllSorted(Iterator<? extends Map.Entry<? extends K, ? extends V>> sorted) {
+        checkNotFrozen();
+        if (size != 0)
+            throw new IllegalStateException("trie is not empty");
+        bulkLoad(sorted);
+    }
+    
+    /**
+     * Adds the sorted entries to the empty trie. A key greater than all 
+     * keys of the trie is always added to the search path of the previous
+     * key. The stack holds that path. Adding a key pops the entries of the 
+     * path which compare bits behind the first bit differing from the 
+     * previous key.
+     */
+    @SuppressWarnings("unchecked")
+    private void bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends V>> sorted) {
+        TrieEntry<K, V>[] stack = newEntries(64);
+        int depth = 0;
+        K previous = null;
+        int previousLength = 0;
+        while (sorted.hasNext()) {
+            Map.Entry<? extends K, ? extends V> entry = sorted.next();
+            K key = entry.getKey();
+            if (key == null)
+                throw new NullPointerException("Key cannot be null");
+            int keyLength = length(key);
+            
+            int bitIndex = previous == null ? KeyAnalyzer.NULL_BIT_KEY 
+                : keyAnalyzer.bitIndex(key, 0, keyLength, previous, 0, previousLength);
+            if (isValidBitIndex(bitIndex) && keyLength != 0) {
+                if (!isBitSet(key, keyLength, bitIndex))
+                    throw new IllegalArgumentException("keys are not sorted: " 
+                                                       + previous + ", " + key);
+                while (depth > 0 && stack[depth - 1].bitIndex >= bitIndex)
+                    depth--;
+                TrieEntry<K, V> path = depth == 0 ? root : stack[depth - 1];
+                TrieEntry<K, V> current;
+                if (path == root || !isBitSet(key, keyLength, path.bitIndex))
+                    current = path.left;
+                else
+                    current = path.right;
+                
+                TrieEntry<K, V> t = new TrieEntry<K, V>(key, entry.getValue(), bitIndex);
+                linkEntry(t, keyLength, path, current);
+                incrementSize();
+                if (depth == stack.length) {
+                    TrieEntry<K, V>[] newStack = newEntries(depth * 2);
+                    System.arraycopy(stack, 0, newStack, 0, depth);
+                    stack = newStack;
+                }
+                stack[depth++] = t;
+            } else {
+                // first key, keys stored in the root and duplicates
+                put(key, entry.getValue());
+                depth = 0;
+                TrieEntry<K, V> current = root.left;
+                TrieEntry<K, V> path = root;
+                while (current.bitIndex > path.bitIndex) {
+                    if (depth == stack.length) {
+                        TrieEntry<K, V>[] newStack = newEntries(depth * 2);
+                        System.arraycopy(stack, 0, newStack, 0, depth);
+                        stack = newStack;
+                    }
+                    stack[depth++] = current;
+                    path = current;
+                    if (!isBitSet(key, keyLength, current.bitIndex))
+                        current = current.left;
+                    else
+                        current = current.right;
+                }
+            }
+            previous = key;
+            previousLength = keyLength;
+        }
+    }
+    
     /** Returns the KeyAnalyzer that constructed the trie. */
     public KeyAnalyzer<? super K> getKeyAnalyzer() {
         return keyAnalyzer;
@@ -128,6 +245,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
     /** Clears the Trie (i.e. removes all elements). */
     @Override
     public void clear() {
+        checkNotFrozen();
         root.key = null;
         root.bitIndex = -1;
         root.value = null;
@@ -141,6 +259,142 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         incrementModCount();
     }
     
+    /**
+     * Freezes the trie. A frozen trie rejects all modifications with an
+     * <code>UnsupportedOperationException</code>. The values are not 
+     * frozen. Read operations of a frozen trie don't modify the trie, so 
+     * a frozen trie is safe for unsynchronized concurrent readers.
+     * 
+     * @return this trie
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized PatriciaTrie<K, V> freeze() {
+        if (!frozen) {
+            TrieEntry<K, V>[] entries = newEntries(size);
+            int i = 0;
+            for (TrieEntry<K, V> e = nextEntry(null); e != null; e = nextEntry(e))
+                entries[i++] = e;
+            frozenEntries = entries;
+            frozen = true;
+        }
+        return this;
+    }
+    
+    /** Returns true if the trie is frozen. */
+    public boolean isFrozen() {
+        return frozen;
+    }
+    
+    /**
+     * Returns a frozen copy of the trie. The copy shares the keys and the 
+     * values with this trie. Returns this trie if it is already frozen.
+     */
+    public PatriciaTrie<K, V> snapshot() {
+        if (frozen)
+            return this;
+        PatriciaTrie<K, V> copy = new PatriciaTrie<K, V>(keyAnalyzer);
+        for (TrieEntry<K, V> e = nextEntry(null); e != null; e = nextEntry(e))
+            copy.put(e.key, e.value);
+        return copy.freeze();
+    }
+
+    /**
+     * Returns the structure and the estimated memory footprint of the trie.
+     * The nodes are the entries of the trie including the root. An internal
+     * node has at least one child, the links of an external node point up
+     * the trie. The depth of a key is the count of entries below the root
+     * visited by a lookup of the key. The trie is traversed without
+     * recursion. The load time of the statistics is unknown.
+     */
+    @SuppressWarnings("unchecked")
+    public DictionaryStatistics statistics() {
+        DictionaryStatistics.Estimator estimator = new DictionaryStatistics.Estimator();
+        int[] histogram = new int[16];
+        int maxDepth = 0;
+        int internal = 0;
+        int external = 0;
+
+        TrieEntry<K, V>[] stack = newEntries(64);
+        int[] depths = new int[64];
+        int top = 0;
+        stack[top] = root;
+        depths[top++] = 0;
+        while (top > 0) {
+            TrieEntry<K, V> node = stack[--top];
+            int depth = depths[top];
+            if (node != root || !root.isEmpty()) {
+                estimator.addKey(node.key);
+                estimator.addValue(node.value);
+                if (depth == histogram.length) {
+                    int[] newHistogram = new int[depth * 2];
+                    System.arraycopy(histogram, 0, newHistogram, 0, depth);
+                    histogram = newHistogram;
+                }
+                histogram[depth]++;
+                maxDepth = Math.max(maxDepth, depth);
+            }
+
+            boolean isInternal = false;
+            for (int i = 0; i < 2; i++) {
+                TrieEntry<K, V> child = i == 0 ? node.left : node.right;
+                if (child == null || child.bitIndex <= node.bitIndex)
+                    continue;
+                isInternal = true;
+                if (top == stack.length) {
+                    TrieEntry<K, V>[] newStack = newEntries(top * 2);
+                    System.arraycopy(stack, 0, newStack, 0, top);
+                    stack = newStack;
+                    int[] newDepths = new int[top * 2];
+                    System.arraycopy(depths, 0, newDepths, 0, top);
+                    depths = newDepths;
+                }
+                stack[top] = child;
+                depths[top++] = depth + 1;
+            }
+            if (isInternal)
+                internal++;
+            else
+                external++;
+        }
+
+        int[] depthHistogram = new int[size == 0 ? 0 : maxDepth + 1];
+        System.arraycopy(histogram, 0, depthHistogram, 0, depthHistogram.length);
+        // key, value, four links, bit index
+        long nodeBytes = (internal + external) * DictionaryStatistics.align(
+                DictionaryStatistics.OBJECT_HEADER + 6 * DictionaryStatistics.REFERENCE + 4);
+        if (frozenEntries != null)
+            nodeBytes += DictionaryStatistics.arrayBytes(frozenEntries.length,
+                                                         DictionaryStatistics.REFERENCE);
+        return new DictionaryStatistics(size, internal + external, internal, external,
+                                        depthHistogram,
+                                        estimator.getValueSetCount(),
+                                        estimator.getIdCount(),
+                                        estimator.getKeyBytes(),
+                                        estimator.getValueBytes(),
+                                        nodeBytes, -1);
+    }
+
+    /** Returns the entry of the trie for an entry returned by exposed. */
+    @SuppressWarnings("unchecked")
+    private TrieEntry<K, V> unwrap(Map.Entry<K, V> entry) {
+        if (entry instanceof FrozenEntry)
+            return ((FrozenEntry<K, V>) entry).entry;
+        return (TrieEntry<K, V>) entry;
+    }
+    
+    /** Throws an exception if the trie is frozen. */
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new UnsupportedOperationException("trie is frozen");
+    }
+    
+    /** Returns an entry which rejects <code>setValue</code> if frozen. */
+    private Map.Entry<K, V> exposed(TrieEntry<K, V> entry) {
+        if (!frozen || entry == null)
+            return entry;
+        return new FrozenEntry<K, V>(entry);
+    }
+    
     /** Returns true if the Trie is empty */
     @Override
     public boolean isEmpty() {
@@ -177,6 +431,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
      */
     @Override
     public V put(K key, V value) {
+        checkNotFrozen();
         if (key == null) {
             throw new NullPointerException("Key cannot be null");
         }
@@ -243,33 +498,8 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         TrieEntry<K, V> current = root.left;
         TrieEntry<K, V> path = root;
         while(true) {
-            if(current.bitIndex >= toAdd.bitIndex || current.bitIndex <= path.bitIndex) {
-                toAdd.predecessor = toAdd;
-                
-                if (!isBitSet(toAdd.key, keyLength, toAdd.bitIndex)) {
-                    toAdd.left = toAdd;
-                    toAdd.right = current;
-                } else {
-                    toAdd.left = current;
-                    toAdd.right = toAdd;
-                }
-               
-                toAdd.parent = path;
-                if (current.bitIndex >= toAdd.bitIndex) {
-                    current.parent = toAdd;
-                }
-                
-                // if we inserted an uplink, set the predecessor on it
-                if(current.bitIndex <= path.bitIndex) {
-                    current.predecessor = toAdd;
-                }
-         
-                if (path == root || !isBitSet(toAdd.key, keyLength, path.bitIndex))
-                    path.left = toAdd;
-                else
-                    path.right = toAdd;
-                return toAdd;
-            }
+            if(current.bitIndex >= toAdd.bitIndex || current.bitIndex <= path.bitIndex)
+                return linkEntry(toAdd, keyLength, path, current);
                 
             path = current;
             if(!isBitSet(toAdd.key, keyLength, current.bitIndex))
@@ -279,6 +509,39 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         }
     }
     
+    /** 
+     * Links the entry between path and current. Current is the child of 
+     * path or an uplink from path.
+     */
+    private TrieEntry<K, V> linkEntry(TrieEntry<K, V> toAdd, int keyLength, 
+                                      TrieEntry<K, V> path, TrieEntry<K, V> current) {
+        toAdd.predecessor = toAdd;
+        
+        if (!isBitSet(toAdd.key, keyLength, toAdd.bitIndex)) {
+            toAdd.left = toAdd;
+            toAdd.right = current;
+        } else {
+            toAdd.left = current;
+            toAdd.right = toAdd;
+        }
+       
+        toAdd.parent = path;
+        if (current.bitIndex >= toAdd.bitIndex) {
+            current.parent = toAdd;
+        }
+        
+        // if we inserted an uplink, set the predecessor on it
+        if(current.bitIndex <= path.bitIndex) {
+            current.predecessor = toAdd;
+        }
+ 
+        if (path == root || !isBitSet(toAdd.key, keyLength, path.bitIndex))
+            path.left = toAdd;
+        else
+            path.right = toAdd;
+        return toAdd;
+    }
+    
     @Override
     public Set<Map.Entry<K,V>> entrySet() {
         Set<Map.Entry<K,V>> es = entrySet;
@@ -312,6 +575,43 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         return !entry.isEmpty() && key.equals(entry.key) ? entry : null;
     }
     
+    /**
+     * Returns the value of the key formed by <code>length</code> elements
+     * of the given key starting at the element <code>offset</code>, or 
+     * null if no such key exists. The lookup doesn't create a key for the 
+     * slice. This allows lookups of e.g. a token in a buffer of UTF-8 
+     * bytes.
+     */
+    public V get(K key, int offset, int length) {
+        int bits = keyAnalyzer.bitsPerElement();
+        TrieEntry<K, V> entry = getEntry(key, offset * bits, length * bits);
+        return entry != null ? entry.getValue() : null;
+    }
+    
+    /**
+     * Returns the entry for the slice of the key. Offset and length are 
+     * in bits. The equality of the keys is checked with the 
+     * <code>KeyAnalyzer</code>.
+     */
+    private TrieEntry<K, V> getEntry(K key, int offset, int length) {
+        TrieEntry<K, V> current = root.left;
+        TrieEntry<K, V> path = root;
+        while(current.bitIndex > path.bitIndex) {
+            path = current;
+            if(current.bitIndex >= length 
+                    || !isBitSet(key, offset + length, offset + current.bitIndex))
+                current = current.left;
+            else
+                current = current.right;
+        }
+        
+        if(current.isEmpty() || length(current.key) != length)
+            return null;
+        int bitIndex = keyAnalyzer.bitIndex(key, offset, length,
+                                            current.key, 0, length);
+        return isEqualBitKey(bitIndex) || isNullBitKey(bitIndex) ? current : null;
+    }
+    
     /** Gets the key as a 'K'. */
     @SuppressWarnings("unchecked")
     protected final K asKey(Object key) {
@@ -401,7 +701,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         int keyLength = length(key);
         TrieEntry[] result = new TrieEntry[]{ null };
         selectR(root.left, -1, key, keyLength, cursor, result);
-        return result[0];
+        return exposed(result[0]);
     }
 
     private boolean selectR(TrieEntry<K,V> h, int bitIndex, 
@@ -412,7 +712,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
 
         if (h.bitIndex <= bitIndex) {
             if(!h.isEmpty()) {
-                Cursor.SelectStatus ret = cursor.select(h);
+                Cursor.SelectStatus ret = cursor.select(exposed(h));
                 switch(ret) {
                 case REMOVE:
                     throw new UnsupportedOperationException("cannot remove during select");
@@ -587,6 +887,31 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         return new PrefixSubMap(key, offset, length);
     }
     
+    /**
+     * Returns true if at least one key of the trie starts with the given
+     * prefix. In difference to <code>getPrefixedBy(prefix).isEmpty()</code>
+     * the method doesn't create a view and doesn't count the entries of
+     * the view.
+     */
+    public boolean containsPrefix(K prefix) {
+        int length = length(prefix);
+        if (length == 0)
+            return !isEmpty();
+        return subtree(prefix, 0, length) != null;
+    }
+    
+    /**
+     * Returns true if at least one key of the trie starts with the
+     * <code>length</code> elements of the given prefix starting at the
+     * element <code>offset</code>.
+     */
+    public boolean containsPrefix(K prefix, int offset, int length) {
+        if (length == 0)
+            return !isEmpty();
+        int bits = keyAnalyzer.bitsPerElement();
+        return subtree(prefix, offset * bits, length * bits) != null;
+    }
+    
     /**
      * Returns true if this trie contains the specified Key
      * 
@@ -623,6 +948,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
      */
     @Override
     public V remove(Object k) {
+        checkNotFrozen();
         K key = asKey(k);
         if(key == null)
             return null;
@@ -654,6 +980,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
      * to remove)
      */
     private V removeEntry(TrieEntry<K, V> h) {
+        checkNotFrozen();
         if (h != root) {
             if (h.isInternalNode()) {
                 removeInternalEntry(h);
@@ -983,11 +1310,11 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         TrieEntry<K, V> entry = nextEntry(null);
         while(entry != null) {
             TrieEntry<K, V> current = entry;
-            Cursor.SelectStatus ret = cursor.select(current);
+            Cursor.SelectStatus ret = cursor.select(exposed(current));
             entry = nextEntry(current);
             switch(ret) {
             case EXIT:
-                return current;
+                return exposed(current);
             case REMOVE:
                 removeEntry(current);
                 break; // out of switch, stay in while loop
@@ -1049,6 +1376,13 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
     private int bitIndex(K key, K foundKey) {
         return keyAnalyzer.bitIndex(key, 0, length(key), foundKey, 0, length(foundKey));
     }
+
+    /** Creates an array for the entries of the bulk load and the
+     * traversals. */
+    @SuppressWarnings("unchecked")
+    private static <K, V> TrieEntry<K, V>[] newEntries(final int size) {
+        return (TrieEntry<K, V>[]) new TrieEntry<?, ?>[size];
+    }
     
     /** The actual Trie nodes. */
     private static class TrieEntry<K,V> implements Map.Entry<K,V>, Serializable {
@@ -1279,7 +1613,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
             if(hit != 0)
                 throw new NoSuchElementException();
             hit++;
-            return entry;
+            return exposed(entry);
         }
 
         public void remove() {
@@ -1355,7 +1689,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
 
     private class EntryIterator extends NodeIterator<Map.Entry<K,V>> {
         public Map.Entry<K,V> next() {
-            return nextEntry();
+            return exposed(nextEntry());
         }
     }
     
@@ -1379,10 +1713,10 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         }
 
         public Map.Entry<K,V> next() {
-            Map.Entry<K, V> entry = nextEntry();
+            TrieEntry<K, V> entry = nextEntry();
             if(lastOne)
                 next = null;
-            return entry;
+            return exposed(entry);
         }
         
         @Override
@@ -1433,7 +1767,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         public Map.Entry<K,V> next() {
             if (next == null || next.key == firstExcludedKey)
                 throw new NoSuchElementException();
-            return nextEntry();
+            return exposed(nextEntry());
         }
     }
 
@@ -1667,6 +2001,9 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
      * or null if no such entry exists.
      */
     protected TrieEntry<K,V> higherEntry(K key) {
+        if (frozen)
+            return frozenEntry(key, false, false);
+        
         // TODO: Cleanup so that we don't actually have to add/remove from the
         //       tree.  (We do it here because there are other well-defined 
         //       functions to perform the search.)
@@ -1719,6 +2056,9 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
      * than or equal to the given key, or null if there is no such key.
      */
     protected TrieEntry<K,V> ceilingEntry(K key) {
+        if (frozen)
+            return frozenEntry(key, false, true);
+        
         // Basically:
         // Follow the steps of adding an entry, but instead...
         //
@@ -1777,6 +2117,9 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
      * strictly less than the given key, or null if there is no such key.
      */
     protected TrieEntry<K,V> lowerEntry(K key) {
+        if (frozen)
+            return frozenEntry(key, true, false);
+        
         // Basically:
         // Follow the steps of adding an entry, but instead...
         //
@@ -1828,6 +2171,9 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
      * less than or equal to the given key, or null if there is no such key.
      */
     protected TrieEntry<K,V> floorEntry(K key) {        
+        if (frozen)
+            return frozenEntry(key, true, true);
+        
         // TODO: Cleanup so that we don't actually have to add/remove from the
         //       tree.  (We do it here because there are other well-defined 
         //       functions to perform the search.)
@@ -1904,14 +2250,9 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         if(entry == root && length(entry.getKey()) < offsetLength)
             return null;
         
-        // Found key's length-th bit differs from our key
-        // which means it cannot be the prefix...
-        if(isBitSet(prefix, offsetLength, offsetLength) != 
-          isBitSet(entry.key, length(entry.key), length)) {
-            return null;
-        }
-        
-        // ... or there are less than 'length' equal bits
+        // There are less than 'length' equal bits. Note: the bit after
+        // the prefix is not checked. It may be set in the found key, e.g.
+        // for UTF-8 lead bytes.
         int bitIndex = keyAnalyzer.bitIndex(prefix, offset, length,
                                             entry.key, 0, length(entry.getKey()));
         if (bitIndex >= 0 && bitIndex < length)
@@ -1920,6 +2261,89 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
         return entry;
     }
     
+    /**
+     * Searches the neighbour of a key in a frozen trie without modifying
+     * the trie. The entries of a frozen trie are sorted in the bit order 
+     * of the keys.
+     * 
+     * @param key the key to search the neighbour for
+     * @param lower true to search the entry before the key, false to 
+     *              search the entry after the key
+     * @param inclusive true if an entry with the key itself is a result
+     */
+    private TrieEntry<K, V> frozenEntry(K key, boolean lower, boolean inclusive) {
+        TrieEntry<K, V>[] entries = frozenEntries;
+        int low = 0;
+        int high = entries.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = bitCompare(entries[mid].key, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                if (inclusive)
+                    return entries[mid];
+                low = lower ? mid : mid + 1;
+                break;
+            }
+        }
+        // low is the index of the first entry after the key
+        int index = lower ? low - 1 : low;
+        return index >= 0 && index < entries.length ? entries[index] : null;
+    }
+    
+    /** Compares two keys in the bit order of the trie. */
+    private int bitCompare(K key, K other) {
+        int keyLength = length(key);
+        int otherLength = length(other);
+        int bitIndex = keyAnalyzer.bitIndex(key, 0, keyLength, 
+                                            other, 0, otherLength);
+        if (!isValidBitIndex(bitIndex))
+            return 0;
+        return isBitSet(key, keyLength, bitIndex) ? 1 : -1;
+    }
+    
+    /** An entry of a frozen trie. Rejects <code>setValue</code>. */
+    private static final class FrozenEntry<K, V> implements Map.Entry<K, V> {
+        private final TrieEntry<K, V> entry;
+        
+        FrozenEntry(TrieEntry<K, V> entry) {
+            this.entry = entry;
+        }
+        
+        public K getKey() {
+            return entry.getKey();
+        }
+        
+        public V getValue() {
+            return entry.getValue();
+        }
+        
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("trie is frozen");
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return entry.equals(o);
+        }
+        
+        @Override
+        public int hashCode() {
+            K key = getKey();
+            V value = getValue();
+            return (key == null ? 0 : key.hashCode())
+                    ^ (value == null ? 0 : value.hashCode());
+        }
+        
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
+    
     /** A submap used for prefix views over the Trie. */
     private class PrefixSubMap extends SubMap {
         protected final K prefix;
@@ -2002,7 +2426,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
                 
                 fromKey = entry == null ? null : entry.getKey();
                 if(fromKey != null) {
-                    TrieEntry<K, V> prior = previousEntry((TrieEntry<K, V>)entry);
+                    TrieEntry<K, V> prior = previousEntry(unwrap(entry));
                     fromKey = prior == null ? null : prior.getKey();
                 }
                 
@@ -2016,7 +2440,7 @@ public class PatriciaTrie<K, V> extends AbstractMap<K, V>
                 toKey = entry == null ? null : entry.getKey();
                 
                 if(toKey != null) {
-                    entry = nextEntry((TrieEntry<K, V>)entry);
+                    entry = nextEntry(unwrap(entry));
                     toKey = entry == null ? null : entry.getKey();
                 }
                 
@@ -0,0 +1,138 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A small set of entity IDs storing the handles of an {@link EntityIdPool}
+ * in an array. The array grows by half of its size. Lookups don't lock the
+ * pool.
+ * <p>Only for internal use!</p>
+ * @author Sascha Kohlmann
+ */
+final class PooledEntityIdSet extends AbstractSet<CharSequence>
+        implements EntityIdSet {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final EntityIdPool pool;
+    private int[] handles = EMPTY;
+    private int size = 0;
+
+    PooledEntityIdSet(final EntityIdPool pool) {
+        this.pool = pool;
+    }
+
+    /*
+     * @see java.util.AbstractCollection#add(java.lang.Object)
+     */
+    @Override
+    public boolean add(final CharSequence id) {
+        final int handle = this.pool.intern(id);
+        if (indexOf(handle) >= 0) {
+            return false;
+        }
+        if (this.size == this.handles.length) {
+            final int[] newHandles =
+                new int[this.size + (this.size >> 1) + 1];
+            System.arraycopy(this.handles, 0, newHandles, 0, this.size);
+            this.handles = newHandles;
+        }
+        this.handles[this.size++] = handle;
+        return true;
+    }
+
+    /*
+     * @see java.util.AbstractCollection#contains(java.lang.Object)
+     */
+    @Override
+    public boolean contains(final Object o) {
+        final int handle = this.pool.handleOf(o);
+        return handle >= 0 && indexOf(handle) >= 0;
+    }
+
+    /*
+     * @see java.util.AbstractCollection#size()
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    public int handleAt(final int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return this.handles[index];
+    }
+
+    public String idOf(final int handle) {
+        return this.pool.get(handle);
+    }
+
+    public Object handleOwner() {
+        return this.pool;
+    }
+
+    /*
+     * @see java.util.AbstractCollection#iterator()
+     */
+    @Override
+    public Iterator<CharSequence> iterator() {
+        return new Iterator<CharSequence>() {
+            private int next = 0;
+            private boolean removable = false;
+
+            public boolean hasNext() {
+                return this.next < PooledEntityIdSet.this.size;
+            }
+
+            public CharSequence next() {
+                if (! hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.removable = true;
+                return idOf(PooledEntityIdSet.this.handles[this.next++]);
+            }
+
+            public void remove() {
+                if (! this.removable) {
+                    throw new IllegalStateException();
+                }
+                this.removable = false;
+                removeAt(--this.next);
+            }
+        };
+    }
+
+    private void removeAt(final int index) {
+        System.arraycopy(this.handles, index + 1, this.handles, index,
+                         this.size - index - 1);
+        this.size--;
+    }
+
+    private int indexOf(final int handle) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.handles[i] == handle) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
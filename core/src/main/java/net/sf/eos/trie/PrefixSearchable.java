@@ -0,0 +1,32 @@
+/* Taken 2008 from Limewire -project under the following terms: 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+/**
+ * A dictionary with a fast test for key prefixes. In difference to
+ * {@link Trie#getPrefixedBy(Object)} the test doesn't create a view.
+ * @author Sascha Kohlmann
+ * @param <K> the type of the keys
+ */
+public interface PrefixSearchable<K> {
+
+    /**
+     * Tests whether at least one key starts with the given prefix.
+     * @param prefix the prefix to test
+     * @return {@code true} if a key starts with the prefix
+     */
+    boolean containsPrefix(K prefix);
+}
@@ -0,0 +1,196 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.Set;
+
+/**
+ * A dictionary for long running processes which changes while it is in
+ * use. Each version of the dictionary is a
+ * {@linkplain PatriciaTrie#freeze() frozen} {@link PatriciaTrie}.
+ * {@link #reload(InputStream)} loads a new version and
+ * {@link #applyDelta(InputStream)} creates a new version from the current
+ * version and a delta, see
+ * {@link XmlTrieLoader#applyDelta(InputStream, Trie)}. The new version
+ * replaces the current version atomically. Readers are never blocked.
+ * <p>Each method call of the map reads the current version. Lookups of
+ * a single document should use the same version. Get it with
+ * {@link #current()}.</p>
+ * <p>Versions are created one after the other, so there are at most two
+ * versions: the current version and the version in construction.
+ * A version created from a delta shares its keys and its unchanged value
+ * sets with the former version. Former versions are garbage as soon as no
+ * reader holds them. The IDs interned in the
+ * {@linkplain XmlTrieLoader#getEntityIdPool() pool} of the loader are
+ * kept.</p>
+ * <p>Instances are thread safe.</p>
+ * @author Sascha Kohlmann
+ */
+public class ReloadableDictionary
+        extends AbstractMap<CharSequence, Set<CharSequence>>
+        implements PrefixSearchable<CharSequence> {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(ReloadableDictionary.class.getName());
+
+    private final XmlTrieLoader loader;
+    private final Object writeLock = new Object();
+    private volatile PatriciaTrie<CharSequence, Set<CharSequence>> current;
+    private volatile long version = 0;
+
+    /**
+     * Creates a new empty dictionary.
+     * @param loader the loader for new versions and deltas
+     */
+    public ReloadableDictionary(final XmlTrieLoader loader) {
+        this(loader, newTrie().freeze());
+    }
+
+    /**
+     * Creates a new dictionary.
+     * @param loader the loader for new versions and deltas
+     * @param initial the initial version. Frozen if not already frozen.
+     */
+    public ReloadableDictionary(
+            final XmlTrieLoader loader,
+            final PatriciaTrie<CharSequence, Set<CharSequence>> initial) {
+        checkArgumentNotNull(loader, "loader is null");
+        checkArgumentNotNull(initial, "initial is null");
+        this.loader = loader;
+        this.current = initial.freeze();
+    }
+
+    /**
+     * Returns the current version.
+     * @return the current frozen trie
+     */
+    public PatriciaTrie<CharSequence, Set<CharSequence>> current() {
+        return this.current;
+    }
+
+    /**
+     * Returns the count of changes of the version since construction.
+     * @return the version number
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Loads a new version of the dictionary and replaces the current
+     * version. The current version stays if loading fails.
+     * @param dictionary the XML data of the new version
+     * @throws Exception if the loader is unable to load the data
+     */
+    public void reload(final InputStream dictionary) throws Exception {
+        checkArgumentNotNull(dictionary, "dictionary is null");
+        synchronized (this.writeLock) {
+            final PatriciaTrie<CharSequence, Set<CharSequence>> next =
+                newTrie();
+            this.loader.loadTrie(dictionary, next);
+            publish(next);
+        }
+    }
+
+    /**
+     * Applies a delta to a copy of the current version and replaces the
+     * current version with the copy. The current version stays if the
+     * delta fails. The copy is created in linear time by the bulk load
+     * constructor of the {@link PatriciaTrie}.
+     * @param delta the XML data of the delta
+     * @return the count of changed values
+     * @throws Exception if the loader is unable to apply the delta
+     */
+    public int applyDelta(final InputStream delta) throws Exception {
+        checkArgumentNotNull(delta, "delta is null");
+        synchronized (this.writeLock) {
+            final PatriciaTrie<CharSequence, Set<CharSequence>> last =
+                this.current;
+            final PatriciaTrie<CharSequence, Set<CharSequence>> next =
+                new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                        last.getKeyAnalyzer(), last.entrySet().iterator());
+            final int changes = this.loader.applyDelta(delta, next);
+            if (changes != 0) {
+                publish(next);
+            }
+            return changes;
+        }
+    }
+
+    /*
+     * @see java.util.AbstractMap#get(java.lang.Object)
+     */
+    @Override
+    public Set<CharSequence> get(final Object key) {
+        return this.current.get(key);
+    }
+
+    /*
+     * @see java.util.AbstractMap#containsKey(java.lang.Object)
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        return this.current.containsKey(key);
+    }
+
+    /*
+     * @see java.util.AbstractMap#size()
+     */
+    @Override
+    public int size() {
+        return this.current.size();
+    }
+
+    /**
+     * Returns the entries of the current version. The set doesn't change
+     * with later versions.
+     */
+    @Override
+    public Set<Entry<CharSequence, Set<CharSequence>>> entrySet() {
+        return this.current.entrySet();
+    }
+
+    /*
+     * @see net.sf.eos.trie.PrefixSearchable#containsPrefix(java.lang.Object)
+     */
+    public boolean containsPrefix(final CharSequence prefix) {
+        return this.current.containsPrefix(prefix);
+    }
+
+    private void publish(
+            final PatriciaTrie<CharSequence, Set<CharSequence>> next) {
+        next.freeze();
+        this.current = next;
+        this.version++;
+        if (LOG.isInfoEnabled()) {
+            LOG.info("published version " + this.version + " with "
+                     + next.size() + " entries");
+        }
+    }
+
+    private static PatriciaTrie<CharSequence, Set<CharSequence>> newTrie() {
+        return new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                new CharSequenceKeyAnalyzer());
+    }
+}
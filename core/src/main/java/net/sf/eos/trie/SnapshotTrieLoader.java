@@ -0,0 +1,71 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+
+/**
+ * Loads snapshots written by the {@link TrieSnapshot}.
+ * {@link #openTrie(File)} restores a frozen {@link PatriciaTrie}.
+ * {@link #loadTrie(InputStream, Trie)} reads the snapshot and copies the
+ * entries into the given trie.
+ * @author Sascha Kohlmann
+ */
+public class SnapshotTrieLoader
+        extends AbstractTrieLoader<CharSequence, Set<CharSequence>>
+        implements FileTrieLoader<CharSequence, Set<CharSequence>> {
+
+    /**
+     * Copies the entries of the snapshot into the trie.
+     */
+    @Override
+    public void loadTrie(final InputStream trieData,
+                         final Trie<CharSequence, Set<CharSequence>> trie)
+            throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> snapshot =
+            TrieSnapshot.read(trieData);
+        for (final Entry<CharSequence, Set<CharSequence>> entry
+                : snapshot.entrySet()) {
+            final CharSequence key = entry.getKey();
+            Set<CharSequence> values = trie.get(key);
+            if (values == null) {
+                values = new HashSet<CharSequence>();
+                trie.put(key, values);
+            }
+            values.addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * Restores the snapshot.
+     * @return a frozen {@link PatriciaTrie}
+     */
+    public Map<CharSequence, Set<CharSequence>> openTrie(final File trieData)
+            throws Exception {
+        final InputStream in = new FileInputStream(trieData);
+        try {
+            return TrieSnapshot.read(in);
+        } finally {
+            in.close();
+        }
+    }
+}
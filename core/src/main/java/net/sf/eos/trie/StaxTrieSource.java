@@ -0,0 +1,310 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A pull based source for the XML format of the {@link XmlTrieLoader}
+ * build on the Streaming API for XML. The source reuses its character
+ * buffers for all entries.
+ * <p>Call {@link #next()} to pull the next entry. The key and the value of
+ * the current entry are available in the {@link #getKeyBuffer() key buffer}
+ * and the {@link #getValueBuffer() value buffer}. Alternatively
+ * {@link #parse(TrieEntryHandler)} pushes all entries to a
+ * {@link TrieSource.TrieEntryHandler}. Neither way creates objects per
+ * entry.</p>
+ * <p>For compatibility the source notifies registered
+ * {@link TrieSource.TrieEntryListener TrieEntryListeners} for each pulled
+ * entry. This creates an event for each entry.</p>
+ * <p>The {@code op} attribute of an entry element defines the
+ * {@linkplain #getOperation() operation} of an entry of a delta. An entry
+ * removing a key has no value.</p>
+ * <p>Requires a StAX implementation, e.g. Java 6 or later.</p>
+ * @author Sascha Kohlmann
+ */
+@SuppressWarnings("nls")
+public class StaxTrieSource implements TrieSource {
+
+    private static final String ENTRY = "entry";
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private static final String OP = "op";
+
+    private static final int INITIAL_BUFFER_SIZE = 64;
+
+    private final XMLStreamReader reader;
+
+    private char[] keyBuffer = new char[INITIAL_BUFFER_SIZE];
+    private int keyLength = 0;
+    private char[] valueBuffer = new char[INITIAL_BUFFER_SIZE];
+    private int valueLength = 0;
+    private boolean hasValue = false;
+    private Operation operation = Operation.ADD;
+
+    private final List<TrieEntryListener> listeners =
+        new ArrayList<TrieEntryListener>();
+
+    /**
+     * Creates a new source for the given stream.
+     * @param in the XML data
+     * @throws XMLStreamException if the StAX implementation can't create a
+     *                            reader
+     */
+    public StaxTrieSource(final InputStream in) throws XMLStreamException {
+        checkArgumentNotNull(in, "stream is null");
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        this.reader = factory.createXMLStreamReader(in);
+    }
+
+    /**
+     * Pulls the next entry from the XML data.
+     * @return {@code true} if an entry is available, {@code false} at the
+     *         end of the data
+     * @throws XMLStreamException if the XML data is not well formed
+     */
+    public boolean next() throws XMLStreamException {
+        boolean inEntry = false;
+        boolean hasKey = false;
+        boolean hasValue = false;
+        while (this.reader.hasNext()) {
+            final int event = this.reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final String name = this.reader.getLocalName();
+                if (ENTRY.equals(name)) {
+                    inEntry = true;
+                    hasKey = false;
+                    hasValue = false;
+                    this.valueLength = 0;
+                    try {
+                        this.operation = Operation.forName(
+                                this.reader.getAttributeValue(null, OP));
+                    } catch (final IllegalArgumentException e) {
+                        throw new XMLStreamException("unknown operation",
+                                                     this.reader.getLocation(),
+                                                     e);
+                    }
+                } else if (inEntry && KEY.equals(name)) {
+                    this.keyLength = 0;
+                    readText(true);
+                    hasKey = true;
+                } else if (inEntry && VALUE.equals(name)) {
+                    this.valueLength = 0;
+                    readText(false);
+                    hasValue = true;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT
+                    && inEntry && ENTRY.equals(this.reader.getLocalName())) {
+                if (! hasKey) {
+                    throw new XMLStreamException("entry without key",
+                                                 this.reader.getLocation());
+                }
+                if (! hasValue && this.operation != Operation.REMOVE) {
+                    throw new XMLStreamException("entry without value",
+                                                 this.reader.getLocation());
+                }
+                this.hasValue = hasValue;
+                fireEntry();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pushes all remaining entries to the handler. The handler doesn't get
+     * the operation of an entry, so all entries must add their values.
+     * @param handler the handler for the entries
+     * @return the count of entries
+     * @throws XMLStreamException if the XML data is not well formed or
+     *                            contains an entry removing a value
+     */
+    public int parse(final TrieEntryHandler handler)
+            throws XMLStreamException {
+        checkArgumentNotNull(handler, "handler is null");
+        int count = 0;
+        while (next()) {
+            if (this.operation != Operation.ADD) {
+                throw new XMLStreamException("unexpected operation: "
+                                             + this.operation,
+                                             this.reader.getLocation());
+            }
+            handler.onEntry(this.keyBuffer, 0, this.keyLength,
+                            this.valueBuffer, 0, this.valueLength);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Closes the source. Doesn't close the underlying stream.
+     * @throws XMLStreamException if an error occurs
+     */
+    public void close() throws XMLStreamException {
+        this.reader.close();
+    }
+
+    /**
+     * Returns the buffer with the key of the current entry. The key starts
+     * at index {@code 0}. The buffer is reused for all entries.
+     * @return the key buffer
+     */
+    public char[] getKeyBuffer() {
+        return this.keyBuffer;
+    }
+
+    /**
+     * Returns the length of the key of the current entry.
+     * @return the length of the key
+     */
+    public int getKeyLength() {
+        return this.keyLength;
+    }
+
+    /**
+     * Returns the buffer with the value of the current entry. The value
+     * starts at index {@code 0}. The buffer is reused for all entries.
+     * @return the value buffer
+     */
+    public char[] getValueBuffer() {
+        return this.valueBuffer;
+    }
+
+    /**
+     * Returns the length of the value of the current entry.
+     * @return the length of the value
+     */
+    public int getValueLength() {
+        return this.valueLength;
+    }
+
+    /**
+     * Returns the operation of the current entry.
+     * @return the operation
+     */
+    public Operation getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Returns {@code true} if the current entry has a value. Only entries
+     * removing a key have no value.
+     * @return {@code true} if the entry has a value
+     */
+    public boolean hasValue() {
+        return this.hasValue;
+    }
+
+    public void addTrieEntryListener(final TrieEntryListener listener) {
+        if (! this.listeners.contains(listener)) {
+            this.listeners.add(listener);
+        }
+    }
+
+    public void removeTrieEntryListener(final TrieEntryListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /** Reads the text content up to the end of the current element. */
+    private void readText(final boolean key) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = this.reader.next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    append(key,
+                           this.reader.getTextCharacters(),
+                           this.reader.getTextStart(),
+                           this.reader.getTextLength());
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    final char[] text = this.reader.getText().toCharArray();
+                    append(key, text, 0, text.length);
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new XMLStreamException("unexpected end of document",
+                                                 this.reader.getLocation());
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void append(final boolean key,
+                        final char[] chars,
+                        final int start,
+                        final int length) {
+        if (key) {
+            this.keyBuffer = ensureCapacity(this.keyBuffer,
+                                            this.keyLength + length);
+            System.arraycopy(chars, start, this.keyBuffer, this.keyLength,
+                             length);
+            this.keyLength += length;
+        } else {
+            this.valueBuffer = ensureCapacity(this.valueBuffer,
+                                              this.valueLength + length);
+            System.arraycopy(chars, start, this.valueBuffer,
+                             this.valueLength, length);
+            this.valueLength += length;
+        }
+    }
+
+    private static char[] ensureCapacity(final char[] buffer,
+                                         final int capacity) {
+        if (capacity <= buffer.length) {
+            return buffer;
+        }
+        final char[] newBuffer =
+            new char[Math.max(capacity, buffer.length << 1)];
+        System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
+        return newBuffer;
+    }
+
+    private void fireEntry() {
+        if (this.listeners.size() == 0) {
+            return;
+        }
+        final TrieEntry entry =
+            new TrieEntry(new String(this.keyBuffer, 0, this.keyLength),
+                          this.hasValue
+                              ? new String(this.valueBuffer, 0, this.valueLength)
+                              : null,
+                          this.operation);
+        final TrieEntryEvent evt = new TrieEntryEvent(entry);
+        for (final TrieEntryListener l : this.listeners) {
+            l.onEntry(evt);
+        }
+    }
+}
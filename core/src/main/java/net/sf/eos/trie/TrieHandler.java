@@ -18,6 +18,9 @@ package net.sf.eos.trie;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.util.HashSet;
@@ -32,13 +35,42 @@ public class TrieHandler extends DefaultHandler implements TrieSource {
     private boolean inEntry = false;
     private boolean inKey = false;
     private boolean inValue = false;
-    private StringBuilder sb = null;
+    private final StringBuilder sb = new StringBuilder();
     private String key = null;
     private String value = null;
+    private Operation operation = Operation.ADD;
+    private boolean addOnly = false;
+    private Locator locator = null;
 
     private final Set<TrieEntryListener> listeners =
         new HashSet<TrieEntryListener>();
 
+    /**
+     * Sets whether all entries must add their values. A full load of a
+     * dictionary accepts only entries without an {@code op} attribute or
+     * with {@code op='add'}, like
+     * {@link StaxTrieSource#parse(TrieEntryHandler)}.
+     * @param addOnly {@code true} to reject entries removing values
+     */
+    public void setAddOnly(
+            @SuppressWarnings("hiding") final boolean addOnly) {
+        this.addOnly = addOnly;
+    }
+
+    /**
+     * Returns whether all entries must add their values.
+     * @return {@code true} if entries removing values are rejected
+     */
+    public boolean isAddOnly() {
+        return this.addOnly;
+    }
+
+    @Override
+    public void setDocumentLocator(
+            @SuppressWarnings("hiding") final Locator locator) {
+        this.locator = locator;
+    }
+
     @Override
     public void startDocument() {
     }
@@ -57,40 +89,44 @@ public class TrieHandler extends DefaultHandler implements TrieSource {
             this.inEntry = true;
             this.key = null;
             this.value = null;
+            this.operation = Operation.forName(attributes.getValue("op"));
         } else if (Xml.key.name().equals(qName)) {
             assert this.inKey == false;
             this.inKey = true;
-            this.sb = new StringBuilder();
+            this.sb.setLength(0);
         } else if (Xml.value.name().equals(qName)) {
             assert this.inValue == false;
             this.inValue = true;
-            this.sb = new StringBuilder();
+            this.sb.setLength(0);
         }
     }
 
     @Override
     public void endElement(final String uri,
                            final String localName,
-                           final String qName) {
+                           final String qName) throws SAXException {
         if (Xml.key.name().equals(qName)) {
             assert this.inKey == true;
             this.inKey = false;
             assert this.key == null;
-            assert this.sb != null;
             this.key = this.sb.toString();
         } else if (Xml.value.name().equals(qName)) {
             assert this.inValue == true;
             this.inValue = false;
             assert this.value == null;
-            assert this.sb != null;
             this.value = this.sb.toString();
         } else if (Xml.entry.name().equals(qName)) {
             assert this.inEntry == true;
             this.inEntry = false;
             assert this.key != null;
-            assert this.value != null;
+            assert this.value != null || this.operation == Operation.REMOVE;
+            if (this.addOnly && this.operation != Operation.ADD) {
+                throw new SAXParseException("unexpected operation: "
+                                            + this.operation, this.locator);
+            }
 
-            final TrieEntry entry = new TrieEntry(this.key, this.value);
+            final TrieEntry entry =
+                new TrieEntry(this.key, this.value, this.operation);
             final TrieEntryEvent evt = new TrieEntryEvent(entry);
             assert this.listeners != null;
             for (final TrieEntryListener l : this.listeners) {
@@ -103,9 +139,7 @@ public class TrieHandler extends DefaultHandler implements TrieSource {
     public void characters(final char[] ch,
                            final int start,
                            final int length) {
-        if (this.sb != null) {
-            this.sb.append(ch, start, length);
-        }
+        this.sb.append(ch, start, length);
     }
 
     public void addTrieEntryListener(final TrieEntryListener listener) {
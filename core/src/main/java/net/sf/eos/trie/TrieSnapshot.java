@@ -0,0 +1,445 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Map.Entry;
+
+/**
+ * Writes dictionary tries to a compact binary snapshot and restores them.
+ * Unlike the default Java serialization of the {@link PatriciaTrie} the
+ * snapshot is written and read in a single iterative pass. Restoring
+ * doesn't search the trie for each key, the entries are linked by the
+ * {@linkplain PatriciaTrie#PatriciaTrie(PatriciaTrie.KeyAnalyzer, Iterator)
+ * bulk load constructor}.
+ * <p>All numbers of the snapshot are unsigned variable length integers
+ * with 7 bits per byte, least significant group first. The snapshot
+ * contains:</p>
+ * <pre>
+ * int    magic number 0x454f5354 (4 bytes, big endian)
+ * varint version
+ * varint count of entries
+ * entry[count]</pre>
+ * <p>The entries are in the order of the trie. Each entry is front coded
+ * against the key of the preceding entry:</p>
+ * <pre>
+ * varint count of characters shared with the preceding key
+ * varint count of following characters (N)
+ * varint[N] characters
+ * varint value set reference</pre>
+ * <p>A value set is written once. Later entries with an equal set refer
+ * to it by its index + 1. A reference of {@code 0} is followed by a new
+ * set: the varint count of IDs and an ID reference for each ID. An ID
+ * reference is the index + 1 of an ID written before or {@code 0}
+ * followed by the varint count of characters and the characters of a new
+ * ID.</p>
+ * <p>Restored tries share the value sets of equal values. The sets must
+ * not be modified.</p>
+ * <p>Usage: {@code java net.sf.eos.trie.TrieSnapshot <xml> <snapshot>}</p>
+ * @author Sascha Kohlmann
+ * @see SnapshotTrieLoader
+ */
+public final class TrieSnapshot {
+
+    /** For logging. */
+    private static final Log LOG =
+        LogFactory.getLog(TrieSnapshot.class.getName());
+
+    /** Magic number of the snapshot format. */
+    static final int MAGIC = 0x454f5354;
+
+    /** Version of the snapshot format. */
+    static final int VERSION = 1;
+
+    private TrieSnapshot() {
+        // utility class
+    }
+
+    /**
+     * Writes a snapshot of the trie. The stream is flushed but not
+     * closed.
+     * @param trie the trie to write. The trie must use a
+     *             {@link CharSequenceKeyAnalyzer} and must not contain
+     *             {@code null} values.
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(
+            final PatriciaTrie<CharSequence, ? extends Set<? extends CharSequence>> trie,
+            final OutputStream out) throws IOException {
+        checkArgumentNotNull(trie, "trie is null");
+        checkArgumentNotNull(out, "out is null");
+        final long start = System.currentTimeMillis();
+        final OutputStream data = new BufferedOutputStream(out);
+        data.write(MAGIC >>> 24);
+        data.write(MAGIC >>> 16);
+        data.write(MAGIC >>> 8);
+        data.write(MAGIC);
+        writeVarInt(data, VERSION);
+        writeVarInt(data, trie.size());
+
+        final Map<Set<?>, Integer> setsByIdentity =
+            new IdentityHashMap<Set<?>, Integer>();
+        final Map<Set<String>, Integer> sets =
+            new HashMap<Set<String>, Integer>();
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        CharSequence previous = "";
+        for (final Entry<CharSequence, ? extends Set<? extends CharSequence>> entry
+                : trie.entrySet()) {
+            final CharSequence key = entry.getKey();
+            final int shared = sharedLength(previous, key);
+            writeVarInt(data, shared);
+            writeChars(data, key, shared);
+            previous = key;
+
+            final Set<? extends CharSequence> value = entry.getValue();
+            checkArgumentNotNull(value, "value of '" + key + "' is null");
+            Integer ref = setsByIdentity.get(value);
+            if (ref == null) {
+                final Set<String> copy = new HashSet<String>();
+                for (final CharSequence id : value) {
+                    copy.add(id.toString());
+                }
+                ref = sets.get(copy);
+                if (ref == null) {
+                    writeVarInt(data, 0);
+                    writeVarInt(data, copy.size());
+                    for (final String id : copy) {
+                        final Integer idRef = ids.get(id);
+                        if (idRef == null) {
+                            writeVarInt(data, 0);
+                            writeChars(data, id, 0);
+                            ids.put(id, Integer.valueOf(ids.size() + 1));
+                        } else {
+                            writeVarInt(data, idRef.intValue());
+                        }
+                    }
+                    ref = Integer.valueOf(sets.size() + 1);
+                    sets.put(copy, ref);
+                    setsByIdentity.put(value, ref);
+                    continue;
+                }
+                setsByIdentity.put(value, ref);
+            }
+            writeVarInt(data, ref.intValue());
+        }
+        data.flush();
+        if (LOG.isInfoEnabled()) {
+            LOG.info("wrote " + trie.size() + " entries with " + sets.size()
+                     + " distinct value sets and " + ids.size() + " IDs in "
+                     + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Restores a trie from a snapshot written by
+     * {@link #write(PatriciaTrie, OutputStream)}. The values are
+     * {@code HashSets}. The stream is not closed.
+     * @param in the stream to read from
+     * @return a new {@linkplain PatriciaTrie#freeze() frozen} trie
+     * @throws IOException if an I/O error occurs or the stream doesn't
+     *                     contain a valid snapshot
+     */
+    public static PatriciaTrie<CharSequence, Set<CharSequence>> read(
+            final InputStream in) throws IOException {
+        return read(in, null);
+    }
+
+    /**
+     * Restores a trie from a snapshot written by
+     * {@link #write(PatriciaTrie, OutputStream)}. The IDs are interned
+     * into the pool and the values are {@linkplain EntityIdPool#newSet()
+     * sets of the pool}. The stream is not closed.
+     * @param in the stream to read from
+     * @param pool the pool for the IDs or {@code null} for
+     *             {@code HashSets}
+     * @return a new {@linkplain PatriciaTrie#freeze() frozen} trie
+     * @throws IOException if an I/O error occurs or the stream doesn't
+     *                     contain a valid snapshot
+     */
+    public static PatriciaTrie<CharSequence, Set<CharSequence>> read(
+            final InputStream in, final EntityIdPool pool) throws IOException {
+        checkArgumentNotNull(in, "in is null");
+        final long start = System.currentTimeMillis();
+        final InputStream data = new BufferedInputStream(in);
+        final int magic = (readByte(data) << 24) | (readByte(data) << 16)
+                          | (readByte(data) << 8) | readByte(data);
+        if (magic != MAGIC) {
+            throw new IOException("not a trie snapshot");
+        }
+        final int version = readVarInt(data);
+        if (version != VERSION) {
+            throw new IOException("unsupported trie snapshot version: "
+                                  + version);
+        }
+        final EntryReader reader =
+            new EntryReader(data, readVarInt(data), pool);
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie;
+        try {
+            trie = new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer(), reader);
+        } catch (final ReadException e) {
+            throw e.getCause();
+        } catch (final IllegalArgumentException e) {
+            final IOException ex = new IOException("corrupt trie snapshot");
+            ex.initCause(e);
+            throw ex;
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("read " + trie.size() + " entries in "
+                     + (System.currentTimeMillis() - start) + "ms");
+        }
+        return trie.freeze();
+    }
+
+    /**
+     * Converts a dictionary in the XML format of the
+     * {@link XmlTrieLoader} into a snapshot.
+     * @param args the XML file and the snapshot file
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: java " + TrieSnapshot.class.getName()
+                               + " <xml> <snapshot>");
+            System.exit(1);
+        }
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        final InputStream in =
+            new BufferedInputStream(new FileInputStream(args[0]));
+        try {
+            new XmlTrieLoader().loadTrie(in, trie);
+        } finally {
+            in.close();
+        }
+        final OutputStream out = new FileOutputStream(args[1]);
+        try {
+            write(trie, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /** @return the count of leading characters shared by both sequences */
+    static int sharedLength(final CharSequence s1, final CharSequence s2) {
+        final int length = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < length && s1.charAt(i) == s2.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Writes the count and the characters from the offset on. */
+    private static void writeChars(final OutputStream out,
+                                   final CharSequence seq,
+                                   final int offset) throws IOException {
+        final int length = seq.length();
+        writeVarInt(out, length - offset);
+        for (int i = offset; i < length; i++) {
+            writeVarInt(out, seq.charAt(i));
+        }
+    }
+
+    static void writeVarInt(final OutputStream out, final int value)
+            throws IOException {
+        int v = value;
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    static int readVarInt(final InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = readByte(in);
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("corrupt trie snapshot: varint too long");
+    }
+
+    private static int readByte(final InputStream in) throws IOException {
+        final int b = in.read();
+        if (b < 0) {
+            throw new EOFException("unexpected end of trie snapshot");
+        }
+        return b;
+    }
+
+    /**
+     * Reads the entries from the stream while the trie is bulk loaded.
+     * The entry is reused.
+     */
+    private static final class EntryReader
+            implements Iterator<Entry<CharSequence, Set<CharSequence>>>,
+                       Entry<CharSequence, Set<CharSequence>> {
+
+        private final InputStream in;
+        private final EntityIdPool pool;
+        private final List<Set<CharSequence>> sets =
+            new ArrayList<Set<CharSequence>>();
+        private final List<String> ids = new ArrayList<String>();
+        private int remaining;
+        private char[] chars = new char[64];
+        private String key = null;
+        private Set<CharSequence> value = null;
+
+        EntryReader(final InputStream in,
+                    final int count,
+                    final EntityIdPool pool) {
+            this.in = in;
+            this.remaining = count;
+            this.pool = pool;
+        }
+
+        public boolean hasNext() {
+            return this.remaining > 0;
+        }
+
+        public Entry<CharSequence, Set<CharSequence>> next() {
+            if (this.remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                final int shared = readVarInt(this.in);
+                final int length = shared + readVarInt(this.in);
+                if (this.key == null ? shared != 0 : shared > this.key.length()) {
+                    throw new IOException("corrupt trie snapshot: shared prefix");
+                }
+                ensureCapacity(length);
+                for (int i = shared; i < length; i++) {
+                    this.chars[i] = (char) readVarInt(this.in);
+                }
+                this.key = new String(this.chars, 0, length);
+                this.value = readSet();
+            } catch (final IOException e) {
+                throw new ReadException(e);
+            }
+            this.remaining--;
+            return this;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public CharSequence getKey() {
+            return this.key;
+        }
+
+        public Set<CharSequence> getValue() {
+            return this.value;
+        }
+
+        public Set<CharSequence> setValue(
+                @SuppressWarnings("hiding") final Set<CharSequence> value) {
+            throw new UnsupportedOperationException();
+        }
+
+        private Set<CharSequence> readSet() throws IOException {
+            final int ref = readVarInt(this.in);
+            if (ref != 0) {
+                if (ref > this.sets.size()) {
+                    throw new IOException("corrupt trie snapshot: set " + ref);
+                }
+                return this.sets.get(ref - 1);
+            }
+            final int count = readVarInt(this.in);
+            final Set<CharSequence> set = this.pool == null
+                    ? new HashSet<CharSequence>(Math.max(4, count * 2))
+                    : this.pool.newSet();
+            for (int i = 0; i < count; i++) {
+                set.add(readId());
+            }
+            this.sets.add(set);
+            return set;
+        }
+
+        private String readId() throws IOException {
+            final int ref = readVarInt(this.in);
+            if (ref != 0) {
+                if (ref > this.ids.size()) {
+                    throw new IOException("corrupt trie snapshot: ID " + ref);
+                }
+                return this.ids.get(ref - 1);
+            }
+            final int length = readVarInt(this.in);
+            final char[] id = new char[length];
+            for (int i = 0; i < length; i++) {
+                id[i] = (char) readVarInt(this.in);
+            }
+            final String retval = new String(id);
+            this.ids.add(retval);
+            return retval;
+        }
+
+        /** Keeps the characters of the preceding key. */
+        private void ensureCapacity(final int capacity) {
+            if (capacity > this.chars.length) {
+                final char[] newChars =
+                    new char[Math.max(capacity, this.chars.length * 2)];
+                System.arraycopy(this.chars, 0, newChars, 0, this.chars.length);
+                this.chars = newChars;
+            }
+        }
+    }
+
+    /** Transports an {@code IOException} out of the bulk load. */
+    private static final class ReadException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ReadException(final IOException cause) {
+            super(cause);
+        }
+
+        /*
+         * @see java.lang.Throwable#getCause()
+         */
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -17,10 +17,38 @@ package net.sf.eos.trie;
 
 import java.util.EventListener;
 import java.util.EventObject;
+import java.util.Locale;
 import java.util.Map.Entry;
 
 public interface TrieSource {
 
+    /**
+     * The operation of an entry. Entries of a dictionary are added. The
+     * entries of a delta may remove a value or a key, see
+     * {@link XmlTrieLoader#applyDelta(java.io.InputStream, Trie)}.
+     * @author Sascha Kohlmann
+     */
+    public static enum Operation {
+        /** Adds the value to the key. */
+        ADD,
+        /** Removes the value from the key. Removes the key if the value is
+         * {@code null}. */
+        REMOVE;
+
+        /**
+         * Returns the operation for the value of an {@code op} attribute.
+         * @param name the value of the attribute or {@code null}
+         * @return the operation. {@link #ADD} for {@code null}.
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static Operation forName(final String name) {
+            if (name == null) {
+                return ADD;
+            }
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
     public static class TrieEntryEvent extends EventObject {
         public TrieEntryEvent(final TrieEntry source) {
             super(source);
@@ -31,6 +59,34 @@ public interface TrieSource {
         void onEntry(final TrieEntryEvent event);
     }
 
+    /**
+     * Bulk callback for the entries of a source. In difference to a
+     * {@link TrieEntryListener} the handler gets the key and the value as
+     * ranges of character buffers. A source doesn't create objects for
+     * calling the handler. The buffers are reused by the source and are
+     * only valid for the time of the call.
+     * @author Sascha Kohlmann
+     * @see StaxTrieSource#parse(TrieEntryHandler)
+     */
+    public static interface TrieEntryHandler {
+
+        /**
+         * Called for each entry of the source.
+         * @param key the buffer containing the key
+         * @param keyOffset the offset of the key in the buffer
+         * @param keyLength the length of the key
+         * @param value the buffer containing the value
+         * @param valueOffset the offset of the value in the buffer
+         * @param valueLength the length of the value
+         */
+        void onEntry(final char[] key,
+                     final int keyOffset,
+                     final int keyLength,
+                     final char[] value,
+                     final int valueOffset,
+                     final int valueLength);
+    }
+
     /**
      * Represents an entry in the Trie.
      * @author Sascha Kohlmann
@@ -39,6 +95,7 @@ public interface TrieSource {
 
         private final String key;
         private String value;
+        private final Operation operation;
 
         /** Creates a new instance for the given key.
          * @param key the key of the entry */
@@ -52,11 +109,34 @@ public interface TrieSource {
         @SuppressWarnings("nls") 
         public TrieEntry(@SuppressWarnings("hiding") final String key,
                          @SuppressWarnings("hiding") final String value) {
+            this(key, value, Operation.ADD);
+        }
+
+        /** Creates a new instance for the given key.
+         * @param key the key of the entry
+         * @param value the value of the entry
+         * @param operation the operation of the entry */
+        @SuppressWarnings("nls")
+        public TrieEntry(@SuppressWarnings("hiding") final String key,
+                         @SuppressWarnings("hiding") final String value,
+                         @SuppressWarnings("hiding") final Operation operation) {
             if (key == null) {
                 throw new IllegalArgumentException("key is null");
             }
+            if (operation == null) {
+                throw new IllegalArgumentException("operation is null");
+            }
             this.key = key;
             this.value = value;
+            this.operation = operation;
+        }
+
+        /**
+         * Returns the operation of the entry.
+         * @return the operation
+         */
+        public Operation getOperation() {
+            return this.operation;
         }
 
         /**
@@ -15,8 +15,12 @@
  */
 package net.sf.eos.trie;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import net.sf.eos.trie.Trie.Cursor;
@@ -32,6 +36,9 @@ import net.sf.eos.trie.Trie.Cursor;
  */
 public final class TrieUtils {
     
+    /** Encoding of the keys of byte based tries. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
     private TrieUtils() {}
     
     public static <K,V> List<V> select(Trie<K,V> trie, K key, int count) {
@@ -56,4 +63,66 @@ public final class TrieUtils {
         
         return values;
     }
+
+    /**
+     * Returns the maximum count of tokens of the keys in the map. The
+     * tokens of a key are separated by the delimiter. The method iterates
+     * over all keys of the map, except for compact and block dictionaries.
+     * @param map the map to analyze
+     * @param delimiter the delimiter of the tokens
+     * @return the maximum count of tokens or {@code 0} if the map is empty
+     */
+    public static int maxTokenCount(final Map<? extends CharSequence, ?> map,
+                                    final char delimiter) {
+        if (map instanceof AbstractCompactDictionary) {
+            return ((AbstractCompactDictionary) map).maxTokenCount(delimiter);
+        }
+        if (map instanceof BlockDictionary) {
+            return ((BlockDictionary) map).maxTokenCount(delimiter);
+        }
+        int max = 0;
+        for (final CharSequence key : map.keySet()) {
+            int count = 1;
+            final int length = key.length();
+            for (int i = 0; i < length; i++) {
+                if (key.charAt(i) == delimiter) {
+                    count++;
+                }
+            }
+            if (count > max) {
+                max = count;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Copies the map into a trie with UTF-8 encoded keys. The keys are 
+     * compared bytewise by the {@link ByteArrayKeyAnalyzer}. The values 
+     * are shared with the map.
+     * @param map the map to copy
+     * @return a frozen trie with UTF-8 encoded keys
+     */
+    public static <V> PatriciaTrie<byte[], V> toUtf8Trie(
+            final Map<? extends CharSequence, ? extends V> map) {
+        final PatriciaTrie<byte[], V> trie =
+            new PatriciaTrie<byte[], V>(new ByteArrayKeyAnalyzer());
+        for (final Entry<? extends CharSequence, ? extends V> entry
+                : map.entrySet()) {
+            trie.put(toUtf8(entry.getKey()), entry.getValue());
+        }
+        return trie.freeze();
+    }
+
+    /**
+     * Encodes the sequence to UTF-8.
+     * @param seq the sequence to encode
+     * @return the UTF-8 bytes of the sequence
+     */
+    public static byte[] toUtf8(final CharSequence seq) {
+        final ByteBuffer buffer = UTF_8.encode(CharBuffer.wrap(seq));
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
 }
@@ -0,0 +1,37 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.util.List;
+
+/**
+ * A dictionary which knows the types of the entities of its entries, e.g.
+ * <em>gene</em> or <em>disease</em>. The type belongs to the entry, so an
+ * ID may have different types for different keys and several types for
+ * the same key.
+ * @author Sascha Kohlmann
+ * @see MultiDictionary
+ */
+public interface TypedDictionary {
+
+    /**
+     * Returns the types of the entity with the given ID for the given key.
+     * @param key the key of the entry
+     * @param id the ID of an entity of the entry
+     * @return the types. Empty if the entry doesn't contain the ID.
+     */
+    List<String> getEntityTypes(CharSequence key, CharSequence id);
+}
@@ -15,16 +15,23 @@
  */
 package net.sf.eos.trie;
 
+import static net.sf.eos.config.ConfigurationKey.Type.BOOLEAN;
+import static net.sf.eos.config.ConfigurationKey.Type.INTEGER;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import net.sf.eos.Supplier;
 import net.sf.eos.analyzer.ResettableTokenizer;
 import net.sf.eos.analyzer.TextBuilder;
 import net.sf.eos.analyzer.Token;
 import net.sf.eos.analyzer.TokenizerException;
+import net.sf.eos.config.Configuration;
+import net.sf.eos.config.ConfigurationKey;
+import net.sf.eos.trie.TrieSource.Operation;
 import net.sf.eos.trie.TrieSource.TrieEntry;
 import net.sf.eos.trie.TrieSource.TrieEntryEvent;
+import net.sf.eos.trie.TrieSource.TrieEntryHandler;
 import net.sf.eos.trie.TrieSource.TrieEntryListener;
 
 import java.io.InputStream;
@@ -36,7 +43,19 @@ import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -53,6 +72,26 @@ import javax.xml.parsers.SAXParserFactory;
  * <p>The builder doesn't validate validates the XML structure.</p>
  * <p>If a key is twice in the XML structure the builder adds it to the
  * value <code>Collection</code>.
+ * <p>By default the loader parses, tokenizes and stores the entries in a
+ * single pass. With a {@link #WORKER_COUNT_CONFIG_NAME worker count}
+ * greater than {@code 0} the loader works as a pipeline: the parser
+ * collects the entries in batches, a pool of workers
+ * {@link #rebuildValue(CharSequence) rebuilds} the values of the batches
+ * and a builder thread collects the batches in parsing order. If the trie
+ * is an empty {@link PatriciaTrie}, the builder collects the entries
+ * sorted and builds the trie with a single pass bulk load at the end.
+ * Otherwise the builder stores the entries one by one.
+ * Each worker needs its own tokenizer. Set a
+ * {@link #setTokenizerSupplier(Supplier) supplier} for the tokenizers.
+ * A single {@link #setTokenizer(ResettableTokenizer) tokenizer} is shared
+ * by all workers in turn, so the values are rebuilt serially. The loader
+ * logs a warning in this case.</p>
+ * <p>The loader interns the values of the entries in an
+ * {@link EntityIdPool}. The value sets of the trie are
+ * {@link EntityIdSet EntityIdSets} of the pool.</p>
+ * <p>If a StAX implementation is available, the loader parses the XML data
+ * with a {@link StaxTrieSource}. Otherwise the loader uses a SAX based
+ * {@link TrieHandler}.</p>
  * @author Sascha Kohlmann
  */
 @SuppressWarnings("nls")
@@ -61,9 +100,80 @@ public class XmlTrieLoader
 
     static final Log LOG = LogFactory.getLog(XmlTrieLoader.class.getName());
 
+    /** The default worker count. Value is {@value}. */
+    public static final String DEFAULT_WORKER_COUNT = "0";
+
+    /** Key for the count of tokenizing workers. */
+    @ConfigurationKey(type=INTEGER,
+                      defaultValue=DEFAULT_WORKER_COUNT,
+                      description="The count of workers rebuilding the values "
+                                  + "of the entries. 0 loads the entries in a "
+                                  + "single pass.")
+    public static final String WORKER_COUNT_CONFIG_NAME =
+        "net.sf.eos.trie.XmlTrieLoader.workers";
+
+    /** Key for using StAX if available. */
+    @ConfigurationKey(type=BOOLEAN,
+                      defaultValue="true",
+                      description="Parse with StAX if available.")
+    public static final String STAX_CONFIG_NAME =
+        "net.sf.eos.trie.XmlTrieLoader.stax";
+
+    /** {@code true} if a StAX implementation is available. */
+    static final boolean STAX_AVAILABLE = isStaxAvailable();
+
+    /** The count of entries of a batch for the workers. */
+    static final int BATCH_SIZE = 1024;
+
+    /** Marks the end of the queue of batches. */
+    static final Future<Batch> END_OF_BATCHES =
+        new FutureTask<Batch>(new Callable<Batch>() {
+            public Batch call() {
+                return null;
+            }
+        });
+
     /** A Tokenizer to tokenize the value of the trie before storing. */
     private ResettableTokenizer tokenizer;
     private TextBuilder textBuilder = TextBuilder.SPACE_BUILDER;
+    private Supplier<ResettableTokenizer> tokenizerSupplier;
+    private final ThreadLocal<ResettableTokenizer> workerTokenizer =
+        new ThreadLocal<ResettableTokenizer>() {
+            @Override
+            protected ResettableTokenizer initialValue() {
+                return XmlTrieLoader.this.tokenizerSupplier.get();
+            }
+        };
+    private int workerCount = Integer.parseInt(DEFAULT_WORKER_COUNT);
+    private boolean stax = STAX_AVAILABLE;
+    private EntityIdPool entityIdPool = new EntityIdPool();
+
+    private long entryCount = 0;
+    private long loadTime = 0;
+
+    /**
+     * Reads the {@link #WORKER_COUNT_CONFIG_NAME worker count} from the
+     * configuration.
+     */
+    @Override
+    public void configure(
+            @SuppressWarnings("hiding") final Configuration config) {
+        super.configure(config);
+        setWorkerCount(config.getInt(WORKER_COUNT_CONFIG_NAME,
+                                     Integer.parseInt(DEFAULT_WORKER_COUNT)));
+        setStax(config.getBoolean(STAX_CONFIG_NAME, true));
+    }
+
+    private static boolean isStaxAvailable() {
+        try {
+            Class.forName("javax.xml.stream.XMLInputFactory");
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        } catch (final LinkageError e) {
+            return false;
+        }
+    }
 
     /**
      * Creates a <code>Trie</code> from the <code>InputStream</code>.
@@ -73,17 +183,6 @@ public class XmlTrieLoader
                          final Trie<CharSequence, Set<CharSequence>> trie)
             throws Exception {
 
-        final SAXParserFactory factory = SAXParserFactory.newInstance();
-        final SAXParser parser = factory.newSAXParser();
-
-        final TrieHandler source = new TrieHandler();
-        source.addTrieEntryListener(new TrieEntryListener() {
-            public void onEntry(final TrieEntryEvent event) {
-                final TrieEntry entry = (TrieEntry) event.getSource();
-                handleNewTrieEntryForCharSequenceTrie(entry, trie);
-            }
-        });
-
         final long start = System.currentTimeMillis();
         LOG.trace("start time since epoche: " + start + "ms");
         final MemoryMXBean memBean = ManagementFactory.getMemoryMXBean();
@@ -98,12 +197,146 @@ public class XmlTrieLoader
         LOG.debug(lsb.toString());
         logStatistic();
 
-        parser.parse(trieData, source);
+        this.entryCount = 0;
+        if (this.workerCount > 0) {
+            loadTrieParallel(trieData, trie);
+        } else {
+            final EntryAdder adder = new EntryAdder(trie);
+            parse(trieData, adder, adder);
+        }
+        this.loadTime = System.currentTimeMillis() - start;
 
         logStatistic();
-        LOG.debug("Build time: " 
-                  + (System.currentTimeMillis() - start) + "ms"
+        LOG.debug("Build time: " + this.loadTime + "ms"
                   + " for " + trie.size() + " entries");
+        if (LOG.isDebugEnabled() && trie instanceof PatriciaTrie) {
+            LOG.debug(((PatriciaTrie<CharSequence, Set<CharSequence>>) trie)
+                          .statistics().withLoadTime(this.loadTime));
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("loaded " + this.entryCount + " entries with "
+                     + this.workerCount + " workers in " + this.loadTime
+                     + "ms (" + (long) getEntriesPerSecond() + " entries/s)");
+        }
+    }
+
+    /**
+     * Parses the entries on the calling thread, rebuilds the values in the
+     * worker pool and stores the entries by the builder thread.
+     */
+    final void loadTrieParallel(final InputStream trieData,
+                                final Trie<CharSequence, Set<CharSequence>> trie)
+            throws Exception {
+
+        if (this.tokenizerSupplier == null && this.tokenizer != null
+                && LOG.isWarnEnabled()) {
+            LOG.warn("no tokenizer supplier: " + this.workerCount
+                     + " workers share a single tokenizer and rebuild the "
+                     + "values serially");
+        }
+        final ExecutorService pool =
+            Executors.newFixedThreadPool(this.workerCount, new ThreadFactory() {
+                private int count = 0;
+                public synchronized Thread newThread(final Runnable r) {
+                    final Thread t =
+                        new Thread(r, "XmlTrieLoader-worker-" + ++this.count);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        final BlockingQueue<Future<Batch>> queue =
+            new ArrayBlockingQueue<Future<Batch>>(2 * this.workerCount);
+        final TrieBuilder builder = new TrieBuilder(queue, trie);
+        builder.start();
+
+        final BatchSubmitter submitter = new BatchSubmitter(pool, queue);
+        try {
+            parse(trieData, submitter, submitter);
+            submitter.flush();
+        } finally {
+            try {
+                queue.put(END_OF_BATCHES);
+                builder.join();
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        if (builder.error != null) {
+            throw builder.error;
+        }
+    }
+
+    /**
+     * Applies a delta to the trie. A delta has the XML format of a
+     * dictionary. The optional {@code op} attribute of an entry defines the
+     * {@linkplain TrieSource.Operation operation}:
+     * <pre>
+     * &lt;trie>
+     *   &lt;entry>&lt;key>new&lt;/key>&lt;value>added&lt;/value>&lt;/entry>
+     *   &lt;entry op='remove'>&lt;key>old&lt;/key>&lt;value>removed&lt;/value>&lt;/entry>
+     *   &lt;entry op='remove'>&lt;key>obsolete&lt;/key>&lt;/entry>
+     * &lt;/trie></pre>
+     * <p>The values are {@link #rebuildValue(CharSequence) rebuild} like
+     * the values of a dictionary. A key without values is removed. The
+     * value sets of the trie are never modified but replaced, so the trie
+     * may share its value sets with other tries, e.g. a copy of a
+     * {@linkplain PatriciaTrie#freeze() frozen} trie.</p>
+     * @param delta the XML data of the delta
+     * @param trie the trie to change
+     * @return the count of changed values
+     * @throws Exception if an error occurs
+     * @see ReloadableDictionary
+     */
+    public int applyDelta(final InputStream delta,
+                          final Trie<CharSequence, Set<CharSequence>> trie)
+            throws Exception {
+        final DeltaApplier applier = new DeltaApplier(trie);
+        if (this.stax) {
+            final StaxTrieSource source = new StaxTrieSource(delta);
+            try {
+                source.addTrieEntryListener(applier);
+                while (source.next()) {
+                    // the applier gets the entries
+                }
+            } finally {
+                source.close();
+            }
+        } else {
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            final SAXParser parser = factory.newSAXParser();
+            final TrieHandler source = new TrieHandler();
+            source.addTrieEntryListener(applier);
+            parser.parse(delta, source);
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("applied delta with " + applier.changes + " changes");
+        }
+        return applier.changes;
+    }
+
+    /**
+     * Parses the XML data. Uses StAX with the handler if available,
+     * otherwise SAX with the listener. Both parsers reject entries with an
+     * operation other than {@link Operation#ADD}.
+     */
+    final void parse(final InputStream trieData,
+                     final TrieEntryHandler handler,
+                     final TrieEntryListener listener) throws Exception {
+        if (this.stax) {
+            final StaxTrieSource source = new StaxTrieSource(trieData);
+            try {
+                source.parse(handler);
+            } finally {
+                source.close();
+            }
+        } else {
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            final SAXParser parser = factory.newSAXParser();
+            final TrieHandler source = new TrieHandler();
+            source.setAddOnly(true);
+            source.addTrieEntryListener(listener);
+            parser.parse(trieData, source);
+        }
     }
 
     final void handleNewTrieEntryForCharSequenceTrie(
@@ -121,12 +354,20 @@ public class XmlTrieLoader
 //            trie.put(keyArray, values);
 //        }
 //        values.add(valueArray);
+        addToTrie(key, rebuildedValue, trie);
+    }
+
+    final void addToTrie(final String key,
+                         final CharSequence rebuildedValue,
+                         final Map<CharSequence, Set<CharSequence>> trie) {
         Set<CharSequence> values = trie.get(key);
         if (values == null) {
-            values = new HashSet<CharSequence>();
+            final EntityIdPool pool = this.entityIdPool;
+            values = pool != null ? pool.newSet() : new HashSet<CharSequence>();
             trie.put(key, values);
         }
         values.add(rebuildedValue);
+        this.entryCount++;
     }
 
     final void logStatistic() {
@@ -150,9 +391,15 @@ public class XmlTrieLoader
     }
 
     /**
+     * Returns the tokenizer for the current thread. If a
+     * {@link #setTokenizerSupplier(Supplier) supplier} is set, each thread
+     * gets its own tokenizer from the supplier.
      * @return the tokenizer
      */
     public ResettableTokenizer getTokenizer() {
+        if (this.tokenizerSupplier != null) {
+            return this.workerTokenizer.get();
+        }
         return this.tokenizer;
     }
 
@@ -164,6 +411,103 @@ public class XmlTrieLoader
         this.tokenizer = tokenizer;
     }
 
+    /**
+     * Sets a supplier for the tokenizers. The supplier is called once for
+     * each thread rebuilding values. A supplier overrides a
+     * {@link #setTokenizer(ResettableTokenizer) setted tokenizer}.
+     * @param supplier the supplier to set or {@code null}
+     */
+    public void setTokenizerSupplier(
+            final Supplier<ResettableTokenizer> supplier) {
+        this.tokenizerSupplier = supplier;
+    }
+
+    /**
+     * Returns a setted tokenizer supplier.
+     * @return a setted supplier or {@code null}
+     */
+    public Supplier<ResettableTokenizer> getTokenizerSupplier() {
+        return this.tokenizerSupplier;
+    }
+
+    /**
+     * Sets the count of workers rebuilding the values.
+     * @param count the count of workers. {@code 0} loads the entries
+     *              in a single pass.
+     */
+    public void setWorkerCount(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0: " + count);
+        }
+        this.workerCount = count;
+    }
+
+    /**
+     * Returns the count of workers rebuilding the values.
+     * @return the count of workers
+     */
+    public int getWorkerCount() {
+        return this.workerCount;
+    }
+
+    /**
+     * Sets whether the loader parses with StAX. Ignored if no StAX
+     * implementation is available.
+     * @param stax {@code true} for StAX, {@code false} for SAX
+     */
+    public void setStax(@SuppressWarnings("hiding") final boolean stax) {
+        this.stax = stax && STAX_AVAILABLE;
+    }
+
+    /**
+     * Returns whether the loader parses with StAX.
+     * @return {@code true} for StAX, {@code false} for SAX
+     */
+    public boolean isStax() {
+        return this.stax;
+    }
+
+    /**
+     * Sets the pool for the values. A new loader has its own pool.
+     * @param pool the pool or {@code null} to store the values in
+     *             {@code HashSets}
+     */
+    public void setEntityIdPool(final EntityIdPool pool) {
+        this.entityIdPool = pool;
+    }
+
+    /**
+     * Returns the pool for the values.
+     * @return the pool or {@code null}
+     */
+    public EntityIdPool getEntityIdPool() {
+        return this.entityIdPool;
+    }
+
+    /**
+     * Returns the count of entries of the last load.
+     * @return the count of entries
+     */
+    public long getEntryCount() {
+        return this.entryCount;
+    }
+
+    /**
+     * Returns the time of the last load.
+     * @return the load time in milliseconds
+     */
+    public long getLoadTime() {
+        return this.loadTime;
+    }
+
+    /**
+     * Returns the throughput of the last load.
+     * @return the count of loaded entries per second
+     */
+    public double getEntriesPerSecond() {
+        return this.entryCount * 1000d / Math.max(1, this.loadTime);
+    }
+
     /**
      * Sets a builder. The implementation has default builder of instance
      * {@link TextBuilder#SPACE_BUILDER} setted at construction time.
@@ -218,6 +562,251 @@ public class XmlTrieLoader
         }
     }
 
+    /**
+     * Rebuilds the values of a batch on a worker thread. A shared tokenizer
+     * is used by one worker at a time.
+     */
+    final Batch rebuildBatch(final Batch batch) {
+        final boolean shared =
+            this.tokenizerSupplier == null && this.tokenizer != null;
+        final int size = batch.size;
+        for (int i = 0; i < size; i++) {
+            if (shared) {
+                synchronized (this.tokenizer) {
+                    batch.values[i] = rebuildValue(batch.values[i]);
+                }
+            } else {
+                batch.values[i] = rebuildValue(batch.values[i]);
+            }
+        }
+        return batch;
+    }
+
+    /** The entries of a batch. */
+    static final class Batch {
+        final String[] keys = new String[BATCH_SIZE];
+        final CharSequence[] values = new CharSequence[BATCH_SIZE];
+        int size = 0;
+
+        void add(final String key, final CharSequence value) {
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size++;
+        }
+
+        boolean isFull() {
+            return this.size == BATCH_SIZE;
+        }
+    }
+
+    /** Adds the entries directly to the trie. */
+    final class EntryAdder implements TrieEntryHandler, TrieEntryListener {
+
+        private final Trie<CharSequence, Set<CharSequence>> trie;
+
+        EntryAdder(final Trie<CharSequence, Set<CharSequence>> trie) {
+            this.trie = trie;
+        }
+
+        public void onEntry(final TrieEntryEvent event) {
+            final TrieEntry entry = (TrieEntry) event.getSource();
+            handleNewTrieEntryForCharSequenceTrie(entry, this.trie);
+        }
+
+        public void onEntry(final char[] key,
+                            final int keyOffset,
+                            final int keyLength,
+                            final char[] value,
+                            final int valueOffset,
+                            final int valueLength) {
+            final String v = new String(value, valueOffset, valueLength);
+            addToTrie(new String(key, keyOffset, keyLength),
+                      rebuildValue(v),
+                      this.trie);
+        }
+    }
+
+    /** Applies the entries of a delta to the trie. */
+    final class DeltaApplier implements TrieEntryListener {
+
+        private final Trie<CharSequence, Set<CharSequence>> trie;
+        int changes = 0;
+
+        DeltaApplier(final Trie<CharSequence, Set<CharSequence>> trie) {
+            this.trie = trie;
+        }
+
+        public void onEntry(final TrieEntryEvent event) {
+            final TrieEntry entry = (TrieEntry) event.getSource();
+            final String key = entry.getKey();
+            final Set<CharSequence> values = this.trie.get(key);
+            if (entry.getValue() == null) {
+                if (values != null) {
+                    this.trie.remove(key);
+                    this.changes += values.size();
+                }
+                return;
+            }
+            final CharSequence value = rebuildValue(entry.getValue());
+            if (entry.getOperation() == Operation.ADD) {
+                if (values == null || ! values.contains(value)) {
+                    final Set<CharSequence> newValues = copyOf(values);
+                    newValues.add(value);
+                    this.trie.put(key, newValues);
+                    this.changes++;
+                }
+            } else if (values != null && values.contains(value)) {
+                if (values.size() == 1) {
+                    this.trie.remove(key);
+                } else {
+                    final Set<CharSequence> newValues = copyOf(values);
+                    newValues.remove(value);
+                    this.trie.put(key, newValues);
+                }
+                this.changes++;
+            }
+        }
+
+        private Set<CharSequence> copyOf(final Set<CharSequence> values) {
+            final EntityIdPool pool = XmlTrieLoader.this.entityIdPool;
+            final Set<CharSequence> copy =
+                pool != null ? pool.newSet() : new HashSet<CharSequence>();
+            if (values != null) {
+                copy.addAll(values);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Collects the parsed entries in batches and submits the batches to the
+     * worker pool. The queue of the submitted batches is bounded. The
+     * parser blocks if the builder lags behind.
+     */
+    final class BatchSubmitter
+            implements TrieEntryHandler, TrieEntryListener {
+
+        private final ExecutorService pool;
+        private final BlockingQueue<Future<Batch>> queue;
+        private Batch batch = new Batch();
+
+        BatchSubmitter(final ExecutorService pool,
+                       final BlockingQueue<Future<Batch>> queue) {
+            this.pool = pool;
+            this.queue = queue;
+        }
+
+        public void onEntry(final TrieEntryEvent event) {
+            final TrieEntry entry = (TrieEntry) event.getSource();
+            this.batch.add(entry.getKey(), entry.getValue());
+            if (this.batch.isFull()) {
+                flush();
+            }
+        }
+
+        public void onEntry(final char[] key,
+                            final int keyOffset,
+                            final int keyLength,
+                            final char[] value,
+                            final int valueOffset,
+                            final int valueLength) {
+            this.batch.add(new String(key, keyOffset, keyLength),
+                           new String(value, valueOffset, valueLength));
+            if (this.batch.isFull()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (this.batch.size == 0) {
+                return;
+            }
+            final Batch full = this.batch;
+            this.batch = new Batch();
+            final Future<Batch> future =
+                this.pool.submit(new Callable<Batch>() {
+                    public Batch call() {
+                        return rebuildBatch(full);
+                    }
+                });
+            try {
+                this.queue.put(future);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Stores the rebuilded batches in the order of submission. For an empty
+     * {@link PatriciaTrie} the entries are collected sorted by the
+     * comparator of the trie and bulk loaded after the last batch.
+     * After an error the builder drains the queue without storing.
+     */
+    final class TrieBuilder extends Thread {
+
+        private final BlockingQueue<Future<Batch>> queue;
+        private final Trie<CharSequence, Set<CharSequence>> trie;
+        /** The sorted entries for the bulk load or {@code null}. */
+        private final SortedMap<CharSequence, Set<CharSequence>> sorted;
+        Exception error = null;
+
+        TrieBuilder(final BlockingQueue<Future<Batch>> queue,
+                    final Trie<CharSequence, Set<CharSequence>> trie) {
+            super("XmlTrieLoader-builder");
+            setDaemon(true);
+            this.queue = queue;
+            this.trie = trie;
+            if (trie instanceof PatriciaTrie && trie.isEmpty()
+                    && ! ((PatriciaTrie<?, ?>) trie).isFrozen()) {
+                this.sorted = new TreeMap<CharSequence, Set<CharSequence>>(
+                        trie.comparator());
+            } else {
+                this.sorted = null;
+            }
+        }
+
+        /*
+         * @see java.lang.Thread#run()
+         */
+        @Override
+        public void run() {
+            try {
+                Future<Batch> future;
+                while ((future = this.queue.take()) != END_OF_BATCHES) {
+                    if (this.error != null) {
+                        future.cancel(false);
+                        continue;
+                    }
+                    try {
+                        final Batch batch = future.get();
+                        final Map<CharSequence, Set<CharSequence>> target =
+                            this.sorted != null ? this.sorted : this.trie;
+                        for (int i = 0; i < batch.size; i++) {
+                            addToTrie(batch.keys[i], batch.values[i], target);
+                        }
+                    } catch (final ExecutionException e) {
+                        final Throwable cause = e.getCause();
+                        this.error = cause instanceof Exception
+                                     ? (Exception) cause : e;
+                    } catch (final RuntimeException e) {
+                        this.error = e;
+                    }
+                }
+                if (this.error == null && this.sorted != null) {
+                    ((PatriciaTrie<CharSequence, Set<CharSequence>>) this.trie)
+                        .putAllSorted(this.sorted.entrySet().iterator());
+                    this.sorted.clear();
+                }
+            } catch (final InterruptedException e) {
+                this.error = e;
+            } catch (final RuntimeException e) {
+                this.error = e;
+            }
+        }
+    }
+
     final byte[] toUtf8ByteArray(final CharSequence s) {
         try {
             return s.toString().getBytes("UTF-8");
@@ -42,6 +42,18 @@
  * {@link java.lang.CharSequence CharSequences} transformed in UTF-8 bytes.
  * This safes memory for latin based languages.</p>
  *
+ * <p>For large dictionaries the {@link net.sf.eos.trie.CompactDictionary}
+ * stores the keys in a minimal automaton with integer ID postings. The
+ * {@link net.sf.eos.trie.DictionaryCompiler} compiles the XML format into
+ * a binary image which the {@link net.sf.eos.trie.MappedTrieLoader} maps
+ * into memory.</p>
+ *
+ * <p>Dictionaries larger than the heap stay on disk in a
+ * {@link net.sf.eos.trie.BlockDictionary}. The
+ * {@link net.sf.eos.trie.BlockTrieLoader} opens the block file and keeps a
+ * sparse index of the first keys and a cache of recently read blocks in
+ * memory.</p>
+ *
  * <p>For Hadoop use the distributed cache mechanism of Hadoop. See
  * {@link net.sf.eos.hadoop} for further information.</p>
  *
@@ -0,0 +1,124 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.util;
+
+import static net.sf.eos.util.Conditions.checkArgument;
+
+/**
+ * A Bloom filter over 64 bit hash values. The filter never reports a
+ * false negative. The rate of false positives depends on the count of
+ * bits per inserted value.
+ * <p>The filter doesn't hash the values. The caller must provide well
+ * mixed hash values. The bit positions are derived by double hashing from
+ * the upper and the lower half of the hash.</p>
+ * <p>Instances are not thread safe while values are inserted. A filter
+ * which is safely published after the last insertion may be shared by
+ * concurrent readers.</p>
+ * @since 0.2.0
+ * @author Sascha Kohlmann
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates a filter for the expected count of values with the given
+     * rate of false positives. The size of the filter is limited to
+     * <em>maxBits</em>. A limited filter has a higher false positive rate.
+     * @param expectedInsertions the expected count of values
+     * @param fpp the desired false positive probability. Must be greater
+     *            than {@code 0} and less than {@code 1}.
+     * @param maxBits the maximum count of bits of the filter
+     */
+    public BloomFilter(final long expectedInsertions,
+                       final double fpp,
+                       final long maxBits) {
+        checkArgument(expectedInsertions >= 0, "expectedInsertions < 0");
+        checkArgument(fpp > 0d && fpp < 1d, "fpp not in (0, 1)");
+        checkArgument(maxBits >= 64, "maxBits < 64");
+        final long n = Math.max(1, expectedInsertions);
+        final long optimal =
+            (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        final long limit = Math.min(maxBits, (long) Integer.MAX_VALUE * 64);
+        final int words = (int) ((Math.max(64, Math.min(optimal, limit)) + 63) >>> 6);
+        this.bits = new long[words];
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, Math.min(16,
+                (int) Math.round((double) this.bitCount / n * Math.log(2))));
+    }
+
+    /**
+     * Inserts the hash value.
+     * @param hash a well mixed hash value
+     */
+    public void put(final long hash) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= this.hashCount; i++) {
+            final long index = ((h1 + (long) i * h2) & Long.MAX_VALUE)
+                               % this.bitCount;
+            this.bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    /**
+     * Returns {@code false} if the hash value was never inserted.
+     * @param hash a well mixed hash value
+     * @return {@code true} if the hash value may have been inserted
+     */
+    public boolean mightContain(final long hash) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= this.hashCount; i++) {
+            final long index = ((h1 + (long) i * h2) & Long.MAX_VALUE)
+                               % this.bitCount;
+            if ((this.bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the count of bits of the filter.
+     * @return the count of bits
+     */
+    public long getBitCount() {
+        return this.bitCount;
+    }
+
+    /**
+     * Returns the count of bits set for each value.
+     * @return the count of hash functions
+     */
+    public int getHashCount() {
+        return this.hashCount;
+    }
+
+    /**
+     * Returns the expected false positive probability for the count of
+     * inserted values.
+     * @param insertions the count of inserted values
+     * @return the expected false positive probability
+     */
+    public double expectedFpp(final long insertions) {
+        return Math.pow(1d - Math.exp(-(double) this.hashCount * insertions
+                                      / this.bitCount),
+                        this.hashCount);
+    }
+}
@@ -0,0 +1,303 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.util;
+
+import static net.sf.eos.util.Conditions.checkArgument;
+import static net.sf.eos.util.Conditions.checkArgumentNotNull;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of char sequences with open addressing. The set may be probed with
+ * a range of a {@code char[]} or with any {@link CharSequence}. Two
+ * sequences are equal if they contain the same chars. So a
+ * {@code StringBuilder} or a token buffer finds a {@code String} of the
+ * set without a conversion to a {@code String}.
+ * <p>The hash code of the chars is the hash code of a {@code String}
+ * with the same chars. The table size is a power of two and at most half
+ * of the table is used.</p>
+ * <p>The iterator returns the elements as {@code Strings}. Elements can't
+ * be removed. Instances are not thread safe while elements are added. A
+ * set which is safely published after the last insertion may be shared by
+ * concurrent readers.</p>
+ * @since 0.2.0
+ * @author Sascha Kohlmann
+ */
+public final class CharArraySet extends AbstractSet<String> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private char[][] entries;
+    private int[] hashes;
+    private int size = 0;
+
+    /**
+     * Creates a new empty set.
+     * @param expectedSize the expected count of elements
+     */
+    @SuppressWarnings("nls")
+    public CharArraySet(final int expectedSize) {
+        checkArgument(expectedSize >= 0, "expectedSize < 0");
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        this.entries = new char[capacity][];
+        this.hashes = new int[capacity];
+    }
+
+    /**
+     * Creates a new set with the elements of the collection.
+     * @param elements the elements of the set
+     */
+    @SuppressWarnings("nls")
+    public CharArraySet(final Collection<? extends CharSequence> elements) {
+        this(checkArgumentNotNull(elements, "elements is null").size());
+        for (final CharSequence element : elements) {
+            add(element);
+        }
+    }
+
+    /**
+     * Adds the chars of the sequence.
+     * @param seq the chars to add
+     * @return {@code true} if the set didn't contain the chars
+     */
+    @SuppressWarnings("nls")
+    public boolean add(final CharSequence seq) {
+        checkArgumentNotNull(seq, "seq is null");
+        final int length = seq.length();
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = seq.charAt(i);
+        }
+        return add(chars, 0, length);
+    }
+
+    /*
+     * @see java.util.AbstractCollection#add(java.lang.Object)
+     */
+    @Override
+    public boolean add(final String s) {
+        return add((CharSequence) s);
+    }
+
+    /**
+     * Adds the chars of the range.
+     * @param chars the source of the chars
+     * @param offset the index of the first char
+     * @param length the count of chars
+     * @return {@code true} if the set didn't contain the chars
+     */
+    public boolean add(final char[] chars, final int offset, final int length) {
+        final int hash = hash(chars, offset, length);
+        int slot = slot(chars, offset, length, hash);
+        if (this.entries[slot] != null) {
+            return false;
+        }
+        final char[] entry = new char[length];
+        System.arraycopy(chars, offset, entry, 0, length);
+        if ((this.size + 1) * 2 > this.entries.length) {
+            rehash();
+            slot = slot(entry, 0, length, hash);
+        }
+        this.entries[slot] = entry;
+        this.hashes[slot] = hash;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the set contains the chars of the range.
+     * @param chars the source of the chars
+     * @param offset the index of the first char
+     * @param length the count of chars
+     * @return {@code true} if the set contains the chars
+     */
+    public boolean contains(final char[] chars,
+                            final int offset,
+                            final int length) {
+        final int hash = hash(chars, offset, length);
+        return this.entries[slot(chars, offset, length, hash)] != null;
+    }
+
+    /**
+     * Returns {@code true} if the set contains the chars of the sequence.
+     * @param seq the chars to search for
+     * @return {@code true} if the set contains the chars
+     */
+    public boolean contains(final CharSequence seq) {
+        final int length = seq.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + seq.charAt(i);
+        }
+        final int mask = this.entries.length - 1;
+        int slot = index(hash, mask);
+        char[] entry;
+        while ((entry = this.entries[slot]) != null) {
+            if (this.hashes[slot] == hash && equals(entry, seq)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the object is a {@code CharSequence} or a
+     * {@code char[]} and the set contains the chars.
+     */
+    @Override
+    public boolean contains(final Object o) {
+        if (o instanceof CharSequence) {
+            return contains((CharSequence) o);
+        }
+        if (o instanceof char[]) {
+            final char[] chars = (char[]) o;
+            return contains(chars, 0, chars.length);
+        }
+        return false;
+    }
+
+    /*
+     * @see java.util.AbstractCollection#size()
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /*
+     * @see java.util.AbstractCollection#iterator()
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = advance(0);
+
+            public boolean hasNext() {
+                return this.next < CharArraySet.this.entries.length;
+            }
+
+            public String next() {
+                if (! hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String retval =
+                    new String(CharArraySet.this.entries[this.next]);
+                this.next = advance(this.next + 1);
+                return retval;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            private int advance(final int from) {
+                int i = from;
+                while (i < CharArraySet.this.entries.length
+                        && CharArraySet.this.entries[i] == null) {
+                    i++;
+                }
+                return i;
+            }
+        };
+    }
+
+    /** @return the slot of the chars or the free slot for the chars */
+    private int slot(final char[] chars,
+                     final int offset,
+                     final int length,
+                     final int hash) {
+        final int mask = this.entries.length - 1;
+        int slot = index(hash, mask);
+        char[] entry;
+        while ((entry = this.entries[slot]) != null) {
+            if (this.hashes[slot] == hash
+                    && equals(entry, chars, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        final char[][] oldEntries = this.entries;
+        final int[] oldHashes = this.hashes;
+        final int capacity = oldEntries.length << 1;
+        this.entries = new char[capacity][];
+        this.hashes = new int[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldEntries.length; i++) {
+            final char[] entry = oldEntries[i];
+            if (entry != null) {
+                int slot = index(oldHashes[i], mask);
+                while (this.entries[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.entries[slot] = entry;
+                this.hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    /** Spreads the upper bits of the hash to the lower bits of the slot. */
+    private static int index(final int hash, final int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int hash(final char[] chars,
+                            final int offset,
+                            final int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    private static boolean equals(final char[] entry,
+                                  final char[] chars,
+                                  final int offset,
+                                  final int length) {
+        if (entry.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (entry[i] != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(final char[] entry, final CharSequence seq) {
+        if (entry.length != seq.length()) {
+            return false;
+        }
+        for (int i = 0; i < entry.length; i++) {
+            if (entry[i] != seq.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,151 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.analyzer;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the {@code String} based case change of former versions of the
+ * {@link CaseTokenFilter} with the current filter. The tokens are like
+ * MEDLINE tokens, mostly ASCII with some Latin-1 and Greek chars.
+ * <p>The benchmark measures tokens per second for four cases:</p>
+ * <ul>
+ *   <li><em>String</em> changes the case of each token with
+ *       {@code ("" + text).toLowerCase(locale)} like former versions,</li>
+ *   <li><em>next()</em> uses {@link CaseTokenFilter#next()},</li>
+ *   <li><em>locale</em> uses {@link CaseTokenFilter#next(MutableToken)},</li>
+ *   <li><em>folding</em> uses {@link CaseTokenFilter#next(MutableToken)}
+ *       in the {@link CaseTokenFilter#setFolding(boolean) folding}
+ *       mode.</li>
+ * </ul>
+ * <p>Usage: {@code CaseTokenFilterBenchmark [tokenCount [rounds]]}.
+ * The default is 1,000,000 tokens and 5 rounds.</p>
+ * @author Sascha Kohlmann
+ */
+public class CaseTokenFilterBenchmark {
+
+    private static final String[] WORDS =
+        {"The", "p53", "protein", "BRCA1", "Expression", "of", "IL-2",
+         "in", "T-cells", "(n=12)", "RESULTS:", "Patients", "with",
+         "Alzheimer's", "disease", "and", "Na+/K+-ATPase", "\u00c4rzte",
+         "\u03b2-Catenin", "CONCLUSIONS:", "were", "significantly",
+         "increased", "mRNA", "TNF-alpha", "Caf\u00e9"};
+
+    public static void main(final String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final Random random = new Random(4711);
+        final String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = WORDS[random.nextInt(WORDS.length)];
+        }
+        final ArrayTokenizer source = new ArrayTokenizer(tokens);
+        final CaseTokenFilter filter = new CaseTokenFilter(source);
+        final CaseTokenFilter folding = new CaseTokenFilter(source);
+        folding.setFolding(true);
+        final MutableToken token = new MutableToken();
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("round " + round);
+
+            source.reset();
+            long start = System.nanoTime();
+            long legacy = 0;
+            Token t = null;
+            while ((t = source.next()) != null) {
+                legacy += ("" + t.getTokenText())
+                              .toLowerCase(Locale.getDefault()).length();
+            }
+            report("String", count, System.nanoTime() - start);
+
+            source.reset();
+            start = System.nanoTime();
+            long result = 0;
+            while ((t = filter.next()) != null) {
+                result += t.getTokenText().length();
+            }
+            report("next()", count, System.nanoTime() - start);
+            check(legacy, result);
+
+            source.reset();
+            start = System.nanoTime();
+            result = 0;
+            while (filter.next(token)) {
+                result += token.length();
+            }
+            report("locale", count, System.nanoTime() - start);
+            check(legacy, result);
+
+            source.reset();
+            start = System.nanoTime();
+            result = 0;
+            while (folding.next(token)) {
+                result += token.length();
+            }
+            report("folding", count, System.nanoTime() - start);
+            check(legacy, result);
+        }
+    }
+
+    private static void report(final String name,
+                               final int count,
+                               final long nanos) {
+        System.out.println("  " + name + ": " + nanos / 1000000 + "ms, "
+                           + (long) (count / (nanos / 1e9)) + " tokens/s");
+    }
+
+    private static void check(final long expected, final long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException("results differ");
+        }
+    }
+
+    /** Returns the tokens of an array. */
+    static final class ArrayTokenizer implements ReusableTokenizer {
+
+        private final Token[] tokens;
+        private int next = 0;
+
+        ArrayTokenizer(final String[] texts) {
+            this.tokens = new Token[texts.length];
+            for (int i = 0; i < texts.length; i++) {
+                this.tokens[i] = new AbstractToken(texts[i]) {};
+            }
+        }
+
+        void reset() {
+            this.next = 0;
+        }
+
+        public Token next() {
+            if (this.next == this.tokens.length) {
+                return null;
+            }
+            return this.tokens[this.next++];
+        }
+
+        public boolean next(final MutableToken token) {
+            if (this.next == this.tokens.length) {
+                return false;
+            }
+            token.clear();
+            token.setText(this.tokens[this.next++].getTokenText());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+public class CaseTokenFilterTest {
+
+    @Test
+    public void lowerCase() throws Exception {
+        final Tokenizer tokenizer =
+            new CaseTokenFilter(new WhitespaceTokenizer("Quick BROWN fox"));
+        assertEquals("quick", tokenizer.next().getTokenText());
+        assertEquals("brown", tokenizer.next().getTokenText());
+        assertEquals("fox", tokenizer.next().getTokenText());
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    public void turkishLocale() throws Exception {
+        final Locale turkish = new Locale("tr", "TR");
+        final CaseTokenFilter lower = new CaseTokenFilter(
+                new WhitespaceTokenizer("TITLE"), turkish);
+        assertEquals("TITLE".toLowerCase(turkish),
+                     lower.next().getTokenText());
+
+        final CaseTokenFilter upper = new CaseTokenFilter(
+                new WhitespaceTokenizer("title"), turkish, true);
+        final MutableToken token = new MutableToken();
+        upper.next(token);
+        assertEquals("title".toUpperCase(turkish), token.toString());
+    }
+
+    @Test
+    public void foldingSameAsEnglishLocale() {
+        final Random random = new Random(7);
+        final MutableToken token = new MutableToken();
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                final int range = random.nextInt(10);
+                if (range < 6) {
+                    sb.append((char) random.nextInt(0x80));
+                } else if (range < 9) {
+                    sb.append((char) (0x80 + random.nextInt(0x80)));
+                } else {
+                    sb.append((char) (0x100 + random.nextInt(0x300)));
+                }
+            }
+            final String text = sb.toString();
+
+            token.setText(text);
+            CaseTokenFilter.foldCase(token, false);
+            assertEquals(text.toLowerCase(Locale.ENGLISH), token.toString());
+
+            token.setText(text);
+            CaseTokenFilter.foldCase(token, true);
+            assertEquals(text.toUpperCase(Locale.ENGLISH), token.toString());
+        }
+    }
+
+    @Test
+    public void folding() throws Exception {
+        final CaseTokenFilter filter = new CaseTokenFilter(
+                new WhitespaceTokenizer("\u00c4rger STRA\u00dfE"),
+                new Locale("tr"), true);
+        filter.setFolding(true);
+        assertEquals("\u00c4RGER", filter.next().getTokenText());
+        assertEquals("STRASSE", filter.next().getTokenText());
+        assertNull(filter.next());
+    }
+}
@@ -0,0 +1,111 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.eos.medline.MedlineTokenizerSupplier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MutableTokenTest {
+
+    private static final String TEXT =
+        "BACKGROUND: The (Alpha) and [BETA] \u00abgene\u00bb \"Caf\u00e9\" "
+        + "RESULTS: a(b x) <Dose> {q} 'y' \u201cZ\u201d ((( ) \u00c4rger. "
+        + "CONCLUSIONS:  end";
+
+    @Test
+    public void medlineChainSameAsNext() throws Exception {
+        final ResettableTokenizer tokenizer =
+            new MedlineTokenizerSupplier().get();
+        tokenizer.reset(TEXT);
+        final List<String> expected = new ArrayList<String>();
+        Token t = null;
+        while ((t = tokenizer.next()) != null) {
+            expected.add("" + t.getTokenText());
+        }
+
+        tokenizer.reset(TEXT);
+        final ReusableTokenizer reusable = (ReusableTokenizer) tokenizer;
+        final MutableToken token = new MutableToken();
+        final List<String> actual = new ArrayList<String>();
+        while (reusable.next(token)) {
+            actual.add(token.toString());
+        }
+
+        assertEquals(expected, actual);
+        assertFalse(actual.contains("background:"));
+        assertTrue(actual.contains("alpha"));
+        assertTrue(actual.contains("caf\u00e9"));
+    }
+
+    @Test
+    public void surroundingSameAsString() {
+        final SurroundingTokenFilter filter =
+            new SurroundingTokenFilter(new NullTokenizer());
+        final char[] alphabet = "ab\"'()[]<>{}\u00ab\u00bb".toCharArray();
+        final Random random = new Random(42);
+        final MutableToken token = new MutableToken();
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            final String term = sb.toString();
+            token.setText(term);
+            SurroundingTokenFilter.removeSurroundingChars(token);
+            assertEquals(term, "" + filter.correctSurroundingChars(term),
+                         token.toString());
+        }
+    }
+
+    @Test
+    public void offsets() throws Exception {
+        final ReusableTokenizer tokenizer = new SurroundingTokenFilter(
+                new WhitespaceTokenizer("a  (bc) d"));
+        final MutableToken token = new MutableToken();
+        final List<String> spans = new ArrayList<String>();
+        while (tokenizer.next(token)) {
+            spans.add(token + ":" + token.getStartOffset() + "-"
+                      + token.getEndOffset());
+        }
+        assertEquals(Arrays.asList("a:0-1", "bc:4-6", "d:8-9"), spans);
+    }
+
+    @Test
+    public void lazyMetadata() {
+        final MutableToken token = new MutableToken();
+        assertFalse(token.hasMeta());
+        token.getMeta().put("k", Arrays.asList("v"));
+        assertTrue(token.hasMeta());
+        token.append("text");
+        final Token copy = token.toToken();
+        token.clear();
+        assertFalse(token.hasMeta());
+        assertEquals(0, token.length());
+        assertEquals("text", copy.getTokenText());
+        assertEquals(Arrays.asList("v"), copy.getMeta().get("k"));
+    }
+}
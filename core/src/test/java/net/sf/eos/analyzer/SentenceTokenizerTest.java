@@ -16,6 +16,7 @@
 package net.sf.eos.analyzer;
 
 import net.sf.eos.analyzer.SentenceTokenizer;
+import net.sf.eos.analyzer.Token;
 import net.sf.eos.analyzer.Tokenizer;
 
 import org.junit.Test;
@@ -39,6 +40,18 @@ public class SentenceTokenizerTest {
         assertTrue(null == tokenizer.next());
     }
 
+    @Test
+    public void offsets() throws Exception {
+        final String text = "  the quick brown fox! jumps over.";
+        final Tokenizer tokenizer = new SentenceTokenizer(text);
+        Token t = tokenizer.next();
+        assertEquals("the quick brown fox!",
+                     text.substring(t.getStartOffset(), t.getEndOffset()));
+        t = tokenizer.next();
+        assertEquals("jumps over.",
+                     text.substring(t.getStartOffset(), t.getEndOffset()));
+    }
+
     @Test
     public void simpleEmpty() throws Exception {
         final Tokenizer tokenizer = new SentenceTokenizer();
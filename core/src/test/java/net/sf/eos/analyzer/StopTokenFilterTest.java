@@ -64,4 +64,26 @@ public class StopTokenFilterTest {
 
         assertNull(stop.next());
     }
+
+    @Test
+    public void stopWordsOfOtherCharSequences() throws Exception {
+        final Tokenizer source = new Tokenizer() {
+            private final String[] words = {"the", "quick", "brown"};
+            private int next = 0;
+            public Token next() {
+                if (this.next == this.words.length) {
+                    return null;
+                }
+                final CharSequence text =
+                    new StringBuilder(this.words[this.next++]);
+                return new AbstractToken(text) {};
+            }
+        };
+        final Set<CharSequence> stopWords = new HashSet<CharSequence>(
+                Arrays.asList(new StringBuilder("quick"), "the"));
+        final Tokenizer stop = new StopTokenFilter(source, stopWords);
+
+        assertEquals("brown", "" + stop.next().getTokenText());
+        assertNull(stop.next());
+    }
 }
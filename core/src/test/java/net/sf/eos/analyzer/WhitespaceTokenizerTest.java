@@ -60,6 +60,25 @@ public class WhitespaceTokenizerTest {
         assertTrue(null == tokenizer.next());
     }
 
+    @Test
+    public void offsets() throws Exception {
+        final WhitespaceTokenizer tokenizer = new WhitespaceTokenizer("a  bc");
+        Token t = tokenizer.next();
+        assertEquals(0, t.getStartOffset());
+        assertEquals(1, t.getEndOffset());
+        t = tokenizer.next();
+        assertEquals(3, t.getStartOffset());
+        assertEquals(5, t.getEndOffset());
+
+        final Tokenizer surround = new SurroundingTokenFilter(
+                new CaseTokenFilter(new WhitespaceTokenizer("x (Ab)")));
+        surround.next();
+        t = surround.next();
+        assertEquals("ab", t.getTokenText());
+        assertEquals(3, t.getStartOffset());
+        assertEquals(5, t.getEndOffset());
+    }
+
     @Test
     public void fromSourceTokenizer() throws Exception {
         final Tokenizer source = new DefaultTokenizer("h i j");
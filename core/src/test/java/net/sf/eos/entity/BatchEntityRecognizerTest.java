@@ -0,0 +1,253 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.eos.analyzer.ResettableTokenizer;
+import net.sf.eos.analyzer.Token;
+import net.sf.eos.analyzer.TokenizerException;
+import net.sf.eos.analyzer.TokenizerSupplier;
+import net.sf.eos.analyzer.WhitespaceTokenizer;
+import net.sf.eos.config.Configuration;
+import net.sf.eos.document.EosDocument;
+import net.sf.eos.trie.CharSequenceKeyAnalyzer;
+import net.sf.eos.trie.PatriciaTrie;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+public class BatchEntityRecognizerTest {
+
+    private BatchEntityRecognizer batch;
+
+    @Test
+    public void sameAsSequential() throws Exception {
+        final Random random = new Random(4711);
+        final String[] words = {"alpha", "beta", "gamma", "delta", "the"};
+        final List<EosDocument> documents = new ArrayList<EosDocument>();
+        for (int i = 0; i < 200; i++) {
+            final StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 50; j++) {
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            final EosDocument document = new EosDocument();
+            document.setText(text);
+            documents.add(document);
+        }
+
+        final List<BatchEntityRecognizer.Result> results =
+            this.batch.recognizeAll(documents);
+        assertEquals(documents.size(), results.size());
+        for (int i = 0; i < documents.size(); i++) {
+            final BatchEntityRecognizer.Result result = results.get(i);
+            assertSame(documents.get(i), result.getDocument());
+            final BatchEntityRecognizer.Result expected =
+                this.batch.recognize(documents.get(i));
+            assertEquals(texts(expected.getTokens()),
+                         texts(result.getTokens()));
+            assertEquals(expected.getEntityIds(), result.getEntityIds());
+        }
+    }
+
+    @Test
+    public void entityIds() throws Exception {
+        final EosDocument document = new EosDocument();
+        document.setText("beta gamma and alpha or beta gamma");
+        final BatchEntityRecognizer.Result result =
+            this.batch.recognize(document);
+        assertEquals(Arrays.asList("id:2", "id:1"),
+                     new ArrayList<String>(result.getEntityIds()));
+    }
+
+    @Test
+    public void backpressure() throws Exception {
+        final int[] taken = new int[1];
+        final Iterator<EosDocument> source = new Iterator<EosDocument>() {
+            public boolean hasNext() {
+                return taken[0] < 100;
+            }
+            public EosDocument next() {
+                taken[0]++;
+                final EosDocument document = new EosDocument();
+                document.setText("alpha " + taken[0]);
+                return document;
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final Iterator<BatchEntityRecognizer.Result> results =
+            this.batch.recognize(source);
+        int count = 0;
+        while (results.hasNext()) {
+            final BatchEntityRecognizer.Result result = results.next();
+            count++;
+            assertEquals("alpha " + count, result.getDocument().getText());
+            assertTrue(taken[0] <= count + 3);
+        }
+        assertEquals(100, count);
+    }
+
+    @Test
+    public void mutableTrieFrozen() throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        trie.put("alpha", Collections.<CharSequence>singleton("id:1"));
+        final BatchEntityRecognizer batch = new BatchEntityRecognizer(trie);
+        assertTrue(trie.isFrozen());
+        batch.close();
+    }
+
+    @Test
+    public void concurrentWorkers() throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        trie.put("alpha", Collections.<CharSequence>singleton("id:1"));
+        trie.put("beta gamma", Collections.<CharSequence>singleton("id:2"));
+        trie.put("gamma delta gamma",
+                 Collections.<CharSequence>singleton("id:3"));
+        trie.freeze();
+        final Random random = new Random(42);
+        final String[] words = {"alpha", "beta", "gamma", "delta", "the"};
+        final List<EosDocument> documents = new ArrayList<EosDocument>();
+        for (int i = 0; i < 100; i++) {
+            final StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 30; j++) {
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            final EosDocument document = new EosDocument();
+            document.setText(text);
+            documents.add(document);
+        }
+
+        // each worker waits inside of next() until all workers are there
+        BarrierTokenizerSupplier.barrier = new CyclicBarrier(4);
+        BarrierTokenizerSupplier.threads.clear();
+        final Configuration config = new Configuration();
+        config.set(BatchEntityRecognizer.THREADS_CONFIG_NAME, "4");
+        config.set(BatchEntityRecognizer.WINDOW_CONFIG_NAME, "8");
+        config.set(TokenizerSupplier.TOKENIZER_PROVIDER_IMPL_CONFIG_NAME,
+                   BarrierTokenizerSupplier.class.getName());
+        final BatchEntityRecognizer concurrent = new BatchEntityRecognizer(trie);
+        concurrent.configure(config);
+        try {
+            final List<BatchEntityRecognizer.Result> results =
+                concurrent.recognizeAll(documents);
+            assertEquals(4, BarrierTokenizerSupplier.threads.size());
+            for (int i = 0; i < documents.size(); i++) {
+                final SimpleLongestMatchDictionaryBasedEntityRecognizer
+                    sequential =
+                        new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                                new WhitespaceTokenizer(
+                                        documents.get(i).getText()));
+                sequential.setEntityMap(trie);
+                final List<Token> expected = new ArrayList<Token>();
+                Token t = null;
+                while ((t = sequential.next()) != null) {
+                    expected.add(t);
+                }
+                assertEquals(texts(expected),
+                             texts(results.get(i).getTokens()));
+            }
+        } finally {
+            concurrent.close();
+        }
+    }
+
+    /** Supplies tokenizers which wait for each other on the first token. */
+    public static final class BarrierTokenizerSupplier
+            extends TokenizerSupplier {
+
+        static volatile CyclicBarrier barrier = null;
+        static final Set<String> threads =
+            Collections.synchronizedSet(new HashSet<String>());
+
+        @Override
+        public ResettableTokenizer get() {
+            final WhitespaceTokenizer source = new WhitespaceTokenizer();
+            return new ResettableTokenizer() {
+                private boolean waited = false;
+
+                public void reset(final CharSequence input)
+                        throws TokenizerException {
+                    source.reset(input);
+                }
+
+                public Token next() throws TokenizerException {
+                    if (! this.waited) {
+                        this.waited = true;
+                        threads.add(Thread.currentThread().getName());
+                        try {
+                            barrier.await(10, TimeUnit.SECONDS);
+                        } catch (final Exception e) {
+                            throw new TokenizerException("workers not "
+                                                         + "concurrent", e);
+                        }
+                    }
+                    return source.next();
+                }
+            };
+        }
+    }
+
+    private static List<String> texts(final List<Token> tokens) {
+        final List<String> texts = new ArrayList<String>();
+        for (final Token token : tokens) {
+            texts.add(token.getType() + ":" + token.getTokenText());
+        }
+        return texts;
+    }
+
+    @Before
+    public void createBatch() {
+        final Map<CharSequence, Set<CharSequence>> entities =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        entities.put("alpha", Collections.<CharSequence>singleton("id:1"));
+        entities.put("beta gamma", Collections.<CharSequence>singleton("id:2"));
+        entities.put("gamma delta gamma",
+                     Collections.<CharSequence>singleton("id:3"));
+        final Configuration config = new Configuration();
+        config.set(BatchEntityRecognizer.THREADS_CONFIG_NAME, "4");
+        config.set(BatchEntityRecognizer.WINDOW_CONFIG_NAME, "3");
+        this.batch = new BatchEntityRecognizer(entities);
+        this.batch.configure(config);
+    }
+
+    @After
+    public void closeBatch() {
+        this.batch.close();
+    }
+}
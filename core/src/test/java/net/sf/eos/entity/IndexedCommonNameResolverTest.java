@@ -0,0 +1,137 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import static net.sf.eos.entity.CommonNameResolver.COMMON_NAME_RESOLVER_IMPL_CONFIG_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.eos.config.Configuration;
+import net.sf.eos.trie.CommonNameIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class IndexedCommonNameResolverTest {
+
+    private File image;
+
+    @Test
+    public void resolveCommonName() throws Exception {
+        final Configuration config = new Configuration();
+        config.set(COMMON_NAME_RESOLVER_IMPL_CONFIG_NAME,
+                   IndexedCommonNameResolver.class.getName());
+        config.set(IndexedCommonNameResolver.INDEX_CONFIG_NAME,
+                   this.image.getPath());
+        final IndexedCommonNameResolver resolver =
+            (IndexedCommonNameResolver) CommonNameResolver.newInstance(config);
+
+        assertEquals("Kohlmann Sascha", resolver.resolveCommonName("urn:id:1"));
+        assertEquals("Kohlmann Sascha", resolver.resolveCommonName("urn:id:1"));
+        assertEquals("Java", resolver.resolveCommonName("urn:id:3"));
+        assertNull(resolver.resolveCommonName("urn:id:4"));
+        assertNull(resolver.resolveCommonName("urn:id:4"));
+        assertNull(resolver.resolveCommonName("urn:id"));
+        assertEquals(2, resolver.getCacheHits());
+        assertEquals(4, resolver.getCacheMisses());
+    }
+
+    @Test
+    public void resolveCommonNames() throws Exception {
+        final IndexedCommonNameResolver resolver =
+            new IndexedCommonNameResolver(CommonNameIndex.open(this.image), 2);
+        assertEquals("Java", resolver.resolveCommonName("urn:id:3"));
+
+        final Map<String, String> names = resolver.resolveCommonNames(
+                Arrays.asList("urn:id:3", "urn:id:9", "urn:id:2",
+                              "urn:id:1", "urn:id:3"),
+                Locale.ENGLISH);
+        assertEquals(Arrays.asList("urn:id:3", "urn:id:2", "urn:id:1"),
+                     new ArrayList<String>(names.keySet()));
+        assertEquals("Eos", names.get("urn:id:2"));
+        assertEquals(1, resolver.getCacheHits());
+        assertEquals(4, resolver.getCacheMisses());
+
+        // the cache holds two names
+        assertEquals("Java", resolver.resolveCommonName("urn:id:3"));
+        assertEquals(5, resolver.getCacheMisses());
+    }
+
+    @Test
+    public void largeIndex() throws Exception {
+        final List<String> ids = new ArrayList<String>();
+        final StringBuilder xml = new StringBuilder("<trie>");
+        for (int i = 0; i < 1000; i++) {
+            ids.add("id" + i);
+            xml.append("<entry><key>name ").append(i)
+               .append("</key><value>id").append(i).append("</value></entry>");
+        }
+        xml.append("</trie>");
+        compile(xml.toString());
+        final IndexedCommonNameResolver resolver =
+            new IndexedCommonNameResolver(CommonNameIndex.open(this.image), 10);
+
+        final Map<String, String> names =
+            resolver.resolveCommonNames(ids, Locale.ENGLISH);
+        assertEquals(1000, names.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("name " + i, names.get("id" + i));
+        }
+        assertTrue(resolver.resolveCommonNames(Arrays.asList("id"),
+                                               Locale.ENGLISH).isEmpty());
+    }
+
+    @Before
+    public void compileIndex() throws Exception {
+        compile("<?xml version='1.0' encoding='UTF-8'?><trie>"
+                + "<entry><key>Kohlmann Sascha</key><value>urn:id:1</value></entry>"
+                + "<entry><key>Eos</key><value>urn:id:2</value></entry>"
+                + "<entry><key>Sascha Kohlmann</key><value>urn:id:1</value></entry>"
+                + "<entry><key>Java</key><value>urn:id:3</value></entry>"
+                + "</trie>");
+    }
+
+    private void compile(final String xml) throws Exception {
+        deleteImage();
+        this.image = File.createTempFile("names", ".dat");
+        final OutputStream out = new FileOutputStream(this.image);
+        try {
+            CommonNameIndex.compile(
+                    new ByteArrayInputStream(xml.getBytes("UTF-8")), out);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void deleteImage() {
+        if (this.image != null) {
+            this.image.delete();
+        }
+    }
+}
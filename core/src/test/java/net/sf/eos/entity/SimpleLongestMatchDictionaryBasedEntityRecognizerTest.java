@@ -16,23 +16,47 @@
 package net.sf.eos.entity;
 
 import static net.sf.eos.entity.AbstractDictionaryBasedEntityRecognizer.ENTITY_ID_KEY;
+import static net.sf.eos.entity.AbstractDictionaryBasedEntityRecognizer.ENTITY_TYPE_KEY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
 
+import net.sf.eos.analyzer.CaseTokenFilter;
+import net.sf.eos.analyzer.SurroundingTokenFilter;
 import net.sf.eos.analyzer.Token;
+import net.sf.eos.analyzer.Tokenizer;
 import net.sf.eos.analyzer.WhitespaceTokenizer;
 import net.sf.eos.entity.EntityRecognizer;
 import net.sf.eos.entity.SimpleLongestMatchDictionaryBasedEntityRecognizer;
+import net.sf.eos.trie.BlockDictionary;
+import net.sf.eos.trie.CharSequenceKeyAnalyzer;
+import net.sf.eos.trie.CompactDictionary;
+import net.sf.eos.trie.MultiDictionary;
+import net.sf.eos.trie.PatriciaTrie;
+import net.sf.eos.trie.ReloadableDictionary;
+import net.sf.eos.trie.XmlTrieLoader;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 
@@ -175,4 +199,292 @@ public class SimpleLongestMatchDictionaryBasedEntityRecognizerTest {
         assertTrue(t.getMeta().containsKey(ENTITY_ID_KEY));
         assertEquals("id2", t.getMeta().get(ENTITY_ID_KEY).get(0));
     }
+
+    @Test
+    public void prefixTerminationSameAsFullScan() throws Exception {
+        final Random random = new Random(4711);
+        final Map<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        for (int i = 0; i < 200; i++) {
+            final int length = 1 + random.nextInt(4);
+            final StringBuilder key = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                if (j > 0) {
+                    key.append(' ');
+                }
+                key.append((char) ('a' + random.nextInt(6)));
+            }
+            trie.put(key.toString(), Collections.<CharSequence>singleton("id" + i));
+        }
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append((char) ('a' + random.nextInt(8))).append(' ');
+        }
+
+        final List<Map<CharSequence, Set<CharSequence>>> maps =
+            new ArrayList<Map<CharSequence, Set<CharSequence>>>();
+        maps.add(trie);
+        maps.add(CompactDictionary.copyOf(trie));
+        for (final Map<CharSequence, Set<CharSequence>> map : maps) {
+            final SimpleLongestMatchDictionaryBasedEntityRecognizer full =
+                new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                        new WhitespaceTokenizer(text));
+            full.setPrefixTermination(false);
+            full.setEntityMap(map);
+            final SimpleLongestMatchDictionaryBasedEntityRecognizer early =
+                new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                        new WhitespaceTokenizer(text));
+            early.setEntityMap(map);
+
+            Token expected = null;
+            while ((expected = full.next()) != null) {
+                final Token actual = early.next();
+                assertEquals(expected.getTokenText(), actual.getTokenText());
+                assertEquals(expected.getType(), actual.getType());
+                assertEquals(expected.getMeta(), actual.getMeta());
+            }
+            assertNull(early.next());
+        }
+    }
+
+    @Test
+    public void keyFilterSameAsWithout() throws Exception {
+        final Random random = new Random(815);
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        for (int i = 0; i < 500; i++) {
+            final int length = 1 + random.nextInt(4);
+            final StringBuilder key = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                if (j > 0) {
+                    key.append(' ');
+                }
+                key.append("ab".charAt(random.nextInt(2)));
+                key.append((char) ('a' + random.nextInt(10)));
+            }
+            trie.put(key.toString(), Collections.<CharSequence>singleton("id" + i));
+        }
+        final Map<CharSequence, Set<CharSequence>> plain =
+            new HashMap<CharSequence, Set<CharSequence>>(trie);
+        trie.freeze();
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("abc".charAt(random.nextInt(3)));
+            text.append((char) ('a' + random.nextInt(12))).append(' ');
+        }
+
+        // a large false positive rate must not change the result
+        for (final float fpp : new float[] {0.01f, 0.5f}) {
+            final SimpleLongestMatchDictionaryBasedEntityRecognizer filtered =
+                new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                        new WhitespaceTokenizer(text));
+            filtered.setKeyFilterFpp(fpp);
+            filtered.setEntityMap(trie);
+            assertNotNull(filtered.keyFilter(trie));
+            // the filter is shared by the recognizers of the map
+            assertSame(filtered.keyFilter(trie), filtered.keyFilter(trie));
+            final SimpleLongestMatchDictionaryBasedEntityRecognizer without =
+                new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                        new WhitespaceTokenizer(text));
+            without.setEntityMap(plain);
+            assertNull(without.keyFilter(plain));
+
+            Token expected = null;
+            while ((expected = without.next()) != null) {
+                final Token actual = filtered.next();
+                assertEquals(expected.getTokenText(), actual.getTokenText());
+                assertEquals(expected.getType(), actual.getType());
+                assertEquals(expected.getMeta(), actual.getMeta());
+            }
+            assertNull(filtered.next());
+        }
+    }
+
+    @Test
+    public void blockDictionaryWithoutKeyFilter() throws Exception {
+        final File file = File.createTempFile("dictionary", ".blk");
+        try {
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                BlockDictionary.compile(xml(
+                        "<entry><key>a b</key><value>urn:id:1</value></entry>"),
+                        out, 64);
+            } finally {
+                out.close();
+            }
+            final BlockDictionary blocks = BlockDictionary.open(file);
+            try {
+                final SimpleLongestMatchDictionaryBasedEntityRecognizer
+                    recognizer =
+                        new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                                new WhitespaceTokenizer("x a b"));
+                recognizer.setEntityMap(blocks);
+                assertNull(recognizer.keyFilter(blocks));
+                assertEquals("x", recognizer.next().getTokenText());
+                assertEquals("a b", recognizer.next().getTokenText());
+                assertNull(recognizer.next());
+            } finally {
+                blocks.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void deltaWithLongerKey() throws Exception {
+        final ReloadableDictionary dictionary =
+            new ReloadableDictionary(new XmlTrieLoader());
+        dictionary.reload(xml(
+                "<entry><key>a b</key><value>urn:id:1</value></entry>"));
+        final SimpleLongestMatchDictionaryBasedEntityRecognizer recognizer =
+            new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer("a b x a b c"));
+        recognizer.setEntityMap(dictionary);
+        assertEquals(2, recognizer.getMaxToken());
+
+        final Token first = recognizer.next();
+        assertEquals("a b", first.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, first.getType());
+
+        dictionary.applyDelta(xml(
+                "<entry><key>a b c</key><value>urn:id:2</value></entry>"));
+        assertEquals("x", recognizer.next().getTokenText());
+        final Token second = recognizer.next();
+        assertEquals("a b c", second.getTokenText());
+        assertEquals(Arrays.asList("urn:id:2"),
+                     second.getMeta().get(ENTITY_ID_KEY));
+        assertNull(recognizer.next());
+    }
+
+    @Test
+    public void typedEntities() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> genes =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        genes.put("p53", Collections.<CharSequence>singleton("gene:1"));
+        genes.put("cf", Collections.<CharSequence>singleton("cf:1"));
+        final Map<CharSequence, Set<CharSequence>> diseases =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        diseases.put("breast cancer",
+                     Collections.<CharSequence>singleton("disease:1"));
+        diseases.put("cf", Collections.<CharSequence>singleton("cf:1"));
+        final MultiDictionary dictionary = new MultiDictionary.Builder()
+            .add("gene", genes)
+            .add("disease", diseases)
+            .build();
+
+        final SimpleLongestMatchDictionaryBasedEntityRecognizer rc =
+            new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer("p53 in breast cancer cf"));
+        rc.setEntityMap(dictionary);
+
+        Token t = rc.next();
+        assertEquals(Arrays.asList("gene:1"), t.getMeta().get(ENTITY_ID_KEY));
+        assertEquals(Arrays.asList("gene"), t.getMeta().get(ENTITY_TYPE_KEY));
+        t = rc.next();
+        assertNull(t.getMeta().get(ENTITY_TYPE_KEY));
+        t = rc.next();
+        assertEquals("breast cancer", t.getTokenText());
+        assertEquals(Arrays.asList("disease"),
+                     t.getMeta().get(ENTITY_TYPE_KEY));
+        t = rc.next();
+        assertEquals(Arrays.asList("cf:1"), t.getMeta().get(ENTITY_ID_KEY));
+        assertEquals(Arrays.asList("gene,disease"),
+                     t.getMeta().get(ENTITY_TYPE_KEY));
+        assertNull(rc.next());
+    }
+
+    @Test
+    public void entitySpans() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("breast cancer",
+                Collections.<CharSequence>singleton("disease:1"));
+        final String text = "p53 in  (Breast  cancer)";
+        final Tokenizer source = new SurroundingTokenFilter(
+                new CaseTokenFilter(new WhitespaceTokenizer(text)));
+        final SimpleLongestMatchDictionaryBasedEntityRecognizer rc =
+            new SimpleLongestMatchDictionaryBasedEntityRecognizer(source);
+        rc.setEntityMap(map);
+
+        Token t = rc.next();
+        assertEquals("p53", text.substring(t.getStartOffset(),
+                                           t.getEndOffset()));
+        rc.next();
+        t = rc.next();
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+        assertEquals("Breast  cancer", text.substring(t.getStartOffset(),
+                                                      t.getEndOffset()));
+        assertNull(rc.next());
+    }
+
+    @Test
+    public void derivedMaxToken() throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> map =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        map.put("a", Collections.<CharSequence>emptySet());
+        map.put("a b c d e f g", Collections.<CharSequence>emptySet());
+
+        final SimpleLongestMatchDictionaryBasedEntityRecognizer rc =
+            new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer("x a b c d e f g"));
+        rc.setEntityMap(map);
+        // a mutable map can't report the length of its keys
+        assertEquals(5, rc.getMaxToken());
+        rc.setEntityMap(map.freeze());
+        assertEquals(7, rc.getMaxToken());
+
+        Token t = rc.next();
+        assertEquals("x", t.getTokenText());
+        t = rc.next();
+        assertEquals("a b c d e f g", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        rc.setMaxToken(2);
+        assertEquals(2, rc.getMaxToken());
+    }
+
+    @Test
+    public void entityIdHandles() throws Exception {
+        final CompactDictionary dictionary = new CompactDictionary.Builder()
+            .add("a b", "id1")
+            .add("a b", "id2")
+            .add("c", "id2")
+            .build();
+
+        final SimpleLongestMatchDictionaryBasedEntityRecognizer rc =
+            new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer("a b c"));
+        rc.setEntityMap(dictionary);
+
+        final Token ab = rc.next();
+        final List<String> abIds = ab.getMeta().get(ENTITY_ID_KEY);
+        assertTrue(abIds instanceof EntityIdList);
+        assertEquals(Arrays.asList("id1", "id2"), abIds);
+
+        final Token c = rc.next();
+        final EntityIdList cIds =
+            (EntityIdList) c.getMeta().get(ENTITY_ID_KEY);
+        assertEquals(1, cIds.size());
+        assertEquals(((EntityIdList) abIds).handle(1), cIds.handle(0));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(abIds);
+        out.close();
+        final Object copy = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(ArrayList.class, copy.getClass());
+        assertEquals(abIds, copy);
+    }
+
+    private static ByteArrayInputStream xml(final String entries)
+            throws Exception {
+        return new ByteArrayInputStream(
+                ("<?xml version='1.0' encoding='UTF-8'?><trie>" + entries
+                 + "</trie>").getBytes("UTF-8"));
+    }
 }
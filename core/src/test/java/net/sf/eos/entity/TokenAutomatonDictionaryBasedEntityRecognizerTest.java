@@ -0,0 +1,257 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import static net.sf.eos.entity.AbstractDictionaryBasedEntityRecognizer.ENTITY_ID_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+
+import net.sf.eos.analyzer.Token;
+import net.sf.eos.analyzer.WhitespaceTokenizer;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+public class TokenAutomatonDictionaryBasedEntityRecognizerTest {
+
+    @Test
+    public void simple() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("f", Collections.<CharSequence>emptySet());
+        map.put("a b", Collections.<CharSequence>emptySet());
+        map.put("a b c d", Collections.<CharSequence>emptySet());
+
+        final WhitespaceTokenizer tokenizer =
+            new WhitespaceTokenizer("a b e a b c d e f g");
+        final TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(tokenizer);
+
+        rc.setEntityMap(map);
+
+        Token t = rc.next();
+        assertEquals("a b", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+        
+        t = rc.next();
+        assertEquals("e", t.getTokenText());
+        assertEquals(Token.DEFAULT_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("a b c d", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("e", t.getTokenText());
+        assertEquals(Token.DEFAULT_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("f", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("g", t.getTokenText());
+        assertEquals(Token.DEFAULT_TYPE, t.getType());
+
+        assertNull(rc.next());
+    }
+
+    @Test
+    public void longestMatch() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("f", Collections.<CharSequence>emptySet());
+        map.put("a b", Collections.<CharSequence>emptySet());
+        map.put("a b c d", Collections.<CharSequence>emptySet());
+
+        final WhitespaceTokenizer tokenizer =
+            new WhitespaceTokenizer("f a b a b c d");
+        final TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(tokenizer);
+
+        rc.setEntityMap(map);
+
+        Token t = rc.next();
+        assertEquals("f", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("a b", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("a b c d", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+    }
+
+    @Test
+    public void longestMatch2() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("f", Collections.<CharSequence>emptySet());
+        map.put("a b", Collections.<CharSequence>emptySet());
+        map.put("a b c d", Collections.<CharSequence>emptySet());
+
+        final WhitespaceTokenizer tokenizer =
+            new WhitespaceTokenizer("f a b c d a b");
+        final TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(tokenizer);
+
+        rc.setEntityMap(map);
+
+        Token t = rc.next();
+        assertEquals("f", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("a b c d", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("a b", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void simpleNextWithIllegalStateException() throws Exception {
+        final WhitespaceTokenizer tokenizer =
+            new WhitespaceTokenizer("f a b a b c d");
+        final TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(tokenizer);
+        rc.next();
+    }
+
+    @Test
+    public void matchWithId() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        final Set<CharSequence> id1 = new HashSet<CharSequence>();
+        id1.add("id1");
+        map.put("f", id1);
+        final Set<CharSequence> id2 = new HashSet<CharSequence>();
+        id2.add("id2");
+        map.put("a b", id2);
+
+        final WhitespaceTokenizer tokenizer =
+            new WhitespaceTokenizer("f a b");
+        final TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(tokenizer);
+
+        rc.setEntityMap(map);
+
+        Token t = rc.next();
+        assertEquals("f", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+        assertTrue(t.getMeta().containsKey(ENTITY_ID_KEY));
+        assertEquals("id1", t.getMeta().get(ENTITY_ID_KEY).get(0));
+
+        t = rc.next();
+        assertEquals("a b", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+        assertTrue(t.getMeta().containsKey(ENTITY_ID_KEY));
+        assertEquals("id2", t.getMeta().get(ENTITY_ID_KEY).get(0));
+    }
+
+    @Test
+    public void sameTokensAsSimpleLongestMatch() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        final Set<CharSequence> ids = new HashSet<CharSequence>();
+        ids.add("id1");
+        ids.add("id2");
+        map.put("a", ids);
+        map.put("a b c", ids);
+        map.put("b c d e f g", Collections.<CharSequence>emptySet());
+        map.put("c d", Collections.<CharSequence>emptySet());
+        map.put("x  y", Collections.<CharSequence>emptySet());
+
+        final String text = "a b c d e f g a b b c d x y a a b c c d e";
+        final SimpleLongestMatchDictionaryBasedEntityRecognizer simple =
+            new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer(text));
+        simple.setEntityMap(map);
+        final TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer(text));
+        rc.setEntityMap(map);
+
+        Token expected = null;
+        while ((expected = simple.next()) != null) {
+            final Token t = rc.next();
+            assertEquals("" + expected.getTokenText(), "" + t.getTokenText());
+            assertEquals(expected.getType(), t.getType());
+            assertEquals(expected.getMeta(), t.getMeta());
+        }
+        assertNull(rc.next());
+    }
+
+    @Test
+    public void maxToken() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("a b", Collections.<CharSequence>emptySet());
+        map.put("a b c", Collections.<CharSequence>emptySet());
+
+        final WhitespaceTokenizer tokenizer = new WhitespaceTokenizer("a b c");
+        final TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(tokenizer);
+        rc.setEntityMap(map);
+        rc.setMaxToken(2);
+
+        Token t = rc.next();
+        assertEquals("a b", t.getTokenText());
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+
+        t = rc.next();
+        assertEquals("c", t.getTokenText());
+        assertEquals(Token.DEFAULT_TYPE, t.getType());
+
+        assertNull(rc.next());
+    }
+
+    @Test
+    public void mutatedMapWithSameSize() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("a b", Collections.<CharSequence>singleton("1"));
+
+        TokenAutomatonDictionaryBasedEntityRecognizer rc =
+            new TokenAutomatonDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer("a b"));
+        rc.setEntityMap(map);
+        assertEquals("a b", rc.next().getTokenText());
+
+        map.remove("a b");
+        map.put("b", Collections.<CharSequence>singleton("2"));
+        rc = new TokenAutomatonDictionaryBasedEntityRecognizer(
+                new WhitespaceTokenizer("a b"));
+        rc.setEntityMap(map);
+        assertEquals(Token.DEFAULT_TYPE, rc.next().getType());
+        final Token t = rc.next();
+        assertEquals(EntityRecognizer.ENTITY_TYPE, t.getType());
+        assertEquals("[2]", t.getMeta().get(ENTITY_ID_KEY).toString());
+        assertNull(rc.next());
+    }
+}
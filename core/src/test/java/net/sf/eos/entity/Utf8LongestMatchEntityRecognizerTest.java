@@ -0,0 +1,147 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import net.sf.eos.analyzer.Token;
+import net.sf.eos.analyzer.WhitespaceTokenizer;
+import net.sf.eos.trie.CharSequenceKeyAnalyzer;
+import net.sf.eos.trie.PatriciaTrie;
+import net.sf.eos.trie.TrieUtils;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class Utf8LongestMatchEntityRecognizerTest {
+
+    private static final char[] ALPHABET = {'a', 'b', 'ä', 'α',
+                                            '€', 'c'};
+
+    @Test
+    public void simple() throws Exception {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        map.put("α-helix", Collections.<CharSequence>singleton("1"));
+        map.put("Müller cell", Collections.<CharSequence>singleton("2"));
+        map.put("Müller", Collections.<CharSequence>singleton("3"));
+
+        final Utf8LongestMatchEntityRecognizer recognizer =
+            new Utf8LongestMatchEntityRecognizer(TrieUtils.toUtf8Trie(map));
+        assertEquals(2, recognizer.getMaxToken());
+        final byte[] text = TrieUtils.toUtf8(
+                "x α-helix of\tMüller \n cell Müller");
+        final List<String> matches = new ArrayList<String>();
+        assertEquals(3, recognizer.recognize(text, 0, text.length,
+                                              collector(matches)));
+        assertEquals("[α-helix=[1], Müller \n cell=[2], "
+                     + "Müller=[3]]", matches.toString());
+
+        matches.clear();
+        assertEquals(1, recognizer.recognize(text, 2, 8, collector(matches)));
+        assertEquals("[α-helix=[1]]", matches.toString());
+    }
+
+    @Test
+    public void sameAsSimpleLongestMatch() throws Exception {
+        final Random random = new Random(4711);
+        final Map<CharSequence, Set<CharSequence>> map =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        for (int i = 0; i < 300; i++) {
+            final int length = 1 + random.nextInt(4);
+            final StringBuilder key = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                if (j > 0) {
+                    key.append(' ');
+                }
+                key.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+                if (random.nextBoolean()) {
+                    key.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+                }
+            }
+            map.put(key.toString(), Collections.<CharSequence>singleton("id" + i));
+        }
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            if (random.nextInt(3) == 0) {
+                text.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            text.append(' ');
+        }
+
+        final SimpleLongestMatchDictionaryBasedEntityRecognizer simple =
+            new SimpleLongestMatchDictionaryBasedEntityRecognizer(
+                    new WhitespaceTokenizer(text));
+        simple.setEntityMap(map);
+        final List<String> expected = new ArrayList<String>();
+        Token t = null;
+        while ((t = simple.next()) != null) {
+            if (EntityRecognizer.ENTITY_TYPE.equals(t.getType())) {
+                expected.add(t.getTokenText() + "="
+                             + t.getMeta().get(
+                                 DictionaryBasedEntityRecognizer.ENTITY_ID_KEY));
+            }
+        }
+
+        final Utf8LongestMatchEntityRecognizer recognizer =
+            new Utf8LongestMatchEntityRecognizer(TrieUtils.toUtf8Trie(map));
+        final byte[] bytes = TrieUtils.toUtf8(text);
+        final List<String> actual = new ArrayList<String>();
+        recognizer.recognize(bytes, 0, bytes.length, collector(actual));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void emptyText() {
+        final Map<CharSequence, Set<CharSequence>> map =
+            Collections.singletonMap((CharSequence) "a",
+                                     Collections.<CharSequence>singleton("1"));
+        final Utf8LongestMatchEntityRecognizer recognizer =
+            new Utf8LongestMatchEntityRecognizer(TrieUtils.toUtf8Trie(map));
+        assertEquals(0, recognizer.recognize(new byte[0], 0, 0,
+                                              collector(null)));
+        assertNull(TrieUtils.toUtf8Trie(map).get(new byte[] {'b'}, 0, 1));
+    }
+
+    static Utf8LongestMatchEntityRecognizer.MatchHandler collector(
+            final List<String> matches) {
+        return new Utf8LongestMatchEntityRecognizer.MatchHandler() {
+            public void onMatch(final byte[] text,
+                                final int offset,
+                                final int length,
+                                final Set<CharSequence> ids) {
+                try {
+                    matches.add(new String(text, offset, length, "UTF-8")
+                                + "=" + ids);
+                } catch (final UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.hadoop.mapred.cooccurrence;
+
+import static org.junit.Assert.assertEquals;
+
+import net.sf.eos.analyzer.ResettableTokenizer;
+import net.sf.eos.analyzer.WhitespaceTokenizer;
+import net.sf.eos.config.Configuration;
+import net.sf.eos.document.EosDocument;
+import net.sf.eos.entity.EntityIdList;
+import net.sf.eos.trie.CharSequenceKeyAnalyzer;
+import net.sf.eos.trie.EntityIdSet;
+import net.sf.eos.trie.MultiDictionary;
+import net.sf.eos.trie.PatriciaTrie;
+import net.sf.eos.trie.Trie;
+import net.sf.eos.trie.XmlTrieLoader;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class DictionaryBasedEntityIdKeyGeneratorTest {
+
+    @Test
+    public void keysOfSeparatelyLoadedDictionaries() throws Exception {
+        final Trie<CharSequence, Set<CharSequence>> genes =
+            load("brca", "GENE:1");
+        final Trie<CharSequence, Set<CharSequence>> diseases =
+            load("cancer", "DIS:9");
+
+        // Both loaders have their own pool, so the handles are the same.
+        final EntityIdSet gene = (EntityIdSet) genes.get("brca");
+        final EntityIdSet disease = (EntityIdSet) diseases.get("cancer");
+        assertEquals(gene.handleAt(0), disease.handleAt(0));
+
+        final MultiDictionary dictionary = new MultiDictionary.Builder()
+            .add("gene", genes)
+            .add("disease", diseases)
+            .build();
+
+        final DictionaryBasedEntityIdKeyGenerator generator =
+            new DictionaryBasedEntityIdKeyGenerator() {
+                @Override
+                protected ResettableTokenizer getTokenizer() {
+                    return new WhitespaceTokenizer();
+                }
+            };
+        generator.configure(new Configuration());
+        generator.setEntityMap(dictionary);
+
+        final EosDocument doc = new EosDocument();
+        doc.setText("brca in cancer");
+        final Map<String, List<String>> meta =
+            new HashMap<String, List<String>>();
+        meta.put(EosDocument.ID_META_KEY, Arrays.asList("doc"));
+        doc.setMeta(meta);
+
+        final Map<Text, EosDocument> keys =
+            generator.createKeysForDocument(doc);
+        final Set<Text> expected = new HashSet<Text>();
+        expected.add(new Text("GENE:1+"));
+        expected.add(new Text("DIS:9+"));
+        assertEquals(expected, keys.keySet());
+    }
+
+    @Test
+    public void handleOwnerOfList() throws Exception {
+        final Trie<CharSequence, Set<CharSequence>> genes =
+            load("brca", "GENE:1");
+        final EntityIdSet gene = (EntityIdSet) genes.get("brca");
+        final EntityIdList list = new EntityIdList(gene);
+
+        assertEquals(gene.handleOwner(), list.handleOwner());
+    }
+
+    static Trie<CharSequence, Set<CharSequence>> load(final String key,
+                                                      final String id)
+            throws Exception {
+        final byte[] xml = ("<?xml version='1.0' encoding='UTF-8'?><trie>"
+                + "<entry><key>" + key + "</key><value>" + id + "</value>"
+                + "</entry></trie>").getBytes("UTF-8");
+        final Trie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        new XmlTrieLoader().loadTrie(new ByteArrayInputStream(xml), trie);
+        return trie;
+    }
+}
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import static net.sf.eos.entity.DictionaryBasedEntityRecognizer.ENTITY_ID_KEY;
 import net.sf.eos.EosException;
@@ -39,6 +40,9 @@ import net.sf.eos.hadoop.TestDistributedCacheStrategy;
 import net.sf.eos.hadoop.mapred.cooccurrence.DictionaryBasedEntityRecognizerMapper;
 import net.sf.eos.medline.MedlineTokenizerSupplier;
 import net.sf.eos.trie.AbstractTrieLoader;
+import net.sf.eos.trie.EntityIdSet;
+import net.sf.eos.trie.MultiDictionary;
+import net.sf.eos.trie.PatriciaTrie;
 import net.sf.eos.trie.Trie;
 import net.sf.eos.trie.XmlTrieLoader;
 
@@ -131,6 +135,28 @@ public class SimpleDictionaryBasedEntityRecognizerMapperTest {
         assertEquals(2, trie.size());
     }
 
+    @Test
+    public void multiDictionaryWithoutCopies() throws Exception {
+        final Path[] pathes = new Path[] {dataPath("simple.triex"),
+                                          dataPath("example.triex")};
+        final MultiDictionary dictionary =
+            this.mapper.loadMultiDictionary(pathes,
+                                            new String[] {"simple", "example"});
+
+        final List<Map<CharSequence, Set<CharSequence>>> dictionaries =
+            dictionary.getDictionaries();
+        assertEquals(2, dictionaries.size());
+        for (final Map<CharSequence, Set<CharSequence>> map : dictionaries) {
+            assertTrue(map instanceof PatriciaTrie);
+            assertTrue(((PatriciaTrie<?, ?>) map).isFrozen());
+        }
+        final EntityIdSet simple =
+            (EntityIdSet) dictionary.get("first word");
+        final EntityIdSet example = (EntityIdSet) dictionary.get("Tobacco");
+        assertSame(simple.handleOwner(), example.handleOwner());
+        assertFalse(simple.handleAt(0) == example.handleAt(0));
+    }
+
     @Test
     public void validResettableTokenizer() throws TokenizerException {
         final Tokenizer tokenizer = this.mapper.getTokenizer();
@@ -173,6 +199,12 @@ public class SimpleDictionaryBasedEntityRecognizerMapperTest {
         assertEquals(doc, newDoc);
     }
 
+    private static Path dataPath(final String name) {
+        final ClassLoader loader =
+            Thread.currentThread().getContextClassLoader();
+        return new Path(loader.getResource(name).toString());
+    }
+
     @Before
     public void createDictionaryBasedEntityRecognizerMapperInstace() {
         final String TRIEX_DAT = "simple.triex";
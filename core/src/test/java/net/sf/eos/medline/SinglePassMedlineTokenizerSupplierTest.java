@@ -0,0 +1,102 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.medline;
+
+import static org.junit.Assert.assertEquals;
+
+import net.sf.eos.analyzer.ResettableTokenizer;
+import net.sf.eos.analyzer.Token;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SinglePassMedlineTokenizerSupplierTest {
+
+    private static final String[] WORDS =
+        {"BACKGROUND:", "RESULTS:", "Results:", "p53", "(p53)", "[IL-2]",
+         "\"Alpha\"", "'beta'", "<gamma>", "{delta}", "\u00abEpsilon\u00bb",
+         "\u201cZeta\u201d", "\u2018eta\u2019", "((theta)", "iota))", "()",
+         "\"", "Caf\u00e9", "\u00c4RGER", "\u0130stanbul", "\u03a3\u039f\u03a3",
+         "STRA\u00dfE", "a(b", "x)", "DNA.", "-", "T-cell"};
+
+    private static final String[] SPACES =
+        {" ", "  ", "\t", "\n", "\r\n", " \u2003 ", "\u00a0"};
+
+    @Test
+    public void golden() throws Exception {
+        final String text = "BACKGROUND: The (p53) protein [IL-2]  binds "
+                            + "\u00abDNA\u00bb. RESULTS: \"Yes\" ()";
+        assertEquals(Arrays.asList("the", "p53", "protein", "il-2", "binds",
+                                   "\u00abdna\u00bb.", "yes", ""),
+                     texts(new SinglePassMedlineTokenizerSupplier().get(),
+                           text));
+        assertEquals(texts(new MedlineTokenizerSupplier().get(), text),
+                     texts(new SinglePassMedlineTokenizerSupplier().get(),
+                           text));
+    }
+
+    @Test
+    public void sameAsTokenizerChain() throws Exception {
+        final ResettableTokenizer chain = new MedlineTokenizerSupplier().get();
+        final ResettableTokenizer fused =
+            new SinglePassMedlineTokenizerSupplier().get();
+        final Random random = new Random(23);
+        for (int i = 0; i < 200; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int count = random.nextInt(40);
+            for (int j = 0; j < count; j++) {
+                if (random.nextInt(50) == 0) {
+                    // longer than the maximum word length
+                    for (int k = 0; k < 300; k++) {
+                        sb.append((char) ('a' + random.nextInt(26)));
+                    }
+                } else {
+                    sb.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                sb.append(SPACES[random.nextInt(SPACES.length)]);
+            }
+            final String text = sb.toString();
+            assertEquals(text, spans(chain, text), spans(fused, text));
+        }
+    }
+
+    private static List<String> texts(final ResettableTokenizer tokenizer,
+                                      final String text) throws Exception {
+        tokenizer.reset(text);
+        final List<String> texts = new ArrayList<String>();
+        Token t = null;
+        while ((t = tokenizer.next()) != null) {
+            texts.add("" + t.getTokenText());
+        }
+        return texts;
+    }
+
+    private static List<String> spans(final ResettableTokenizer tokenizer,
+                                      final String text) throws Exception {
+        tokenizer.reset(text);
+        final List<String> spans = new ArrayList<String>();
+        Token t = null;
+        while ((t = tokenizer.next()) != null) {
+            spans.add(t.getTokenText() + "@" + t.getStartOffset() + "-"
+                      + t.getEndOffset());
+        }
+        return spans;
+    }
+}
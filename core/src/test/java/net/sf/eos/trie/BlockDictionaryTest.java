@@ -0,0 +1,208 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.sf.eos.config.Configuration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class BlockDictionaryTest {
+
+    private PatriciaTrie<CharSequence, Set<CharSequence>> trie;
+    private File file;
+
+    @Test
+    public void sameAsTrie() throws Exception {
+        final BlockDictionary blocks = BlockDictionary.open(this.file, 4);
+        try {
+            assertTrue(blocks.getBlockCount() > 10);
+            assertEquals(this.trie.size(), blocks.size());
+            final Random random = new Random(42);
+            for (final Map.Entry<CharSequence, Set<CharSequence>> entry
+                    : this.trie.entrySet()) {
+                final String key = entry.getKey().toString();
+                assertEquals(entry.getValue(), blocks.get(key));
+                assertTrue(blocks.containsKey(new StringBuilder(key)));
+                for (int i = 0; i < key.length(); i++) {
+                    assertTrue(blocks.containsPrefix(key.substring(0, i)));
+                }
+                final String other = key + (char) ('a' + random.nextInt(26));
+                assertEquals(this.trie.get(other), blocks.get(other));
+                assertEquals(this.trie.containsPrefix(other),
+                             blocks.containsPrefix(other));
+            }
+            assertNull(blocks.get(""));
+            assertNull(blocks.get("~"));
+            assertFalse(blocks.containsPrefix("~"));
+            assertTrue(blocks.getCacheMisses() >= blocks.getBlockCount());
+            assertTrue(blocks.getCacheHitRate() > 0.5d);
+
+            final Iterator<Map.Entry<CharSequence, Set<CharSequence>>> itr =
+                blocks.entrySet().iterator();
+            for (final Map.Entry<CharSequence, Set<CharSequence>> entry
+                    : this.trie.entrySet()) {
+                assertEquals(entry, itr.next());
+            }
+            assertFalse(itr.hasNext());
+            assertEquals(TrieUtils.maxTokenCount(this.trie, ' '),
+                         TrieUtils.maxTokenCount(blocks, ' '));
+        } finally {
+            blocks.close();
+        }
+    }
+
+    @Test
+    public void loader() throws Exception {
+        final Configuration config = new Configuration();
+        config.set(BlockTrieLoader.CACHE_SIZE_CONFIG_NAME, "1");
+        final BlockTrieLoader loader = new BlockTrieLoader();
+        loader.configure(config);
+        final BlockDictionary blocks =
+            (BlockDictionary) loader.openTrie(this.file);
+        try {
+            final CharSequence first = this.trie.firstKey();
+            blocks.get(first);
+            blocks.get(first);
+            blocks.get(this.trie.lastKey());
+            blocks.get(first);
+            assertEquals(1, blocks.getCacheHits());
+            assertEquals(3, blocks.getCacheMisses());
+        } finally {
+            blocks.close();
+        }
+
+        final PatriciaTrie<CharSequence, Set<CharSequence>> copy =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        final InputStream in = new FileInputStream(this.file);
+        try {
+            loader.loadTrie(in, copy);
+        } finally {
+            in.close();
+        }
+        assertEquals(this.trie, copy);
+    }
+
+    @Test
+    public void compile() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, BlockDictionary.compile(new ByteArrayInputStream(
+                ("<trie><entry><key>b c</key><value>2</value></entry>"
+                 + "<entry><key>a</key><value>1</value></entry></trie>")
+                .getBytes("UTF-8")), out, 16));
+        write(out.toByteArray());
+        final BlockDictionary blocks = BlockDictionary.open(this.file);
+        try {
+            assertEquals(Collections.singleton("2"), blocks.get("b c"));
+            assertTrue(blocks.containsPrefix("b "));
+            assertEquals(2, blocks.maxTokenCount(' '));
+        } finally {
+            blocks.close();
+        }
+    }
+
+    @Test
+    public void unsortedKeys() throws Exception {
+        final BlockDictionary.Writer writer =
+            new BlockDictionary.Writer(new ByteArrayOutputStream(), 64);
+        writer.add("b", Collections.singleton("1"));
+        try {
+            writer.add("a", Collections.singleton("2"));
+            fail("unsorted keys accepted");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void corruptFile() throws Exception {
+        write(new byte[] {1, 2, 3});
+        BlockDictionary.open(this.file);
+    }
+
+    @Before
+    public void writeDictionary() throws Exception {
+        final Random random = new Random(4711);
+        this.trie = new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                new CharSequenceKeyAnalyzer());
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder key = new StringBuilder();
+            final int length = 1 + random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                key.append(random.nextInt(5) == 0
+                           ? ' ' : (char) ('a' + random.nextInt(26)));
+            }
+            key.append(random.nextInt(3) == 0 ? '\u00e4' : 'z');
+            final Set<CharSequence> values = new HashSet<CharSequence>();
+            values.add("urn:id:" + random.nextInt(500));
+            values.add("urn:id:" + random.nextInt(500));
+            this.trie.put(key.toString(), values);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BlockDictionary.Writer writer =
+            new BlockDictionary.Writer(out, 256);
+        final List<CharSequence> keys =
+            new ArrayList<CharSequence>(this.trie.keySet());
+        for (final CharSequence key : keys) {
+            writer.add(key, this.trie.get(key));
+        }
+        writer.finish();
+        write(out.toByteArray());
+    }
+
+    private void write(final byte[] data) throws IOException {
+        deleteFile();
+        this.file = File.createTempFile("dictionary", ".blk");
+        final OutputStream out = new FileOutputStream(this.file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void deleteFile() {
+        if (this.file != null) {
+            this.file.delete();
+        }
+    }
+}
@@ -15,12 +15,18 @@
  */
 package net.sf.eos.trie;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 public class ByteArrayKeyAnalyzerTest {
@@ -52,7 +58,7 @@ public class ByteArrayKeyAnalyzerTest {
         trie.put(array, i);
         testMap.put(i, array);
 
-//        assertEquals(trie.size(), testMap.size());
+        assertEquals(256 * 256, trie.size());
 
         int count = 0;
         for (final Entry<Integer, byte[]> e : testMap.entrySet()) {
@@ -60,7 +66,40 @@ public class ByteArrayKeyAnalyzerTest {
             final Integer value = e.getKey();
 //            System.out.println("count: " + count);
             count++;
-//            assertEquals(value, trie.get(key));
+            assertEquals(value, trie.get(key));
+            assertEquals(value, trie.get(key.clone(), 0, key.length));
         }
+        assertEquals(testMap.size(), count);
+    }
+
+    @Test
+    public void sliceLookup() throws Exception {
+        final PatriciaTrie<byte[], String> trie =
+            new PatriciaTrie<byte[], String>(new ByteArrayKeyAnalyzer());
+        for (final String key : new String[] {"ab", "abc", "\u00e4b", "b",
+                                              "\u00e4b \u00e4"}) {
+            trie.put(key.getBytes("UTF-8"), key);
+        }
+        final byte[] text = "x abc \u00e4b \u00e4 ab".getBytes("UTF-8");
+        assertEquals("abc", trie.get(text, 2, 3));
+        assertEquals("ab", trie.get(text, 2, 2));
+        assertEquals("\u00e4b", trie.get(text, 6, 3));
+        assertEquals("\u00e4b \u00e4", trie.get(text, 6, 6));
+        assertEquals("ab", trie.get(text, 13, 2));
+        assertNull(trie.get(text, 2, 1));
+        assertNull(trie.get(text, 0, 3));
+        assertTrue(trie.containsPrefix(text, 6, 4));
+        assertTrue(trie.containsPrefix(text, 2, 1));
+        assertFalse(trie.containsPrefix(text, 0, 2));
+
+        // unsigned bit order
+        final List<String> keys = new ArrayList<String>();
+        for (final byte[] key : trie.keySet()) {
+            keys.add(new String(key, "UTF-8"));
+        }
+        assertEquals(Arrays.asList("ab", "abc", "b", "\u00e4b",
+                                   "\u00e4b \u00e4"), keys);
+        assertTrue(new ByteArrayKeyAnalyzer().compare(
+                "\u00e4".getBytes("UTF-8"), "b".getBytes("UTF-8")) > 0);
     }
 }
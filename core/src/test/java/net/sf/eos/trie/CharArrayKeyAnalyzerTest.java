@@ -0,0 +1,73 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Map.Entry;
+
+public class CharArrayKeyAnalyzerTest {
+
+    @Test
+    public void sameAsCharSequenceKeyAnalyzer() {
+        final Random random = new Random(4711);
+        final PatriciaTrie<CharSequence, Integer> expected =
+            new PatriciaTrie<CharSequence, Integer>(new CharSequenceKeyAnalyzer());
+        final PatriciaTrie<char[], Integer> trie =
+            new PatriciaTrie<char[], Integer>(new CharArrayKeyAnalyzer());
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder key = new StringBuilder();
+            final int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                key.append(random.nextInt(10) == 0 ? 'ä'
+                                                   : (char) ('a' + random.nextInt(4)));
+            }
+            expected.put(key.toString(), Integer.valueOf(i));
+            trie.put(key.toString().toCharArray(), Integer.valueOf(i));
+        }
+        assertEquals(expected.size(), trie.size());
+
+        final List<String> expectedEntries = new ArrayList<String>();
+        for (final Entry<CharSequence, Integer> entry : expected.entrySet()) {
+            expectedEntries.add(entry.getKey() + "=" + entry.getValue());
+        }
+        final List<String> entries = new ArrayList<String>();
+        for (final Entry<char[], Integer> entry : trie.entrySet()) {
+            entries.add(new String(entry.getKey()) + "=" + entry.getValue());
+        }
+        assertEquals(expectedEntries, entries);
+
+        for (final String prefix : new String[] {"a", "ab", "ä", "dd"}) {
+            final List<String> expectedKeys = new ArrayList<String>();
+            for (final CharSequence key : expected.getPrefixedBy(prefix).keySet()) {
+                expectedKeys.add(key.toString());
+            }
+            final List<String> keys = new ArrayList<String>();
+            for (final char[] key
+                    : trie.getPrefixedBy(prefix.toCharArray()).keySet()) {
+                keys.add(new String(key));
+            }
+            assertEquals(prefix, expectedKeys, keys);
+        }
+        final char[] text = "xxabd".toCharArray();
+        assertEquals(expected.get("abd"), trie.get(text, 2, 3));
+    }
+}
@@ -0,0 +1,71 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CharSequenceKeyAnalyzerTest {
+
+    @Test
+    public void compareSameAsString() {
+        final CharSequenceKeyAnalyzer analyzer = new CharSequenceKeyAnalyzer();
+        final String[] keys = {"", "a", "ab", "abc", "b", "ä", "\uffff"};
+        for (final String k1 : keys) {
+            for (final String k2 : keys) {
+                final int expected = Integer.signum(k1.compareTo(k2));
+                assertEquals(expected, Integer.signum(analyzer.compare(k1, k2)));
+                assertEquals(expected, Integer.signum(analyzer.compare(
+                        new StringBuilder(k1), k2)));
+                assertEquals(expected, Integer.signum(analyzer.compare(
+                        k1, new StringBuilder(k2))));
+            }
+        }
+    }
+
+    @Test
+    public void isPrefix() {
+        final CharSequenceKeyAnalyzer analyzer = new CharSequenceKeyAnalyzer();
+        final StringBuilder text = new StringBuilder("The Lime Plastics");
+        assertTrue(analyzer.isPrefix(text, 4 * 16, 4 * 16, "LimeWire"));
+        assertTrue(analyzer.isPrefix(text, 4 * 16, 4 * 16, "Lime"));
+        assertFalse(analyzer.isPrefix(text, 4 * 16, 4 * 16, "Lim"));
+        assertFalse(analyzer.isPrefix(text, 0, 4 * 16, "Lime"));
+        assertTrue(analyzer.isPrefix(text, 0, 0, "Lime"));
+    }
+
+    @Test
+    public void prefixedByWithOffset() {
+        final PatriciaTrie<CharSequence, String> trie =
+            new PatriciaTrie<CharSequence, String>(new CharSequenceKeyAnalyzer());
+        for (final String key : new String[] {"Lime", "LimeWire", "LimeRadio",
+                                              "Lax", "Later", "Lake",
+                                              "Lovely"}) {
+            trie.put(key, key);
+        }
+        final List<String> values =
+            new ArrayList<String>(trie.getPrefixedBy("The Lime Plastics", 4, 4)
+                                      .values());
+        assertEquals(Arrays.asList("Lime", "LimeRadio", "LimeWire"), values);
+    }
+}
@@ -0,0 +1,187 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Map.Entry;
+
+public class CompactDictionaryTest {
+
+    @Test
+    public void simple() {
+        final CompactDictionary dictionary = new CompactDictionary.Builder()
+            .add("first word", "urn:id:1")
+            .add("second word", "urn:id:2")
+            .add("first", "urn:id:1")
+            .add("first", "urn:id:3")
+            .add("first", "urn:id:1")
+            .build();
+
+        assertEquals(3, dictionary.size());
+        assertEquals(3, dictionary.idCount());
+        assertEquals(Collections.singleton("urn:id:1"),
+                     dictionary.get("first word"));
+        assertEquals(Collections.singleton("urn:id:2"),
+                     dictionary.get(new StringBuilder("second word")));
+        final Set<CharSequence> first = dictionary.get("first");
+        assertEquals(2, first.size());
+        assertTrue(first.contains("urn:id:1"));
+        assertTrue(first.contains("urn:id:3"));
+        assertFalse(first.contains("urn:id:2"));
+
+        assertNull(dictionary.get("firs"));
+        assertNull(dictionary.get("first wordx"));
+        assertNull(dictionary.get(""));
+        assertNull(dictionary.get(Integer.valueOf(1)));
+    }
+
+    @Test
+    public void sharedSuffixes() {
+        final CompactDictionary dictionary = new CompactDictionary.Builder()
+            .add("alpha protein", "1")
+            .add("beta protein", "2")
+            .add("gamma protein", "3")
+            .build();
+
+        // " protein" is stored only once
+        assertTrue(dictionary.stateCount() < "alpha".length()
+                                             + "beta".length()
+                                             + "gamma".length()
+                                             + " protein".length());
+    }
+
+    @Test
+    public void emptyKeyAndEmptyValue() {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("", Collections.<CharSequence>singleton("id"));
+        map.put("a", Collections.<CharSequence>emptySet());
+
+        final CompactDictionary dictionary = CompactDictionary.copyOf(map);
+        assertEquals(map, dictionary);
+        assertEquals(0, dictionary.get("a").size());
+    }
+
+    @Test
+    public void sameAsHashMap() {
+        final Random random = new Random(4711);
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder key = new StringBuilder();
+            final int length = 1 + random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                key.append((char) ('a' + random.nextInt(4)));
+                if (random.nextInt(5) == 0) {
+                    key.append(' ');
+                }
+            }
+            Set<CharSequence> ids = map.get(key.toString());
+            if (ids == null) {
+                ids = new HashSet<CharSequence>();
+                map.put(key.toString(), ids);
+            }
+            ids.add("urn:id:" + random.nextInt(500));
+        }
+
+        final CompactDictionary dictionary = CompactDictionary.copyOf(map);
+        assertEquals(map.size(), dictionary.size());
+        assertEquals(map, dictionary);
+        assertEquals(dictionary, map);
+        for (final Entry<CharSequence, Set<CharSequence>> entry
+                : map.entrySet()) {
+            assertEquals(entry.getValue(), dictionary.get(entry.getKey()));
+        }
+
+        final List<String> keys = new ArrayList<String>();
+        for (final CharSequence key : dictionary.keySet()) {
+            keys.add(key.toString());
+        }
+        final List<String> sorted = new ArrayList<String>(keys);
+        Collections.sort(sorted);
+        assertEquals(sorted, keys);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void immutable() {
+        final CompactDictionary dictionary = new CompactDictionary.Builder()
+            .add("a", "1")
+            .build();
+        dictionary.put("b", new HashSet<CharSequence>());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void immutableValue() {
+        final CompactDictionary dictionary = new CompactDictionary.Builder()
+            .add("a", "1")
+            .build();
+        dictionary.get("a").add("2");
+    }
+
+    @Test
+    public void containsPrefix() {
+        final Map<CharSequence, Set<CharSequence>> map =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        map.put("alpha protein", Collections.<CharSequence>singleton("1"));
+        map.put("alpha", Collections.<CharSequence>singleton("2"));
+        map.put("beta", Collections.<CharSequence>singleton("3"));
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        trie.putAll(map);
+        final CompactDictionary dictionary = CompactDictionary.copyOf(map);
+
+        for (final String prefix : new String[] {"", "a", "alpha", "alpha ",
+                                                 "alpha protein", "b", "beta"}) {
+            assertTrue(prefix, dictionary.containsPrefix(prefix));
+            assertTrue(prefix, trie.containsPrefix(new StringBuilder(prefix)));
+        }
+        for (final String prefix : new String[] {"c", "alphax", "alpha  ",
+                                                 "beta ", "alpha proteins"}) {
+            assertFalse(prefix, dictionary.containsPrefix(prefix));
+            assertFalse(prefix, trie.containsPrefix(prefix));
+        }
+    }
+
+    @Test
+    public void maxTokenCount() {
+        final CompactDictionary dictionary = new CompactDictionary.Builder()
+            .add("a", "1")
+            .add("a b c", "2")
+            .add("b c", "3")
+            .build();
+        assertEquals(3, dictionary.maxTokenCount(' '));
+        assertEquals(3, TrieUtils.maxTokenCount(
+                new HashMap<CharSequence, Set<CharSequence>>(dictionary), ' '));
+        assertEquals(0, CompactDictionary.copyOf(
+                new HashMap<CharSequence, Set<CharSequence>>())
+                    .maxTokenCount(' '));
+    }
+}
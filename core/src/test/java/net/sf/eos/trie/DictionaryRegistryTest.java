@@ -0,0 +1,238 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DictionaryRegistryTest {
+
+    @Test
+    public void shareInstance() throws Exception {
+        final DictionaryRegistry registry = new DictionaryRegistry();
+        final CountingLoader loader = new CountingLoader();
+
+        final Map<CharSequence, Set<CharSequence>> first =
+            registry.acquire("dict", "1", loader);
+        final Map<CharSequence, Set<CharSequence>> second =
+            registry.acquire("dict", "1", loader);
+
+        assertSame(first, second);
+        assertEquals(1, loader.count);
+        assertEquals(2, registry.getReferenceCount(first));
+
+        assertTrue(registry.release(first));
+        assertTrue(registry.release(second));
+        assertEquals(0, registry.getReferenceCount(first));
+
+        // released dictionaries stay for reuse
+        assertSame(first, registry.acquire("dict", "1", loader));
+        assertEquals(1, loader.count);
+    }
+
+    @Test
+    public void evictOnNewVersion() throws Exception {
+        final DictionaryRegistry registry = new DictionaryRegistry();
+        final CountingLoader loader = new CountingLoader();
+
+        final Map<CharSequence, Set<CharSequence>> first =
+            registry.acquire("dict", "1", loader);
+        final Map<CharSequence, Set<CharSequence>> second =
+            registry.acquire("dict", "2", loader);
+
+        assertNotSame(first, second);
+        assertEquals(2, loader.count);
+
+        // old version still in use
+        assertEquals(1, registry.getReferenceCount(first));
+        assertTrue(registry.release(first));
+        assertEquals(-1, registry.getReferenceCount(first));
+        assertFalse(registry.release(first));
+
+        assertEquals(1, registry.getReferenceCount(second));
+    }
+
+    @Test
+    public void evictUnused() throws Exception {
+        final DictionaryRegistry registry = new DictionaryRegistry();
+        final CountingLoader loader = new CountingLoader();
+
+        final Map<CharSequence, Set<CharSequence>> first =
+            registry.acquire("dict", "1", loader);
+        registry.release(first);
+        registry.evict("dict");
+
+        assertEquals(-1, registry.getReferenceCount(first));
+        assertNotSame(first, registry.acquire("dict", "1", loader));
+        assertEquals(2, loader.count);
+    }
+
+    @Test
+    public void statisticsWithRegistration() throws Exception {
+        final DictionaryRegistry registry = new DictionaryRegistry();
+        final Map<CharSequence, Set<CharSequence>> dictionary =
+            registry.acquire("dict", "1", new DictionaryRegistry.Loader() {
+                public Map<CharSequence, Set<CharSequence>> load() {
+                    final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+                        new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                                new CharSequenceKeyAnalyzer());
+                    trie.put("a", new HashSet<CharSequence>());
+                    return trie;
+                }
+            });
+        assertNull(registry.getStatistics(dictionary));
+
+        final DictionaryStatistics statistics =
+            ((PatriciaTrie<CharSequence, Set<CharSequence>>) dictionary)
+                .statistics();
+        assertTrue(registry.setStatistics(dictionary, statistics));
+        assertSame(statistics, registry.getStatistics(dictionary));
+
+        registry.release(dictionary);
+        registry.evict("dict");
+        assertNull(registry.getStatistics(dictionary));
+        assertFalse(registry.setStatistics(dictionary, statistics));
+    }
+
+    @Test
+    public void closeDropped() throws Exception {
+        final DictionaryRegistry registry = new DictionaryRegistry();
+        final DictionaryRegistry.Loader loader = new DictionaryRegistry.Loader() {
+            public Map<CharSequence, Set<CharSequence>> load() {
+                return new CloseableMap();
+            }
+        };
+
+        final CloseableMap first =
+            (CloseableMap) registry.acquire("dict", "1", loader);
+        final CloseableMap second =
+            (CloseableMap) registry.acquire("dict", "2", loader);
+        // the evicted version is still in use
+        assertFalse(first.closed);
+        registry.release(first);
+        assertTrue(first.closed);
+
+        registry.release(second);
+        assertFalse(second.closed);
+        registry.evict("dict");
+        assertTrue(second.closed);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void loadOutsideOfLock() throws Exception {
+        final DictionaryRegistry registry = new DictionaryRegistry();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final DictionaryRegistry.Loader slow = new DictionaryRegistry.Loader() {
+            public Map<CharSequence, Set<CharSequence>> load()
+                    throws Exception {
+                loading.countDown();
+                proceed.await();
+                return new HashMap<CharSequence, Set<CharSequence>>();
+            }
+        };
+        final Object[] results = new Object[2];
+        final Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        results[index] = registry.acquire("slow", "1", slow);
+                    } catch (final Exception e) {
+                        results[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        // other dictionaries are not blocked by the slow loader
+        final CountingLoader loader = new CountingLoader();
+        final Map<CharSequence, Set<CharSequence>> other =
+            registry.acquire("other", "1", loader);
+        assertTrue(registry.release(other));
+
+        proceed.countDown();
+        for (final Thread t : threads) {
+            t.join(10000);
+        }
+        assertTrue(results[0] instanceof Map);
+        assertSame(results[0], results[1]);
+        assertEquals(2, registry.getReferenceCount(
+                (Map<CharSequence, Set<CharSequence>>) results[0]));
+    }
+
+    @Test
+    public void failedLoader() throws Exception {
+        final DictionaryRegistry registry = new DictionaryRegistry();
+        try {
+            registry.acquire("dict", "1", new DictionaryRegistry.Loader() {
+                public Map<CharSequence, Set<CharSequence>> load()
+                        throws Exception {
+                    throw new IllegalStateException("failed");
+                }
+            });
+            fail();
+        } catch (final IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        final CountingLoader loader = new CountingLoader();
+        final Map<CharSequence, Set<CharSequence>> dictionary =
+            registry.acquire("dict", "1", loader);
+        assertEquals(1, loader.count);
+        assertEquals(1, registry.getReferenceCount(dictionary));
+    }
+
+    private static final class CloseableMap
+            extends HashMap<CharSequence, Set<CharSequence>>
+            implements Closeable {
+        private static final long serialVersionUID = 1L;
+        boolean closed = false;
+
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    private static final class CountingLoader
+            implements DictionaryRegistry.Loader {
+        int count = 0;
+
+        public Map<CharSequence, Set<CharSequence>> load() {
+            this.count++;
+            return new HashMap<CharSequence, Set<CharSequence>>();
+        }
+    }
+}
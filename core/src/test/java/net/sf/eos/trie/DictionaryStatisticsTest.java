@@ -0,0 +1,119 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class DictionaryStatisticsTest {
+
+    @Test
+    public void emptyTrie() {
+        final DictionaryStatistics stats = newTrie().statistics();
+        assertEquals(0, stats.getEntryCount());
+        assertEquals(1, stats.getNodeCount());
+        assertEquals(0, stats.getInternalNodeCount());
+        assertEquals(0, stats.getMaxDepth());
+        assertEquals(0, stats.getKeyBytes());
+        assertEquals(-1, stats.getLoadTime());
+    }
+
+    @Test
+    public void trie() {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie = newTrie();
+        final Set<CharSequence> shared = new HashSet<CharSequence>();
+        shared.add("urn:id:1");
+        final Set<CharSequence> other = new HashSet<CharSequence>();
+        other.add("urn:id:1");
+        other.add("urn:id:2");
+        trie.put("", shared);
+        trie.put("alpha", shared);
+        trie.put("alpha protein", other);
+        trie.put("beta", shared);
+        trie.put("gamma", other);
+
+        final DictionaryStatistics stats = trie.statistics();
+        assertEquals(5, stats.getEntryCount());
+        // the root holds the empty key
+        assertEquals(5, stats.getNodeCount());
+        assertEquals(stats.getNodeCount(), stats.getInternalNodeCount()
+                                           + stats.getExternalNodeCount());
+        assertTrue(stats.getExternalNodeCount() > 0);
+        assertEquals(2, stats.getValueSetCount());
+        assertEquals(2, stats.getIdCount());
+
+        int keys = 0;
+        for (final int count : stats.getDepthHistogram()) {
+            keys += count;
+        }
+        assertEquals(5, keys);
+        assertEquals(1, stats.getDepthHistogram()[0]);
+        assertTrue(stats.getMaxDepth() >= 2);
+        assertTrue(stats.getKeyBytes() > 0);
+        assertTrue(stats.getValueBytes() > 0);
+        assertTrue(stats.getNodeBytes() > 0);
+        assertEquals(stats.getKeyBytes() + stats.getValueBytes()
+                     + stats.getNodeBytes(), stats.getEstimatedBytes());
+        assertEquals(42, stats.withLoadTime(42).getLoadTime());
+
+        // the entry array of a frozen trie
+        assertTrue(trie.freeze().statistics().getNodeBytes()
+                   > stats.getNodeBytes());
+    }
+
+    @Test
+    public void depthOfDegenerateTrie() {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie = newTrie();
+        final StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            key.append('a');
+            trie.put(key.toString(), new HashSet<CharSequence>());
+        }
+
+        final DictionaryStatistics stats = trie.statistics();
+        assertEquals(2000, stats.getEntryCount());
+        assertEquals(2000, stats.getMaxDepth());
+        assertEquals(2000, stats.getValueSetCount());
+    }
+
+    @Test
+    public void compactDictionary() {
+        final CompactDictionary dictionary = new CompactDictionary.Builder()
+            .add("alpha protein", "1")
+            .add("beta protein", "2")
+            .add("beta", "2")
+            .build();
+
+        final DictionaryStatistics stats = dictionary.statistics();
+        assertEquals(3, stats.getEntryCount());
+        assertEquals(dictionary.stateCount(), stats.getNodeCount());
+        assertEquals(stats.getNodeCount(), stats.getInternalNodeCount()
+                                           + stats.getExternalNodeCount());
+        assertEquals(2, stats.getIdCount());
+        assertEquals(1, stats.getDepthHistogram()[4]);
+        assertEquals("alpha protein".length(), stats.getMaxDepth());
+    }
+
+    private static PatriciaTrie<CharSequence, Set<CharSequence>> newTrie() {
+        return new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                new CharSequenceKeyAnalyzer());
+    }
+}
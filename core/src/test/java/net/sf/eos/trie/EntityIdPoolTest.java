@@ -0,0 +1,108 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+public class EntityIdPoolTest {
+
+    @Test
+    public void intern() {
+        final EntityIdPool pool = new EntityIdPool();
+        final int first = pool.intern("urn:id:1");
+        final int second = pool.intern(new StringBuilder("urn:id:2"));
+
+        assertEquals(first, pool.intern(new StringBuilder("urn:id:1")));
+        assertEquals(2, pool.size());
+        assertEquals("urn:id:2", pool.get(second));
+        assertSame(pool.get(first), pool.get(first));
+        assertEquals(second, pool.handleOf("urn:id:2"));
+        assertEquals(-1, pool.handleOf("urn:id:3"));
+        assertEquals(-1, pool.handleOf(Integer.valueOf(1)));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void unknownHandle() {
+        new EntityIdPool().get(0);
+    }
+
+    @Test
+    public void grow() {
+        final EntityIdPool pool = new EntityIdPool();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, pool.intern("id" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("id" + i, pool.get(i));
+        }
+    }
+
+    @Test
+    public void set() {
+        final EntityIdPool pool = new EntityIdPool();
+        final EntityIdSet ids = pool.newSet();
+        assertTrue(ids.add("a"));
+        assertTrue(ids.add(new StringBuilder("b")));
+        assertFalse(ids.add("a"));
+
+        final Set<CharSequence> expected = new HashSet<CharSequence>();
+        expected.add("a");
+        expected.add("b");
+        assertEquals(expected, ids);
+        assertEquals(ids, expected);
+        assertTrue(ids.contains("b"));
+        assertFalse(ids.contains("c"));
+        assertEquals("a", ids.idOf(ids.handleAt(0)));
+
+        final Iterator<CharSequence> itr = ids.iterator();
+        itr.next();
+        itr.remove();
+        assertEquals(1, ids.size());
+        assertTrue(ids.contains("b"));
+        assertFalse(ids.contains("a"));
+    }
+
+    @Test
+    public void largeSet() {
+        final EntityIdPool pool = new EntityIdPool();
+        final EntityIdSet ids = pool.newSet();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ids.add("id" + i));
+        }
+        assertEquals(100, ids.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("id" + i, ids.idOf(ids.handleAt(i)));
+        }
+        for (final Iterator<CharSequence> itr = ids.iterator();
+                itr.hasNext(); ) {
+            if (itr.next().toString().endsWith("0")) {
+                itr.remove();
+            }
+        }
+        assertEquals(90, ids.size());
+        assertFalse(ids.contains("id50"));
+        assertTrue(ids.contains("id99"));
+    }
+}
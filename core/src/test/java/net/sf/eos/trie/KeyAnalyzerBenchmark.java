@@ -0,0 +1,192 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import net.sf.eos.Function;
+import net.sf.eos.trie.PatriciaTrie.KeyAnalyzer;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+
+/**
+ * Compares the {@code toString()} based comparison of former versions of
+ * the {@link CharSequenceKeyAnalyzer} with the current char by char
+ * comparison and the {@link CharArrayKeyAnalyzer}. The keys are
+ * {@code StringBuilders}, like the token buffers of a recognizer. The tries
+ * are frozen, so navigation doesn't modify the tries.
+ * <p>The benchmark measures three operations on
+ * {@link PatriciaTrie#getPrefixedBy(Object)} views and range views:</p>
+ * <ul>
+ *   <li><em>prefix iteration</em> iterates the entries of a prefix
+ *       view,</li>
+ *   <li><em>prefix contains</em> checks keys against a prefix view. Each
+ *       check calls {@code isPrefix},</li>
+ *   <li><em>range iteration</em> iterates a {@code subMap} view. Each entry
+ *       is compared with the end of the range.</li>
+ * </ul>
+ * <p>Usage: {@code KeyAnalyzerBenchmark [keyCount [lookups [rounds]]]}.
+ * The default is 200,000 keys, 100,000 lookups and 5 rounds.</p>
+ * @author Sascha Kohlmann
+ */
+public class KeyAnalyzerBenchmark {
+
+    public static void main(final String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        final Random random = new Random(4711);
+        final String[] keys =
+            PatriciaTrieBulkLoadBenchmark.createKeys(count, random);
+        final String[] prefixes = new String[lookups];
+        for (int i = 0; i < lookups; i++) {
+            final String key = keys[random.nextInt(keys.length)];
+            // the last digits of the keys are distinct
+            prefixes[i] = key.substring(0, key.length() - 1 - random.nextInt(2));
+        }
+
+        final Function<String, CharSequence> toBuilder =
+            new Function<String, CharSequence>() {
+                public CharSequence apply(final String from) {
+                    return new StringBuilder(from);
+                }
+            };
+        final Function<String, char[]> toChars =
+            new Function<String, char[]>() {
+                public char[] apply(final String from) {
+                    return from.toCharArray();
+                }
+            };
+        final Case<CharSequence> legacy = new Case<CharSequence>(
+                "toString()", new ToStringKeyAnalyzer(), toBuilder, keys,
+                prefixes);
+        final Case<CharSequence> current = new Case<CharSequence>(
+                "CharSequence", new CharSequenceKeyAnalyzer(), toBuilder, keys,
+                prefixes);
+        final Case<char[]> chars = new Case<char[]>(
+                "char[]", new CharArrayKeyAnalyzer(), toChars, keys,
+                prefixes);
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("round " + round);
+            final long expected = legacy.run();
+            if (current.run() != expected || chars.run() != expected) {
+                throw new IllegalStateException("results differ");
+            }
+        }
+    }
+
+    /** The operations for one analyzer. */
+    static final class Case<K> {
+
+        private final String name;
+        private final PatriciaTrie<K, String> trie;
+        private final K[] prefixes;
+        private final K[] keys;
+
+        @SuppressWarnings("unchecked")
+        Case(final String name,
+             final KeyAnalyzer<? super K> analyzer,
+             final Function<String, K> converter,
+             final String[] keys,
+             final String[] prefixes) {
+            this.name = name;
+            this.trie = new PatriciaTrie<K, String>(analyzer);
+            for (final String key : keys) {
+                this.trie.put(converter.apply(key), key);
+            }
+            this.trie.freeze();
+            this.prefixes = (K[]) new Object[prefixes.length];
+            this.keys = (K[]) new Object[prefixes.length];
+            for (int i = 0; i < prefixes.length; i++) {
+                this.prefixes[i] = converter.apply(prefixes[i]);
+                this.keys[i] = converter.apply(keys[i % keys.length]);
+            }
+        }
+
+        long run() {
+            long result = 0;
+
+            long start = System.nanoTime();
+            for (final K prefix : this.prefixes) {
+                for (final Map.Entry<K, String> entry
+                        : this.trie.getPrefixedBy(prefix).entrySet()) {
+                    result += entry.getValue().length();
+                }
+            }
+            final long iteration = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < this.prefixes.length; i++) {
+                final SortedMap<K, String> view =
+                    this.trie.getPrefixedBy(this.prefixes[i]);
+                for (int j = 0; j < 16; j++) {
+                    if (view.containsKey(this.keys[(i + j) % this.keys.length])) {
+                        result++;
+                    }
+                }
+            }
+            final long contains = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i + 1 < this.prefixes.length; i += 2) {
+                final K from = this.prefixes[i];
+                final K to = this.prefixes[i + 1];
+                if (this.trie.getKeyAnalyzer().compare(from, to) >= 0) {
+                    continue;
+                }
+                int n = 0;
+                for (final String value : this.trie.subMap(from, to).values()) {
+                    result += value.length();
+                    if (++n == 64) {
+                        break;
+                    }
+                }
+            }
+            final long range = System.nanoTime() - start;
+
+            System.out.println("  " + this.name
+                               + ": prefix iteration " + iteration / 1000000
+                               + "ms, prefix contains " + contains / 1000000
+                               + "ms, range iteration " + range / 1000000
+                               + "ms");
+            return result;
+        }
+    }
+
+    /** The comparison of former versions of the analyzer. */
+    static final class ToStringKeyAnalyzer extends CharSequenceKeyAnalyzer {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(final CharSequence o1, final CharSequence o2) {
+            return o1.toString().compareTo(o2.toString());
+        }
+
+        @Override
+        public boolean isPrefix(final CharSequence prefix,
+                                final int offset,
+                                final int length,
+                                final CharSequence key) {
+            final String s1 = prefix.subSequence(offset / 16,
+                                                 offset / 16 + length / 16)
+                                    .toString();
+            return key.toString().startsWith(s1);
+        }
+    }
+}
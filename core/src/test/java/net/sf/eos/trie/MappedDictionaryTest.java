@@ -0,0 +1,114 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+public class MappedDictionaryTest {
+
+    private File image = null;
+    private CompactDictionary compiled = null;
+
+    @Test
+    public void openMapped() throws Exception {
+        final MappedDictionary dictionary = MappedDictionary.open(this.image);
+
+        assertEquals(2, dictionary.size());
+        assertEquals(Collections.singleton("urn:id:1"),
+                     dictionary.get("first word"));
+        assertEquals(Collections.singleton("urn:id:2"),
+                     dictionary.get(new StringBuilder("second word")));
+        assertTrue(dictionary.get("second word").contains("urn:id:2"));
+        assertNull(dictionary.get("third word"));
+        assertEquals(this.compiled, dictionary);
+    }
+
+    @Test
+    public void loadWithFileTrieLoader() throws Exception {
+        final FileTrieLoader<CharSequence, Set<CharSequence>> loader =
+            new MappedTrieLoader();
+        final Map<CharSequence, Set<CharSequence>> dictionary =
+            loader.openTrie(this.image);
+        assertTrue(dictionary instanceof MappedDictionary);
+        assertEquals(this.compiled, dictionary);
+    }
+
+    @Test
+    public void loadIntoTrie() throws Exception {
+        final Trie<CharSequence, Set<CharSequence>> trie =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.compiled.writeTo(out);
+        new MappedTrieLoader().loadTrie(
+                new ByteArrayInputStream(out.toByteArray()), trie);
+
+        assertEquals(this.compiled, trie);
+    }
+
+    @Test
+    public void readIntoHeap() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.compiled.writeTo(out);
+        final CompactDictionary dictionary = CompactDictionary.readFrom(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(this.compiled, dictionary);
+    }
+
+    @Test(expected=java.io.IOException.class)
+    public void invalidImage() throws Exception {
+        CompactDictionary.readFrom(
+                new ByteArrayInputStream("<trie></trie>".getBytes("UTF-8")));
+    }
+
+    @Before
+    public void compileDictionary() throws Exception {
+        final ClassLoader loader =
+            Thread.currentThread().getContextClassLoader();
+        final InputStream in = loader.getResourceAsStream("simple.triex");
+        this.image = File.createTempFile("dictionary", ".dat");
+        final OutputStream out = new FileOutputStream(this.image);
+        try {
+            this.compiled = new DictionaryCompiler().compile(in, out);
+        } finally {
+            out.close();
+            in.close();
+        }
+    }
+
+    @After
+    public void deleteImage() {
+        if (this.image != null) {
+            this.image.delete();
+        }
+    }
+}
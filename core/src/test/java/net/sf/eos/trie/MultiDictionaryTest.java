@@ -0,0 +1,110 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class MultiDictionaryTest {
+
+    @Test
+    public void combine() {
+        final Map<CharSequence, Set<CharSequence>> genes =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        genes.put("p53", ids("gene:1"));
+        genes.put("brca 1", ids("gene:2"));
+        genes.put("cf", ids("gene:3"));
+        final Map<CharSequence, Set<CharSequence>> diseases =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        diseases.put("breast cancer", ids("disease:1"));
+        diseases.put("cf", ids("disease:2", "gene:3"));
+
+        final MultiDictionary dictionary = new MultiDictionary.Builder()
+            .add("gene", genes)
+            .add("disease", diseases)
+            .build();
+
+        assertEquals(4, dictionary.size());
+        assertEquals(Arrays.asList("gene", "disease"),
+                     dictionary.getEntityTypes());
+        assertSame(genes.get("p53"), dictionary.get("p53"));
+        assertEquals(ids("gene:3", "disease:2"), dictionary.get("cf"));
+        assertEquals(ids("gene:3"), genes.get("cf"));
+        assertTrue(dictionary.containsPrefix("brca "));
+        assertFalse(dictionary.containsKey("brca"));
+        assertNull(dictionary.get("unknown"));
+        assertEquals(new HashSet<CharSequence>(Arrays.asList(
+                "p53", "brca 1", "cf", "breast cancer")),
+                     dictionary.keySet());
+
+        assertEquals(Arrays.asList("gene"),
+                     dictionary.getEntityTypes("p53", "gene:1"));
+        assertEquals(Arrays.asList("disease"),
+                     dictionary.getEntityTypes(new StringBuilder("cf"),
+                                               "disease:2"));
+        // the ID has a type for each dictionary of the key
+        assertEquals(Arrays.asList("gene", "disease"),
+                     dictionary.getEntityTypes("cf", "gene:3"));
+        assertTrue(dictionary.getEntityTypes("p53", "gene:3").isEmpty());
+        assertTrue(dictionary.getEntityTypes("unknown", "gene:1").isEmpty());
+    }
+
+    @Test
+    public void immutableDictionariesNotCopied() {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> genes =
+            new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                    new CharSequenceKeyAnalyzer());
+        genes.put("p53", ids("gene:1"));
+        genes.freeze();
+        final Map<CharSequence, Set<CharSequence>> diseases =
+            new HashMap<CharSequence, Set<CharSequence>>();
+        diseases.put("p53", ids("disease:1"));
+
+        final MultiDictionary dictionary = new MultiDictionary.Builder()
+            .add("gene", genes)
+            .add("disease", diseases)
+            .build();
+
+        assertSame(genes, dictionary.getDictionaries().get(0));
+        assertTrue(dictionary.getDictionaries().get(1) instanceof PatriciaTrie);
+        assertEquals(1, dictionary.size());
+        assertEquals(ids("gene:1", "disease:1"), dictionary.get("p53"));
+        assertEquals(2, dictionary.statistics().getEntryCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void duplicateType() {
+        final Map<CharSequence, Set<CharSequence>> empty =
+            Collections.emptyMap();
+        new MultiDictionary.Builder().add("gene", empty).add("gene", empty);
+    }
+
+    private static Set<CharSequence> ids(final String... ids) {
+        return new HashSet<CharSequence>(Arrays.asList(ids));
+    }
+}
@@ -0,0 +1,147 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Compares the bulk load of a {@link PatriciaTrie} from sorted keys with
+ * the incremental {@code put} of the same keys.
+ * <p>Usage: {@code PatriciaTrieBulkLoadBenchmark [keyCount [rounds]]}.
+ * The default is 2,000,000 keys and 3 rounds. Run with enough heap,
+ * e.g. {@code -Xmx2g}.</p>
+ * @author Sascha Kohlmann
+ */
+public class PatriciaTrieBulkLoadBenchmark {
+
+    private static final String[] WORDS = {"protein", "kinase", "receptor",
+        "alpha", "beta", "factor", "binding", "domain", "cell", "human"};
+
+    public static void main(final String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        final String[] keys = createKeys(count, new Random(4711));
+        Arrays.sort(keys);
+        final String[] shuffled = keys.clone();
+        shuffle(shuffled, new Random(42));
+        System.out.println("keys: " + keys.length);
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            final PatriciaTrie<CharSequence, String> random = put(shuffled);
+            final long randomPut = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final PatriciaTrie<CharSequence, String> sortedPut = put(keys);
+            final long sortedPutTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final PatriciaTrie<CharSequence, String> bulk =
+                new PatriciaTrie<CharSequence, String>(
+                        new CharSequenceKeyAnalyzer(), new SortedEntries(keys));
+            final long bulkTime = System.nanoTime() - start;
+
+            if (bulk.size() != random.size()
+                    || bulk.size() != sortedPut.size()) {
+                throw new IllegalStateException("size differs");
+            }
+            System.out.println("round " + round
+                               + ": put (random order) " + randomPut / 1000000
+                               + "ms, put (sorted) " + sortedPutTime / 1000000
+                               + "ms, bulk load " + bulkTime / 1000000 + "ms");
+        }
+    }
+
+    static PatriciaTrie<CharSequence, String> put(final String[] keys) {
+        final PatriciaTrie<CharSequence, String> trie =
+            new PatriciaTrie<CharSequence, String>(new CharSequenceKeyAnalyzer());
+        for (final String key : keys) {
+            trie.put(key, key);
+        }
+        return trie;
+    }
+
+    static String[] createKeys(final int count, final Random random) {
+        final String[] keys = new String[count];
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.setLength(0);
+            final int words = 1 + random.nextInt(3);
+            for (int j = 0; j < words; j++) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+                sb.append(' ');
+            }
+            sb.append(Integer.toString(i, 36));
+            keys[i] = sb.toString();
+        }
+        return keys;
+    }
+
+    static void shuffle(final String[] keys, final Random random) {
+        for (int i = keys.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final String tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+    }
+
+    /** Iterates the sorted keys with a single reused entry. */
+    static final class SortedEntries
+            implements Iterator<Map.Entry<CharSequence, String>>,
+                       Map.Entry<CharSequence, String> {
+
+        private final String[] keys;
+        private int next = 0;
+
+        SortedEntries(final String[] keys) {
+            this.keys = keys;
+        }
+
+        public boolean hasNext() {
+            return this.next < this.keys.length;
+        }
+
+        public Map.Entry<CharSequence, String> next() {
+            if (! hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.next++;
+            return this;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public CharSequence getKey() {
+            return this.keys[this.next - 1];
+        }
+
+        public String getValue() {
+            return this.keys[this.next - 1];
+        }
+
+        public String setValue(final String value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.Map.Entry;
+
+public class PatriciaTrieBulkLoadTest {
+
+    @Test
+    public void sameAsPut() {
+        final Random random = new Random(4711);
+        final TreeMap<String, Integer> sorted = new TreeMap<String, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder key = new StringBuilder();
+            final int length = random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                key.append((char) ('a' + random.nextInt(5)));
+                if (random.nextInt(50) == 0) {
+                    key.append('ä');
+                }
+            }
+            sorted.put(key.toString(), Integer.valueOf(i));
+        }
+
+        final PatriciaTrie<CharSequence, Integer> expected =
+            new PatriciaTrie<CharSequence, Integer>(
+                    new CharSequenceKeyAnalyzer());
+        expected.putAll(sorted);
+        final PatriciaTrie<CharSequence, Integer> bulk =
+            new PatriciaTrie<CharSequence, Integer>(
+                    new CharSequenceKeyAnalyzer(),
+                    sorted.entrySet().iterator());
+
+        assertEquals(expected.size(), bulk.size());
+        assertEquals(entries(expected), entries(bulk));
+        for (final Entry<String, Integer> entry : sorted.entrySet()) {
+            assertEquals(entry.getValue(), bulk.get(entry.getKey()));
+        }
+        for (final String prefix : new String[] {"a", "ab", "e", "cä",
+                                                 "ddd", "f"}) {
+            assertEquals(entries(expected.getPrefixedBy(prefix)),
+                         entries(bulk.getPrefixedBy(prefix)));
+        }
+
+        // the bulk loaded trie stays modifiable
+        bulk.put("aaa", Integer.valueOf(0));
+        bulk.remove("ab");
+        expected.put("aaa", Integer.valueOf(0));
+        expected.remove("ab");
+        assertEquals(entries(expected), entries(bulk));
+    }
+
+    @Test
+    public void duplicatesAndEmptyKey() {
+        final List<Entry<CharSequence, String>> entries =
+            new ArrayList<Entry<CharSequence, String>>();
+        final PatriciaTrie<CharSequence, String> source =
+            new PatriciaTrie<CharSequence, String>(
+                    new CharSequenceKeyAnalyzer());
+        for (final String key : new String[] {"", "a", "b", "ba"}) {
+            source.put(key, key);
+        }
+        entries.addAll(source.entrySet());
+        entries.add(2, entry("a", "second"));
+
+        final PatriciaTrie<CharSequence, String> bulk =
+            new PatriciaTrie<CharSequence, String>(
+                    new CharSequenceKeyAnalyzer(), entries.iterator());
+        assertEquals(4, bulk.size());
+        assertEquals("", bulk.get(""));
+        assertEquals("second", bulk.get("a"));
+        assertEquals("ba", bulk.get("ba"));
+        assertTrue(bulk.containsPrefix("b"));
+        assertFalse(bulk.containsPrefix("c"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void unsorted() {
+        final List<Entry<CharSequence, String>> entries =
+            new ArrayList<Entry<CharSequence, String>>();
+        entries.add(entry("b", "b"));
+        entries.add(entry("a", "a"));
+        new PatriciaTrie<CharSequence, String>(new CharSequenceKeyAnalyzer(),
+                                               entries.iterator());
+    }
+
+    static Entry<CharSequence, String> entry(final CharSequence key,
+                                             final String value) {
+        return new Entry<CharSequence, String>() {
+            public CharSequence getKey() {
+                return key;
+            }
+            public String getValue() {
+                return value;
+            }
+            public String setValue(
+                    @SuppressWarnings("unused") final String v) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    static List<String> entries(final Map<CharSequence, Integer> map) {
+        final List<String> entries = new ArrayList<String>();
+        for (final Entry<CharSequence, Integer> entry : map.entrySet()) {
+            entries.add(entry.getKey() + "=" + entry.getValue());
+        }
+        return entries;
+    }
+}
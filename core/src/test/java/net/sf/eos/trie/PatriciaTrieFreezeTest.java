@@ -0,0 +1,219 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.sf.eos.trie.Trie.Cursor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.Map.Entry;
+
+public class PatriciaTrieFreezeTest {
+
+    @Test
+    public void rejectWrites() {
+        final PatriciaTrie<CharSequence, String> trie = newTrie(100).freeze();
+        assertTrue(trie.isFrozen());
+        try {
+            trie.put("new", "new");
+            fail("put");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            trie.remove("key1");
+            fail("remove");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            trie.clear();
+            fail("clear");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            final Iterator<CharSequence> itr =
+                trie.keySet().iterator();
+            itr.next();
+            itr.remove();
+            fail("iterator remove");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            trie.entrySet().iterator().next().setValue("x");
+            fail("setValue");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            trie.select("key1", new Cursor<CharSequence, String>() {
+                public SelectStatus select(
+                        final Entry<? extends CharSequence,
+                                    ? extends String> entry) {
+                    return SelectStatus.EXIT;
+                }
+            }).setValue("x");
+            fail("select setValue");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(100, trie.size());
+        assertEquals("value1", trie.get("key1"));
+    }
+
+    @Test
+    public void navigationSameAsUnfrozen() {
+        final PatriciaTrie<CharSequence, String> trie = newTrie(500);
+        final PatriciaTrie<CharSequence, String> frozen = trie.snapshot();
+        final TreeMap<String, String> expected = new TreeMap<String, String>();
+        for (final Entry<CharSequence, String> entry : trie.entrySet()) {
+            expected.put(entry.getKey().toString(), entry.getValue());
+        }
+
+        for (final String key : new String[] {"key1", "key250", "key",
+                                              "kez", "a", "key499x"}) {
+            assertEquals(key, entries(trie.tailMap(key)),
+                         entries(frozen.tailMap(key)));
+            assertEquals(key, entries(trie.headMap(key)),
+                         entries(frozen.headMap(key)));
+            assertEquals(key, entries(trie.subMap(key, key + "5")),
+                         entries(frozen.subMap(key, key + "5")));
+            assertEquals(key, entries(trie.getPrefixedBy(key)),
+                         entries(frozen.getPrefixedBy(key)));
+            if (! trie.getPrefixedBy(key).isEmpty()) {
+                assertEquals(trie.getPrefixedBy(key).firstKey(),
+                             frozen.getPrefixedBy(key).firstKey());
+                assertEquals(trie.getPrefixedBy(key).lastKey(),
+                             frozen.getPrefixedBy(key).lastKey());
+            }
+        }
+        assertEquals(entries(trie), entries(frozen));
+        assertEquals(trie.firstKey(), frozen.firstKey());
+        assertEquals(trie.lastKey(), frozen.lastKey());
+    }
+
+    @Test
+    public void snapshotIsIndependent() {
+        final PatriciaTrie<CharSequence, String> trie = newTrie(10);
+        final PatriciaTrie<CharSequence, String> snapshot = trie.snapshot();
+        assertFalse(trie.isFrozen());
+        assertSame(snapshot, snapshot.snapshot());
+
+        trie.put("other", "other");
+        trie.remove("key1");
+        assertEquals(10, snapshot.size());
+        assertEquals("value1", snapshot.get("key1"));
+        assertNull(snapshot.get("other"));
+    }
+
+    @Test
+    public void concurrentReaders() throws Exception {
+        final int count = 2000;
+        final PatriciaTrie<CharSequence, String> trie =
+            newTrie(count).freeze();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> futures =
+                new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 16; t++) {
+                final long seed = t;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        return read(trie, count, new Random(seed));
+                    }
+                }));
+            }
+            for (final Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(2000), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static int read(final PatriciaTrie<CharSequence, String> trie,
+                    final int count,
+                    final Random random) {
+        int checked = 0;
+        for (int i = 0; i < 2000; i++) {
+            final int id = random.nextInt(count);
+            final String key = "key" + id;
+            assertEquals("value" + id, trie.get(key));
+            assertEquals(key, trie.select(key).replace("value", "key"));
+            final SortedMap<CharSequence, String> prefixed =
+                trie.getPrefixedBy(key);
+            assertEquals("value" + id, prefixed.get(key));
+            for (final CharSequence k : prefixed.keySet()) {
+                assertTrue(k.toString().startsWith(key));
+            }
+            assertEquals(key, trie.tailMap(key).firstKey());
+            final String[] found = new String[1];
+            trie.traverse(new Cursor<CharSequence, String>() {
+                public SelectStatus select(
+                        final Entry<? extends CharSequence,
+                                    ? extends String> entry) {
+                    if (key.equals(entry.getKey())) {
+                        found[0] = entry.getValue();
+                        return SelectStatus.EXIT;
+                    }
+                    return SelectStatus.CONTINUE;
+                }
+            });
+            assertEquals("value" + id, found[0]);
+            checked++;
+        }
+        assertEquals(count, trie.size());
+        return checked;
+    }
+
+    static List<String> entries(final Map<CharSequence, String> map) {
+        final List<String> entries = new ArrayList<String>();
+        for (final Entry<CharSequence, String> entry : map.entrySet()) {
+            entries.add(entry.getKey() + "=" + entry.getValue());
+        }
+        return entries;
+    }
+
+    static PatriciaTrie<CharSequence, String> newTrie(final int count) {
+        final PatriciaTrie<CharSequence, String> trie =
+            new PatriciaTrie<CharSequence, String>(
+                    new CharSequenceKeyAnalyzer());
+        for (int i = 0; i < count; i++) {
+            trie.put("key" + i, "value" + i);
+        }
+        return trie;
+    }
+}
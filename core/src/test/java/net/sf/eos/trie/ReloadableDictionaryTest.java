@@ -0,0 +1,159 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ReloadableDictionaryTest {
+
+    @Test
+    public void applyDelta() throws Exception {
+        final ReloadableDictionary dictionary = newDictionary();
+        final PatriciaTrie<CharSequence, Set<CharSequence>> first =
+            dictionary.current();
+        final Set<CharSequence> firstAlpha = first.get("alpha");
+
+        final int changes = dictionary.applyDelta(xml(
+                "<entry><key>alpha</key><value>urn:id:3</value></entry>"
+                + "<entry><key>gamma</key><value>urn:id:4</value></entry>"
+                + "<entry op='remove'><key>beta</key><value>urn:id:2</value></entry>"
+                + "<entry op='remove'><key>delta</key></entry>"
+                + "<entry op='remove'><key>unknown</key></entry>"));
+
+        assertEquals(5, changes);
+        assertEquals(3, dictionary.getVersion());
+        assertEquals(3, dictionary.get("alpha").size());
+        assertTrue(dictionary.get("alpha").contains("urn:id:3"));
+        assertEquals(Collections.singleton("urn:id:4"),
+                     dictionary.get("gamma"));
+        assertNull(dictionary.get("beta"));
+        assertFalse(dictionary.containsKey("delta"));
+        assertTrue(dictionary.containsPrefix("gam"));
+        assertEquals(2, dictionary.size());
+
+        // the former version is unchanged
+        assertEquals(3, first.size());
+        assertSame(firstAlpha, first.get("alpha"));
+        assertEquals(2, firstAlpha.size());
+        assertTrue(dictionary.current().isFrozen());
+    }
+
+    @Test
+    public void applyDeltaWithSax() throws Exception {
+        final XmlTrieLoader loader = new XmlTrieLoader();
+        loader.setStax(false);
+        final ReloadableDictionary dictionary =
+            new ReloadableDictionary(loader);
+        dictionary.reload(xml(
+                "<entry><key>alpha</key><value>urn:id:1</value></entry>"
+                + "<entry><key>beta</key><value>urn:id:2</value></entry>"));
+
+        assertEquals(2, dictionary.applyDelta(xml(
+                "<entry op='remove'><key>alpha</key></entry>"
+                + "<entry><key>beta</key><value>urn:id:3</value></entry>")));
+        assertNull(dictionary.get("alpha"));
+        assertEquals(2, dictionary.get("beta").size());
+    }
+
+    @Test
+    public void failedDeltaKeepsVersion() throws Exception {
+        final ReloadableDictionary dictionary = newDictionary();
+        final PatriciaTrie<CharSequence, Set<CharSequence>> first =
+            dictionary.current();
+        try {
+            dictionary.applyDelta(new ByteArrayInputStream(
+                    "<trie><entry><key>alpha</key>".getBytes("UTF-8")));
+            fail("broken delta applied");
+        } catch (final Exception e) {
+            // expected
+        }
+        assertSame(first, dictionary.current());
+        assertEquals(2, dictionary.getVersion());
+    }
+
+    @Test
+    public void readersDuringUpdates() throws Exception {
+        final ReloadableDictionary dictionary = newDictionary();
+        final AtomicReference<Throwable> failure =
+            new AtomicReference<Throwable>();
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 20000; i++) {
+                        final PatriciaTrie<CharSequence, Set<CharSequence>>
+                            version = dictionary.current();
+                        // alpha is never removed
+                        assertTrue(version.get("alpha").contains("urn:id:1"));
+                        int count = 0;
+                        for (final CharSequence key : version.keySet()) {
+                            assertTrue(version.containsKey(key));
+                            count++;
+                        }
+                        assertEquals(version.size(), count);
+                    }
+                } catch (final Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        reader.start();
+        for (int i = 0; i < 50; i++) {
+            dictionary.applyDelta(xml("<entry><key>key " + i
+                                      + "</key><value>urn:id:" + i
+                                      + "</value></entry>"));
+        }
+        reader.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(53, dictionary.size());
+    }
+
+    private static ReloadableDictionary newDictionary() throws Exception {
+        final ReloadableDictionary dictionary =
+            new ReloadableDictionary(new XmlTrieLoader());
+        dictionary.reload(xml(
+                "<entry><key>alpha</key><value>urn:id:1</value></entry>"
+                + "<entry><key>alpha</key><value>urn:id:2</value></entry>"
+                + "<entry><key>beta</key><value>urn:id:2</value></entry>"
+                + "<entry><key>delta</key><value>urn:id:1</value></entry>"
+                + "<entry><key>delta</key><value>urn:id:2</value></entry>"
+                + "<entry><key>epsilon</key><value>urn:id:5</value></entry>"));
+        dictionary.applyDelta(xml(
+                "<entry op='remove'><key>epsilon</key></entry>"));
+        return dictionary;
+    }
+
+    private static ByteArrayInputStream xml(final String entries)
+            throws Exception {
+        return new ByteArrayInputStream(
+                ("<?xml version='1.0' encoding='UTF-8'?><trie>" + entries
+                 + "</trie>").getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,127 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.eos.trie.TrieSource.TrieEntry;
+import net.sf.eos.trie.TrieSource.TrieEntryEvent;
+import net.sf.eos.trie.TrieSource.TrieEntryHandler;
+import net.sf.eos.trie.TrieSource.TrieEntryListener;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+public class StaxTrieSourceTest {
+
+    @Test
+    public void pull() throws Exception {
+        final String xml = "<?xml version='1.0' encoding='UTF-8'?>"
+                           + "<trie><entry><key>key</key><value>value</value></entry>"
+                           + "<entry><key>a &amp; b</key><value><![CDATA[<v>]]></value></entry></trie>";
+        final StaxTrieSource source =
+            new StaxTrieSource(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+        assertTrue(source.next());
+        assertEquals("key", new String(source.getKeyBuffer(), 0,
+                                       source.getKeyLength()));
+        assertEquals("value", new String(source.getValueBuffer(), 0,
+                                         source.getValueLength()));
+        assertTrue(source.next());
+        assertEquals("a & b", new String(source.getKeyBuffer(), 0,
+                                         source.getKeyLength()));
+        assertEquals("<v>", new String(source.getValueBuffer(), 0,
+                                       source.getValueLength()));
+        assertFalse(source.next());
+        source.close();
+    }
+
+    @Test
+    public void longValues() throws Exception {
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append("value").append(i).append(' ');
+        }
+        final String xml = "<trie><entry><key>k</key><value>" + value
+                           + "</value></entry><entry><key>k2</key><value>v"
+                           + "</value></entry></trie>";
+        final StaxTrieSource source =
+            new StaxTrieSource(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        final List<String> values = new ArrayList<String>();
+        source.parse(new TrieEntryHandler() {
+            public void onEntry(final char[] key,
+                                final int keyOffset,
+                                final int keyLength,
+                                final char[] val,
+                                final int valueOffset,
+                                final int valueLength) {
+                values.add(new String(val, valueOffset, valueLength));
+            }
+        });
+
+        assertEquals(2, values.size());
+        assertEquals(value.toString(), values.get(0));
+        assertEquals("v", values.get(1));
+    }
+
+    @Test
+    public void sameEntriesAsTrieHandler() throws Exception {
+        final List<String> expected = new ArrayList<String>();
+        final TrieHandler handler = new TrieHandler();
+        handler.addTrieEntryListener(new Collector(expected));
+        final InputStream saxIn =
+            StaxTrieSourceTest.class.getResourceAsStream("/example.triex");
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(saxIn, handler);
+        } finally {
+            saxIn.close();
+        }
+
+        final List<String> actual = new ArrayList<String>();
+        final InputStream staxIn =
+            StaxTrieSourceTest.class.getResourceAsStream("/example.triex");
+        try {
+            final StaxTrieSource source = new StaxTrieSource(staxIn);
+            source.addTrieEntryListener(new Collector(actual));
+            while (source.next()) { }
+            source.close();
+        } finally {
+            staxIn.close();
+        }
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+
+    static final class Collector implements TrieEntryListener {
+        private final List<String> entries;
+        Collector(final List<String> entries) {
+            this.entries = entries;
+        }
+        public void onEntry(final TrieEntryEvent event) {
+            final TrieEntry entry = (TrieEntry) event.getSource();
+            this.entries.add(entry.getKey() + "=" + entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class TrieSnapshotTest {
+
+    @Test
+    public void roundTrip() throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            newTrie();
+        put(trie, "", "urn:id:0");
+        put(trie, "first", "urn:id:1");
+        put(trie, "first", "urn:id:3");
+        put(trie, "first word", "urn:id:1");
+        put(trie, "second word", "urn:id:2");
+        put(trie, "\u00e4\u4e2d\uffff", "urn:id:\u00fc");
+        trie.put("empty", new HashSet<CharSequence>());
+
+        final PatriciaTrie<CharSequence, Set<CharSequence>> restored =
+            TrieSnapshot.read(new ByteArrayInputStream(toBytes(trie)));
+        assertTrue(restored.isFrozen());
+        assertEquals(trie, restored);
+        assertEquals(trie.firstKey(), restored.firstKey());
+        assertEquals(trie.lastKey(), restored.lastKey());
+    }
+
+    @Test
+    public void randomKeys() throws Exception {
+        final Random random = new Random(4711);
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            newTrie();
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder key = new StringBuilder();
+            final int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                key.append((char) ('a' + random.nextInt(4)));
+            }
+            put(trie, key.toString(), "id" + random.nextInt(50));
+        }
+
+        final EntityIdPool pool = new EntityIdPool();
+        final PatriciaTrie<CharSequence, Set<CharSequence>> restored =
+            TrieSnapshot.read(new ByteArrayInputStream(toBytes(trie)), pool);
+        assertEquals(trie, restored);
+        assertEquals(50, pool.size());
+        assertTrue(restored.get(trie.firstKey()) instanceof EntityIdSet);
+    }
+
+    @Test
+    public void equalSetsAreShared() throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            newTrie();
+        put(trie, "a", "urn:id:1");
+        put(trie, "b", "urn:id:2");
+        put(trie, "c", "urn:id:1");
+
+        final PatriciaTrie<CharSequence, Set<CharSequence>> restored =
+            TrieSnapshot.read(new ByteArrayInputStream(toBytes(trie)));
+        assertSame(restored.get("a"), restored.get("c"));
+        assertEquals(Collections.singleton("urn:id:2"), restored.get("b"));
+    }
+
+    @Test
+    public void corruptSnapshot() throws Exception {
+        final PatriciaTrie<CharSequence, Set<CharSequence>> trie =
+            newTrie();
+        put(trie, "first", "urn:id:1");
+        put(trie, "second", "urn:id:2");
+        final byte[] bytes = toBytes(trie);
+
+        final byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try {
+            TrieSnapshot.read(new ByteArrayInputStream(truncated));
+            fail("truncated snapshot read");
+        } catch (final IOException e) {
+            // expected
+        }
+
+        bytes[0] = 0;
+        try {
+            TrieSnapshot.read(new ByteArrayInputStream(bytes));
+            fail("illegal magic number read");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    private static PatriciaTrie<CharSequence, Set<CharSequence>> newTrie() {
+        return new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                new CharSequenceKeyAnalyzer());
+    }
+
+    private static void put(final Trie<CharSequence, Set<CharSequence>> trie,
+                            final String key,
+                            final String id) {
+        Set<CharSequence> values = trie.get(key);
+        if (values == null) {
+            values = new HashSet<CharSequence>();
+            trie.put(key, values);
+        }
+        values.add(id);
+    }
+
+    private static byte[] toBytes(
+            final PatriciaTrie<CharSequence, Set<CharSequence>> trie)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrieSnapshot.write(trie, out);
+        return out.toByteArray();
+    }
+}
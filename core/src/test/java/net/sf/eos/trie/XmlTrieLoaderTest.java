@@ -0,0 +1,173 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.trie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.sf.eos.Supplier;
+import net.sf.eos.analyzer.CaseTokenFilter;
+import net.sf.eos.analyzer.ResettableTokenFilter;
+import net.sf.eos.analyzer.ResettableTokenizer;
+import net.sf.eos.analyzer.WhitespaceTokenizer;
+import net.sf.eos.config.Configuration;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class XmlTrieLoaderTest {
+
+    @Test
+    public void parallelSameAsSequential() throws Exception {
+        final byte[] xml = createXml(5000);
+
+        final XmlTrieLoader sequential = new XmlTrieLoader();
+        sequential.setTokenizer(newUpperCaseTokenizer());
+        final Trie<CharSequence, Set<CharSequence>> expected = newTrie();
+        sequential.loadTrie(new ByteArrayInputStream(xml), expected);
+
+        final XmlTrieLoader parallel = new XmlTrieLoader();
+        parallel.setWorkerCount(3);
+        parallel.setTokenizerSupplier(new Supplier<ResettableTokenizer>() {
+            public ResettableTokenizer get() {
+                return newUpperCaseTokenizer();
+            }
+        });
+        final Trie<CharSequence, Set<CharSequence>> actual = newTrie();
+        parallel.loadTrie(new ByteArrayInputStream(xml), actual);
+
+        assertEquals(5000, sequential.getEntryCount());
+        assertEquals(5000, parallel.getEntryCount());
+        assertTrue(parallel.getEntriesPerSecond() > 0);
+        assertEquals(expected, actual);
+        assertTrue(actual.get("key 0").contains("URN:ID:0 VALUE"));
+        assertTrue(actual.get("key 0") instanceof EntityIdSet);
+    }
+
+    @Test
+    public void parallelWithSharedTokenizer() throws Exception {
+        final byte[] xml = createXml(3000);
+
+        final XmlTrieLoader sequential = new XmlTrieLoader();
+        sequential.setTokenizer(newUpperCaseTokenizer());
+        final Trie<CharSequence, Set<CharSequence>> expected = newTrie();
+        sequential.loadTrie(new ByteArrayInputStream(xml), expected);
+
+        final XmlTrieLoader parallel = new XmlTrieLoader();
+        parallel.setWorkerCount(2);
+        parallel.setTokenizer(newUpperCaseTokenizer());
+        final Trie<CharSequence, Set<CharSequence>> actual = newTrie();
+        parallel.loadTrie(new ByteArrayInputStream(xml), actual);
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void parallelIntoFilledTrie() throws Exception {
+        final byte[] xml = createXml(3000);
+
+        final XmlTrieLoader sequential = new XmlTrieLoader();
+        final Trie<CharSequence, Set<CharSequence>> expected = newTrie();
+        expected.put("a", new HashSet<CharSequence>(Arrays.asList("1")));
+        sequential.loadTrie(new ByteArrayInputStream(xml), expected);
+
+        final XmlTrieLoader parallel = new XmlTrieLoader();
+        parallel.setWorkerCount(2);
+        final Trie<CharSequence, Set<CharSequence>> actual = newTrie();
+        actual.put("a", new HashSet<CharSequence>(Arrays.asList("1")));
+        parallel.loadTrie(new ByteArrayInputStream(xml), actual);
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void staxSameAsSax() throws Exception {
+        final byte[] xml = createXml(2000);
+
+        final XmlTrieLoader sax = new XmlTrieLoader();
+        sax.setStax(false);
+        final Trie<CharSequence, Set<CharSequence>> expected = newTrie();
+        sax.loadTrie(new ByteArrayInputStream(xml), expected);
+
+        final XmlTrieLoader stax = new XmlTrieLoader();
+        assertTrue(stax.isStax());
+        final Trie<CharSequence, Set<CharSequence>> actual = newTrie();
+        stax.loadTrie(new ByteArrayInputStream(xml), actual);
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void removeEntryRejectedByStaxAndSax() throws Exception {
+        final byte[] xml = ("<?xml version='1.0' encoding='UTF-8'?><trie>"
+                + "<entry><key>alpha</key><value>urn:id:1</value></entry>"
+                + "<entry op='remove'><key>alpha</key></entry>"
+                + "</trie>").getBytes("UTF-8");
+        for (final boolean stax : new boolean[] {true, false}) {
+            final XmlTrieLoader loader = new XmlTrieLoader();
+            loader.setStax(stax);
+            try {
+                loader.loadTrie(new ByteArrayInputStream(xml), newTrie());
+                fail("remove entry loaded with stax " + stax);
+            } catch (final Exception e) {
+                assertTrue(e.getMessage(),
+                           e.getMessage().contains("unexpected operation"));
+            }
+        }
+    }
+
+    @Test
+    public void workerCountFromConfiguration() throws Exception {
+        final Configuration config = new Configuration();
+        config.set(AbstractTrieLoader.TRIE_LOADER_IMPL_CONFIG_NAME,
+                   XmlTrieLoader.class.getName());
+        config.set(XmlTrieLoader.WORKER_COUNT_CONFIG_NAME, "4");
+
+        final XmlTrieLoader loader =
+            (XmlTrieLoader) AbstractTrieLoader.newInstance(config);
+        assertEquals(4, loader.getWorkerCount());
+    }
+
+    static Trie<CharSequence, Set<CharSequence>> newTrie() {
+        return new PatriciaTrie<CharSequence, Set<CharSequence>>(
+                new CharSequenceKeyAnalyzer());
+    }
+
+    static ResettableTokenizer newUpperCaseTokenizer() {
+        final ResettableTokenizer source = new WhitespaceTokenizer();
+        return new ResettableTokenFilter(new CaseTokenFilter(source, true),
+                                         source);
+    }
+
+    static byte[] createXml(final int count) throws Exception {
+        final StringBuilder sb =
+            new StringBuilder("<?xml version='1.0' encoding='UTF-8'?><trie>");
+        for (int i = 0; i < count; i++) {
+            sb.append("<entry><key>key ");
+            sb.append(i % (count / 2));
+            sb.append("</key><value>urn:id:");
+            sb.append(i % 7);
+            sb.append("   value</value></entry>");
+        }
+        sb.append("</trie>");
+        return sb.toString().getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,69 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BloomFilterTest {
+
+    @Test
+    public void noFalseNegatives() {
+        final BloomFilter filter = new BloomFilter(10000, 0.01, 1 << 20);
+        final Random random = new Random(4711);
+        final long[] hashes = new long[10000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            filter.put(hashes[i]);
+        }
+        for (final long hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        final BloomFilter filter = new BloomFilter(10000, 0.01, 1 << 20);
+        final Random random = new Random(4711);
+        for (int i = 0; i < 10000; i++) {
+            filter.put(random.nextLong());
+        }
+        int positives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                positives++;
+            }
+        }
+        assertTrue("" + positives, positives < 2000);
+        assertTrue(filter.expectedFpp(10000) < 0.02);
+    }
+
+    @Test
+    public void limitedSize() {
+        final BloomFilter filter = new BloomFilter(1000000, 0.001, 4096);
+        assertEquals(4096, filter.getBitCount());
+        assertEquals(1, filter.getHashCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void illegalFpp() {
+        new BloomFilter(10, 1d, 1024);
+    }
+}
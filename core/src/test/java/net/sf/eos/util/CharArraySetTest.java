@@ -0,0 +1,69 @@
+/* Copyright (c) 2008 Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.eos.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class CharArraySetTest {
+
+    @Test
+    public void probeWithRangesAndSequences() {
+        final CharArraySet set =
+            new CharArraySet(Arrays.asList("RESULTS:", "AIM:", ""));
+        assertEquals(3, set.size());
+
+        final char[] buffer = "xxAIM:yy".toCharArray();
+        assertTrue(set.contains(buffer, 2, 4));
+        assertFalse(set.contains(buffer, 2, 3));
+        assertTrue(set.contains(buffer, 0, 0));
+        assertTrue(set.contains(new StringBuilder("RESULTS:")));
+        assertTrue(set.contains((Object) "AIM:"));
+        assertTrue(set.contains((Object) "AIM:".toCharArray()));
+        assertFalse(set.contains("RESULTS"));
+        assertFalse(set.contains((Object) Integer.valueOf(1)));
+
+        assertFalse(set.add("AIM:"));
+        assertFalse(set.add(buffer, 2, 4));
+        assertEquals(new HashSet<String>(Arrays.asList("RESULTS:", "AIM:", "")),
+                     new HashSet<String>(set));
+    }
+
+    @Test
+    public void sameAsHashSet() {
+        final Random random = new Random(4711);
+        final CharArraySet set = new CharArraySet(0);
+        final Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < 5000; i++) {
+            final String s = Integer.toString(random.nextInt(20000), 36);
+            assertEquals(expected.add(s), set.add(s));
+        }
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected, new HashSet<String>(set));
+        for (int i = 0; i < 20000; i++) {
+            final String s = Integer.toString(i, 36);
+            assertEquals(expected.contains(s), set.contains(s));
+        }
+    }
+}